@@ -15,23 +15,39 @@
  */
 package com.ajah.user.achievement;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.java.Log;
 
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.stereotype.Service;
 
-import com.ajah.lang.ListMap;
 import com.ajah.spring.jdbc.err.DataOperationException;
+import com.ajah.thread.ManagedExecutor;
+import com.ajah.thread.ManagedExecutors;
+import com.ajah.thread.RejectionPolicy;
 import com.ajah.user.UserId;
 import com.ajah.user.achievement.data.AchievementManager;
 import com.ajah.user.achievement.data.AchievementTagManager;
@@ -43,12 +59,32 @@ import com.ajah.util.StringUtils;
  * Determines and executes the propert {@link AchievementAnalyzer}s for a given
  * user and tags.
  * 
+ * Events passed to {@link #submit(UserId, String...)} are evaluated
+ * asynchronously on the "achievement" executor (see {@link ManagedExecutors}).
+ * Tags submitted for a user while an evaluation for that user is already
+ * pending are merged into it, and evaluations for any one user never run
+ * concurrently, so different users are evaluated in parallel without racing
+ * on the same achievement records.
+ * 
+ * The executor must not silently drop tasks, so executors with a
+ * {@link RejectionPolicy#DISCARD} or {@link RejectionPolicy#DISCARD_OLDEST}
+ * policy are refused. Under {@link RejectionPolicy#CALLER_RUNS}, the default
+ * for managed executors, a saturated executor runs the evaluation on the
+ * thread that called {@link #submit(UserId, String...)}, which is usually a
+ * request thread. If the executor rejects an evaluation outright, the user's
+ * pending tags are dropped and counted in {@link #getRejected()}.
+ * 
+ * The map of tags to achievements is built on first use and then refreshed in
+ * the background every {@link #refreshInterval} milliseconds.
+ * 
  * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
  *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
  */
 @Service
 @Log
-public class AchievementAnalyzerDispatcher implements ApplicationContextAware {
+public class AchievementAnalyzerDispatcher implements ApplicationContextAware, DisposableBean {
+
+	private static final int PAGE_SIZE = 100;
 
 	@Autowired
 	AchievementManager achievementManager;
@@ -59,67 +95,233 @@ public class AchievementAnalyzerDispatcher implements ApplicationContextAware {
 	@Autowired
 	AchievementUserManager achievementUserManager;
 
-	ListMap<String, Achievement> tagCache = null;
+	private volatile Map<String, List<Achievement>> tagCache = null;
 
 	private ApplicationContext applicationContext;
 
+	/**
+	 * The executor evaluations run on.
+	 */
+	@Getter
+	private volatile Executor executor = checkExecutor(ManagedExecutors.get("achievement"));
+
+	/**
+	 * How often, in milliseconds, the tag cache is rebuilt.
+	 */
+	@Getter
+	@Setter
+	private volatile long refreshInterval = 5 * 60 * 1000L;
+
+	private ScheduledExecutorService refresher;
+
+	/**
+	 * Tags waiting to be evaluated, by user. Guarded by itself, along with
+	 * {@link #running}.
+	 */
+	private final Map<UserId, Set<String>> pending = new HashMap<>();
+
+	/**
+	 * Users with an evaluation in progress.
+	 */
+	private final Set<UserId> running = new HashSet<>();
+
+	private final AtomicLong submitted = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong evaluated = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+
+	private static Executor checkExecutor(final Executor executor) {
+		AjahUtils.requireParam(executor, "executor");
+		if (executor instanceof ManagedExecutor) {
+			final RejectionPolicy policy = ((ManagedExecutor) executor).getRejectionPolicy();
+			if (policy == RejectionPolicy.DISCARD || policy == RejectionPolicy.DISCARD_OLDEST) {
+				throw new IllegalArgumentException("Executor " + ((ManagedExecutor) executor).getName() + " discards tasks, which would strand pending evaluations");
+			}
+		}
+		return executor;
+	}
+
 	private synchronized void init() throws DataOperationException {
-		ListMap<String, Achievement> myTagCache = new ListMap<>();
-		Map<Achievement, AchievementAnalyzer> myAnalyzerCache = new HashMap<>();
+		if (this.tagCache != null) {
+			return;
+		}
+		this.tagCache = buildTagCache();
+		if (this.refreshInterval > 0) {
+			this.refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "achievement-tag-refresh");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			this.refresher.scheduleWithFixedDelay(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						AchievementAnalyzerDispatcher.this.tagCache = buildTagCache();
+					} catch (final DataOperationException | RuntimeException e) {
+						log.log(Level.WARNING, "Could not refresh achievement tags, keeping the previous ones: " + e.getMessage(), e);
+					}
+				}
+			}, this.refreshInterval, this.refreshInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private Map<String, List<Achievement>> buildTagCache() throws DataOperationException {
+		final Map<String, List<Achievement>> myTagCache = new HashMap<>();
 		List<Achievement> achievements = null;
-		while (achievements == null || achievements.size() == 100) {
-			achievements = this.achievementManager.list(null, AchievementStatus.ACTIVE, 0, 100);
-			for (Achievement achievement : achievements) {
+		for (int page = 0; achievements == null || achievements.size() == PAGE_SIZE; page++) {
+			achievements = this.achievementManager.list(null, AchievementStatus.ACTIVE, page, PAGE_SIZE);
+			for (final Achievement achievement : achievements) {
 				log.fine(achievement.getName() + ": " + achievement.getAnalyzer());
 				if (StringUtils.isBlank(achievement.getAnalyzer())) {
 					log.warning("No analyzer for achievement " + achievement.getName());
 					continue;
 				}
 				try {
-					AchievementAnalyzer analyzer = (AchievementAnalyzer) this.applicationContext.getBean(Class.forName(achievement.getAnalyzer()));
+					final AchievementAnalyzer analyzer = (AchievementAnalyzer) this.applicationContext.getBean(Class.forName(achievement.getAnalyzer()));
 					achievement.setAchievementAnalyzer(analyzer);
-					List<AchievementTag> tags = this.achievementTagManager.list(achievement.getId());
-					for (AchievementTag tag : tags) {
-						myTagCache.putValue(tag.getName(), achievement);
+					final List<AchievementTag> tags = this.achievementTagManager.list(achievement.getId());
+					for (final AchievementTag tag : tags) {
+						List<Achievement> list = myTagCache.get(tag.getName());
+						if (list == null) {
+							list = new ArrayList<>();
+							myTagCache.put(tag.getName(), list);
+						}
+						list.add(achievement);
 					}
 				} catch (BeansException | ClassNotFoundException e) {
 					log.log(Level.SEVERE, e.getMessage(), e);
 				}
 			}
 		}
-		this.tagCache = myTagCache;
+		for (final Map.Entry<String, List<Achievement>> entry : myTagCache.entrySet()) {
+			entry.setValue(Collections.unmodifiableList(entry.getValue()));
+		}
+		return Collections.unmodifiableMap(myTagCache);
 	}
 
 	/**
-	 * Determines which {@link AchievementAnalyzer}s to run and executes them.
-	 * If an analyzer matches more than one tag, it only executes once.
+	 * Queues tags to be evaluated for a user. If the user already has an
+	 * evaluation waiting, the tags are added to it.
 	 * 
 	 * @param userId
 	 *            The user to check for, required.
 	 * @param tags
 	 *            The tags to match achievements on, required.
+	 */
+	public void submit(final UserId userId, final String... tags) {
+		AjahUtils.requireParam(userId, "userId");
+		AjahUtils.requireParam(tags, "tags");
+		this.submitted.incrementAndGet();
+		boolean schedule = false;
+		synchronized (this.pending) {
+			Set<String> userTags = this.pending.get(userId);
+			if (userTags == null) {
+				userTags = new LinkedHashSet<>();
+				this.pending.put(userId, userTags);
+				// A running evaluation reschedules itself when it finishes
+				schedule = !this.running.contains(userId);
+			} else {
+				this.coalesced.incrementAndGet();
+			}
+			userTags.addAll(Arrays.asList(tags));
+		}
+		if (schedule) {
+			schedule(userId);
+		}
+	}
+
+	private void schedule(final UserId userId) {
+		try {
+			this.executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					evaluate(userId);
+				}
+			});
+		} catch (final RejectedExecutionException e) {
+			// Nothing will run for this user, so forget the tags or every
+			// later submit would merge into an evaluation that never happens.
+			final Set<String> dropped;
+			synchronized (this.pending) {
+				dropped = this.pending.remove(userId);
+			}
+			this.rejected.incrementAndGet();
+			log.log(Level.WARNING, "Achievement evaluation rejected for " + userId + ", dropping " + dropped + ": " + e.getMessage(), e);
+		}
+	}
+
+	private void evaluate(final UserId userId) {
+		final Set<String> tags;
+		synchronized (this.pending) {
+			tags = this.pending.remove(userId);
+			if (tags == null) {
+				return;
+			}
+			this.running.add(userId);
+		}
+		try {
+			dispatch(userId, tags.toArray(new String[tags.size()]));
+			this.evaluated.incrementAndGet();
+		} catch (final DataOperationException | RuntimeException e) {
+			this.failed.incrementAndGet();
+			log.log(Level.SEVERE, "Achievement evaluation failed for " + userId + ": " + e.getMessage(), e);
+		} finally {
+			final boolean reschedule;
+			synchronized (this.pending) {
+				this.running.remove(userId);
+				reschedule = this.pending.containsKey(userId);
+			}
+			if (reschedule) {
+				schedule(userId);
+			}
+		}
+	}
+
+	/**
+	 * Determines which {@link AchievementAnalyzer}s to run and executes them
+	 * on the calling thread. If an analyzer matches more than one tag, it only
+	 * executes once. The user's existing progress on every matched achievement
+	 * is loaded in a single query.
+	 * 
+	 * @param userId
+	 *            The user to check for, required.
+	 * @param tags
+	 *            The tags to match achievements on, required.
+	 * @return true if no achievements matched the tags, otherwise false.
 	 * @throws DataOperationException
 	 *             If a query could not be executed.
+	 * @see #submit(UserId, String...)
 	 */
-	public boolean dispatch(UserId userId, String[] tags) throws DataOperationException {
+	public boolean dispatch(final UserId userId, final String[] tags) throws DataOperationException {
 		AjahUtils.requireParam(userId, "userId");
 		AjahUtils.requireParam(tags, "tags");
 		if (this.tagCache == null) {
 			init();
 		}
-		Set<Achievement> achievements = new HashSet<>();
-		for (String tag : tags) {
-			List<Achievement> list = this.tagCache.getList(tag);
+		final Map<String, List<Achievement>> currentTagCache = this.tagCache;
+		final Map<AchievementId, Achievement> achievements = new HashMap<>();
+		for (final String tag : tags) {
+			final List<Achievement> list = currentTagCache.get(tag);
 			if (list != null) {
-				achievements.addAll(list);
+				for (final Achievement achievement : list) {
+					achievements.put(achievement.getId(), achievement);
+				}
 			}
 		}
 		if (achievements.size() == 0) {
 			log.warning("No achievements matched " + StringUtils.join(",", tags));
 			return true;
 		}
-		for (Achievement achievement : achievements) {
-			AchievementUser achievementUser = this.achievementUserManager.find(userId, achievement.getId());
+		final Map<AchievementId, AchievementUser> achievementUsers = this.achievementUserManager.find(userId, achievements.keySet());
+		for (final Achievement achievement : achievements.values()) {
+			final AchievementUser achievementUser = achievementUsers.get(achievement.getId());
 			if (achievementUser != null && achievementUser.getStatus() == AchievementUserStatus.COMPLETED) {
 				log.fine("Already completed");
 			} else {
@@ -136,4 +338,87 @@ public class AchievementAnalyzerDispatcher implements ApplicationContextAware {
 	public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
 		this.applicationContext = applicationContext;
 	}
+
+	/**
+	 * Stops refreshing the tag cache when the Spring context shuts down.
+	 * Queued evaluations are left to the executor, which drains on shutdown.
+	 * 
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public synchronized void destroy() {
+		if (this.refresher != null) {
+			this.refresher.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns the number of users with an evaluation waiting to run.
+	 * 
+	 * @return The number of users waiting.
+	 */
+	public int getQueueDepth() {
+		synchronized (this.pending) {
+			return this.pending.size();
+		}
+	}
+
+	/**
+	 * Returns the number of calls to {@link #submit(UserId, String...)}.
+	 * 
+	 * @return The number of submissions.
+	 */
+	public long getSubmitted() {
+		return this.submitted.get();
+	}
+
+	/**
+	 * Returns the number of submissions merged into an evaluation that was
+	 * already waiting.
+	 * 
+	 * @return The number of coalesced submissions.
+	 */
+	public long getCoalesced() {
+		return this.coalesced.get();
+	}
+
+	/**
+	 * Returns the number of evaluations that completed.
+	 * 
+	 * @return The number of evaluations.
+	 */
+	public long getEvaluated() {
+		return this.evaluated.get();
+	}
+
+	/**
+	 * Returns the number of evaluations that threw an exception.
+	 * 
+	 * @return The number of failed evaluations.
+	 */
+	public long getFailed() {
+		return this.failed.get();
+	}
+
+	/**
+	 * Returns the number of evaluations the executor rejected.
+	 * 
+	 * @return The number of rejected evaluations.
+	 */
+	public long getRejected() {
+		return this.rejected.get();
+	}
+
+	/**
+	 * Sets the executor evaluations run on.
+	 * 
+	 * @param executor
+	 *            The executor, required. Must not discard tasks.
+	 * @throws IllegalArgumentException
+	 *             If the executor has a discarding {@link RejectionPolicy}.
+	 */
+	public void setExecutor(final Executor executor) {
+		this.executor = checkExecutor(executor);
+	}
+
 }
@@ -15,6 +15,7 @@
  */
 package com.ajah.user.achievement.data;
 
+import java.util.Collection;
 import java.util.List;
 
 import com.ajah.spring.jdbc.AjahDao;
@@ -80,4 +81,19 @@ public interface AchievementUserDao extends AjahDao<AchievementUserId, Achieveme
 	 */
 	AchievementUser find(UserId userId, AchievementId achievementId) throws DataOperationException;
 
+	/**
+	 * Finds a user's achievement records for several achievements, in as few
+	 * queries as possible.
+	 * 
+	 * @param userId
+	 *            The user to look up, required.
+	 * @param achievementIds
+	 *            The achievements to look up, required.
+	 * @return The user's achievement records that exist, in no particular
+	 *         order. May be empty.
+	 * @throws DataOperationException
+	 *             If the query could not be executed.
+	 */
+	List<AchievementUser> list(final UserId userId, final Collection<AchievementId> achievementIds) throws DataOperationException;
+
 }
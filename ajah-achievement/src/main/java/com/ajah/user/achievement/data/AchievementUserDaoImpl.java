@@ -15,6 +15,7 @@
  */
 package com.ajah.user.achievement.data;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.stereotype.Repository;
@@ -86,4 +87,13 @@ public class AchievementUserDaoImpl extends AbstractAjahDao<AchievementUserId, A
 		return super.find(userId, achievementId);
 	}
 
+	/**
+	 * @see com.ajah.user.achievement.data.AchievementUserDao#list(UserId,
+	 *      Collection)
+	 */
+	@Override
+	public List<AchievementUser> list(final UserId userId, final Collection<AchievementId> achievementIds) throws DataOperationException {
+		return queryIn("achievement_id", achievementIds, new Criteria().eq(userId));
+	}
+
 }
@@ -16,8 +16,11 @@
 package com.ajah.user.achievement.data;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import lombok.extern.java.Log;
@@ -35,6 +38,7 @@ import com.ajah.user.achievement.AchievementUser;
 import com.ajah.user.achievement.AchievementUserId;
 import com.ajah.user.achievement.AchievementUserStatus;
 import com.ajah.user.achievement.AchievementUserType;
+import com.ajah.util.AjahUtils;
 
 /**
  * Manages data operations for {@link AchievementUser}.
@@ -210,4 +214,29 @@ public class AchievementUserManager {
 		return this.achievementUserDao.find(userId, achievementId);
 	}
 
+	/**
+	 * Finds a user's achievement records for several achievements at once.
+	 * 
+	 * @param userId
+	 *            The user to look up, required.
+	 * @param achievementIds
+	 *            The achievements to look up, required.
+	 * @return The user's achievement records keyed by achievement ID.
+	 *         Achievements the user has no record for are absent.
+	 * @throws DataOperationException
+	 *             If the query could not be executed.
+	 */
+	public Map<AchievementId, AchievementUser> find(final UserId userId, final Collection<AchievementId> achievementIds) throws DataOperationException {
+		AjahUtils.requireParam(userId, "userId");
+		AjahUtils.requireParam(achievementIds, "achievementIds");
+		final Map<AchievementId, AchievementUser> achievementUsers = new HashMap<>(achievementIds.size() * 2);
+		if (achievementIds.isEmpty()) {
+			return achievementUsers;
+		}
+		for (final AchievementUser achievementUser : this.achievementUserDao.list(userId, achievementIds)) {
+			achievementUsers.put(achievementUser.getAchievementId(), achievementUser);
+		}
+		return achievementUsers;
+	}
+
 }
@@ -16,17 +16,41 @@
 package com.efsavage.amazon.s3;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
 
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.java.Log;
 
+import org.jets3t.service.Constants;
+import org.jets3t.service.Jets3tProperties;
 import org.jets3t.service.S3ServiceException;
 import org.jets3t.service.ServiceException;
 import org.jets3t.service.impl.rest.httpclient.RestS3Service;
 import org.jets3t.service.io.GZipDeflatingInputStream;
+import org.jets3t.service.model.MultipartPart;
+import org.jets3t.service.model.MultipartUpload;
 import org.jets3t.service.model.S3Object;
+import org.jets3t.service.model.StorageObject;
 import org.jets3t.service.security.AWSCredentials;
 
 import com.ajah.lang.ConfigException;
@@ -38,6 +62,14 @@ import com.ajah.util.net.AjahMimeType;
 /**
  * Wrapper for {@link RestS3Service}.
  * 
+ * Large objects can be streamed in both directions without holding them in
+ * memory. Uploads from a stream are sent as a multipart upload once they exceed
+ * {@link #partSize}, with up to {@link #concurrency} parts in flight, so at most
+ * about {@code partSize * (concurrency + 1)} bytes are buffered. Downloads to a
+ * file fetch byte ranges of the same size in parallel.
+ * 
+ * Instances are thread-safe and hold a connection pool, so should be shared.
+ * 
  * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
  *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
  * 
@@ -52,16 +84,51 @@ public class S3Client {
 	 * @return The default client.
 	 */
 	public static S3Client getDefaultClient() {
-		try {
-			// TODO Make this a singleton.
-			return new S3Client(Config.i.get("aws.accessKey"), Config.i.get("aws.secretKey"));
-		} catch (final S3Exception e) {
-			throw new ConfigException(e);
+		S3Client client = defaultClient;
+		if (client == null) {
+			synchronized (S3Client.class) {
+				client = defaultClient;
+				if (client == null) {
+					try {
+						client = new S3Client(Config.i.get("aws.accessKey"), Config.i.get("aws.secretKey"));
+					} catch (final S3Exception e) {
+						throw new ConfigException(e);
+					}
+					defaultClient = client;
+				}
+			}
 		}
+		return client;
 	}
 
+	private static volatile S3Client defaultClient;
+
+	/**
+	 * S3 rejects multipart parts smaller than this, except the last.
+	 */
+	private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+	private static final int PRECONDITION_FAILED = 412;
+
+	private static final int MAX_DOWNLOAD_ATTEMPTS = 3;
+
 	private RestS3Service s3Service;
 
+	/**
+	 * The size of each part of multipart uploads and ranged downloads, in
+	 * bytes. Objects smaller than this are uploaded in a single request.
+	 */
+	@Getter
+	@Setter
+	private int partSize = 8 * 1024 * 1024;
+
+	/**
+	 * The number of parts uploaded or downloaded in parallel.
+	 */
+	@Getter
+	@Setter
+	private int concurrency = 4;
+
 	/**
 	 * Public constructor. Consider using {@link #getDefaultClient()}.
 	 * 
@@ -73,14 +140,59 @@ public class S3Client {
 	 *             If an S3 service could not be provisioned.
 	 */
 	public S3Client(final String accessKey, final String secretKey) throws S3Exception {
+		this(accessKey, secretKey, getProperties());
+	}
+
+	/**
+	 * Creates a client for an S3-compatible server other than Amazon's, such
+	 * as a local stand-in for tests.
+	 * 
+	 * @param accessKey
+	 *            The access key to use to authenticate.
+	 * @param secretKey
+	 *            The secret key to use to authenticate.
+	 * @param host
+	 *            The host name of the server.
+	 * @param port
+	 *            The port of the server.
+	 * @param https
+	 *            Does the server use HTTPS?
+	 * @throws S3Exception
+	 *             If an S3 service could not be provisioned.
+	 */
+	public S3Client(final String accessKey, final String secretKey, final String host, final int port, final boolean https) throws S3Exception {
+		this(accessKey, secretKey, getProperties(host, port, https));
+	}
+
+	private S3Client(final String accessKey, final String secretKey, final Jets3tProperties properties) throws S3Exception {
 		final AWSCredentials awsCredentials = new AWSCredentials(accessKey, secretKey);
 		try {
-			this.s3Service = new RestS3Service(awsCredentials);
+			this.s3Service = new RestS3Service(awsCredentials, null, null, properties);
 		} catch (final S3ServiceException e) {
 			throw new S3Exception(e);
 		}
 	}
 
+	private static Jets3tProperties getProperties() {
+		final Jets3tProperties properties = new Jets3tProperties();
+		properties.loadAndReplaceProperties(Jets3tProperties.getInstance(Constants.JETS3T_PROPERTIES_FILENAME), Constants.JETS3T_PROPERTIES_FILENAME);
+		if (!properties.containsKey("httpclient.max-connections")) {
+			// The default of 20 is shared across all parallel transfers
+			properties.setProperty("httpclient.max-connections", "50");
+		}
+		return properties;
+	}
+
+	private static Jets3tProperties getProperties(final String host, final int port, final boolean https) {
+		final Jets3tProperties properties = getProperties();
+		properties.setProperty("s3service.s3-endpoint", host);
+		properties.setProperty(https ? "s3service.s3-endpoint-https-port" : "s3service.s3-endpoint-http-port", String.valueOf(port));
+		properties.setProperty("s3service.https-only", String.valueOf(https));
+		// Stand-in servers generally don't resolve bucket subdomains
+		properties.setProperty("s3service.disable-dns-buckets", "true");
+		return properties;
+	}
+
 	/**
 	 * Gets an object.
 	 * 
@@ -97,20 +209,159 @@ public class S3Client {
 	 *             If an error occurs storing the object.
 	 */
 	public byte[] get(final Bucket bucket, final String name, final boolean gzip) throws S3Exception {
+		try (InputStream in = getStream(bucket, name, gzip)) {
+			return StreamUtils.toByteArray(in);
+		} catch (final UnsupportedEncodingException e) {
+			throw new ConfigException(e);
+		} catch (final IOException e) {
+			throw new S3Exception(e);
+		}
+	}
 
+	/**
+	 * Opens an object for reading, without loading it into memory.
+	 * 
+	 * @param bucket
+	 *            The bucket the object is in, required.
+	 * @param name
+	 *            The name of the object, required.
+	 * @param gzip
+	 *            Un-Gzip the data? (if it has .gz to the end of it)
+	 * @return The stream of the object's data, which must be closed.
+	 * @throws S3Exception
+	 *             If an error occurs opening the object.
+	 */
+	public InputStream getStream(final Bucket bucket, final String name, final boolean gzip) throws S3Exception {
+		AjahUtils.requireParam(bucket, "bucket");
+		AjahUtils.requireParam(name, "name");
 		try {
 			log.finest("Fetching " + name + " from bucket " + bucket.getName());
 			final S3Object object = this.s3Service.getObject(bucket.toString(), name);
+			final InputStream in = object.getDataInputStream();
 			if (gzip && name.endsWith(".gz")) {
-				throw new UnsupportedOperationException();
+				try {
+					return new GZIPInputStream(in, 64 * 1024);
+				} catch (final IOException e) {
+					in.close();
+					throw e;
+				}
 			}
-			return StreamUtils.toByteArray(object.getDataInputStream());
-		} catch (final UnsupportedEncodingException e) {
-			throw new ConfigException(e);
+			return in;
 		} catch (IOException | ServiceException e) {
 			throw new S3Exception(e);
 		}
+	}
+
+	/**
+	 * Downloads an object to a file, fetching byte ranges in parallel. The
+	 * data is written as stored, without un-gzipping it. Every range is
+	 * requested with the object's ETag, so the file cannot mix two versions
+	 * of the object; if the object is replaced during the download, the
+	 * download starts over.
+	 * 
+	 * @param bucket
+	 *            The bucket the object is in, required.
+	 * @param name
+	 *            The name of the object, required.
+	 * @param file
+	 *            The file to write to, will be overwritten.
+	 * @return The number of bytes downloaded.
+	 * @throws S3Exception
+	 *             If an error occurs fetching the object or writing the file.
+	 */
+	public long download(final Bucket bucket, final String name, final File file) throws S3Exception {
+		AjahUtils.requireParam(bucket, "bucket");
+		AjahUtils.requireParam(name, "name");
+		AjahUtils.requireParam(file, "file");
+		final ExecutorService executor = newExecutor();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			for (int attempt = 1;; attempt++) {
+				try {
+					return download(bucket, name, raf, executor);
+				} catch (final ServiceException e) {
+					if (e.getResponseCode() != PRECONDITION_FAILED || attempt >= MAX_DOWNLOAD_ATTEMPTS) {
+						throw e;
+					}
+					log.warning(name + " in bucket " + bucket.getName() + " changed during download, starting over");
+				}
+			}
+		} catch (IOException | ServiceException e) {
+			throw new S3Exception(e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private long download(final Bucket bucket, final String name, final RandomAccessFile raf, final ExecutorService executor) throws IOException, ServiceException {
+		final StorageObject details = this.s3Service.getObjectDetails(bucket.getName(), name);
+		final long length = details.getContentLength();
+		final String[] ifMatchTags = details.getETag() == null ? null : new String[] { details.getETag() };
+		raf.setLength(length);
+		final FileChannel channel = raf.getChannel();
+		final int ranges = (int) ((length + this.partSize - 1) / this.partSize);
+		final CountDownLatch finished = new CountDownLatch(ranges);
+		final AtomicBoolean aborted = new AtomicBoolean();
+		final List<Future<Void>> futures = new ArrayList<>(ranges);
+		for (long start = 0; start < length; start += this.partSize) {
+			final long rangeStart = start;
+			final long rangeEnd = Math.min(length, start + this.partSize) - 1;
+			futures.add(executor.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					try {
+						if (!aborted.get()) {
+							downloadRange(bucket, name, ifMatchTags, channel, rangeStart, rangeEnd, aborted);
+						}
+						return null;
+					} finally {
+						finished.countDown();
+					}
+				}
+
+			}));
+		}
+		try {
+			for (final Future<Void> future : futures) {
+				await(future);
+			}
+		} catch (IOException | ServiceException | RuntimeException e) {
+			// Stop the other ranges and wait until none of them can write
+			// again. Cancelling or interrupting them won't do: a cancelled
+			// future returns before its task stops, and an interrupt closes
+			// the channel the retry needs.
+			aborted.set(true);
+			try {
+				finished.await();
+			} catch (final InterruptedException ignored) {
+				Thread.currentThread().interrupt();
+			}
+			throw e;
+		}
+		log.fine("Downloaded " + length + " bytes of " + name + " from bucket " + bucket.getName() + " in " + futures.size() + " ranges");
+		return length;
+	}
 
+	private void downloadRange(final Bucket bucket, final String name, final String[] ifMatchTags, final FileChannel channel, final long start, final long end,
+			final AtomicBoolean aborted) throws ServiceException, IOException {
+		final S3Object object = this.s3Service.getObject(bucket.getName(), name, null, null, ifMatchTags, null, Long.valueOf(start), Long.valueOf(end));
+		try (InputStream in = object.getDataInputStream()) {
+			final byte[] buffer = new byte[64 * 1024];
+			long position = start;
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				if (aborted.get()) {
+					return;
+				}
+				final ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+				while (bytes.hasRemaining()) {
+					position += channel.write(bytes, position);
+				}
+			}
+			if (position != end + 1) {
+				throw new IOException("Expected " + (end + 1 - start) + " bytes of " + name + " from " + start + " but got " + (position - start));
+			}
+		}
 	}
 
 	/**
@@ -182,6 +433,168 @@ public class S3Client {
 
 	}
 
+	/**
+	 * Puts an object from a stream without loading it all into memory. If the
+	 * stream is longer than {@link #partSize} it is sent as a multipart upload
+	 * with parts uploaded in parallel. The stream is read to the end but not
+	 * closed.
+	 * 
+	 * @param bucket
+	 *            The bucket to put the object into, required.
+	 * @param name
+	 *            The name to store the object as, required.
+	 * @param data
+	 *            The data of the object, required.
+	 * @param overwrite
+	 *            Overwrite the file if it already exists?
+	 * @param gzip
+	 *            Gzip the data (and add .gz to the end of it)?
+	 * @param mimeType
+	 *            The mime type of the file, may be null.
+	 * @param acl
+	 *            The access control of the object, required.
+	 * @return The number of bytes stored, or -1 if the object was not stored
+	 *         because it exists.
+	 * @throws S3Exception
+	 *             If an error occurs reading the data or storing the object.
+	 */
+	@SuppressWarnings("resource")
+	public long put(final Bucket bucket, final String name, final InputStream data, final boolean overwrite, final boolean gzip, final AjahMimeType mimeType, final S3ACL acl) throws S3Exception {
+		AjahUtils.requireParam(bucket, "bucket");
+		AjahUtils.requireParam(name, "name");
+		AjahUtils.requireParam(data, "data");
+		AjahUtils.requireParam(acl, "acl");
+		final int size = Math.max(MIN_PART_SIZE, this.partSize);
+		try {
+			final InputStream in = gzip ? new GZipDeflatingInputStream(data) : data;
+			final S3Object template = new S3Object(gzip ? name + ".gz" : name);
+			if (mimeType != null) {
+				template.setContentType(mimeType.getBaseType());
+			}
+			template.setAcl(acl.getJets3t());
+			if (!overwrite && this.s3Service.isObjectInBucket(bucket.getName(), template.getName())) {
+				log.fine(template.getName() + " already exists in bucket " + bucket.getName() + " and overwriting is disabled");
+				return -1;
+			}
+			byte[] part = new byte[size];
+			int length = readFully(in, part);
+			if (length < size) {
+				template.setDataInputStream(new ByteArrayInputStream(part, 0, length));
+				template.setContentLength(length);
+				this.s3Service.putObject(bucket.getName(), template);
+				log.fine("Uploaded " + template.getName() + " to bucket " + bucket.getName());
+				return length;
+			}
+			final MultipartUpload upload = this.s3Service.multipartStartUpload(bucket.getName(), template);
+			final ExecutorService executor = newExecutor();
+			final List<Future<MultipartPart>> futures = new ArrayList<>();
+			final List<MultipartPart> parts = new ArrayList<>();
+			long total = 0;
+			try {
+				int partNumber = 1;
+				while (length > 0) {
+					total += length;
+					futures.add(executor.submit(new PartUpload(upload, partNumber++, part, length)));
+					// Wait for a part to finish before buffering another
+					if (futures.size() - parts.size() >= this.concurrency) {
+						parts.add(await(futures.get(parts.size())));
+					}
+					part = new byte[size];
+					length = readFully(in, part);
+				}
+				while (parts.size() < futures.size()) {
+					parts.add(await(futures.get(parts.size())));
+				}
+				Collections.sort(parts, new Comparator<MultipartPart>() {
+
+					@Override
+					public int compare(final MultipartPart o1, final MultipartPart o2) {
+						return o1.getPartNumber().compareTo(o2.getPartNumber());
+					}
+
+				});
+				this.s3Service.multipartCompleteUpload(upload, parts);
+			} catch (IOException | ServiceException | RuntimeException e) {
+				log.warning("Aborting upload of " + template.getName() + ": " + e.getMessage());
+				this.s3Service.multipartAbortUpload(upload);
+				throw e;
+			} finally {
+				executor.shutdownNow();
+			}
+			log.fine("Uploaded " + template.getName() + " to bucket " + bucket.getName() + " in " + parts.size() + " parts");
+			return total;
+		} catch (IOException | ServiceException e) {
+			throw new S3Exception(e);
+		}
+	}
+
+	private class PartUpload implements Callable<MultipartPart> {
+
+		private final MultipartUpload upload;
+		private final int partNumber;
+		private final byte[] data;
+		private final int length;
+
+		PartUpload(final MultipartUpload upload, final int partNumber, final byte[] data, final int length) {
+			this.upload = upload;
+			this.partNumber = partNumber;
+			this.data = data;
+			this.length = length;
+		}
+
+		@Override
+		public MultipartPart call() throws Exception {
+			final S3Object object = new S3Object(this.upload.getObjectKey());
+			object.setDataInputStream(new ByteArrayInputStream(this.data, 0, this.length));
+			object.setContentLength(this.length);
+			return S3Client.this.s3Service.multipartUploadPart(this.upload, Integer.valueOf(this.partNumber), object);
+		}
+
+	}
+
+	private static int readFully(final InputStream in, final byte[] buffer) throws IOException {
+		int total = 0;
+		while (total < buffer.length) {
+			final int read = in.read(buffer, total, buffer.length - total);
+			if (read == -1) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	private static <V> V await(final Future<V> future) throws IOException, ServiceException {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			} else if (e.getCause() instanceof ServiceException) {
+				throw (ServiceException) e.getCause();
+			} else if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private ExecutorService newExecutor() {
+		return Executors.newFixedThreadPool(Math.max(1, this.concurrency), new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "s3-transfer");
+				thread.setDaemon(true);
+				return thread;
+			}
+
+		});
+	}
+
 	/**
 	 * Puts an object using the default client. Consider using
 	 * {@link S3#put(Bucket, String, String)}.
@@ -15,7 +15,6 @@
  */
 package com.ajah.flatfile;
 
-import lombok.AllArgsConstructor;
 import lombok.Data;
 
 /**
@@ -25,11 +24,47 @@ import lombok.Data;
  *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
  */
 @Data
-@AllArgsConstructor
 public class FlatFileColumn {
 
 	private String name;
 	private String defaultValue;
 	private boolean required;
+	/**
+	 * The position of this column in the file, starting at 0.
+	 */
+	private int index;
+
+	/**
+	 * Creates a column with no position.
+	 * 
+	 * @param name
+	 *            The name of the column.
+	 * @param defaultValue
+	 *            The value used when the column is blank, may be null.
+	 * @param required
+	 *            Must the column have a value?
+	 */
+	public FlatFileColumn(final String name, final String defaultValue, final boolean required) {
+		this(name, defaultValue, required, 0);
+	}
+
+	/**
+	 * Creates a column.
+	 * 
+	 * @param name
+	 *            The name of the column.
+	 * @param defaultValue
+	 *            The value used when the column is blank, may be null.
+	 * @param required
+	 *            Must the column have a value?
+	 * @param index
+	 *            The position of the column in the file, starting at 0.
+	 */
+	public FlatFileColumn(final String name, final String defaultValue, final boolean required, final int index) {
+		this.name = name;
+		this.defaultValue = defaultValue;
+		this.required = required;
+		this.index = index;
+	}
 
 }
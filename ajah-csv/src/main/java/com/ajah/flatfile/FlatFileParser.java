@@ -0,0 +1,345 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.flatfile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import lombok.Getter;
+
+/**
+ * Splits a stream of characters into records and fields in a single pass over
+ * a reusable buffer. Quoting follows RFC 4180: a field that starts with the
+ * quote character may contain delimiters, line breaks and doubled quotes,
+ * which are unescaped. Records may end with CRLF, LF or CR, and empty lines
+ * are skipped.
+ * 
+ * The fields of the current record are held in a single reusable character
+ * array, so a String is only created for a field when it is requested.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+public class FlatFileParser implements Closeable {
+
+	/**
+	 * Indicates that quotes have no special meaning.
+	 */
+	public static final char NO_QUOTE = 0;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Reader reader;
+	private final char delimiter;
+	private final char quote;
+
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int position;
+	private int limit;
+	private boolean eof;
+
+	private char[] chars = new char[256];
+	private int length;
+	private int[] ends = new int[16];
+	private int fieldCount;
+
+	private int line = 1;
+
+	/**
+	 * The line the current record started on, starting at 1.
+	 */
+	@Getter
+	private int lineNumber;
+
+	/**
+	 * Creates a parser.
+	 * 
+	 * @param reader
+	 *            The source of characters. It is read in large blocks, so it
+	 *            does not need to be buffered.
+	 * @param delimiter
+	 *            The character separating fields.
+	 * @param quote
+	 *            The character used to quote fields, or {@link #NO_QUOTE}.
+	 */
+	public FlatFileParser(final Reader reader, final char delimiter, final char quote) {
+		this.reader = reader;
+		this.delimiter = delimiter;
+		this.quote = quote;
+	}
+
+	/**
+	 * Creates a parser for a flat-file format. CSV files are parsed with
+	 * double-quote quoting, tab-delimited files without quoting.
+	 * 
+	 * @param format
+	 *            The format of the file.
+	 * @param reader
+	 *            The source of characters.
+	 * @return The parser, will not be null.
+	 */
+	public static FlatFileParser forFormat(final FlatFileFormat format, final Reader reader) {
+		switch (format) {
+		case CSV:
+			return new FlatFileParser(reader, ',', '"');
+		case TAB:
+			return new FlatFileParser(reader, '\t', NO_QUOTE);
+		default:
+			throw new UnsupportedOperationException("Unsupported format: " + format);
+		}
+	}
+
+	/**
+	 * Sets the line number of the next character read, for parsers that start
+	 * partway through a file.
+	 * 
+	 * @param line
+	 *            The line number, starting at 1.
+	 */
+	void setLine(final int line) {
+		this.line = line;
+	}
+
+	/**
+	 * Advances to the next record.
+	 * 
+	 * @return true if there was a record, false if the end of the stream has
+	 *         been reached.
+	 * @throws IOException
+	 *             If the stream could not be read, or a quoted field is not
+	 *             terminated.
+	 */
+	public boolean next() throws IOException {
+		while (fill()) {
+			this.lineNumber = this.line;
+			if (parseRecord()) {
+				return true;
+			}
+		}
+		this.fieldCount = 0;
+		this.length = 0;
+		return false;
+	}
+
+	/**
+	 * Determines if there is another record, without leaving the current one.
+	 * Empty lines before the next record are skipped, as {@link #next()}
+	 * would skip them.
+	 * 
+	 * @return true if {@link #next()} will find a record.
+	 * @throws IOException
+	 *             If the stream could not be read.
+	 */
+	public boolean hasNext() throws IOException {
+		while (fill()) {
+			final char c = this.buffer[this.position];
+			if (c != '\n' && c != '\r') {
+				return true;
+			}
+			this.position++;
+			this.line++;
+			if (c == '\r' && fill() && this.buffer[this.position] == '\n') {
+				this.position++;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Parses a record.
+	 * 
+	 * @return false if the record was an empty line.
+	 */
+	private boolean parseRecord() throws IOException {
+		this.fieldCount = 0;
+		this.length = 0;
+		boolean quoted = false;
+		while (true) {
+			if (!fill()) {
+				endField();
+				return true;
+			}
+			if (this.quote != NO_QUOTE && this.buffer[this.position] == this.quote) {
+				this.position++;
+				parseQuoted();
+				quoted = true;
+			}
+			// Scan the unquoted part of the field (all of it, unless quoted)
+			while (true) {
+				final int start = this.position;
+				while (this.position < this.limit) {
+					final char c = this.buffer[this.position];
+					if (c == this.delimiter || c == '\n' || c == '\r') {
+						break;
+					}
+					this.position++;
+				}
+				append(start, this.position - start);
+				if (this.position < this.limit || !fill()) {
+					break;
+				}
+			}
+			endField();
+			if (this.position >= this.limit) {
+				return true;
+			}
+			final char c = this.buffer[this.position++];
+			if (c == this.delimiter) {
+				continue;
+			}
+			this.line++;
+			if (c == '\r' && fill() && this.buffer[this.position] == '\n') {
+				this.position++;
+			}
+			return quoted || this.fieldCount > 1 || this.length > 0;
+		}
+	}
+
+	/**
+	 * Parses the contents of a quoted field, after the opening quote, up to
+	 * and including the closing quote.
+	 */
+	private void parseQuoted() throws IOException {
+		while (true) {
+			if (!fill()) {
+				throw new FlatFileException("Unterminated quoted field starting on line " + this.lineNumber);
+			}
+			final int start = this.position;
+			while (this.position < this.limit && this.buffer[this.position] != this.quote) {
+				if (this.buffer[this.position] == '\n') {
+					this.line++;
+				}
+				this.position++;
+			}
+			append(start, this.position - start);
+			if (this.position < this.limit) {
+				// Found a quote, either closing or the first of a doubled pair
+				this.position++;
+				if (fill() && this.buffer[this.position] == this.quote) {
+					this.position++;
+					append(this.quote);
+				} else {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Makes sure there is at least one unread character in the buffer.
+	 * 
+	 * @return false if the end of the stream has been reached.
+	 */
+	private boolean fill() throws IOException {
+		if (this.position < this.limit) {
+			return true;
+		}
+		if (this.eof) {
+			return false;
+		}
+		int read;
+		do {
+			read = this.reader.read(this.buffer, 0, this.buffer.length);
+		} while (read == 0);
+		if (read < 0) {
+			this.eof = true;
+			this.position = 0;
+			this.limit = 0;
+			return false;
+		}
+		this.position = 0;
+		this.limit = read;
+		return true;
+	}
+
+	private void append(final int start, final int count) {
+		if (count == 0) {
+			return;
+		}
+		ensureCapacity(count);
+		System.arraycopy(this.buffer, start, this.chars, this.length, count);
+		this.length += count;
+	}
+
+	private void append(final char c) {
+		ensureCapacity(1);
+		this.chars[this.length++] = c;
+	}
+
+	private void ensureCapacity(final int count) {
+		if (this.length + count > this.chars.length) {
+			this.chars = Arrays.copyOf(this.chars, Math.max(this.chars.length * 2, this.length + count));
+		}
+	}
+
+	private void endField() {
+		if (this.fieldCount == this.ends.length) {
+			this.ends = Arrays.copyOf(this.ends, this.ends.length * 2);
+		}
+		this.ends[this.fieldCount++] = this.length;
+	}
+
+	/**
+	 * Returns the number of fields in the current record.
+	 * 
+	 * @return The number of fields in the current record.
+	 */
+	public int getFieldCount() {
+		return this.fieldCount;
+	}
+
+	/**
+	 * Returns a field of the current record.
+	 * 
+	 * @param index
+	 *            The index of the field, starting at 0.
+	 * @return The unescaped value of the field, or null if the record does not
+	 *         have that many fields.
+	 */
+	public String getField(final int index) {
+		if (index < 0 || index >= this.fieldCount) {
+			return null;
+		}
+		final int start = index == 0 ? 0 : this.ends[index - 1];
+		return new String(this.chars, start, this.ends[index] - start);
+	}
+
+	/**
+	 * Returns every field of the current record.
+	 * 
+	 * @return The unescaped values of the fields, will not be null.
+	 */
+	public String[] getFields() {
+		final String[] fields = new String[this.fieldCount];
+		for (int i = 0; i < this.fieldCount; i++) {
+			fields[i] = getField(i);
+		}
+		return fields;
+	}
+
+	/**
+	 * Closes the underlying reader.
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		this.reader.close();
+	}
+
+}
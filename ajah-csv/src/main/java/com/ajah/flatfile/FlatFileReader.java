@@ -22,12 +22,15 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import lombok.Getter;
@@ -37,7 +40,14 @@ import lombok.extern.java.Log;
 import com.ajah.util.StringUtils;
 
 /**
- * Reads a flat data file into a structured iterator.
+ * Reads a flat data file into a structured iterator. Files are parsed by a
+ * {@link FlatFileParser}, so CSV files may contain quoted fields as described
+ * in RFC 4180.
+ * 
+ * By default every row is a new object holding its own values. For large
+ * files, {@link #setReuseRows(boolean)} makes {@link #next()} return the same
+ * row each time, which reads values directly from the parser and is only
+ * valid until the next call to {@link #next()}.
  * 
  * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
  *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
@@ -45,7 +55,7 @@ import com.ajah.util.StringUtils;
 @Log
 public class FlatFileReader implements Closeable, Iterable<FlatFileRow>, Iterator<FlatFileRow> {
 
-	private final BufferedReader reader;
+	private final FlatFileParser parser;
 	@Getter
 	private final List<FlatFileColumn> columns = new ArrayList<>();
 	private final Map<String, FlatFileColumn> map = new HashMap<>();
@@ -66,7 +76,53 @@ public class FlatFileReader implements Closeable, Iterable<FlatFileRow>, Iterato
 	@Getter
 	@Setter
 	private boolean trimContents = true;
-	private int lineNumber;
+
+	/**
+	 * If true, {@link #next()} returns the same row object each time, which is
+	 * only valid until the next call to {@link #next()}. {@link #hasNext()}
+	 * does not change it.
+	 */
+	@Getter
+	@Setter
+	private boolean reuseRows;
+
+	/**
+	 * Constructs a reader from a file.
+	 * 
+	 * @param format
+	 *            The format of the file.
+	 * @param reader
+	 *            The reader for the file.
+	 * @throws IOException
+	 *             If the file could not be read.
+	 */
+	public FlatFileReader(final FlatFileFormat format, final Reader reader) throws IOException {
+		this.format = format;
+		this.parser = FlatFileParser.forFormat(format, reader);
+		if (this.parser.next()) {
+			createColumns(this.parser.getFields());
+		}
+	}
+
+	/**
+	 * Constructs a reader for part of a file that has no header, using the
+	 * columns of another reader.
+	 * 
+	 * @param format
+	 *            The format of the file.
+	 * @param parser
+	 *            The parser, positioned before the first row.
+	 * @param columns
+	 *            The columns of the file.
+	 */
+	FlatFileReader(final FlatFileFormat format, final FlatFileParser parser, final List<FlatFileColumn> columns) {
+		this.format = format;
+		this.parser = parser;
+		for (final FlatFileColumn column : columns) {
+			this.columns.add(column);
+			this.map.put(column.getName().trim(), column);
+		}
+	}
 
 	/**
 	 * Constructs a reader from a file.
@@ -79,13 +135,7 @@ public class FlatFileReader implements Closeable, Iterable<FlatFileRow>, Iterato
 	 *             If the file could not be read.
 	 */
 	public FlatFileReader(final FlatFileFormat format, final BufferedReader bufferedReader) throws IOException {
-		this.format = format;
-		this.reader = bufferedReader;
-		final String header = this.reader.readLine();
-		this.lineNumber++;
-		if (header != null) {
-			createColumns(header);
-		}
+		this(format, (Reader) bufferedReader);
 	}
 
 	/**
@@ -100,7 +150,7 @@ public class FlatFileReader implements Closeable, Iterable<FlatFileRow>, Iterato
 	 */
 	@SuppressWarnings("resource")
 	public FlatFileReader(final FlatFileFormat format, final File file) throws IOException {
-		this(format, new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF8")));
+		this(format, new InputStreamReader(new FileInputStream(file), "UTF8"));
 	}
 
 	/**
@@ -114,14 +164,32 @@ public class FlatFileReader implements Closeable, Iterable<FlatFileRow>, Iterato
 	 *             If the file could not be read.
 	 */
 	public FlatFileReader(final FlatFileFormat format, final InputStream inputStream) throws IOException {
-		this(format, new BufferedReader(new InputStreamReader(inputStream)));
+		this(format, new InputStreamReader(inputStream));
+	}
+
+	/**
+	 * Constructs a reader that maps a UTF-8 file into memory rather than
+	 * streaming it.
+	 * 
+	 * @param format
+	 *            The format of the file.
+	 * @param file
+	 *            The file.
+	 * @return The reader, will not be null.
+	 * @throws IOException
+	 *             If the file could not be mapped or read.
+	 * @see MappedFileReader
+	 */
+	@SuppressWarnings("resource")
+	public static FlatFileReader mapped(final FlatFileFormat format, final File file) throws IOException {
+		return new FlatFileReader(format, new MappedFileReader(file, Charset.forName("UTF-8")));
 	}
 
 	private void addColumn(final String name) {
 		if (this.map.get(name) != null) {
 			throw new IllegalArgumentException("Duplicate column name " + name);
 		}
-		final FlatFileColumn column = new FlatFileColumn(name, null, false);
+		final FlatFileColumn column = new FlatFileColumn(name, null, false, this.columns.size());
 		this.columns.add(column);
 		this.map.put(column.getName().trim(), column);
 		log.fine("Created column \"" + name + "\"");
@@ -129,31 +197,13 @@ public class FlatFileReader implements Closeable, Iterable<FlatFileRow>, Iterato
 
 	@Override
 	public void close() throws IOException {
-		this.reader.close();
+		this.parser.close();
 	}
 
-	private void createColumns(final String header) {
+	private void createColumns(final String[] names) {
 		log.fine("Adding columns");
-		switch (this.format) {
-		case CSV: {
-			if (header.contains("\"")) {
-				throw new UnsupportedOperationException("Header contains double quote: " + header);
-			}
-			final String[] names = header.split(",");
-			for (final String name : names) {
-				addColumn(name);
-			}
-			break;
-		}
-		case TAB: {
-			final String[] names = header.split("\t");
-			for (final String name : names) {
-				addColumn(name);
-			}
-			break;
-		}
-		default:
-			throw new UnsupportedOperationException();
+		for (final String name : names) {
+			addColumn(name);
 		}
 	}
 
@@ -168,12 +218,19 @@ public class FlatFileReader implements Closeable, Iterable<FlatFileRow>, Iterato
 		return this.map.get(column) != null;
 	}
 
+	/**
+	 * Determines if there is another row, without moving past the current
+	 * one.
+	 * 
+	 * @throws IllegalStateException
+	 *             If the file could not be read.
+	 */
 	@Override
 	public boolean hasNext() {
 		try {
-			return this.reader.ready();
+			return this.parser.hasNext();
 		} catch (final IOException e) {
-			return false;
+			throw new IllegalStateException(e);
 		}
 	}
 
@@ -182,62 +239,28 @@ public class FlatFileReader implements Closeable, Iterable<FlatFileRow>, Iterato
 		return this;
 	}
 
+	/**
+	 * Returns the next row.
+	 * 
+	 * @throws NoSuchElementException
+	 *             If there are no more rows.
+	 * @throws IllegalStateException
+	 *             If the file could not be read.
+	 */
 	@Override
 	public FlatFileRow next() {
-		this.row = new FlatFileRow(this.map, this, this.lineNumber++);
-		this.row.setStripWrappedQuotes(this.stripWrappedQuotes);
-		String line;
 		try {
-			line = this.reader.readLine();
-		} catch (final IOException e) {
-			return null;
-		}
-		switch (this.format) {
-		case CSV: {
-			int currentPos = 0;
-			boolean inField = false;
-			final char[] chars = line.toCharArray();
-			final int len = chars.length;
-			for (int i = 0; i < this.columns.size() && currentPos < len; i++) {
-				final char c = chars[currentPos];
-				if (c == ',' || c == '"') {
-					// Skip
-				} else {
-					if (inField) {
-						currentPos++;
-						inField = true;
-					}
-
-				}
-			}
-			if (line.contains("\"\"")) {
-				throw new UnsupportedOperationException("Line contains double quote: " + line);
-			}
-			final String[] values = line.split(",");
-			for (int i = 0; i < values.length; i++) {
-				if (StringUtils.isBlank(values[i])) {
-					this.row.set(this.columns.get(i).getName(), "");
-				} else if (values[i].charAt(0) == '"' && values[i].charAt(values[i].length() - 1) == '"') {
-					this.row.set(this.columns.get(i).getName(), values[i].substring(1, values[i].length() - 2));
-				} else {
-					this.row.set(this.columns.get(i).getName(), values[i]);
-				}
+			if (!this.parser.next()) {
+				throw new NoSuchElementException();
 			}
-			break;
-		}
-		case TAB: {
-			final String[] values = line.split("\t");
-			for (int i = 0; i < values.length; i++) {
-				if (i + 1 > this.columns.size()) {
-					continue;
-				}
-				this.row.set(this.columns.get(i).getName(), values[i]);
-			}
-			break;
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
 		}
-		default:
-			throw new UnsupportedOperationException();
+		if (this.row == null || !this.reuseRows) {
+			this.row = new FlatFileRow(this.map, this, this.parser.getLineNumber());
+			this.row.setStripWrappedQuotes(this.stripWrappedQuotes);
 		}
+		this.row.load(this.parser, this.parser.getLineNumber(), this.reuseRows);
 		return this.row;
 	}
 
@@ -18,7 +18,6 @@ package com.ajah.flatfile;
 import java.math.BigDecimal;
 import java.text.DateFormat;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
 
 import lombok.Getter;
@@ -39,7 +38,14 @@ public class FlatFileRow {
 	private static DateFormat dateTimeFormat = DateFormat.getDateTimeInstance();
 
 	private final Map<String, FlatFileColumn> columns;
-	private final Map<FlatFileColumn, String> values = new HashMap<>();
+	private final FlatFileColumn[] ordered;
+	private final String[] values;
+
+	/**
+	 * If set, values are read from the parser's current record rather than
+	 * {@link #values}.
+	 */
+	private FlatFileParser source;
 
 	private FlatFileReader reader;
 	private FlatFileWriter writer;
@@ -52,7 +58,11 @@ public class FlatFileRow {
 	@Setter
 	private boolean stripWrappedQuotes;
 
-	private final int lineNumber;
+	/**
+	 * The line number this row is from.
+	 */
+	@Getter
+	private int lineNumber;
 
 	/**
 	 * Create an empty row based on a column set.
@@ -65,7 +75,7 @@ public class FlatFileRow {
 	 *            The line number this row is from.
 	 */
 	public FlatFileRow(final Map<String, FlatFileColumn> columns, final FlatFileReader reader, final int lineNumber) {
-		this.columns = columns;
+		this(columns);
 		this.reader = reader;
 		this.lineNumber = lineNumber;
 	}
@@ -81,11 +91,62 @@ public class FlatFileRow {
 	 *            The line number this row is from.
 	 */
 	public FlatFileRow(final Map<String, FlatFileColumn> columns, final FlatFileWriter writer, final int lineNumber) {
-		this.columns = columns;
+		this(columns);
 		this.writer = writer;
 		this.lineNumber = lineNumber;
 	}
 
+	private FlatFileRow(final Map<String, FlatFileColumn> columns) {
+		this.columns = columns;
+		int size = 0;
+		for (final FlatFileColumn column : columns.values()) {
+			size = Math.max(size, column.getIndex() + 1);
+		}
+		this.ordered = new FlatFileColumn[size];
+		for (final FlatFileColumn column : columns.values()) {
+			this.ordered[column.getIndex()] = column;
+		}
+		this.values = new String[size];
+	}
+
+	/**
+	 * Populates this row from the current record of a parser.
+	 * 
+	 * @param parser
+	 *            The parser, positioned on a record.
+	 * @param line
+	 *            The line number of the record.
+	 * @param view
+	 *            If true, values are read from the parser when requested, so
+	 *            this row is only valid until the parser advances. Otherwise
+	 *            the values are copied.
+	 */
+	void load(final FlatFileParser parser, final int line, final boolean view) {
+		this.lineNumber = line;
+		if (view) {
+			this.source = parser;
+			return;
+		}
+		this.source = null;
+		for (int i = 0; i < this.values.length; i++) {
+			this.values[i] = parser.getField(i);
+		}
+	}
+
+	/**
+	 * Copies the values of a row that reads from the parser, so they can be
+	 * changed.
+	 */
+	private void detach() {
+		if (this.source == null) {
+			return;
+		}
+		for (int i = 0; i < this.values.length; i++) {
+			this.values[i] = this.source.getField(i);
+		}
+		this.source = null;
+	}
+
 	/**
 	 * Fetches the value of a column for this row.
 	 * 
@@ -95,17 +156,33 @@ public class FlatFileRow {
 	 *         configured.
 	 */
 	public String get(final String name) {
-		final FlatFileColumn column = this.columns.get(name);
+		return get(this.columns.get(name));
+	}
+
+	/**
+	 * Fetches the value of a column for this row by its position, which avoids
+	 * looking up the column by name.
+	 * 
+	 * @param index
+	 *            The position of the column, starting at 0.
+	 * @return The value of the column, or the default value if one is
+	 *         configured.
+	 */
+	public String get(final int index) {
+		return index >= 0 && index < this.ordered.length ? get(this.ordered[index]) : "";
+	}
+
+	private String get(final FlatFileColumn column) {
 		if (column != null) {
-			final String value = this.values.get(column);
+			final String value = this.source == null ? this.values[column.getIndex()] : this.source.getField(column.getIndex());
 			if (!StringUtils.isBlank(value)) {
 				if (this.stripWrappedQuotes && value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
-					return value.substring(1, value.length() - 2);
+					return value.substring(1, value.length() - 1);
 				}
 				if (this.reader == null) {
 					return this.writer.isTrimContents() ? value.trim() : value;
 				}
-				return value != null && this.reader.isTrimContents() ? value.trim() : value;
+				return this.reader.isTrimContents() ? value.trim() : value;
 			}
 			if (!StringUtils.isBlank(column.getDefaultValue())) {
 				return column.getDefaultValue();
@@ -252,6 +329,23 @@ public class FlatFileRow {
 		set(column, String.valueOf(value));
 	}
 
+	/**
+	 * Sets a column to a string value by its position, which avoids looking
+	 * up the column by name.
+	 * 
+	 * @param index
+	 *            The position of the column, starting at 0.
+	 * @param value
+	 *            The value to set.
+	 */
+	public void set(final int index, final String value) {
+		if (index < 0 || index >= this.values.length || this.ordered[index] == null) {
+			throw new IllegalArgumentException("Invalid column index: " + index);
+		}
+		detach();
+		this.values[index] = value;
+	}
+
 	/**
 	 * Sets a column to a string value.
 	 * 
@@ -262,8 +356,9 @@ public class FlatFileRow {
 	 */
 	public void set(final String column, final String value) {
 		final FlatFileColumn flatFileColumn = this.columns.get(column);
-		if (column != null) {
-			this.values.put(flatFileColumn, value);
+		if (flatFileColumn != null) {
+			detach();
+			this.values[flatFileColumn.getIndex()] = value;
 		} else {
 			throw new IllegalArgumentException("Invalid column name: " + column);
 		}
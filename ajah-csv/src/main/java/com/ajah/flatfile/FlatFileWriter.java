@@ -15,15 +15,21 @@
  */
 package com.ajah.flatfile;
 
+import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -32,13 +38,22 @@ import lombok.extern.java.Log;
 import com.ajah.util.StringUtils;
 
 /**
+ * Writes delimited flat files. Output is always UTF-8 and is buffered, so
+ * {@link #close()} must be called to ensure everything is written. Output may
+ * optionally be gzipped, and may be written to any {@link OutputStream} so that
+ * large exports can be streamed without a temporary file.
+ * 
  * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
  *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
  */
 @Log
 public class FlatFileWriter implements Closeable {
 
-	private final FileWriter writer;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Writer writer;
 	private final List<FlatFileColumn> columns = new ArrayList<>();
 	private final Map<String, FlatFileColumn> map = new HashMap<>();
 	private FlatFileRow row = null;
@@ -50,15 +65,71 @@ public class FlatFileWriter implements Closeable {
 	@Setter
 	private boolean flushEveryLine;
 	private int lineNumber;
+	private boolean headerWritten;
 
 	@Getter
 	@Setter
 	private boolean trimContents = true;
 
+	/**
+	 * Creates a writer for an uncompressed file.
+	 * 
+	 * @param format
+	 *            The format of the file.
+	 * @param file
+	 *            The file to write to, will be overwritten.
+	 * @throws IOException
+	 *             If the file could not be opened.
+	 */
 	public FlatFileWriter(final FlatFileFormat format, final File file) throws IOException {
+		this(format, file, false);
+	}
+
+	/**
+	 * Creates a writer for a file.
+	 * 
+	 * @param format
+	 *            The format of the file.
+	 * @param file
+	 *            The file to write to, will be overwritten.
+	 * @param gzip
+	 *            Should the output be gzipped?
+	 * @throws IOException
+	 *             If the file could not be opened.
+	 */
+	public FlatFileWriter(final FlatFileFormat format, final File file, final boolean gzip) throws IOException {
+		this(format, file, open(new FileOutputStream(file), gzip));
+	}
+
+	/**
+	 * Creates a writer for a stream, such as an upload or an HTTP response.
+	 * The stream is closed when this writer is closed.
+	 * 
+	 * @param format
+	 *            The format of the file.
+	 * @param out
+	 *            The stream to write to.
+	 * @param gzip
+	 *            Should the output be gzipped?
+	 * @throws IOException
+	 *             If the stream could not be opened.
+	 */
+	public FlatFileWriter(final FlatFileFormat format, final OutputStream out, final boolean gzip) throws IOException {
+		this(format, null, open(out, gzip));
+	}
+
+	private FlatFileWriter(final FlatFileFormat format, final File file, final Writer writer) {
 		this.format = format;
 		this.file = file;
-		this.writer = new FileWriter(file);
+		this.writer = writer;
+	}
+
+	private static Writer open(final OutputStream out, final boolean gzip) throws IOException {
+		if (gzip) {
+			// Sync flush so that flushEveryLine still produces readable output
+			return new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(out, BUFFER_SIZE, true), UTF8), BUFFER_SIZE);
+		}
+		return new BufferedWriter(new OutputStreamWriter(out, UTF8), BUFFER_SIZE);
 	}
 
 	public void addColumn(final String name) {
@@ -69,7 +140,7 @@ public class FlatFileWriter implements Closeable {
 		if (this.map.get(name) != null) {
 			throw new IllegalArgumentException("Duplicate column name " + name);
 		}
-		final FlatFileColumn column = new FlatFileColumn(name, null, required);
+		final FlatFileColumn column = new FlatFileColumn(name, null, required, this.columns.size());
 		this.columns.add(column);
 		this.map.put(column.getName(), column);
 	}
@@ -78,49 +149,74 @@ public class FlatFileWriter implements Closeable {
 		if (this.map.get(name) != null) {
 			throw new IllegalArgumentException("Duplicate column name " + name);
 		}
-		final FlatFileColumn column = new FlatFileColumn(name, defaultValue, false);
+		final FlatFileColumn column = new FlatFileColumn(name, defaultValue, false, this.columns.size());
 		this.columns.add(column);
 		this.map.put(column.getName(), column);
 	}
 
 	@Override
 	public void close() throws IOException {
-		if (this.row == null) {
-			writeHeader();
-		} else {
-			writeRow();
-		}
+		finishPending();
 		this.writer.close();
 	}
 
-	public FlatFileRow newRow() throws IOException {
-		if (this.row == null) {
+	/**
+	 * Writes the header if it has not been written, or the current row if
+	 * there is one.
+	 */
+	private void finishPending() throws IOException {
+		if (!this.headerWritten) {
 			writeHeader();
-		} else {
+		} else if (this.row != null) {
 			writeRow();
 		}
+	}
+
+	public FlatFileRow newRow() throws IOException {
+		finishPending();
 		this.row = new FlatFileRow(this.map, this, this.lineNumber++);
 		return this.row;
 	}
 
+	/**
+	 * Writes a row directly from values in column order, without creating a
+	 * {@link FlatFileRow}. Default values and trimming are not applied.
+	 * 
+	 * @param values
+	 *            The values, in the order the columns were added. Missing
+	 *            values are written as blank and null values are written as
+	 *            blank.
+	 * @throws IOException
+	 *             If the row could not be written.
+	 */
+	public void writeValues(final String... values) throws IOException {
+		finishPending();
+		for (int i = 0; i < this.columns.size(); i++) {
+			final FlatFileColumn column = this.columns.get(i);
+			final String value = i < values.length && values[i] != null ? values[i] : "";
+			if (column.isRequired() && StringUtils.isBlank(value)) {
+				throw new IllegalArgumentException("Column is required: " + column.getName());
+			}
+			write(value, i == 0);
+		}
+		endLine();
+		this.lineNumber++;
+	}
+
 	private void write(final String value, final boolean first) throws IOException {
 		switch (this.format) {
 		case CSV:
 			if (!first) {
-				this.writer.write(",");
-			}
-			if (value.contains(",") || value.contains("\"") || value.contains("\r") || value.contains("\n")) {
-				this.writer.write("\"" + value.replaceAll("\"", "\"\"") + "\"");
-			} else {
-				this.writer.write(value);
+				this.writer.write(',');
 			}
+			writeCsv(value);
 			break;
 		case TAB:
 			if (value != null && value.contains("\t")) {
 				log.log(Level.WARNING, "Writing data containing tabs to a tab-delimited file");
 			}
 			if (!first) {
-				this.writer.write("\t");
+				this.writer.write('\t');
 			}
 			this.writer.write(value);
 			break;
@@ -129,36 +225,75 @@ public class FlatFileWriter implements Closeable {
 		}
 	}
 
-	public void writeHeader() throws IOException {
-		boolean first = true;
-		for (final FlatFileColumn column : this.columns) {
-			write(column.getName(), first);
-			if (first) {
-				first = false;
+	/**
+	 * Writes a CSV value, quoting it only if it contains a delimiter, quote or
+	 * line break. The value is scanned once, and written in runs between
+	 * quotes rather than copied.
+	 */
+	private void writeCsv(final String value) throws IOException {
+		final int length = value.length();
+		int firstQuote = -1;
+		boolean needsQuotes = false;
+		for (int i = 0; i < length; i++) {
+			final char c = value.charAt(i);
+			if (c == '"') {
+				firstQuote = i;
+				needsQuotes = true;
+				break;
+			} else if (c == ',' || c == '\r' || c == '\n') {
+				needsQuotes = true;
+			}
+		}
+		if (!needsQuotes) {
+			this.writer.write(value);
+			return;
+		}
+		this.writer.write('"');
+		if (firstQuote < 0) {
+			this.writer.write(value);
+		} else {
+			int start = 0;
+			for (int i = firstQuote; i < length; i++) {
+				if (value.charAt(i) == '"') {
+					this.writer.write(value, start, i + 1 - start);
+					this.writer.write('"');
+					start = i + 1;
+				}
 			}
+			this.writer.write(value, start, length - start);
 		}
+		this.writer.write('"');
+	}
+
+	private void endLine() throws IOException {
 		this.writer.write("\r\n");
 		if (this.flushEveryLine) {
 			this.writer.flush();
 		}
 	}
 
-	private void writeRow() throws IOException {
+	public void writeHeader() throws IOException {
+		this.headerWritten = true;
 		boolean first = true;
 		for (final FlatFileColumn column : this.columns) {
-			final String value = this.row.get(column.getName());
-			if (column.isRequired() && StringUtils.isBlank(value)) {
-				throw new IllegalArgumentException("Column is required: " + column.getName());
-			}
-			write(value, first);
+			write(column.getName(), first);
 			if (first) {
 				first = false;
 			}
 		}
-		this.writer.write("\r\n");
-		if (this.flushEveryLine) {
-			this.writer.flush();
+		endLine();
+	}
+
+	private void writeRow() throws IOException {
+		for (int i = 0; i < this.columns.size(); i++) {
+			final FlatFileColumn column = this.columns.get(i);
+			final String value = this.row.get(i);
+			if (column.isRequired() && StringUtils.isBlank(value)) {
+				throw new IllegalArgumentException("Column is required: " + column.getName());
+			}
+			write(value, i == 0);
 		}
+		endLine();
 		this.row = null;
 	}
 
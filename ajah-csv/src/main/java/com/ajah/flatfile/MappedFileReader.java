@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.flatfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reads a file by mapping it into memory and decoding it directly from the
+ * mapped pages, avoiding the copies made by {@link java.io.FileInputStream}.
+ * Files larger than a single mapping are mapped in consecutive segments.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+public class MappedFileReader extends Reader {
+
+	private static final long SEGMENT_SIZE = 256L * 1024 * 1024;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final long end;
+	private final CharsetDecoder decoder;
+
+	private MappedByteBuffer segment;
+	private long segmentStart;
+	private boolean flushed;
+
+	/**
+	 * Opens a file.
+	 * 
+	 * @param file
+	 *            The file to read.
+	 * @param charset
+	 *            The character set of the file.
+	 * @throws IOException
+	 *             If the file could not be opened or mapped.
+	 */
+	public MappedFileReader(final File file, final Charset charset) throws IOException {
+		this(file, charset, 0, -1);
+	}
+
+	/**
+	 * Opens a range of a file. The range should start on a character
+	 * boundary.
+	 * 
+	 * @param file
+	 *            The file to read.
+	 * @param charset
+	 *            The character set of the file.
+	 * @param start
+	 *            The offset of the first byte to read.
+	 * @param end
+	 *            The offset after the last byte to read, or -1 to read to the
+	 *            end of the file.
+	 * @throws IOException
+	 *             If the file could not be opened or mapped.
+	 */
+	public MappedFileReader(final File file, final Charset charset, final long start, final long end) throws IOException {
+		this.file = new RandomAccessFile(file, "r");
+		this.channel = this.file.getChannel();
+		this.end = end < 0 ? this.channel.size() : Math.min(end, this.channel.size());
+		this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		map(Math.min(start, this.end));
+	}
+
+	private void map(final long start) throws IOException {
+		this.segmentStart = start;
+		this.segment = this.channel.map(MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, this.end - start));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int read(final char[] cbuf, final int off, final int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (this.flushed) {
+			return -1;
+		}
+		final CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+		while (out.position() == off) {
+			final boolean last = this.segmentStart + this.segment.limit() >= this.end;
+			final CoderResult result = this.decoder.decode(this.segment, out, last);
+			if (result.isError()) {
+				result.throwException();
+			}
+			if (result.isOverflow()) {
+				break;
+			}
+			if (!last) {
+				// Remap from the first byte not decoded, which may be part of
+				// a character split across segments
+				map(this.segmentStart + this.segment.position());
+			} else {
+				this.decoder.flush(out);
+				this.flushed = true;
+				break;
+			}
+		}
+		final int read = out.position() - off;
+		return read == 0 ? -1 : read;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws IOException {
+		this.segment = null;
+		this.channel.close();
+		this.file.close();
+	}
+
+}
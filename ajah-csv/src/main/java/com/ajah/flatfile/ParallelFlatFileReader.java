@@ -0,0 +1,444 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.flatfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.java.Log;
+
+/**
+ * Reads a large UTF-8 flat file using several threads. The file is divided
+ * into chunks of about {@link #chunkSize} bytes, each ending on a record
+ * boundary, and the chunks are parsed concurrently on a {@link ForkJoinPool}.
+ * 
+ * Boundaries are found without parsing the whole file: each chunk is scanned
+ * in parallel for how it changes the quoting state, which tells whether each
+ * chunk starts inside a quoted field, and each boundary is then the first
+ * line break after the chunk start that is not inside quotes. As in
+ * {@link FlatFileParser}, a quote only opens a quoted field at the start of a
+ * field. Records must end with LF or CRLF for
+ * the file to be split; a file using bare CR is read as a single chunk.
+ * 
+ * Rows are delivered to a {@link FlatFileRowHandler} either in file order, from
+ * the calling thread, or as soon as they are parsed, from the pool's threads.
+ * In order, at most {@link #maxPendingChunks} parsed chunks are held in memory
+ * waiting for delivery; unordered, each row is handled as it is parsed, so a
+ * slow handler slows down parsing rather than filling memory. Unordered rows
+ * are reused by each parsing thread, so a handler must copy any values it
+ * keeps.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+@Log
+public class ParallelFlatFileReader {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/*
+	 * Quoting states, which follow FlatFileParser: a quote only opens a quoted
+	 * field at the start of a field and is an ordinary character anywhere
+	 * else. QUOTE_SEEN is a quote inside a quoted field, which closes it
+	 * unless another quote follows.
+	 */
+	private static final int FIELD_START = 0;
+	private static final int UNQUOTED = 1;
+	private static final int QUOTED = 2;
+	private static final int QUOTE_SEEN = 3;
+	private static final int STATES = 4;
+
+	@Getter
+	private final FlatFileFormat format;
+
+	@Getter
+	private final File file;
+
+	@Getter
+	private final List<FlatFileColumn> columns;
+
+	private final long headerEnd;
+
+	private final int headerLines;
+
+	/**
+	 * The number of threads used to parse chunks.
+	 */
+	@Getter
+	@Setter
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * The approximate size of each chunk, in bytes.
+	 */
+	@Getter
+	@Setter
+	private long chunkSize = 16 * 1024 * 1024;
+
+	/**
+	 * Should rows be delivered in file order?
+	 */
+	@Getter
+	@Setter
+	private boolean ordered = true;
+
+	/**
+	 * When delivering in order, the maximum number of chunks parsed or being
+	 * parsed ahead of the chunk being delivered.
+	 */
+	@Getter
+	@Setter
+	private int maxPendingChunks = Runtime.getRuntime().availableProcessors() * 2;
+
+	@Getter
+	@Setter
+	private boolean trimContents = true;
+
+	/**
+	 * Excel will wrap any field that contains a space or other character with
+	 * double quotes even when saving in tab-delimited format.
+	 */
+	@Getter
+	@Setter
+	private boolean stripWrappedQuotes;
+
+	private static final class Chunk {
+
+		final long start;
+		final long end;
+		final int line;
+
+		Chunk(final long start, final long end, final int line) {
+			this.start = start;
+			this.end = end;
+			this.line = line;
+		}
+
+	}
+
+	/**
+	 * Opens a file and reads its header.
+	 * 
+	 * @param format
+	 *            The format of the file.
+	 * @param file
+	 *            The file, which must be UTF-8 or ASCII.
+	 * @throws IOException
+	 *             If the file could not be read.
+	 */
+	public ParallelFlatFileReader(final FlatFileFormat format, final File file) throws IOException {
+		this.format = format;
+		this.file = file;
+		final long[] boundary;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			boundary = findBoundary(raf.getChannel(), 0, FIELD_START);
+		}
+		this.headerEnd = boundary[0];
+		this.headerLines = (int) boundary[1];
+		try (FlatFileReader header = new FlatFileReader(format, new MappedFileReader(file, UTF8, 0, this.headerEnd))) {
+			this.columns = header.getColumns();
+		}
+	}
+
+	private boolean isQuoted() {
+		return this.format == FlatFileFormat.CSV;
+	}
+
+	/**
+	 * Reads every row of the file.
+	 * 
+	 * @param handler
+	 *            The handler to deliver rows to, required.
+	 * @return The number of rows read.
+	 * @throws IOException
+	 *             If the file could not be read.
+	 */
+	public long read(final FlatFileRowHandler handler) throws IOException {
+		final ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+		try {
+			final List<Chunk> chunks = split(pool);
+			log.fine("Reading " + this.file + " in " + chunks.size() + " chunks");
+			return this.ordered ? readOrdered(pool, chunks, handler) : readUnordered(pool, chunks, handler);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private long readOrdered(final ForkJoinPool pool, final List<Chunk> chunks, final FlatFileRowHandler handler) throws IOException {
+		final Deque<Future<List<FlatFileRow>>> pending = new ArrayDeque<>();
+		int next = 0;
+		long count = 0;
+		while (next < chunks.size() || !pending.isEmpty()) {
+			while (next < chunks.size() && pending.size() < Math.max(1, this.maxPendingChunks)) {
+				final Chunk chunk = chunks.get(next++);
+				pending.add(pool.submit(new Callable<List<FlatFileRow>>() {
+
+					@Override
+					public List<FlatFileRow> call() throws IOException {
+						final List<FlatFileRow> rows = new ArrayList<>();
+						parse(chunk, new FlatFileRowHandler() {
+
+							@Override
+							public void handle(final FlatFileRow row) {
+								rows.add(row);
+							}
+
+						}, false);
+						return rows;
+					}
+
+				}));
+			}
+			for (final FlatFileRow row : get(pending.poll())) {
+				handler.handle(row);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private long readUnordered(final ForkJoinPool pool, final List<Chunk> chunks, final FlatFileRowHandler handler) throws IOException {
+		final List<Future<Long>> futures = new ArrayList<>(chunks.size());
+		for (final Chunk chunk : chunks) {
+			futures.add(pool.submit(new Callable<Long>() {
+
+				@Override
+				public Long call() throws IOException {
+					return Long.valueOf(parse(chunk, handler, true));
+				}
+
+			}));
+		}
+		long count = 0;
+		for (final Future<Long> future : futures) {
+			count += get(future).longValue();
+		}
+		return count;
+	}
+
+	private static <V> V get(final Future<V> future) throws IOException {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			} else if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			} else if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Parses a chunk, delivering each row to a handler.
+	 * 
+	 * @return The number of rows parsed.
+	 */
+	private long parse(final Chunk chunk, final FlatFileRowHandler handler, final boolean reuseRows) throws IOException {
+		final FlatFileParser parser = FlatFileParser.forFormat(this.format, new MappedFileReader(this.file, UTF8, chunk.start, chunk.end));
+		parser.setLine(chunk.line);
+		long count = 0;
+		try (FlatFileReader reader = new FlatFileReader(this.format, parser, this.columns)) {
+			reader.setTrimContents(this.trimContents);
+			reader.setStripWrappedQuotes(this.stripWrappedQuotes);
+			reader.setReuseRows(reuseRows);
+			for (final FlatFileRow row : reader) {
+				handler.handle(row);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Divides the data of the file, after the header, into chunks that each
+	 * start at the beginning of a record.
+	 */
+	private List<Chunk> split(final ForkJoinPool pool) throws IOException {
+		final List<Chunk> chunks = new ArrayList<>();
+		try (RandomAccessFile raf = new RandomAccessFile(this.file, "r")) {
+			final FileChannel channel = raf.getChannel();
+			final long size = channel.size();
+			if (this.headerEnd >= size) {
+				return chunks;
+			}
+			final long step = Math.max(1, this.chunkSize);
+			final List<Long> starts = new ArrayList<>();
+			for (long start = this.headerEnd; start < size; start += step) {
+				starts.add(Long.valueOf(start));
+			}
+
+			// Find how each range moves the quoting state, and count its line
+			// breaks
+			final List<Future<long[]>> counts = new ArrayList<>(starts.size());
+			for (int i = 0; i < starts.size(); i++) {
+				final long start = starts.get(i).longValue();
+				final long end = i + 1 < starts.size() ? starts.get(i + 1).longValue() : size;
+				counts.add(pool.submit(new Callable<long[]>() {
+
+					@Override
+					public long[] call() throws IOException {
+						return count(channel, start, end);
+					}
+
+				}));
+			}
+
+			// Find the first record boundary in each candidate range
+			final List<Future<long[]>> boundaries = new ArrayList<>(starts.size());
+			int state = FIELD_START;
+			long lines = this.headerLines;
+			final long[] linesBefore = new long[starts.size()];
+			boundaries.add(null);
+			for (int i = 0; i < starts.size(); i++) {
+				linesBefore[i] = lines;
+				if (i > 0) {
+					final long start = starts.get(i).longValue();
+					final int startState = state;
+					boundaries.add(pool.submit(new Callable<long[]>() {
+
+						@Override
+						public long[] call() throws IOException {
+							return findBoundary(channel, start, startState);
+						}
+
+					}));
+				}
+				final long[] count = get(counts.get(i));
+				state = (int) count[state];
+				lines += count[STATES];
+			}
+
+			long previous = this.headerEnd;
+			int previousLine = this.headerLines + 1;
+			for (int i = 1; i < starts.size(); i++) {
+				final long[] boundary = get(boundaries.get(i));
+				if (boundary[0] <= previous || boundary[0] >= size) {
+					continue;
+				}
+				chunks.add(new Chunk(previous, boundary[0], previousLine));
+				previous = boundary[0];
+				previousLine = (int) (linesBefore[i] + boundary[1] + 1);
+			}
+			chunks.add(new Chunk(previous, size, previousLine));
+		}
+		return chunks;
+	}
+
+	private static int next(final int state, final byte b) {
+		if (state == QUOTED) {
+			return b == '"' ? QUOTE_SEEN : QUOTED;
+		}
+		if (b == '"' && state != UNQUOTED) {
+			// Opens a field, or is the second of a doubled pair
+			return QUOTED;
+		}
+		return b == ',' || b == '\n' || b == '\r' ? FIELD_START : UNQUOTED;
+	}
+
+	/**
+	 * Runs a range through the quoting states from every possible starting
+	 * state at once, since the state at its start is not known yet, and counts
+	 * its line feeds.
+	 * 
+	 * @return The state at the end of the range for each starting state,
+	 *         followed by the number of line feeds.
+	 */
+	private long[] count(final FileChannel channel, final long start, final long end) throws IOException {
+		final MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, start, end - start);
+		final boolean quoted = isQuoted();
+		final int[] states = { FIELD_START, UNQUOTED, QUOTED, QUOTE_SEEN };
+		boolean converged = !quoted;
+		long lineFeeds = 0;
+		while (buffer.hasRemaining()) {
+			final byte b = buffer.get();
+			if (b == '\n') {
+				lineFeeds++;
+			}
+			if (converged) {
+				if (quoted) {
+					states[0] = next(states[0], b);
+				}
+				continue;
+			}
+			for (int i = 0; i < STATES; i++) {
+				states[i] = next(states[i], b);
+			}
+			// Once every starting state has reached the same state, they stay
+			// together, so only one needs to be tracked
+			converged = states[0] == states[1] && states[1] == states[2] && states[2] == states[3];
+		}
+		final long[] counts = new long[STATES + 1];
+		for (int i = 0; i < STATES; i++) {
+			counts[i] = quoted ? states[converged ? 0 : i] : FIELD_START;
+		}
+		counts[STATES] = lineFeeds;
+		return counts;
+	}
+
+	/**
+	 * Finds the first record boundary at or after an offset.
+	 * 
+	 * @param startState
+	 *            The quoting state at the offset.
+	 * @return The offset just after the line feed that ends the record, or
+	 *         the size of the file if there is none, and the number of line
+	 *         feeds between the offset and the boundary.
+	 */
+	private long[] findBoundary(final FileChannel channel, final long start, final int startState) throws IOException {
+		final long size = channel.size();
+		final boolean quoted = isQuoted();
+		int state = startState;
+		long lineFeeds = 0;
+		for (long offset = start; offset < size; offset += Integer.MAX_VALUE) {
+			final MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, offset, Math.min(Integer.MAX_VALUE, size - offset));
+			while (buffer.hasRemaining()) {
+				final byte b = buffer.get();
+				if (b == '\n') {
+					lineFeeds++;
+					if (state != QUOTED) {
+						return new long[] { offset + buffer.position(), lineFeeds };
+					}
+				}
+				if (quoted) {
+					state = next(state, b);
+				}
+			}
+		}
+		return new long[] { size, lineFeeds };
+	}
+
+}
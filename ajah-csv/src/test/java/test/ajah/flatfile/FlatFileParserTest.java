@@ -0,0 +1,229 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package test.ajah.flatfile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ajah.flatfile.FlatFileException;
+import com.ajah.flatfile.FlatFileFormat;
+import com.ajah.flatfile.FlatFileParser;
+import com.ajah.flatfile.FlatFileReader;
+import com.ajah.flatfile.FlatFileRow;
+import com.ajah.flatfile.MappedFileReader;
+
+/**
+ * Tests {@link FlatFileParser} and {@link FlatFileReader}.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+@SuppressWarnings("static-method")
+public class FlatFileParserTest {
+
+	private static final String CSV = "name,quote,count\r\n" + "plain,simple,1\r\n" + "\r\n" + "\"Smith, John\",\"He said \"\"hi\"\"\",2\n" + "multi,\"line one\nline two\",3\r"
+			+ "empty,,\n" + "last,\"\",4";
+
+	/**
+	 * Returns one character at a time, so that every field crosses a buffer
+	 * boundary.
+	 */
+	private static class TrickleReader extends FilterReader {
+
+		TrickleReader(final Reader in) {
+			super(in);
+		}
+
+		@Override
+		public int read(final char[] cbuf, final int off, final int len) throws IOException {
+			return super.read(cbuf, off, Math.min(len, 1));
+		}
+
+	}
+
+	private static void assertRecords(final FlatFileParser parser) throws IOException {
+		Assert.assertTrue(parser.next());
+		Assert.assertArrayEquals(new String[] { "name", "quote", "count" }, parser.getFields());
+		Assert.assertTrue(parser.next());
+		Assert.assertArrayEquals(new String[] { "plain", "simple", "1" }, parser.getFields());
+		Assert.assertEquals(2, parser.getLineNumber());
+		Assert.assertTrue(parser.next());
+		Assert.assertArrayEquals(new String[] { "Smith, John", "He said \"hi\"", "2" }, parser.getFields());
+		Assert.assertEquals(4, parser.getLineNumber());
+		Assert.assertTrue(parser.next());
+		Assert.assertArrayEquals(new String[] { "multi", "line one\nline two", "3" }, parser.getFields());
+		Assert.assertTrue(parser.next());
+		Assert.assertArrayEquals(new String[] { "empty", "", "" }, parser.getFields());
+		Assert.assertEquals(7, parser.getLineNumber());
+		Assert.assertTrue(parser.next());
+		Assert.assertArrayEquals(new String[] { "last", "", "4" }, parser.getFields());
+		Assert.assertNull(parser.getField(3));
+		Assert.assertFalse(parser.next());
+		Assert.assertFalse(parser.next());
+	}
+
+	/**
+	 * Quoted fields, escaped quotes, embedded line breaks, mixed line endings
+	 * and empty lines should all be handled.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testCsv() throws IOException {
+		assertRecords(FlatFileParser.forFormat(FlatFileFormat.CSV, new StringReader(CSV)));
+	}
+
+	/**
+	 * Parsing should not depend on where the buffer is refilled.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testBufferBoundaries() throws IOException {
+		assertRecords(FlatFileParser.forFormat(FlatFileFormat.CSV, new TrickleReader(new StringReader(CSV))));
+	}
+
+	/**
+	 * Quotes have no meaning in tab-delimited files.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testTab() throws IOException {
+		final FlatFileParser parser = FlatFileParser.forFormat(FlatFileFormat.TAB, new StringReader("a\t\"b,c\"\t\n"));
+		Assert.assertTrue(parser.next());
+		Assert.assertArrayEquals(new String[] { "a", "\"b,c\"", "" }, parser.getFields());
+		Assert.assertFalse(parser.next());
+	}
+
+	/**
+	 * An unterminated quote should fail rather than swallow the file.
+	 * 
+	 * @throws IOException
+	 */
+	@Test(expected = FlatFileException.class)
+	public void testUnterminated() throws IOException {
+		final FlatFileParser parser = FlatFileParser.forFormat(FlatFileFormat.CSV, new StringReader("a,\"b\nc,d\n"));
+		parser.next();
+	}
+
+	/**
+	 * The reader should expose rows by name and index, with or without reuse.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testReader() throws IOException {
+		try (final FlatFileReader reader = new FlatFileReader(FlatFileFormat.CSV, new StringReader(CSV))) {
+			reader.setReuseRows(true);
+			Assert.assertTrue(reader.hasColumn("quote"));
+			int count = 0;
+			String last = null;
+			FlatFileRow previous = null;
+			for (final FlatFileRow row : reader) {
+				if (previous != null) {
+					Assert.assertSame(previous, row);
+				}
+				previous = row;
+				Assert.assertEquals(row.get("count"), row.get(2));
+				last = row.get("count");
+				count++;
+			}
+			Assert.assertEquals(5, count);
+			Assert.assertEquals("4", last);
+		}
+	}
+
+	/**
+	 * A memory-mapped file should read the same as a stream, including
+	 * multi-byte characters.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testMapped() throws IOException {
+		final File file = File.createTempFile("flatfile", ".csv");
+		file.deleteOnExit();
+		try (final OutputStream out = new FileOutputStream(file)) {
+			out.write("name,city\nJosé,São Paulo\n".getBytes(Charset.forName("UTF-8")));
+		}
+		try (final FlatFileReader reader = FlatFileReader.mapped(FlatFileFormat.CSV, file)) {
+			final FlatFileRow row = reader.next();
+			Assert.assertEquals("José", row.get("name"));
+			Assert.assertEquals("São Paulo", row.get(1));
+			Assert.assertFalse(reader.hasNext());
+		}
+		try (final MappedFileReader empty = new MappedFileReader(File.createTempFile("flatfile", ".csv"), Charset.forName("UTF-8"))) {
+			Assert.assertEquals(-1, empty.read(new char[8], 0, 8));
+		}
+	}
+
+	/**
+	 * Checking for another row should not change a reused row, including
+	 * across buffer boundaries and trailing empty lines.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testHasNextKeepsRow() throws IOException {
+		try (final FlatFileReader reader = new FlatFileReader(FlatFileFormat.CSV, new TrickleReader(new StringReader(CSV + "\r\n\r\n")))) {
+			reader.setReuseRows(true);
+			final String[] names = { "plain", "Smith, John", "multi", "empty", "last" };
+			final int[] lines = { 2, 4, 5, 7, 8 };
+			for (int i = 0; i < names.length; i++) {
+				Assert.assertTrue(reader.hasNext());
+				final FlatFileRow row = reader.next();
+				Assert.assertEquals(names[i], row.get("name"));
+				Assert.assertEquals(i < names.length - 1, reader.hasNext());
+				Assert.assertEquals(names[i], row.get("name"));
+				Assert.assertEquals(lines[i], row.getLineNumber());
+			}
+			Assert.assertFalse(reader.hasNext());
+		}
+	}
+
+	/**
+	 * Setting a value on a reused row should be visible through the same row,
+	 * until it moves on to the next record.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testSetReusedRow() throws IOException {
+		try (final FlatFileReader reader = new FlatFileReader(FlatFileFormat.CSV, new StringReader(CSV))) {
+			reader.setReuseRows(true);
+			final FlatFileRow row = reader.next();
+			row.set("count", "changed");
+			row.set(0, "renamed");
+			Assert.assertEquals("changed", row.get("count"));
+			Assert.assertEquals("renamed", row.get("name"));
+			Assert.assertEquals("simple", row.get("quote"));
+			Assert.assertSame(row, reader.next());
+			Assert.assertEquals("2", row.get("count"));
+			Assert.assertEquals("Smith, John", row.get("name"));
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package test.ajah.flatfile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ajah.flatfile.FlatFileFormat;
+import com.ajah.flatfile.FlatFileReader;
+import com.ajah.flatfile.FlatFileRow;
+import com.ajah.flatfile.FlatFileWriter;
+
+/**
+ * Tests {@link FlatFileWriter}.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+@SuppressWarnings("static-method")
+public class FlatFileWriterTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static void writeRows(final FlatFileWriter writer) throws Exception {
+		writer.addColumn("name");
+		writer.addColumn("text", "default");
+		final FlatFileRow row = writer.newRow();
+		row.set("name", "plain");
+		row.set(1, "He said \"hi, there\"");
+		writer.newRow().set("name", "café");
+		writer.writeValues("multi", "line one\r\nline two");
+		writer.writeValues("\"", null);
+	}
+
+	/**
+	 * Values should be quoted only when necessary.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testCsv() throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (FlatFileWriter writer = new FlatFileWriter(FlatFileFormat.CSV, out, false)) {
+			writeRows(writer);
+		}
+		Assert.assertEquals("name,text\r\nplain,\"He said \"\"hi, there\"\"\"\r\ncafé,default\r\nmulti,\"line one\r\nline two\"\r\n\"\"\"\",\r\n", new String(out.toByteArray(), UTF8));
+	}
+
+	/**
+	 * Gzipped output should read back to the same values.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testGzip() throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (FlatFileWriter writer = new FlatFileWriter(FlatFileFormat.CSV, out, true)) {
+			writeRows(writer);
+		}
+		try (FlatFileReader reader = new FlatFileReader(FlatFileFormat.CSV, new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())), UTF8))) {
+			reader.setTrimContents(false);
+			Assert.assertEquals("He said \"hi, there\"", reader.next().get("text"));
+			Assert.assertEquals("café", reader.next().get("name"));
+			Assert.assertEquals("line one\r\nline two", reader.next().get("text"));
+			Assert.assertEquals("\"", reader.next().get("name"));
+			Assert.assertFalse(reader.hasNext());
+		}
+	}
+
+	/**
+	 * An empty file should still have a header.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testHeaderOnly() throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (FlatFileWriter writer = new FlatFileWriter(FlatFileFormat.TAB, out, false)) {
+			writer.addColumn("a");
+			writer.addColumn("b");
+		}
+		Assert.assertEquals("a\tb\r\n", new String(out.toByteArray(), UTF8));
+	}
+
+}
@@ -0,0 +1,194 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package test.ajah.flatfile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ajah.flatfile.FlatFileFormat;
+import com.ajah.flatfile.FlatFileReader;
+import com.ajah.flatfile.FlatFileRow;
+import com.ajah.flatfile.FlatFileRowHandler;
+import com.ajah.flatfile.ParallelFlatFileReader;
+
+/**
+ * Tests {@link ParallelFlatFileReader}.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+@SuppressWarnings("static-method")
+public class ParallelFlatFileReaderTest {
+
+	private static File write(final FlatFileFormat format) throws Exception {
+		final StringBuilder data = new StringBuilder("id,text,count\r\n");
+		final char delimiter = format == FlatFileFormat.CSV ? ',' : '\t';
+		for (int i = 0; i < 500; i++) {
+			data.append(i).append(delimiter);
+			if (format == FlatFileFormat.CSV && i % 7 == 0) {
+				data.append("\"quoted, with\nnewline \"\"").append(i).append("\"\"\"");
+			} else {
+				data.append("text ").append(i);
+			}
+			data.append(delimiter).append(i * 2).append(i % 3 == 0 ? "\r\n" : "\n");
+		}
+		final File file = File.createTempFile("parallel", format == FlatFileFormat.CSV ? ".csv" : ".tab");
+		file.deleteOnExit();
+		try (OutputStream out = new FileOutputStream(file)) {
+			out.write(data.toString().replace(',', delimiter).getBytes(Charset.forName("UTF-8")));
+		}
+		return file;
+	}
+
+	private static List<String> expected(final FlatFileFormat format, final File file) throws Exception {
+		final List<String> rows = new ArrayList<>();
+		try (FlatFileReader reader = FlatFileReader.mapped(format, file)) {
+			for (final FlatFileRow row : reader) {
+				rows.add(toString(row));
+			}
+		}
+		return rows;
+	}
+
+	private static String toString(final FlatFileRow row) {
+		return row.getLineNumber() + ":" + row.get("id") + "|" + row.get("text") + "|" + row.get("count");
+	}
+
+	private static List<String> read(final ParallelFlatFileReader reader) throws Exception {
+		final List<String> rows = Collections.synchronizedList(new ArrayList<String>());
+		final long count = reader.read(new FlatFileRowHandler() {
+
+			@Override
+			public void handle(final FlatFileRow row) {
+				rows.add(ParallelFlatFileReaderTest.toString(row));
+			}
+
+		});
+		Assert.assertEquals(rows.size(), count);
+		return rows;
+	}
+
+	/**
+	 * Ordered reads should match a serial read exactly, including line
+	 * numbers, even when chunks start inside quoted fields.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testOrdered() throws Exception {
+		final File file = write(FlatFileFormat.CSV);
+		final ParallelFlatFileReader reader = new ParallelFlatFileReader(FlatFileFormat.CSV, file);
+		reader.setChunkSize(100);
+		reader.setParallelism(4);
+		reader.setMaxPendingChunks(3);
+		final List<String> expected = expected(FlatFileFormat.CSV, file);
+		Assert.assertEquals(500, expected.size());
+		Assert.assertEquals(3, reader.getColumns().size());
+		Assert.assertEquals(expected, read(reader));
+	}
+
+	/**
+	 * Unordered reads should deliver the same rows in some order.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testUnordered() throws Exception {
+		final File file = write(FlatFileFormat.CSV);
+		final ParallelFlatFileReader reader = new ParallelFlatFileReader(FlatFileFormat.CSV, file);
+		reader.setChunkSize(37);
+		reader.setOrdered(false);
+		final List<String> expected = expected(FlatFileFormat.CSV, file);
+		final List<String> actual = read(reader);
+		Collections.sort(expected);
+		Collections.sort(actual);
+		Assert.assertEquals(expected, actual);
+	}
+
+	/**
+	 * Quotes in the middle of an unquoted field are literal and must not be
+	 * taken as opening a quoted field when choosing chunk boundaries.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testLiteralQuotes() throws Exception {
+		final StringBuilder data = new StringBuilder("id,text,count\n");
+		for (int i = 0; i < 200; i++) {
+			data.append(i).append(',');
+			if (i % 5 == 0) {
+				data.append(i).append("\" pipe");
+			} else if (i % 5 == 1) {
+				data.append("\"quoted \"\"").append(i).append("\"\" with\nnewline\"");
+			} else {
+				data.append("text ").append(i);
+			}
+			data.append(',').append(i * 2).append('\n');
+		}
+		final File file = File.createTempFile("parallel", ".csv");
+		file.deleteOnExit();
+		try (OutputStream out = new FileOutputStream(file)) {
+			out.write(data.toString().getBytes(Charset.forName("UTF-8")));
+		}
+		final List<String> expected = expected(FlatFileFormat.CSV, file);
+		Assert.assertEquals(200, expected.size());
+		Assert.assertTrue(expected.get(5), expected.get(5).endsWith("|5\" pipe|10"));
+		for (int chunkSize = 7; chunkSize < 120; chunkSize += 11) {
+			final ParallelFlatFileReader reader = new ParallelFlatFileReader(FlatFileFormat.CSV, file);
+			reader.setChunkSize(chunkSize);
+			Assert.assertEquals(expected, read(reader));
+		}
+	}
+
+	/**
+	 * Tab-delimited files have no quoting, so every line feed is a boundary.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testTab() throws Exception {
+		final File file = write(FlatFileFormat.TAB);
+		final ParallelFlatFileReader reader = new ParallelFlatFileReader(FlatFileFormat.TAB, file);
+		reader.setChunkSize(64);
+		Assert.assertEquals(expected(FlatFileFormat.TAB, file), read(reader));
+	}
+
+	/**
+	 * A file with only a header should have no rows.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testHeaderOnly() throws Exception {
+		final File file = File.createTempFile("parallel", ".csv");
+		file.deleteOnExit();
+		try (OutputStream out = new FileOutputStream(file)) {
+			out.write("a,b,c".getBytes(Charset.forName("UTF-8")));
+		}
+		final ParallelFlatFileReader reader = new ParallelFlatFileReader(FlatFileFormat.CSV, file);
+		Assert.assertEquals(3, reader.getColumns().size());
+		Assert.assertEquals(0, read(reader).size());
+	}
+
+}
@@ -17,10 +17,12 @@ package com.ajah.elasticsearch;
 
 import java.io.IOException;
 import java.lang.reflect.ParameterizedType;
+import java.util.Iterator;
 
 import lombok.Getter;
 import lombok.extern.java.Log;
 
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ListenableActionFuture;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
@@ -112,14 +114,58 @@ public abstract class AbstractElasticSearchClient<K extends Comparable<K>, T ext
 	 */
 	@Override
 	public IndexResponse index(final T entity) throws JsonProcessingException {
+		final ListenableActionFuture<IndexResponse> result = prepareIndex(entity).execute();
+		log.finest("Executed");
+		return result.actionGet();
+	}
+
+	/**
+	 * Indexes a document without waiting for the response.
+	 * 
+	 * @param entity
+	 *            The document to index.
+	 * @param listener
+	 *            The listener to notify when the document is indexed or fails,
+	 *            on one of the client's threads.
+	 * @throws JsonProcessingException
+	 *             If the entity could not be parsed into JSON.
+	 */
+	public void indexAsync(final T entity, final ActionListener<IndexResponse> listener) throws JsonProcessingException {
+		prepareIndex(entity).execute(listener);
+	}
 
+	private IndexRequestBuilder prepareIndex(final T entity) throws JsonProcessingException {
 		final IndexRequestBuilder irb = this.client.prepareIndex(this.index, this.type, entity.getId().toString());
 		final String json = this.mapper.writeValueAsString(entity);
 		log.finest(json);
 		irb.setSource(json);
-		final ListenableActionFuture<IndexResponse> result = irb.execute();
-		log.finest("Executed");
-		return result.actionGet();
+		return irb;
+	}
+
+	/**
+	 * Creates a bulk indexer for this index, for indexing many documents
+	 * without a request per document.
+	 * 
+	 * @return A new bulk indexer, which must be closed.
+	 */
+	public BulkIndexer<T> bulkIndexer() {
+		return new BulkIndexer<>(this.client, this.index, this.type, this.mapper);
+	}
+
+	/**
+	 * Iterates over every document matching a query, such as for a full
+	 * reindex. Documents are fetched in batches using a scroll, so this is
+	 * not affected by how deep into the results the iteration is, but results
+	 * are unordered.
+	 * 
+	 * @param queryBuilder
+	 *            The query, or null for all documents.
+	 * @param batchSize
+	 *            The number of documents to fetch per shard per request.
+	 * @return An iterator over the matching documents.
+	 */
+	public Iterator<C> scroll(final QueryBuilder queryBuilder, final int batchSize) {
+		return new ScrollIterator<>(this.client, this.index, this.type, queryBuilder == null ? QueryBuilders.matchAllQuery() : queryBuilder, batchSize, this.mapper, getTargetClass());
 	}
 
 	/**
@@ -138,32 +184,79 @@ public abstract class AbstractElasticSearchClient<K extends Comparable<K>, T ext
 	 */
 	@Override
 	public SearchList<C> search(final QueryBuilder queryBuilder, final FilterBuilder filterBuilder, final SortBuilder[] sortBuilders, final int page, final int count) throws IOException {
-		final SearchList<C> results = new SearchList<>();
-		long start = System.currentTimeMillis();
+		final long start = System.currentTimeMillis();
 		try {
-			final SearchRequestBuilder requestBuilder = this.client.prepareSearch(this.index).setTypes(this.type).setSearchType(SearchType.DEFAULT).setFrom(page * count).setSize(count)
-					.setQuery(queryBuilder);
-			if (sortBuilders != null) {
-				for (final SortBuilder sortBuilder : sortBuilders) {
-					requestBuilder.addSort(sortBuilder);
+			return toSearchList(prepareSearch(queryBuilder, filterBuilder, sortBuilders, page, count).execute().actionGet(), start);
+		} catch (final IndexMissingException e) {
+			log.warning(e.getMessage());
+			return toSearchList(null, start);
+		}
+	}
+
+	/**
+	 * Performs a search without waiting for the response.
+	 * 
+	 * @see #search(QueryBuilder, FilterBuilder, SortBuilder[], int, int)
+	 * @param listener
+	 *            The listener to notify with the results or failure, on one of
+	 *            the client's threads.
+	 */
+	public void searchAsync(final QueryBuilder queryBuilder, final FilterBuilder filterBuilder, final SortBuilder[] sortBuilders, final int page, final int count,
+			final ActionListener<SearchList<C>> listener) {
+		final long start = System.currentTimeMillis();
+		prepareSearch(queryBuilder, filterBuilder, sortBuilders, page, count).execute(new ActionListener<SearchResponse>() {
+
+			@Override
+			public void onResponse(final SearchResponse response) {
+				final SearchList<C> results;
+				try {
+					results = toSearchList(response, start);
+				} catch (final IOException e) {
+					listener.onFailure(e);
+					return;
 				}
+				listener.onResponse(results);
 			}
-			if (filterBuilder != null) {
-				requestBuilder.setPostFilter(filterBuilder);
+
+			@Override
+			public void onFailure(final Throwable e) {
+				if (e instanceof IndexMissingException) {
+					log.warning(e.getMessage());
+					onResponse(null);
+				} else {
+					listener.onFailure(e);
+				}
 			}
-			if (getDefaultSort() != null) {
-				requestBuilder.addSort(getDefaultSort());
+
+		});
+	}
+
+	private SearchRequestBuilder prepareSearch(final QueryBuilder queryBuilder, final FilterBuilder filterBuilder, final SortBuilder[] sortBuilders, final int page, final int count) {
+		final SearchRequestBuilder requestBuilder = this.client.prepareSearch(this.index).setTypes(this.type).setSearchType(SearchType.DEFAULT).setFrom(page * count).setSize(count)
+				.setQuery(queryBuilder);
+		if (sortBuilders != null) {
+			for (final SortBuilder sortBuilder : sortBuilders) {
+				requestBuilder.addSort(sortBuilder);
 			}
+		}
+		if (filterBuilder != null) {
+			requestBuilder.setPostFilter(filterBuilder);
+		}
+		if (getDefaultSort() != null) {
+			requestBuilder.addSort(getDefaultSort());
+		}
+		return requestBuilder;
+	}
 
-			final SearchResponse response = requestBuilder.execute().actionGet();
-			log.finest(results.getTotalHits() + " hits");
+	private SearchList<C> toSearchList(final SearchResponse response, final long start) throws IOException {
+		final SearchList<C> results = new SearchList<>();
+		if (response != null) {
 			results.setTotalHits(response.getHits().getTotalHits());
+			log.finest(results.getTotalHits() + " hits");
 			for (final SearchHit hit : response.getHits()) {
 				final C result = this.mapper.readValue(hit.getSourceAsString(), getTargetClass());
 				results.add(result);
 			}
-		} catch (final IndexMissingException e) {
-			log.warning(e.getMessage());
 		}
 		results.setTime(System.currentTimeMillis() - start);
 		return results;
@@ -184,26 +277,56 @@ public abstract class AbstractElasticSearchClient<K extends Comparable<K>, T ext
 	 */
 	@Override
 	public SearchList<C> search(final String query) throws IOException {
-		final SearchList<C> results = new SearchList<>();
-		long start = System.currentTimeMillis();
+		final long start = System.currentTimeMillis();
 		try {
 			final SearchResponse response = this.client.prepareSearch(this.index).setTypes(this.type).setSearchType(SearchType.DEFAULT).setSize(100).setQuery(QueryBuilders.matchQuery("_all", query))
 					.execute().actionGet();
-			results.setTotalHits(response.getHits().getTotalHits());
-			for (final SearchHit hit : response.getHits()) {
-				final C result = this.mapper.readValue(hit.getSourceAsString(), getTargetClass());
-				results.add(result);
-			}
+			return toSearchList(response, start);
 		} catch (final IndexMissingException e) {
 			log.warning(e.getMessage());
+			return toSearchList(null, start);
 		}
-		results.setTime(System.currentTimeMillis() - start);
-		return results;
 	}
 
 	public C load(K id) throws IOException {
 		final GetResponse response = this.client.prepareGet(this.index, this.type, id.toString()).execute().actionGet();
-		String source = response.getSourceAsString();
+		return toEntity(response);
+	}
+
+	/**
+	 * Loads a document without waiting for the response.
+	 * 
+	 * @param id
+	 *            The ID of the document.
+	 * @param listener
+	 *            The listener to notify with the document, or null if it does
+	 *            not exist, on one of the client's threads.
+	 */
+	public void loadAsync(final K id, final ActionListener<C> listener) {
+		this.client.prepareGet(this.index, this.type, id.toString()).execute(new ActionListener<GetResponse>() {
+
+			@Override
+			public void onResponse(final GetResponse response) {
+				final C entity;
+				try {
+					entity = toEntity(response);
+				} catch (final IOException e) {
+					listener.onFailure(e);
+					return;
+				}
+				listener.onResponse(entity);
+			}
+
+			@Override
+			public void onFailure(final Throwable e) {
+				listener.onFailure(e);
+			}
+
+		});
+	}
+
+	private C toEntity(final GetResponse response) throws IOException {
+		final String source = response.getSourceAsString();
 		if (StringUtils.isBlank(source)) {
 			return null;
 		}
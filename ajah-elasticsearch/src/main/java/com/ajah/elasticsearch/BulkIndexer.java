@@ -0,0 +1,388 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.elasticsearch;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.java.Log;
+
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.rest.RestStatus;
+
+import com.ajah.util.Identifiable;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Indexes documents in bulk requests rather than one request per document. A
+ * bulk request is sent when it reaches {@link #bulkActions} documents or
+ * {@link #bulkSizeMb} megabytes, or when {@link #flushInterval} has passed,
+ * whichever comes first, and at most {@link #concurrentRequests} bulk requests
+ * are in flight at once; {@link #add(Identifiable)} blocks when that limit is
+ * reached.
+ * 
+ * Documents rejected because the cluster's bulk queue is full, and every
+ * document in a bulk request that failed as a whole (for example because no
+ * node could be reached), are retried with exponential backoff up to
+ * {@link #maxRetries} times. Other failures are logged and counted.
+ * 
+ * Settings must be changed before the first document is added. Instances are
+ * obtained from {@link AbstractElasticSearchClient#bulkIndexer()} and must be
+ * closed to send the final batch.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ * @param <T>
+ *            The type of document being indexed.
+ */
+@Log
+public class BulkIndexer<T extends Identifiable<?>> implements AutoCloseable {
+
+	private final Client client;
+	private final String index;
+	private final String type;
+	private final ObjectMapper mapper;
+
+	private BulkProcessor processor;
+	private ScheduledExecutorService retryExecutor;
+	private boolean closed;
+
+	/**
+	 * The maximum number of documents in a bulk request.
+	 */
+	@Getter
+	@Setter
+	private int bulkActions = 1000;
+
+	/**
+	 * The maximum size of a bulk request, in megabytes.
+	 */
+	@Getter
+	@Setter
+	private int bulkSizeMb = 5;
+
+	/**
+	 * The maximum time a document waits before its bulk request is sent, in
+	 * milliseconds.
+	 */
+	@Getter
+	@Setter
+	private long flushInterval = 1000;
+
+	/**
+	 * The maximum number of bulk requests in flight.
+	 */
+	@Getter
+	@Setter
+	private int concurrentRequests = 2;
+
+	/**
+	 * The number of times a rejected document is retried.
+	 */
+	@Getter
+	@Setter
+	private int maxRetries = 3;
+
+	/**
+	 * The delay before the first retry, in milliseconds. Doubles with each
+	 * attempt.
+	 */
+	@Getter
+	@Setter
+	private long retryDelay = 500;
+
+	/**
+	 * The maximum time {@link #close()} waits for outstanding requests, in
+	 * milliseconds.
+	 */
+	@Getter
+	@Setter
+	private long closeTimeout = 60000;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger pendingRetries = new AtomicInteger();
+
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong indexed = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicLong retried = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong took = new AtomicLong();
+
+	BulkIndexer(final Client client, final String index, final String type, final ObjectMapper mapper) {
+		this.client = client;
+		this.index = index;
+		this.type = type;
+		this.mapper = mapper;
+	}
+
+	/**
+	 * Returns the number of bulk requests completed.
+	 * 
+	 * @return The number of bulk requests completed.
+	 */
+	public long getBatches() {
+		return this.batches.get();
+	}
+
+	/**
+	 * Returns the number of documents indexed successfully.
+	 * 
+	 * @return The number of documents indexed successfully.
+	 */
+	public long getIndexed() {
+		return this.indexed.get();
+	}
+
+	/**
+	 * Returns the estimated number of bytes sent, including retries.
+	 * 
+	 * @return The estimated number of bytes sent.
+	 */
+	public long getBytes() {
+		return this.bytes.get();
+	}
+
+	/**
+	 * Returns the number of document retries scheduled.
+	 * 
+	 * @return The number of document retries scheduled.
+	 */
+	public long getRetried() {
+		return this.retried.get();
+	}
+
+	/**
+	 * Returns the number of documents that could not be indexed.
+	 * 
+	 * @return The number of documents that could not be indexed.
+	 */
+	public long getFailed() {
+		return this.failed.get();
+	}
+
+	/**
+	 * Returns the total time spent by the cluster on bulk requests, as
+	 * reported by the cluster.
+	 * 
+	 * @return The total time spent on bulk requests, in milliseconds.
+	 */
+	public long getTook() {
+		return this.took.get();
+	}
+
+	private synchronized BulkProcessor getProcessor() {
+		if (this.closed) {
+			throw new IllegalStateException("Bulk indexer is closed");
+		}
+		if (this.processor == null) {
+			this.retryExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "bulk-retry-" + BulkIndexer.this.index);
+					thread.setDaemon(true);
+					return thread;
+				}
+
+			});
+			this.processor = BulkProcessor.builder(this.client, new Listener()).setName(this.index).setBulkActions(this.bulkActions)
+					.setBulkSize(new ByteSizeValue(this.bulkSizeMb, ByteSizeUnit.MB)).setFlushInterval(TimeValue.timeValueMillis(this.flushInterval))
+					.setConcurrentRequests(this.concurrentRequests).build();
+		}
+		return this.processor;
+	}
+
+	/**
+	 * Queues a document for indexing.
+	 * 
+	 * @param entity
+	 *            The document to index.
+	 * @throws JsonProcessingException
+	 *             If the entity could not be converted into JSON.
+	 */
+	public void add(final T entity) throws JsonProcessingException {
+		final IndexRequest request = new IndexRequest(this.index, this.type, entity.getId().toString()).source(this.mapper.writeValueAsString(entity));
+		getProcessor().add(request, Integer.valueOf(0));
+	}
+
+	/**
+	 * Sends any queued documents immediately.
+	 */
+	public void flush() {
+		getProcessor().flush();
+	}
+
+	/**
+	 * Sends any queued documents and waits, up to {@link #closeTimeout}, for
+	 * outstanding requests and retries to finish.
+	 */
+	@Override
+	public void close() {
+		final BulkProcessor current;
+		synchronized (this) {
+			if (this.closed) {
+				return;
+			}
+			current = this.processor;
+			if (current == null) {
+				this.closed = true;
+				return;
+			}
+		}
+		final long deadline = System.currentTimeMillis() + this.closeTimeout;
+		try {
+			do {
+				current.flush();
+				Thread.sleep(10);
+			} while ((this.inFlight.get() > 0 || this.pendingRetries.get() > 0) && System.currentTimeMillis() < deadline);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			this.closed = true;
+		}
+		current.close();
+		this.retryExecutor.shutdownNow();
+		if (this.inFlight.get() > 0 || this.pendingRetries.get() > 0) {
+			log.warning("Closed " + this.index + " bulk indexer with " + this.inFlight.get() + " requests in flight and " + this.pendingRetries.get() + " retries pending");
+		}
+	}
+
+	private static boolean isRejected(final BulkItemResponse item) {
+		return item.getFailure().getStatus() == RestStatus.SERVICE_UNAVAILABLE || (item.getFailureMessage() != null && item.getFailureMessage().contains("EsRejectedExecutionException"));
+	}
+
+	private void retry(final ActionRequest<?> request, final int attempt) {
+		this.retried.incrementAndGet();
+		this.pendingRetries.incrementAndGet();
+		try {
+			scheduleRetry(request, attempt);
+		} catch (final RejectedExecutionException e) {
+			log.warning("Bulk indexer closed before retry: " + e.getMessage());
+			this.failed.incrementAndGet();
+			this.pendingRetries.decrementAndGet();
+		}
+	}
+
+	private void scheduleRetry(final ActionRequest<?> request, final int attempt) {
+		this.retryExecutor.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					BulkIndexer.this.processor.add(request, Integer.valueOf(attempt));
+				} catch (final IllegalStateException e) {
+					log.warning("Bulk indexer closed before retry: " + e.getMessage());
+					BulkIndexer.this.failed.incrementAndGet();
+				} finally {
+					BulkIndexer.this.pendingRetries.decrementAndGet();
+				}
+			}
+
+		}, this.retryDelay << Math.min(attempt - 1, 10), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns how many times an action has been retried, which is carried as
+	 * its payload.
+	 */
+	private static int getAttempts(final BulkRequest request, final int item) {
+		final Object payload = request.payloads() == null ? null : request.payloads().get(item);
+		return payload instanceof Integer ? ((Integer) payload).intValue() : 0;
+	}
+
+	private class Listener implements BulkProcessor.Listener {
+
+		@Override
+		public void beforeBulk(final long executionId, final BulkRequest request) {
+			BulkIndexer.this.inFlight.incrementAndGet();
+		}
+
+		@Override
+		public void afterBulk(final long executionId, final BulkRequest request, final BulkResponse response) {
+			try {
+				int failures = 0;
+				int retries = 0;
+				for (final BulkItemResponse item : response) {
+					if (!item.isFailed()) {
+						continue;
+					}
+					final int attempts = getAttempts(request, item.getItemId());
+					if (isRejected(item) && attempts < BulkIndexer.this.maxRetries) {
+						retry(request.requests().get(item.getItemId()), attempts + 1);
+						retries++;
+					} else {
+						failures++;
+						log.warning("Failed to index " + item.getId() + ": " + item.getFailureMessage());
+					}
+				}
+				BulkIndexer.this.batches.incrementAndGet();
+				BulkIndexer.this.indexed.addAndGet(request.numberOfActions() - failures - retries);
+				BulkIndexer.this.failed.addAndGet(failures);
+				BulkIndexer.this.bytes.addAndGet(request.estimatedSizeInBytes());
+				BulkIndexer.this.took.addAndGet(response.getTookInMillis());
+				log.fine("Bulk " + executionId + " to " + BulkIndexer.this.index + ": " + request.numberOfActions() + " documents, " + request.estimatedSizeInBytes() + " bytes, "
+						+ response.getTookInMillis() + "ms, " + failures + " failures, " + retries + " retries");
+			} finally {
+				BulkIndexer.this.inFlight.decrementAndGet();
+			}
+		}
+
+		@Override
+		public void afterBulk(final long executionId, final BulkRequest request, final Throwable failure) {
+			try {
+				int failures = 0;
+				int retries = 0;
+				for (int i = 0; i < request.numberOfActions(); i++) {
+					final int attempts = getAttempts(request, i);
+					if (attempts < BulkIndexer.this.maxRetries) {
+						retry(request.requests().get(i), attempts + 1);
+						retries++;
+					} else {
+						failures++;
+					}
+				}
+				log.log(Level.WARNING, "Bulk " + executionId + " to " + BulkIndexer.this.index + " failed, " + retries + " documents will be retried and " + failures + " were dropped: "
+						+ failure.getMessage(), failure);
+				BulkIndexer.this.batches.incrementAndGet();
+				BulkIndexer.this.failed.addAndGet(failures);
+			} finally {
+				BulkIndexer.this.inFlight.decrementAndGet();
+			}
+		}
+
+	}
+
+}
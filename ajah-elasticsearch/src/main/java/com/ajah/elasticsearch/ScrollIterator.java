@@ -0,0 +1,129 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.elasticsearch;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import lombok.extern.java.Log;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.SearchHit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Iterates over every document matching a query using a scan search and a
+ * scroll, fetching one batch at a time. Unlike from/size paging, each batch
+ * costs the same regardless of how far into the results it is, which makes
+ * this suitable for reindexing. Results are not sorted.
+ * 
+ * Because {@link Iterator} cannot throw checked exceptions, an
+ * {@link IOException} while parsing a document is wrapped in an
+ * {@link IllegalStateException}.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ * @param <C>
+ *            The type of document being iterated over.
+ */
+@Log
+class ScrollIterator<C> implements Iterator<C> {
+
+	private static final TimeValue KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+
+	private final Client client;
+	private final ObjectMapper mapper;
+	private final Class<C> targetClass;
+
+	private String scrollId;
+	private SearchHit[] hits;
+	private int position;
+	private boolean exhausted;
+
+	ScrollIterator(final Client client, final String index, final String type, final QueryBuilder query, final int batchSize, final ObjectMapper mapper, final Class<C> targetClass) {
+		this.client = client;
+		this.mapper = mapper;
+		this.targetClass = targetClass;
+		// A scan returns no hits, only the scroll to start from
+		final SearchResponse response = client.prepareSearch(index).setTypes(type).setSearchType(SearchType.SCAN).setScroll(KEEP_ALIVE).setSize(batchSize).setQuery(query).execute()
+				.actionGet();
+		this.scrollId = response.getScrollId();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasNext() {
+		if (this.hits != null && this.position < this.hits.length) {
+			return true;
+		}
+		if (this.exhausted) {
+			return false;
+		}
+		final SearchResponse response = this.client.prepareSearchScroll(this.scrollId).setScroll(KEEP_ALIVE).execute().actionGet();
+		this.scrollId = response.getScrollId();
+		this.hits = response.getHits().getHits();
+		this.position = 0;
+		if (this.hits.length == 0) {
+			this.exhausted = true;
+			clear();
+			return false;
+		}
+		return true;
+	}
+
+	private void clear() {
+		try {
+			this.client.prepareClearScroll().addScrollId(this.scrollId).execute().actionGet();
+		} catch (final RuntimeException e) {
+			// The scroll will expire on its own
+			log.warning("Could not clear scroll: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public C next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		try {
+			return this.mapper.readValue(this.hits[this.position++].getSourceAsString(), this.targetClass);
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Throws {@link UnsupportedOperationException}.
+	 * 
+	 * @see java.util.Iterator#remove()
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("remove() is not supported, iteration is read-only");
+	}
+
+}
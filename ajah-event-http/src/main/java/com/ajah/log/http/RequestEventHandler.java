@@ -28,8 +28,9 @@ import com.ajah.spring.jdbc.err.DataOperationException;
  * 
  * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
  *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
- * 
+ * @deprecated Use {@link RequestEventWriter}, which saves events in batches.
  */
+@Deprecated
 @Log
 public class RequestEventHandler implements Runnable {
 
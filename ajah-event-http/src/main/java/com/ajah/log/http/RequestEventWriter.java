@@ -0,0 +1,59 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.log.http;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.ajah.log.http.request.RequestEvent;
+import com.ajah.log.http.request.data.RequestEventManager;
+import com.ajah.spring.jdbc.batch.BatchWriter;
+import com.ajah.spring.jdbc.err.DataOperationException;
+
+/**
+ * Saves {@link RequestEvent}s in batches on a background thread. Up to
+ * {@link #DEFAULT_CAPACITY} events can be waiting to be saved, after which
+ * new events are dropped.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+@Service
+public class RequestEventWriter extends BatchWriter<RequestEvent> {
+
+	/**
+	 * The default number of events that can be waiting to be saved.
+	 */
+	public static final int DEFAULT_CAPACITY = 10000;
+
+	@Autowired
+	private RequestEventManager requestEventManager;
+
+	/**
+	 * Creates a writer with the default capacity.
+	 */
+	public RequestEventWriter() {
+		super(DEFAULT_CAPACITY);
+	}
+
+	@Override
+	protected void write(final List<RequestEvent> batch) throws DataOperationException {
+		this.requestEventManager.saveAll(batch);
+	}
+
+}
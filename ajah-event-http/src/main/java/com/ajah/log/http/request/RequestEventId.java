@@ -59,6 +59,17 @@ public class RequestEventId implements Serializable, ToStringable, FromStringabl
 		return this.id.equals(other.id);
 	}
 
+	/**
+	 * Compares the wrapped string values, so that equal IDs match as map and
+	 * set keys.
+	 * 
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object other) {
+		return other instanceof RequestEventId && equals((RequestEventId) other);
+	}
+
 	/**
 	 * Returns the String passed into the constructor.
 	 * 
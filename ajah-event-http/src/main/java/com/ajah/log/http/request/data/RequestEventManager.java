@@ -15,6 +15,8 @@
  */
 package com.ajah.log.http.request.data;
 
+import java.util.Collection;
+
 import lombok.extern.java.Log;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -51,4 +53,19 @@ public class RequestEventManager {
 		log.finest(requestEvent.getId().toString() + " saved");
 	}
 
+	/**
+	 * Saves a collection of request events in batches. Unlike
+	 * {@link #save(RequestEvent)}, these are not <em>delayed</em> inserts, as
+	 * batching already keeps the number of round trips low.
+	 * 
+	 * @param requestEvents
+	 *            The request events to save.
+	 * @throws DataOperationException
+	 *             If the query could not be executed.
+	 */
+	public void saveAll(final Collection<RequestEvent> requestEvents) throws DataOperationException {
+		this.requestEventDao.insertAll(requestEvents);
+		log.finest(requestEvents.size() + " request events saved");
+	}
+
 }
@@ -26,19 +26,18 @@ import javax.servlet.http.HttpServletResponse;
 import lombok.extern.java.Log;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
 
-import com.ajah.log.http.RequestEventHandler;
+import com.ajah.log.http.RequestEventWriter;
 import com.ajah.log.http.request.RequestEvent;
-import com.ajah.log.http.request.data.RequestEventManager;
 import com.ajah.servlet.AjahFilter;
 import com.ajah.util.AjahUtils;
 
 /**
  * Logs HTTP requests. Will try to determine on it's own if a request should be
  * logged, but this behavior can be overridden by setting a {@link Boolean}
- * request attribute "logMe".
+ * request attribute "logMe". Logged requests are saved in batches by a
+ * {@link RequestEventWriter}, and are dropped if it falls too far behind.
  * 
  * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
  *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
@@ -67,10 +66,7 @@ public class AccessLoggerFilter extends AjahFilter {
 	}
 
 	@Autowired
-	private TaskExecutor taskExecutor;
-
-	@Autowired
-	private RequestEventManager requestEventManager;
+	private RequestEventWriter requestEventWriter;
 
 	/**
 	 * Logs requests.
@@ -87,8 +83,8 @@ public class AccessLoggerFilter extends AjahFilter {
 			requestEvent.complete();
 			if (isLoggable(request)) {
 				log.finest(requestEvent.getUri() + " took " + requestEvent.getDuration() + "ms");
-				AjahUtils.requireParam(this.taskExecutor, "taskExecutor");
-				this.taskExecutor.execute(new RequestEventHandler(requestEvent, this.requestEventManager));
+				AjahUtils.requireParam(this.requestEventWriter, "requestEventWriter");
+				this.requestEventWriter.offer(requestEvent);
 			}
 		}
 	}
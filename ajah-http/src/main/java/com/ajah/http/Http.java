@@ -25,20 +25,27 @@ import lombok.extern.java.Log;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 
 import com.ajah.http.err.BadRequestException;
 import com.ajah.http.err.HttpException;
 import com.ajah.http.err.NotFoundException;
 import com.ajah.http.err.UnexpectedResponseCode;
+import com.ajah.util.config.Config;
 
 /**
  * Offers a simple interface to HTTP client operations with sensible default
  * behaviors.
  * 
+ * All requests share one client with a pool of keep-alive connections, sized
+ * by the ajah.http.maxConnections and ajah.http.maxConnectionsPerHost
+ * properties.
+ * 
  * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
  *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
  * 
@@ -46,6 +53,28 @@ import com.ajah.http.err.UnexpectedResponseCode;
 @Log
 public class Http {
 
+	private static final CloseableHttpClient client;
+
+	static {
+		final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(Config.i.getInt("ajah.http.maxConnections", 200));
+		connectionManager.setDefaultMaxPerRoute(Config.i.getInt("ajah.http.maxConnectionsPerHost", 20));
+		final RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(Config.i.getInt("ajah.http.connectTimeout", 10000))
+				.setSocketTimeout(Config.i.getInt("ajah.http.socketTimeout", 30000)).build();
+		client = HttpClients.custom().setConnectionManager(connectionManager).setDefaultRequestConfig(requestConfig).build();
+	}
+
+	/**
+	 * Returns the shared, pooled client, for requests that need more control
+	 * than this class offers. Response entities must be fully consumed or the
+	 * response closed so that connections are returned to the pool.
+	 * 
+	 * @return The shared client.
+	 */
+	public static CloseableHttpClient getClient() {
+		return client;
+	}
+
 	private static String get(final String url) throws IOException, HttpException {
 		URI uri;
 		try {
@@ -130,13 +159,15 @@ public class Http {
 	}
 
 	private static HttpEntity internalGet(final URI uri) throws IOException, ClientProtocolException, NotFoundException, UnexpectedResponseCode {
-		final HttpClient httpclient = new DefaultHttpClient();
 		final HttpGet httpget = new HttpGet(uri);
-		final HttpResponse response = httpclient.execute(httpget);
+		final HttpResponse response = client.execute(httpget);
 		if (response.getStatusLine().getStatusCode() == 200) {
+			// The caller reads the entity fully, which releases the connection
 			final HttpEntity entity = response.getEntity();
 			return entity;
-		} else if (response.getStatusLine().getStatusCode() == 404) {
+		}
+		EntityUtils.consume(response.getEntity());
+		if (response.getStatusLine().getStatusCode() == 404) {
 			throw new NotFoundException(response.getStatusLine().getStatusCode() + " - " + response.getStatusLine().getReasonPhrase());
 		} else {
 			throw new UnexpectedResponseCode(response.getStatusLine().getStatusCode() + " - " + response.getStatusLine().getReasonPhrase());
@@ -0,0 +1,86 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.http.cache;
+
+import lombok.Getter;
+
+/**
+ * A cached response body along with the validators and expiration needed to
+ * decide whether it can be served as-is or must be revalidated.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+@Getter
+class CachedResponse {
+
+	private final byte[] data;
+	private final String etag;
+	private final String lastModified;
+	private final long expires;
+
+	/**
+	 * Creates a cached response.
+	 * 
+	 * @param data
+	 *            The response body, required.
+	 * @param etag
+	 *            The ETag header, if any.
+	 * @param lastModified
+	 *            The Last-Modified header, if any.
+	 * @param expires
+	 *            The time in milliseconds after which this response must be
+	 *            revalidated.
+	 */
+	CachedResponse(final byte[] data, final String etag, final String lastModified, final long expires) {
+		this.data = data;
+		this.etag = etag;
+		this.lastModified = lastModified;
+		this.expires = expires;
+	}
+
+	/**
+	 * Is this response still fresh?
+	 * 
+	 * @param now
+	 *            The current time in milliseconds.
+	 * @return true if this response can be served without revalidation.
+	 */
+	boolean isFresh(final long now) {
+		return now < this.expires;
+	}
+
+	/**
+	 * Does this response have a validator to make a conditional request with?
+	 * 
+	 * @return true if there is an ETag or Last-Modified value.
+	 */
+	boolean isRevalidatable() {
+		return this.etag != null || this.lastModified != null;
+	}
+
+	/**
+	 * Returns a copy of this response with a new expiration, as after a 304.
+	 * 
+	 * @param newExpires
+	 *            The new expiration time in milliseconds.
+	 * @return A copy of this response with the new expiration.
+	 */
+	CachedResponse withExpires(final long newExpires) {
+		return new CachedResponse(this.data, this.etag, this.lastModified, newExpires);
+	}
+
+}
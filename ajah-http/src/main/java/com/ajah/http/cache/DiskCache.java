@@ -17,11 +17,15 @@ package com.ajah.http.cache;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Date;
+import java.util.Properties;
 import java.util.logging.Level;
 
 import lombok.extern.java.Log;
@@ -46,6 +50,97 @@ import com.ajah.util.io.file.FileUtils;
 @Log
 public class DiskCache implements HttpCache {
 
+	private static File getFile(final URI uri) {
+		final String path = FileHashUtils.getHashedFileName(SHA.sha1Hex(uri.toString()), 3, 2);
+		final File cacheDir = new File(Config.i.get("ajah.http.cache.dir", "/tmp/ajah-http-cache"));
+		return new File(cacheDir, path);
+	}
+
+	private static File getMetaFile(final File f) {
+		return new File(f.getPath() + ".meta");
+	}
+
+	/**
+	 * Reads a cached response along with its validators. Entries written by
+	 * {@link #getBytes(URI, long)}, which have no metadata, are returned as
+	 * already expired.
+	 * 
+	 * @param uri
+	 *            The URI to look up.
+	 * @return The cached response, or null if there is none.
+	 * @throws IOException
+	 *             If the cache could not be read.
+	 */
+	static CachedResponse read(final URI uri) throws IOException {
+		final File f = getFile(uri);
+		if (!f.exists()) {
+			return null;
+		}
+		final byte[] data = FileUtils.readFileAsBytes(f);
+		final File meta = getMetaFile(f);
+		if (!meta.exists()) {
+			return new CachedResponse(data, null, null, 0);
+		}
+		final Properties props = new Properties();
+		try (final InputStream in = new FileInputStream(meta)) {
+			props.load(in);
+		}
+		long expires = 0;
+		try {
+			expires = Long.parseLong(props.getProperty("expires", "0"));
+		} catch (final NumberFormatException e) {
+			log.warning("Invalid expiration in " + meta.getAbsolutePath());
+		}
+		return new CachedResponse(data, props.getProperty("etag"), props.getProperty("lastModified"), expires);
+	}
+
+	/**
+	 * Writes a response and its validators to the cache.
+	 * 
+	 * @param uri
+	 *            The URI the response was fetched from.
+	 * @param response
+	 *            The response to cache.
+	 * @throws IOException
+	 *             If the cache could not be written.
+	 */
+	static void write(final URI uri, final CachedResponse response) throws IOException {
+		final File f = getFile(uri);
+		final File meta = getMetaFile(f);
+		if (meta.exists() && !meta.delete()) {
+			throw new IOException("Could not delete " + meta.getAbsolutePath());
+		}
+		FileUtils.write(f, response.getData());
+		final Properties props = new Properties();
+		props.setProperty("expires", String.valueOf(response.getExpires()));
+		if (response.getEtag() != null) {
+			props.setProperty("etag", response.getEtag());
+		}
+		if (response.getLastModified() != null) {
+			props.setProperty("lastModified", response.getLastModified());
+		}
+		try (final OutputStream out = new FileOutputStream(meta)) {
+			props.store(out, uri.toString());
+		}
+	}
+
+	/**
+	 * Removes a URI's cached response and its metadata, if present.
+	 * 
+	 * @param uri
+	 *            The URI to remove.
+	 */
+	static void delete(final URI uri) {
+		final File f = getFile(uri);
+		if (f.exists() && !f.delete()) {
+			log.warning("Could not delete " + f.getAbsolutePath());
+		}
+		final File meta = getMetaFile(f);
+		if (meta.exists() && !meta.delete()) {
+			log.warning("Could not delete " + meta.getAbsolutePath());
+		}
+	}
+
 	/**
 	 * Fetches a URI as a string, with a cache expiration time.
 	 * 
@@ -87,11 +182,8 @@ public class DiskCache implements HttpCache {
 	 *             not handle.
 	 */
 	public static byte[] getBytes(final URI uri, final long maxAge) throws IOException, NotFoundException, UnexpectedResponseCode {
-		// TODO Add max-age
-		// IDEA Store expires header, check last-modified
-		final String path = FileHashUtils.getHashedFileName(SHA.sha1Hex(uri.toString()), 3, 2);
-		final File cacheDir = new File(Config.i.get("ajah.http.cache.dir", "/tmp/ajah-http-cache"));
-		final File f = new File(cacheDir, path);
+		// Use TieredCache for Cache-Control and conditional request support
+		final File f = getFile(uri);
 		log.finest("Cache location: " + f.getAbsolutePath());
 
 		byte[] data = null;
@@ -117,6 +209,12 @@ public class DiskCache implements HttpCache {
 		}
 
 		data = Http.getBytes(uri);
+		// Drop the validators of the previous copy first, so the new body is
+		// never read with them
+		final File meta = getMetaFile(f);
+		if (meta.exists() && !meta.delete()) {
+			throw new IOException("Could not delete " + meta.getAbsolutePath());
+		}
 		FileUtils.write(f, data);
 		return data;
 	}
@@ -0,0 +1,378 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.http.cache;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.util.EntityUtils;
+
+import com.ajah.cache.LruCache;
+import com.ajah.http.Http;
+import com.ajah.http.err.NotFoundException;
+import com.ajah.http.err.UnexpectedResponseCode;
+import com.ajah.util.config.Config;
+
+/**
+ * An {@link HttpCache} with a bounded in-memory LRU tier in front of the
+ * {@link DiskCache} tier. Freshness follows the Cache-Control (no-store,
+ * no-cache, max-age, s-maxage) and Expires headers, falling back to a default
+ * TTL. Stale entries with an ETag or Last-Modified value are revalidated with
+ * a conditional GET, so unchanged content is not downloaded again.
+ * 
+ * Concurrent requests for the same URI that miss the memory tier are
+ * collapsed into a single fetch whose result is shared by all of them.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+@Log
+public class TieredCache implements HttpCache {
+
+	private static final long NO_STORE = -1;
+
+	private final LruCache<String, CachedResponse> memory;
+	private final ConcurrentMap<String, FutureTask<CachedResponse>> inFlight = new ConcurrentHashMap<>();
+
+	@Getter
+	private final int maxEntrySize;
+	@Getter
+	private final long defaultTtl;
+	@Getter
+	private final boolean diskEnabled;
+
+	private final AtomicLong memoryHits = new AtomicLong();
+	private final AtomicLong diskHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong revalidated = new AtomicLong();
+	private final AtomicLong collapsed = new AtomicLong();
+
+	/**
+	 * Creates a cache configured by the ajah.http.cache.memory.entries,
+	 * ajah.http.cache.memory.maxEntrySize and ajah.http.cache.defaultTtl
+	 * properties, with the disk tier enabled.
+	 */
+	public TieredCache() {
+		this(Config.i.getInt("ajah.http.cache.memory.entries", 1000), Config.i.getInt("ajah.http.cache.memory.maxEntrySize", 1024 * 1024), Config.i.getLong(
+				"ajah.http.cache.defaultTtl", 5 * 60 * 1000L), true);
+	}
+
+	/**
+	 * Creates a cache.
+	 * 
+	 * @param maxEntries
+	 *            The maximum number of responses to hold in memory.
+	 * @param maxEntrySize
+	 *            The largest response, in bytes, to hold in memory. Larger
+	 *            responses are only cached on disk.
+	 * @param defaultTtl
+	 *            How long in milliseconds to consider a response fresh when
+	 *            the server does not say.
+	 * @param diskEnabled
+	 *            Whether to use the {@link DiskCache} tier.
+	 */
+	public TieredCache(final int maxEntries, final int maxEntrySize, final long defaultTtl, final boolean diskEnabled) {
+		this.memory = new LruCache<>(maxEntries);
+		this.maxEntrySize = maxEntrySize;
+		this.defaultTtl = defaultTtl;
+		this.diskEnabled = diskEnabled;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] getBytes(final URI uri) throws IOException, NotFoundException, UnexpectedResponseCode {
+		final String key = uri.toString();
+		final CachedResponse cached = this.memory.get(key);
+		if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+			this.memoryHits.incrementAndGet();
+			return cached.getData();
+		}
+		final FutureTask<CachedResponse> task = new FutureTask<>(new Callable<CachedResponse>() {
+
+			@Override
+			public CachedResponse call() throws Exception {
+				return load(uri, cached);
+			}
+		});
+		final FutureTask<CachedResponse> existing = this.inFlight.putIfAbsent(key, task);
+		if (existing != null) {
+			this.collapsed.incrementAndGet();
+			return await(existing).getData();
+		}
+		try {
+			task.run();
+			return await(task).getData();
+		} finally {
+			this.inFlight.remove(key, task);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String get(final URI uri) throws IOException, UnexpectedResponseCode, NotFoundException {
+		return new String(getBytes(uri), "UTF-8");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] getBytes(final String uri) throws IOException, NotFoundException, UnexpectedResponseCode, URISyntaxException {
+		return getBytes(new URI(uri));
+	}
+
+	/**
+	 * Removes a URI from both tiers of the cache.
+	 * 
+	 * @param uri
+	 *            The URI to remove.
+	 */
+	public void invalidate(final URI uri) {
+		this.memory.remove(uri.toString());
+		if (this.diskEnabled) {
+			DiskCache.delete(uri);
+		}
+	}
+
+	private static CachedResponse await(final FutureTask<CachedResponse> task) throws IOException, NotFoundException, UnexpectedResponseCode {
+		try {
+			return task.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.getMessage());
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof NotFoundException) {
+				throw (NotFoundException) cause;
+			} else if (cause instanceof UnexpectedResponseCode) {
+				throw (UnexpectedResponseCode) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	private CachedResponse load(final URI uri, final CachedResponse memoryCopy) throws IOException, NotFoundException, UnexpectedResponseCode {
+		final String key = uri.toString();
+		CachedResponse cached = memoryCopy;
+		if (cached == null && this.diskEnabled) {
+			cached = DiskCache.read(uri);
+			if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+				log.finest("Disk hit for " + uri);
+				this.diskHits.incrementAndGet();
+				promote(key, cached);
+				return cached;
+			}
+		}
+		final CachedResponse fetched = fetch(uri, cached);
+		if (fetched.getExpires() == NO_STORE) {
+			// Don't keep serving a copy the server no longer lets us store
+			this.memory.remove(key);
+			if (this.diskEnabled) {
+				DiskCache.delete(uri);
+			}
+			return fetched;
+		}
+		promote(key, fetched);
+		if (this.diskEnabled) {
+			try {
+				DiskCache.write(uri, fetched);
+			} catch (final IOException e) {
+				log.log(Level.WARNING, "Could not cache " + uri + ": " + e.getMessage(), e);
+			}
+		}
+		return fetched;
+	}
+
+	private void promote(final String key, final CachedResponse response) {
+		if (response.getData().length <= this.maxEntrySize) {
+			this.memory.put(key, response);
+		}
+	}
+
+	private CachedResponse fetch(final URI uri, final CachedResponse stale) throws IOException, NotFoundException, UnexpectedResponseCode {
+		final HttpGet get = new HttpGet(uri);
+		if (stale != null) {
+			if (stale.getEtag() != null) {
+				get.setHeader("If-None-Match", stale.getEtag());
+			}
+			if (stale.getLastModified() != null) {
+				get.setHeader("If-Modified-Since", stale.getLastModified());
+			}
+		}
+		try (final CloseableHttpResponse response = Http.getClient().execute(get)) {
+			final int status = response.getStatusLine().getStatusCode();
+			if (status == 304 && stale != null) {
+				log.finest("Not modified: " + uri);
+				this.revalidated.incrementAndGet();
+				EntityUtils.consume(response.getEntity());
+				return stale.withExpires(getExpires(response));
+			} else if (status == 200) {
+				log.finest("Cache miss; fetched " + uri);
+				this.misses.incrementAndGet();
+				final byte[] data = EntityUtils.toByteArray(response.getEntity());
+				return new CachedResponse(data, getHeader(response, "ETag"), getHeader(response, "Last-Modified"), getExpires(response));
+			}
+			EntityUtils.consume(response.getEntity());
+			if (status == 404) {
+				throw new NotFoundException(status + " - " + response.getStatusLine().getReasonPhrase());
+			}
+			throw new UnexpectedResponseCode(status + " - " + response.getStatusLine().getReasonPhrase());
+		}
+	}
+
+	private static String getHeader(final CloseableHttpResponse response, final String name) {
+		final Header header = response.getFirstHeader(name);
+		return header == null ? null : header.getValue();
+	}
+
+	/**
+	 * Determines when a response expires. Cache-Control takes precedence over
+	 * Expires, and s-maxage over max-age.
+	 * 
+	 * @param response
+	 *            The response.
+	 * @return The expiration time in milliseconds, or {@link #NO_STORE} if the
+	 *         response must not be cached.
+	 */
+	private long getExpires(final CloseableHttpResponse response) {
+		final long now = System.currentTimeMillis();
+		long maxAge = -1;
+		long sharedMaxAge = -1;
+		for (final Header header : response.getHeaders("Cache-Control")) {
+			for (final HeaderElement element : header.getElements()) {
+				final String name = element.getName().toLowerCase();
+				if ("no-store".equals(name)) {
+					return NO_STORE;
+				} else if ("no-cache".equals(name)) {
+					return now;
+				} else if ("max-age".equals(name)) {
+					maxAge = parseSeconds(element.getValue());
+				} else if ("s-maxage".equals(name)) {
+					sharedMaxAge = parseSeconds(element.getValue());
+				}
+			}
+		}
+		if (sharedMaxAge >= 0) {
+			return now + sharedMaxAge * 1000;
+		} else if (maxAge >= 0) {
+			return now + maxAge * 1000;
+		}
+		final String expires = getHeader(response, "Expires");
+		if (expires != null) {
+			final Date date = DateUtils.parseDate(expires);
+			// Unparseable values such as "0" mean already expired
+			return date == null ? now : date.getTime();
+		}
+		return now + this.defaultTtl;
+	}
+
+	private static long parseSeconds(final String value) {
+		if (value == null) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (final NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns the number of requests served from the memory tier.
+	 * 
+	 * @return The number of memory hits.
+	 */
+	public long getMemoryHits() {
+		return this.memoryHits.get();
+	}
+
+	/**
+	 * Returns the number of requests served from the disk tier.
+	 * 
+	 * @return The number of disk hits.
+	 */
+	public long getDiskHits() {
+		return this.diskHits.get();
+	}
+
+	/**
+	 * Returns the number of requests that downloaded a full response.
+	 * 
+	 * @return The number of misses.
+	 */
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	/**
+	 * Returns the number of stale responses that the server confirmed were
+	 * unchanged.
+	 * 
+	 * @return The number of 304 responses.
+	 */
+	public long getRevalidated() {
+		return this.revalidated.get();
+	}
+
+	/**
+	 * Returns the number of requests that waited on another thread's fetch of
+	 * the same URI instead of making their own.
+	 * 
+	 * @return The number of collapsed requests.
+	 */
+	public long getCollapsed() {
+		return this.collapsed.get();
+	}
+
+	/**
+	 * Returns the fraction of requests served from either tier without going
+	 * to the network.
+	 * 
+	 * @return The hit rate, between 0 and 1.
+	 */
+	public double getHitRate() {
+		final long hits = getMemoryHits() + getDiskHits();
+		final long total = hits + getMisses() + getRevalidated();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+}
@@ -34,7 +34,16 @@ public enum ExecutionStrategy implements IdentifiableEnum<String> {
 	/**
 	 * SERIAL_CONTINUE.
 	 */
-	SERIAL_CONTINUE("2", "src", "Serial (continue on error)", "If a task fails, continue the job.", false, false, false);
+	SERIAL_CONTINUE("2", "src", "Serial (continue on error)", "If a task fails, continue the job.", false, false, false),
+	/**
+	 * PARALLEL.
+	 */
+	PARALLEL("3", "par", "Parallel", "Run all tasks at once. If a task fails, continue the job.", false, false, false),
+	/**
+	 * DAG.
+	 */
+	DAG("4", "dag", "Dependency graph", "Run each task once the tasks it depends on have succeeded. If a task fails, skip the tasks that depend on it.", false,
+			false, false);
 
 	/**
 	 * Finds a AddressBookType that matches the id on id, name, or name().
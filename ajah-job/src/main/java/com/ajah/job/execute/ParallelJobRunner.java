@@ -0,0 +1,398 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.job.execute;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.EqualsAndHashCode;
+import lombok.extern.java.Log;
+
+import org.springframework.context.ApplicationContext;
+
+import com.ajah.job.ExecutionStrategy;
+import com.ajah.job.Job;
+import com.ajah.job.run.Run;
+import com.ajah.job.run.RunDurationExceededException;
+import com.ajah.job.run.data.RunManager;
+import com.ajah.job.task.JobTask;
+import com.ajah.job.task.JobTaskId;
+import com.ajah.job.task.TaskConfigurationException;
+import com.ajah.job.task.TaskDurationExceededException;
+import com.ajah.spring.jdbc.err.DataOperationException;
+
+/**
+ * Runs the tasks of a job concurrently on a bounded pool of threads. If
+ * dependencies are used ({@link ExecutionStrategy#DAG}), a task is started
+ * once every task in {@link JobTask#getDependencies()} has succeeded, and is
+ * skipped if any of them fails; otherwise ({@link ExecutionStrategy#PARALLEL})
+ * every task is started at once.
+ * 
+ * Tasks that run longer than their {@link JobTask#getMaxDuration()} are
+ * cancelled. If the run exceeds its own maximum duration, or a task fails and
+ * {@link #abortOnError} is true, every running task is cancelled and no more
+ * are started. Cancellation interrupts the task's thread, so tasks blocked on
+ * I/O that ignores interrupts may keep running in the background until they
+ * return.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+@EqualsAndHashCode(callSuper = true)
+@Log
+public class ParallelJobRunner extends AbstractJobRunner {
+
+	/**
+	 * The default maximum number of tasks run at once.
+	 */
+	public static final int DEFAULT_MAX_THREADS = 8;
+
+	private static final long CHECK_IN_INTERVAL = 1000;
+
+	private final boolean useDependencies;
+
+	private final boolean abortOnError;
+
+	private final int maxThreads;
+
+	private final boolean initialized = false;
+
+	/**
+	 * A task that has been submitted.
+	 */
+	private static final class RunningTask {
+
+		final JobTask jobTask;
+		volatile Date start;
+
+		RunningTask(final JobTask jobTask) {
+			this.jobTask = jobTask;
+		}
+
+	}
+
+	/**
+	 * Creates a runner with {@link #DEFAULT_MAX_THREADS} threads.
+	 * 
+	 * @param job
+	 *            The job to run.
+	 * @param applicationContext
+	 *            The context where beans can be fetched from.
+	 * @param useDependencies
+	 *            Should tasks wait for the tasks they depend on?
+	 * @param abortOnError
+	 *            Should the run be aborted if a task fails?
+	 */
+	public ParallelJobRunner(final Job job, final ApplicationContext applicationContext, final boolean useDependencies, final boolean abortOnError) {
+		this(job, applicationContext, useDependencies, abortOnError, DEFAULT_MAX_THREADS);
+	}
+
+	/**
+	 * Creates a runner.
+	 * 
+	 * @param job
+	 *            The job to run.
+	 * @param applicationContext
+	 *            The context where beans can be fetched from.
+	 * @param useDependencies
+	 *            Should tasks wait for the tasks they depend on?
+	 * @param abortOnError
+	 *            Should the run be aborted if a task fails?
+	 * @param maxThreads
+	 *            The maximum number of tasks to run at once.
+	 */
+	public ParallelJobRunner(final Job job, final ApplicationContext applicationContext, final boolean useDependencies, final boolean abortOnError, final int maxThreads) {
+		this.job = job;
+		this.applicationContext = applicationContext;
+		this.useDependencies = useDependencies;
+		this.abortOnError = abortOnError;
+		this.maxThreads = maxThreads;
+	}
+
+	/**
+	 * Runs a job.
+	 * 
+	 * @throws DataOperationException
+	 *             This is only thrown if there is a data error in configuring
+	 *             or starting the run, not within the actual tasks themselves.
+	 */
+	@Override
+	public void execute(final Run run) throws DataOperationException {
+		if (!this.initialized) {
+			init();
+		}
+		final RunManager runManager = this.applicationContext.getBean(RunManager.class);
+		runManager.start(run);
+		if (this.jobTasks == null || this.jobTasks.isEmpty()) {
+			runManager.complete(run);
+			return;
+		}
+
+		final Map<JobTaskId, Set<JobTaskId>> waitingOn = new LinkedHashMap<>();
+		final Map<JobTaskId, List<JobTask>> dependents = new HashMap<>();
+		final Deque<JobTask> ready = new ArrayDeque<>();
+		try {
+			plan(waitingOn, dependents, ready);
+		} catch (final TaskConfigurationException e) {
+			run.error(e);
+			runManager.complete(run);
+			return;
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.maxThreads, this.jobTasks.size()), new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "job-" + ParallelJobRunner.this.job.getId() + "-" + this.count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+
+		});
+		final CompletionService<RunningTask> completionService = new ExecutorCompletionService<>(executor);
+		final Map<Future<RunningTask>, RunningTask> running = new HashMap<>();
+		try {
+			while (!ready.isEmpty() || !running.isEmpty()) {
+				while (!ready.isEmpty()) {
+					final RunningTask task = new RunningTask(ready.poll());
+					running.put(completionService.submit(newCallable(run, task)), task);
+				}
+				final Future<RunningTask> future = completionService.poll(CHECK_IN_INTERVAL, TimeUnit.MILLISECONDS);
+				if (future != null) {
+					final RunningTask task = running.remove(future);
+					if (task != null && !complete(run, future, task)) {
+						if (this.abortOnError) {
+							abort(run, running);
+							break;
+						}
+						skipDependents(run, task.jobTask, dependents, waitingOn);
+					} else if (task != null) {
+						release(task.jobTask, dependents, waitingOn, ready);
+					}
+				}
+				if (!cancelOverdue(run, running, dependents, waitingOn) && this.abortOnError) {
+					abort(run, running);
+					break;
+				}
+				try {
+					checkIn(run, runManager);
+				} catch (final RunDurationExceededException e) {
+					run.error(e);
+					abort(run, running);
+					break;
+				}
+			}
+		} catch (final InterruptedException e) {
+			run.error(e);
+			abort(run, running);
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+		runManager.complete(run);
+	}
+
+	/**
+	 * Sets up and validates the tasks for this job.
+	 */
+	public void init() {
+		super.init(this.applicationContext);
+	}
+
+	private Callable<RunningTask> newCallable(final Run run, final RunningTask task) {
+		return new Callable<RunningTask>() {
+
+			@Override
+			public RunningTask call() throws Exception {
+				task.start = new Date();
+				task.jobTask.getTask().execute(run, task.jobTask, ParallelJobRunner.this.applicationContext);
+				run.taskTiming(task.jobTask, task.start, new Date());
+				return task;
+			}
+
+		};
+	}
+
+	/**
+	 * Builds the dependency graph and finds the tasks that can start
+	 * immediately. Fails if a task depends on a task that is not part of this
+	 * job, or if the dependencies form a cycle.
+	 */
+	private void plan(final Map<JobTaskId, Set<JobTaskId>> waitingOn, final Map<JobTaskId, List<JobTask>> dependents, final Deque<JobTask> ready)
+			throws TaskConfigurationException {
+		final Map<JobTaskId, JobTask> byId = new HashMap<>();
+		for (final JobTask jobTask : this.jobTasks) {
+			byId.put(jobTask.getId(), jobTask);
+		}
+		for (final JobTask jobTask : this.jobTasks) {
+			final Set<JobTaskId> dependencies = new HashSet<>();
+			if (this.useDependencies) {
+				for (final JobTaskId dependency : jobTask.getDependencies()) {
+					if (!byId.containsKey(dependency)) {
+						throw new TaskConfigurationException("Task " + jobTask.getId() + " depends on " + dependency + ", which is not an active task of job " + this.job.getId());
+					}
+					dependencies.add(dependency);
+					List<JobTask> list = dependents.get(dependency);
+					if (list == null) {
+						list = new ArrayList<>();
+						dependents.put(dependency, list);
+					}
+					list.add(jobTask);
+				}
+			}
+			if (dependencies.isEmpty()) {
+				ready.add(jobTask);
+			} else {
+				waitingOn.put(jobTask.getId(), dependencies);
+			}
+		}
+		// Kahn's algorithm, every task must be reachable from the ready set
+		final Map<JobTaskId, Integer> remaining = new HashMap<>();
+		for (final Map.Entry<JobTaskId, Set<JobTaskId>> entry : waitingOn.entrySet()) {
+			remaining.put(entry.getKey(), Integer.valueOf(entry.getValue().size()));
+		}
+		final Deque<JobTask> queue = new ArrayDeque<>(ready);
+		int reached = 0;
+		while (!queue.isEmpty()) {
+			final JobTask jobTask = queue.poll();
+			reached++;
+			final List<JobTask> children = dependents.get(jobTask.getId());
+			if (children != null) {
+				for (final JobTask child : children) {
+					final int left = remaining.get(child.getId()).intValue() - 1;
+					remaining.put(child.getId(), Integer.valueOf(left));
+					if (left == 0) {
+						queue.add(child);
+					}
+				}
+			}
+		}
+		if (reached < this.jobTasks.size()) {
+			throw new TaskConfigurationException("Task dependencies of job " + this.job.getId() + " contain a cycle");
+		}
+	}
+
+	/**
+	 * Handles a finished task.
+	 * 
+	 * @return true if the task succeeded.
+	 */
+	private static boolean complete(final Run run, final Future<RunningTask> future, final RunningTask task) throws InterruptedException {
+		try {
+			future.get();
+			return true;
+		} catch (final ExecutionException e) {
+			run.error(e.getCause());
+		} catch (final CancellationException e) {
+			log.fine("Task " + task.jobTask.getId() + " was cancelled");
+		}
+		return false;
+	}
+
+	/**
+	 * Starts any tasks that were only waiting on a task that has succeeded.
+	 */
+	private static void release(final JobTask jobTask, final Map<JobTaskId, List<JobTask>> dependents, final Map<JobTaskId, Set<JobTaskId>> waitingOn, final Deque<JobTask> ready) {
+		final List<JobTask> children = dependents.get(jobTask.getId());
+		if (children == null) {
+			return;
+		}
+		for (final JobTask child : children) {
+			final Set<JobTaskId> dependencies = waitingOn.get(child.getId());
+			if (dependencies != null) {
+				dependencies.remove(jobTask.getId());
+				if (dependencies.isEmpty()) {
+					waitingOn.remove(child.getId());
+					ready.add(child);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes every task that depends, directly or not, on a task that failed.
+	 */
+	private static void skipDependents(final Run run, final JobTask jobTask, final Map<JobTaskId, List<JobTask>> dependents, final Map<JobTaskId, Set<JobTaskId>> waitingOn) {
+		final List<JobTask> children = dependents.get(jobTask.getId());
+		if (children == null) {
+			return;
+		}
+		for (final JobTask child : children) {
+			if (waitingOn.remove(child.getId()) != null) {
+				run.debug("Skipping task " + child.getId() + " because task " + jobTask.getId() + " failed");
+				skipDependents(run, child, dependents, waitingOn);
+			}
+		}
+	}
+
+	/**
+	 * Cancels tasks that have run longer than their maximum duration.
+	 * 
+	 * @return true if no tasks were cancelled.
+	 */
+	private static boolean cancelOverdue(final Run run, final Map<Future<RunningTask>, RunningTask> running, final Map<JobTaskId, List<JobTask>> dependents,
+			final Map<JobTaskId, Set<JobTaskId>> waitingOn) {
+		boolean ok = true;
+		final Date now = new Date();
+		for (final Map.Entry<Future<RunningTask>, RunningTask> entry : new ArrayList<>(running.entrySet())) {
+			final RunningTask task = entry.getValue();
+			final Date start = task.start;
+			final long maxDuration = task.jobTask.getMaxDuration();
+			if (start != null && maxDuration > 0 && now.getTime() - start.getTime() > maxDuration) {
+				entry.getKey().cancel(true);
+				running.remove(entry.getKey());
+				run.error(new TaskDurationExceededException(start, now, maxDuration));
+				skipDependents(run, task.jobTask, dependents, waitingOn);
+				ok = false;
+			}
+		}
+		return ok;
+	}
+
+	/**
+	 * Cancels every running task.
+	 */
+	private static void abort(final Run run, final Map<Future<RunningTask>, RunningTask> running) {
+		for (final Map.Entry<Future<RunningTask>, RunningTask> entry : running.entrySet()) {
+			if (entry.getKey().cancel(true)) {
+				run.debug("Cancelled task " + entry.getValue().jobTask.getId());
+			}
+		}
+		running.clear();
+	}
+
+}
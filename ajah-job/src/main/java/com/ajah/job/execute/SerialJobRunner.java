@@ -15,6 +15,8 @@
  */
 package com.ajah.job.execute;
 
+import java.util.Date;
+
 import lombok.EqualsAndHashCode;
 
 import org.springframework.context.ApplicationContext;
@@ -61,7 +63,9 @@ public class SerialJobRunner extends AbstractJobRunner {
 		runManager.start(run);
 		for (final JobTask jobTask : this.jobTasks) {
 			try {
+				final Date start = new Date();
 				jobTask.getTask().execute(run, jobTask, this.applicationContext);
+				run.taskTiming(jobTask, start, new Date());
 				checkIn(run, runManager);
 			} catch (final Throwable t) {
 				run.error(t);
@@ -99,6 +99,12 @@ public class SimpleJobDispatcher implements JobDispatcher {
 		case SERIAL_CONTINUE:
 			jobRunner = new SerialJobRunner(job, this.applicationContext, false);
 			break;
+		case PARALLEL:
+			jobRunner = new ParallelJobRunner(job, this.applicationContext, false, false);
+			break;
+		case DAG:
+			jobRunner = new ParallelJobRunner(job, this.applicationContext, true, false);
+			break;
 		default:
 			job.setStatus(JobStatus.ERROR);
 			this.jobManager.save(job);
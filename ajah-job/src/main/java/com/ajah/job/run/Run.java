@@ -17,6 +17,8 @@ package com.ajah.job.run;
 
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.GeneratedValue;
 import javax.persistence.Transient;
@@ -28,6 +30,8 @@ import com.ajah.job.Job;
 import com.ajah.job.JobId;
 import com.ajah.job.run.data.RunMessageManager;
 import com.ajah.job.run.data.RunMetricManager;
+import com.ajah.job.task.JobTask;
+import com.ajah.job.task.JobTaskId;
 import com.ajah.spring.jdbc.err.DataOperationException;
 import com.ajah.util.Identifiable;
 
@@ -62,6 +66,12 @@ public class Run implements Identifiable<RunId> {
 	@Transient
 	Job job;
 
+	/**
+	 * How long each task took in this run, in milliseconds.
+	 */
+	@Transient
+	private final Map<JobTaskId, Long> taskDurations = new ConcurrentHashMap<>();
+
 	/**
 	 * Create a {@link RunMessageType#DEBUG} {@link RunMessage}.
 	 * 
@@ -90,6 +100,23 @@ public class Run implements Identifiable<RunId> {
 		}
 	}
 
+	/**
+	 * Records how long a task took, in {@link #getTaskDurations()} and as a
+	 * {@link RunMetric} named "task.[jobTaskId].duration".
+	 * 
+	 * @param jobTask
+	 *            The task that was executed.
+	 * @param start
+	 *            When the task started.
+	 * @param end
+	 *            When the task finished.
+	 */
+	public void taskTiming(final JobTask jobTask, final Date start, final Date end) {
+		final long duration = end.getTime() - start.getTime();
+		this.taskDurations.put(jobTask.getId(), Long.valueOf(duration));
+		metric("task." + jobTask.getId() + ".duration", BigDecimal.valueOf(duration), false);
+	}
+
 	/**
 	 * Create a {@link RunMetric}.
 	 * 
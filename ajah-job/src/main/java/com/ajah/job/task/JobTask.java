@@ -15,16 +15,21 @@
  */
 package com.ajah.job.task;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 import javax.persistence.Table;
 import javax.persistence.Transient;
 
 import lombok.Data;
 
+import com.ajah.job.ExecutionStrategy;
 import com.ajah.job.Job;
 import com.ajah.job.JobId;
 import com.ajah.util.Identifiable;
+import com.ajah.util.StringUtils;
 
 /**
  * A configurable association between a {@link Job} and a {@link Task}.
@@ -46,8 +51,31 @@ public class JobTask implements Identifiable<JobTaskId> {
 	private Date created;
 	private Date modified;
 	private long maxDuration;
+	/**
+	 * Comma-separated IDs of the {@link JobTask}s in the same job that must
+	 * succeed before this one runs. Only used by {@link ExecutionStrategy#DAG}.
+	 */
+	private String dependsOn;
 
 	@Transient
 	private Task task;
 
+	/**
+	 * Parses {@link #dependsOn}.
+	 * 
+	 * @return The IDs of the tasks this task depends on, will not be null.
+	 */
+	public List<JobTaskId> getDependencies() {
+		if (StringUtils.isBlank(this.dependsOn)) {
+			return Collections.emptyList();
+		}
+		final List<JobTaskId> dependencies = new ArrayList<>();
+		for (final String id : this.dependsOn.split(",")) {
+			if (!StringUtils.isBlank(id)) {
+				dependencies.add(new JobTaskId(id.trim()));
+			}
+		}
+		return dependencies;
+	}
+
 }
@@ -25,4 +25,11 @@ public class TaskConfigurationException extends RuntimeException {
 		super(t);
 	}
 
+	/**
+	 * @see RuntimeException#RuntimeException(String)
+	 */
+	public TaskConfigurationException(final String message) {
+		super(message);
+	}
+
 }
@@ -61,6 +61,17 @@ public class AjahMessageId implements Serializable, ToStringable, FromStringable
 		return this.id.equals(other.id);
 	}
 
+	/**
+	 * Compares the wrapped string values, so that equal IDs match as map and
+	 * set keys.
+	 * 
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object other) {
+		return other instanceof AjahMessageId && equals((AjahMessageId) other);
+	}
+
 	/**
 	 * Returns the String passed into the constructor.
 	 * 
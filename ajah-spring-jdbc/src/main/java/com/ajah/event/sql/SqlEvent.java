@@ -30,7 +30,13 @@ import com.ajah.event.Event;
 @Data
 public class SqlEvent implements Event<SqlEventId> {
 
+	private long start;
+	private long end;
 	private SqlEventId id;
+	private String table;
+	private String sql;
+	private int rows;
+	private String error;
 
 	@Override
 	public void complete() {
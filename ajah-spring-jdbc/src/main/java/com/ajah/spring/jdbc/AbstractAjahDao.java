@@ -15,13 +15,12 @@
  */
 package com.ajah.spring.jdbc;
 
-import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.math.BigDecimal;
@@ -34,10 +33,21 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Date;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -54,12 +64,21 @@ import org.joda.time.format.DateTimeFormatter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCountCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlProvider;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.ajah.spring.jdbc.cache.Cached;
+import com.ajah.spring.jdbc.cache.EntityCache;
+import com.ajah.spring.jdbc.cache.LruEntityCache;
 import com.ajah.spring.jdbc.criteria.Criteria;
 import com.ajah.spring.jdbc.criteria.Limit;
 import com.ajah.spring.jdbc.criteria.Order;
@@ -67,14 +86,20 @@ import com.ajah.spring.jdbc.criteria.Where;
 import com.ajah.spring.jdbc.err.DataObjectCreationException;
 import com.ajah.spring.jdbc.err.DataOperationException;
 import com.ajah.spring.jdbc.err.DataOperationExceptionUtils;
+import com.ajah.spring.jdbc.err.UnknownDataOperationException;
+import com.ajah.spring.jdbc.mapper.ColumnMapping;
+import com.ajah.spring.jdbc.mapper.EntityMapper;
+import com.ajah.spring.jdbc.metrics.MetricsJdbcTemplate;
+import com.ajah.spring.jdbc.replica.ReplicaManager;
+import com.ajah.spring.jdbc.shard.ShardCallback;
+import com.ajah.spring.jdbc.shard.ShardManager;
 import com.ajah.spring.jdbc.util.JDBCMapperUtils;
 import com.ajah.util.AjahUtils;
-import com.ajah.util.ArrayUtils;
 import com.ajah.util.Identifiable;
 import com.ajah.util.StringUtils;
 import com.ajah.util.ToStringable;
 import com.ajah.util.data.Audited;
-import com.ajah.util.reflect.IntrospectionUtils;
+import com.ajah.util.lang.NameValuePair;
 import com.ajah.util.reflect.ReflectionUtils;
 
 /**
@@ -98,6 +123,37 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 
 	private static final DateTimeFormatter LOCAL_DATE_FORMAT = DateTimeFormat.forPattern("yyyy-MM-dd");
 
+	/**
+	 * The maximum number of distinct statement shapes cached per DAO, so that
+	 * callers building SQL from unbounded input cannot exhaust memory.
+	 */
+	private static final int MAX_CACHED_STATEMENTS = 1000;
+
+	/**
+	 * A statement creator that exposes its SQL, so that it is recorded by
+	 * {@link MetricsJdbcTemplate} under its own statement shape.
+	 */
+	private abstract static class SqlStatementCreator implements PreparedStatementCreator, SqlProvider {
+
+		private final String sql;
+
+		SqlStatementCreator(final String sql) {
+			this.sql = sql;
+		}
+
+		@Override
+		public String getSql() {
+			return this.sql;
+		}
+
+	}
+
+	private static void cacheStatement(final Map<String, String> cache, final String clauses, final String sql) {
+		if (cache.size() < MAX_CACHED_STATEMENTS) {
+			cache.put(clauses, sql);
+		}
+	}
+
 	private static String getFieldsClause(final String[] fields) {
 		final StringBuffer stringBuffer = new StringBuffer();
 		boolean first = true;
@@ -179,6 +235,12 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 		}
 	}
 
+	protected static void setPreparedStatement(final PreparedStatement ps, final Object[] values) throws SQLException {
+		for (int i = 0; i < values.length; i++) {
+			setPreparedStatement(ps, i + 1, values[i]);
+		}
+	}
+
 	private final Map<String, Field> colMap = new HashMap<>();
 
 	private List<String> columns;
@@ -203,6 +265,52 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 
 	private Boolean autoIdAssign;
 
+	private EntityMapper<T> entityMapper;
+
+	private final Map<String, PropertyDescriptor> propMap = new HashMap<>();
+
+	private int batchSize = 500;
+
+	private int fetchSize = Integer.MIN_VALUE;
+
+	private volatile EntityCache<K, T> cache;
+
+	private volatile boolean cacheCreated;
+
+	/**
+	 * Incremented on every invalidation, so that a load can tell whether the
+	 * row it read may have been written while it was reading.
+	 */
+	private final AtomicLong cacheGeneration = new AtomicLong();
+
+	/**
+	 * When this DAO last wrote, in milliseconds, so that replica reads that
+	 * may predate the write are not cached.
+	 */
+	private volatile long lastWrite;
+
+	private ShardManager shardManager;
+
+	private ReplicaManager replicaManager;
+
+	private String selectPrefix;
+
+	private String loadStatement;
+
+	private String insertStatement;
+
+	private String updateStatement;
+
+	private String deleteStatement;
+
+	private final Map<String, String> selectStatements = new ConcurrentHashMap<>();
+
+	private final Map<String, String> countStatements = new ConcurrentHashMap<>();
+
+	private final Map<Integer, String> findByIdsStatements = new ConcurrentHashMap<>();
+
+	private ExecutorService queryExecutor;
+
 	/**
 	 * Will automatically fill in properties from the result set. Currently
 	 * supports:
@@ -215,81 +323,57 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 	 *             If the {@link ResultSet} throws it.
 	 * 
 	 * @see com.ajah.spring.jdbc.AjahDao#autoPopulate(Identifiable, ResultSet)
+	 * @see EntityMapper#populate(Object, ResultSet)
 	 */
 	@Override
 	public void autoPopulate(final T entity, final ResultSet rs) throws SQLException {
-		try {
-			final BeanInfo componentBeanInfo = Introspector.getBeanInfo(entity.getClass());
-			final PropertyDescriptor[] props = componentBeanInfo.getPropertyDescriptors();
-			for (final PropertyDescriptor prop : props) {
-				log.finest("PropertyDescriptor: " + prop.getName() + ", Setter: " + (prop.getWriteMethod() == null ? null : prop.getWriteMethod().getName()) + " Getter: "
-						+ (prop.getReadMethod() == null ? null : prop.getReadMethod().getName()));
-			}
-			for (final String column : getColumns()) {
-				final Field field = this.colMap.get(column);
-				if (field == null) {
-					log.warning("No field mapped for column: " + column);
-				} else if (rs.getObject(column) == null) {
-					propSet(entity, getProp(field, props), null);
-				} else if (IntrospectionUtils.isString(field)) {
-					propSet(entity, getProp(field, props), rs.getString(column));
-				} else if (IntrospectionUtils.isDate(field)) {
-					propSet(entity, getProp(field, props), new Date(rs.getLong(column)));
-				} else if (IntrospectionUtils.isFromStringable(field)) {
-					propSet(entity, getProp(field, props), field.getType().getConstructor(String.class).newInstance(rs.getString(column)));
-				} else if (IntrospectionUtils.isIdentifiableEnum(field)) {
-					propSet(entity, getProp(field, props), ReflectionUtils.findEnumById(field, rs.getString(column)));
-				} else if (IntrospectionUtils.isInt(field)) {
-					if (rs.getObject(column) == null && IntrospectionUtils.isPrimitive(field)) {
-						log.warning("Attempting to set a null value on a primitive int field, using zero");
-						propSet(entity, getProp(field, props), Integer.valueOf(0));
-					} else {
-						propSet(entity, getProp(field, props), Integer.valueOf(rs.getInt(column)));
-					}
-				} else if (IntrospectionUtils.isLong(field)) {
-					if (rs.getObject(column) == null && IntrospectionUtils.isPrimitive(field)) {
-						log.warning("Attempting to set a null value on a primitive long field, using zero");
-						propSet(entity, getProp(field, props), Long.valueOf(0));
-					} else {
-						propSet(entity, getProp(field, props), Long.valueOf(rs.getLong(column)));
-					}
-				} else if (IntrospectionUtils.isBoolean(field)) {
-					propSet(entity, getProp(field, props), Boolean.valueOf(rs.getBoolean(column)));
-				} else if (IntrospectionUtils.isEnum(field)) {
-					log.warning("Can't handle non-Identifiable enum for column " + column + " [" + field.getType() + "]");
-				} else if (BigDecimal.class.isAssignableFrom(field.getType())) {
-					final BigDecimal bigDecimal = rs.getBigDecimal(column);
-					propSet(entity, getProp(field, props), bigDecimal);
-				} else if (LocalDate.class.isAssignableFrom(field.getType())) {
-					if (!StringUtils.isBlank(rs.getString(column))) {
-						final int[] parts = ArrayUtils.parseInt(rs.getString(column).split("-"));
-						final LocalDate localDate = new LocalDate(parts[0], parts[1], parts[2]);
-						propSet(entity, getProp(field, props), localDate);
-					}
-				} else {
-					log.warning("Can't handle auto-populating of column " + column + " of type " + field.getType());
-				}
-			}
-		} catch (final IntrospectionException e) {
-			log.log(Level.SEVERE, entity.getClass().getName() + ": " + e.getMessage(), e);
-		} catch (final SecurityException e) {
-			log.log(Level.SEVERE, entity.getClass().getName() + ": " + e.getMessage(), e);
-		} catch (final InstantiationException e) {
-			log.log(Level.SEVERE, entity.getClass().getName() + ": " + e.getMessage(), e);
-		} catch (final IllegalAccessException e) {
-			log.log(Level.SEVERE, entity.getClass().getName() + ": " + e.getMessage(), e);
-		} catch (final InvocationTargetException e) {
-			log.log(Level.SEVERE, entity.getClass().getName() + ": " + e.getMessage(), e);
-		} catch (final NoSuchMethodException e) {
-			log.log(Level.SEVERE, entity.getClass().getName() + ": " + e.getMessage(), e);
+		getEntityMapper().populate(entity, rs);
+	}
+
+	/**
+	 * Creates the cache used by {@link #load(Comparable)} and
+	 * {@link #findByIds(Collection)}. By default this returns an
+	 * {@link LruEntityCache} if the DAO class is annotated with {@link Cached},
+	 * otherwise null. Subclasses may override this to supply a different
+	 * cache.
+	 * 
+	 * @return The cache to use, or null if entities should not be cached.
+	 */
+	protected EntityCache<K, T> createCache() {
+		final Cached cached = getClass().getAnnotation(Cached.class);
+		if (cached == null) {
+			return null;
 		}
+		log.fine("Caching up to " + cached.maxSize() + " entities for " + getClass().getSimpleName());
+		return new LruEntityCache<>(cached.maxSize(), cached.ttl() * 1000L);
 	}
 
 	protected int count(final Criteria criteria) throws DataOperationException {
 		try {
-			final String sql = "SELECT COUNT(*) FROM `" + getTableName() + "`" + criteria.getWhere().getSql();
+			final Where where = criteria.getWhere();
+			String cachedSql = this.countStatements.get(where.getSql());
+			if (cachedSql == null) {
+				cachedSql = "SELECT COUNT(*) FROM `" + getTableName() + "`" + where.getSql();
+				cacheStatement(this.countStatements, where.getSql(), cachedSql);
+			}
+			final String sql = cachedSql;
 			sqlLog.finest(sql);
-			return getJdbcTemplate().queryForObject(sql, criteria.getWhere().getValues().toArray(), Integer.class).intValue();
+			final Object[] values = where.getValues().toArray();
+			if (isSharded()) {
+				int count = 0;
+				for (final Integer shardCount : this.shardManager.scatter(new ShardCallback<Integer>() {
+
+					@Override
+					public Integer doInShard(final JdbcTemplate jdbcTemplate) {
+						return jdbcTemplate.queryForObject(sql, values, Integer.class);
+					}
+
+				})) {
+					count += shardCount.intValue();
+				}
+				return count;
+			}
+			return getReadJdbcTemplate().queryForObject(sql, values, Integer.class).intValue();
 		} catch (final EmptyResultDataAccessException e) {
 			log.fine(e.getMessage());
 			return 0;
@@ -301,7 +385,7 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 	protected long count(final String sql) throws DataOperationException {
 		try {
 			sqlLog.finest(sql);
-			return getJdbcTemplate().queryForObject(sql, Integer.class).intValue();
+			return getReadJdbcTemplate().queryForObject(sql, Integer.class).intValue();
 		} catch (final EmptyResultDataAccessException e) {
 			log.fine(e.getMessage());
 			return 0;
@@ -351,10 +435,33 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 	 */
 	public DataOperationResult<T> deleteById(final K id) throws DataOperationException {
 		AjahUtils.requireParam(id, "id");
+		invalidate(id);
+		markWrite();
 		try {
-			return new DataOperationResult<>(null, getJdbcTemplate().update("DELETE FROM `" + getTableName() + "` WHERE " + getTableName() + "_id = ?", new Object[] { id.toString() }));
+			if (this.deleteStatement == null) {
+				this.deleteStatement = "DELETE FROM `" + getTableName() + "` WHERE " + getTableName() + "_id = ?";
+			}
+			final String sql = this.deleteStatement;
+			final JdbcTemplate jdbcTemplate = getJdbcTemplateForId(id);
+			if (jdbcTemplate == null && isSharded()) {
+				int rows = 0;
+				for (final Integer shardRows : this.shardManager.scatter(new ShardCallback<Integer>() {
+
+					@Override
+					public Integer doInShard(final JdbcTemplate shardJdbcTemplate) {
+						return Integer.valueOf(shardJdbcTemplate.update(sql, id.toString()));
+					}
+
+				})) {
+					rows += shardRows.intValue();
+				}
+				return new DataOperationResult<>(null, rows);
+			}
+			return new DataOperationResult<>(null, jdbcTemplate.update(sql, new Object[] { id.toString() }));
 		} catch (final DataAccessException e) {
 			throw DataOperationExceptionUtils.translate(e, getTableName());
+		} finally {
+			invalidateWritten(Collections.singletonList(id));
 		}
 
 	}
@@ -451,8 +558,7 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 			throw new IllegalArgumentException("Cannot use singular find method with a limit greater than 1 (" + limit.getCount() + ")");
 		}
 		try {
-			final String sql = "SELECT " + getSelectFields() + " FROM `" + getTableName() + "`" + where.getSql() + (StringUtils.isBlank(orderBySql) ? "" : orderBySql)
-					+ (limit == null ? " LIMIT 1" : " " + limit.getSql());
+			final String sql = getSelectSql(where.getSql() + (StringUtils.isBlank(orderBySql) ? "" : orderBySql) + (limit == null ? " LIMIT 1" : " " + limit.getSql()));
 			final Object[] values = where.getValues().toArray();
 			if (sqlLog.isLoggable(Level.FINEST)) {
 				sqlLog.finest(sql);
@@ -461,7 +567,7 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 					sqlLog.finest("value " + i + ": " + values[i].toString());
 				}
 			}
-			return getJdbcTemplate().queryForObject(sql, values, getRowMapper());
+			return getReadJdbcTemplate().queryForObject(sql, values, getRowMapper());
 		} catch (final EmptyResultDataAccessException e) {
 			return null;
 		} catch (final DataAccessException e) {
@@ -484,7 +590,7 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 		AjahUtils.requireParam(field, "field");
 		AjahUtils.requireParam(value, "value");
 		try {
-			return getJdbcTemplate().queryForObject("SELECT " + getSelectFields() + " FROM `" + getTableName() + "` WHERE " + field + " = ?", new Object[] { value }, getRowMapper());
+			return getReadJdbcTemplate().queryForObject(getSelectPrefix() + " WHERE " + field + " = ?", new Object[] { value }, getRowMapper());
 		} catch (final EmptyResultDataAccessException e) {
 			return null;
 		} catch (final DataAccessException e) {
@@ -508,14 +614,14 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 		AjahUtils.requireParam(values, "values");
 		try {
 			// TODO Optimize for single values
-			final String sql = "SELECT " + getSelectFields() + " FROM `" + getTableName() + "` WHERE " + getFieldsClause(fields);
+			final String sql = getSelectPrefix() + " WHERE " + getFieldsClause(fields);
 			if (sqlLog.isLoggable(Level.FINEST)) {
 				sqlLog.finest(sql);
 				for (final Object value : values) {
 					log.finest(value.toString());
 				}
 			}
-			return getJdbcTemplate().queryForObject(sql, values, getRowMapper());
+			return getReadJdbcTemplate().queryForObject(sql, values, getRowMapper());
 		} catch (final EmptyResultDataAccessException e) {
 			log.fine(e.getMessage());
 			return null;
@@ -525,44 +631,21 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 	}
 
 	/**
-	 * Find a collections of entities by their unique ID.
+	 * Find a collection of entities by their unique ID. Duplicate IDs are
+	 * ignored, and IDs are queried in {@code IN} lists of at most
+	 * {@link #getBatchSize()} IDs. If this DAO has an entity cache, only the
+	 * IDs that are not cached are queried for.
 	 * 
 	 * @param ids
 	 *            Values to match against the entity.entity_id column, required.
-	 * @return Entity if found, otherwise null.
+	 * @return The entities that were found, in the order of their IDs in the
+	 *         collection. IDs that were not found are skipped.
 	 * @throws DataOperationException
 	 *             If the query could not be executed
+	 * @see #findMapByIds(Collection)
 	 */
 	public List<T> findByIds(final Collection<K> ids) throws DataOperationException {
-		AjahUtils.requireParam(ids, "ids");
-		try {
-			final StringBuffer sql = new StringBuffer();
-			sql.append("SELECT " + getSelectFields() + " FROM `" + getTableName() + "` WHERE ");
-			boolean first = true;
-			final String[] idArray = new String[ids.size()];
-			int i = 0;
-			for (final K id : ids) {
-				if (first) {
-					first = false;
-				} else {
-					sql.append(" OR ");
-				}
-				sql.append(getTableName() + "_id = ?");
-				idArray[i++] = id.toString();
-			}
-			if (sqlLog.isLoggable(Level.FINEST)) {
-				log.finest(sql.toString());
-				for (final Object value : ids) {
-					log.finest(value.toString());
-				}
-			}
-			return getJdbcTemplate().query(sql.toString(), idArray, getRowMapper());
-		} catch (final EmptyResultDataAccessException e) {
-			log.fine(e.getMessage());
-			return null;
-		} catch (final DataAccessException e) {
-			throw DataOperationExceptionUtils.translate(e, getTableName());
-		}
+		return new ArrayList<>(findMapByIds(ids).values());
 	}
 
 	/**
@@ -577,9 +660,9 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 	public T findByWhere(final String where) throws DataOperationException {
 		AjahUtils.requireParam(where, "where");
 		try {
-			final String sql = "SELECT " + getSelectFields() + " FROM `" + getTableName() + "` WHERE " + where + " LIMIT 1";
+			final String sql = getSelectPrefix() + " WHERE " + where + " LIMIT 1";
 			sqlLog.finest(sql);
-			return getJdbcTemplate().queryForObject(sql, null, getRowMapper());
+			return getReadJdbcTemplate().queryForObject(sql, null, getRowMapper());
 		} catch (final EmptyResultDataAccessException e) {
 			return null;
 		} catch (final DataAccessException e) {
@@ -587,6 +670,130 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 		}
 	}
 
+	/**
+	 * Find a collection of entities by their unique ID, keyed by ID. Duplicate
+	 * IDs are ignored, and IDs are queried in {@code IN} lists of at most
+	 * {@link #getBatchSize()} IDs. If a query executor has been set, the lists
+	 * are queried in parallel. If this DAO has an entity cache, only the IDs
+	 * that are not cached are queried for. If this DAO is sharded, each ID is
+	 * queried on its own shard, or on every shard if the ID does not
+	 * determine the shard.
+	 * 
+	 * @param ids
+	 *            Values to match against the entity.entity_id column, required.
+	 * @return The entities that were found, keyed by ID, in the order of their
+	 *         IDs in the collection. IDs that were not found are not present.
+	 * @throws DataOperationException
+	 *             If the query could not be executed
+	 * @see #setQueryExecutor(ExecutorService)
+	 */
+	public Map<K, T> findMapByIds(final Collection<K> ids) throws DataOperationException {
+		AjahUtils.requireParam(ids, "ids");
+		final Set<K> uniqueIds = new LinkedHashSet<>(ids);
+		final EntityCache<K, T> entityCache = getCache();
+		final Map<K, T> found = new HashMap<>(uniqueIds.size() * 2);
+		final List<K> missingIds = new ArrayList<>(uniqueIds.size());
+		final long generation = this.cacheGeneration.get();
+		for (final K id : uniqueIds) {
+			AjahUtils.requireParam(id, "id");
+			final T entity = entityCache == null ? null : entityCache.get(id);
+			if (entity == null) {
+				missingIds.add(id);
+			} else {
+				found.put(id, entity);
+			}
+		}
+		if (!missingIds.isEmpty()) {
+			final JdbcTemplate template = isSharded() ? null : getReadJdbcTemplate();
+			final boolean fromReplica = isReplica(template);
+			final List<T> loaded = template == null ? queryByIdsSharded(missingIds) : queryByIds(template, missingIds);
+			for (final T entity : loaded) {
+				found.put(entity.getId(), entity);
+				if (entityCache != null) {
+					cacheLoaded(entityCache, entity, generation, fromReplica);
+				}
+			}
+		}
+		final Map<K, T> results = new LinkedHashMap<>(found.size() * 2);
+		for (final K id : uniqueIds) {
+			final T entity = found.get(id);
+			if (entity != null) {
+				results.put(id, entity);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Streams every entity matching the criteria to a handler, one row at a
+	 * time, over a forward-only, read-only cursor. Rows are not accumulated, so
+	 * memory use is constant regardless of the size of the result. The
+	 * connection is held until the last row has been handled.
+	 * 
+	 * @param criteria
+	 *            The criteria object to use to build the query, required.
+	 * @param handler
+	 *            The handler to pass each entity to, required.
+	 * @return The number of entities handled.
+	 * @throws DataOperationException
+	 *             If an error occurs executing the query.
+	 * @see #setFetchSize(int)
+	 */
+	public long forEach(final Criteria criteria, final EntityHandler<T> handler) throws DataOperationException {
+		AjahUtils.requireParam(criteria, "criteria");
+		AjahUtils.requireParam(handler, "handler");
+		final Where where = criteria.getWhere();
+		final String sql = getSelectSql(criteria.getClausesSql());
+		final Object[] values = where.getValues().toArray();
+		if (sqlLog.isLoggable(Level.FINEST)) {
+			sqlLog.finest(sql);
+			log.finest(where.getValues().toString());
+		}
+		final RowMapper<T> rowMapper = getRowMapper();
+		final RowCountCallbackHandler rowHandler = new RowCountCallbackHandler() {
+
+			@Override
+			protected void processRow(final ResultSet rs, final int rowNum) throws SQLException {
+				handler.handle(rowMapper.mapRow(rs, rowNum));
+			}
+
+		};
+		try {
+			getReadJdbcTemplate().query(new SqlStatementCreator(sql) {
+
+				@Override
+				public PreparedStatement createPreparedStatement(final Connection connection) throws SQLException {
+					final PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+					ps.setFetchSize(AbstractAjahDao.this.fetchSize);
+					setPreparedStatement(ps, values);
+					return ps;
+				}
+
+			}, rowHandler);
+			return rowHandler.getRowCount();
+		} catch (final DataAccessException e) {
+			throw DataOperationExceptionUtils.translate(e, getTableName());
+		}
+	}
+
+	/**
+	 * Returns the entity cache for this DAO, creating it with
+	 * {@link #createCache()} on first use.
+	 * 
+	 * @return The entity cache, or null if this DAO does not cache entities.
+	 */
+	public EntityCache<K, T> getCache() {
+		if (!this.cacheCreated) {
+			synchronized (this) {
+				if (!this.cacheCreated) {
+					this.cache = createCache();
+					this.cacheCreated = true;
+				}
+			}
+		}
+		return this.cache;
+	}
+
 	/**
 	 * Returns the list of columns for this class.
 	 * 
@@ -600,6 +807,29 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 		return this.columns;
 	}
 
+	/**
+	 * Returns the mapper used to populate entities from result sets. It is
+	 * built once, along with the column list.
+	 * 
+	 * @return The entity mapper for this class, will not be null.
+	 */
+	@Override
+	public EntityMapper<T> getEntityMapper() {
+		if (this.entityMapper == null) {
+			loadColumns();
+		}
+		return this.entityMapper;
+	}
+
+	/**
+	 * Returns the fetch size used by {@link #forEach(Criteria, EntityHandler)}.
+	 * 
+	 * @return The fetch size.
+	 */
+	public int getFetchSize() {
+		return this.fetchSize;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -638,37 +868,32 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 
 	Object[] getInsertValues(final T entity) {
 		final Object[] values = new Object[getInsertColumns().size()];
-		try {
-			final BeanInfo componentBeanInfo = Introspector.getBeanInfo(entity.getClass());
-			final PropertyDescriptor[] props = componentBeanInfo.getPropertyDescriptors();
-			for (int i = 0; i < values.length; i++) {
-				final Field field = this.colMap.get(this.insertColumns.get(i));
-				if (field == null) {
-					throw new IllegalArgumentException("Field " + this.insertColumns.get(i) + " not found");
-				}
-				if (Modifier.isStatic(field.getModifiers())) {
-					continue;
-				}
-				if (LocalDate.class.isAssignableFrom(field.getType())) {
-					final LocalDate localDate = (LocalDate) ReflectionUtils.propGetSafe(entity, getProp(field, props));
-					if (localDate != null) {
-						values[i] = localDate.toString(LOCAL_DATE_FORMAT);
-					} else {
-						values[i] = null;
-					}
-				} else {
-					values[i] = ReflectionUtils.propGetSafeAuto(entity, field, getProp(field, props));
-				}
-				if (sqlLog.isLoggable(Level.FINEST)) {
-					log.finest(field.getName() + " set to " + values[i]);
-				}
+		for (int i = 0; i < values.length; i++) {
+			final Field field = this.colMap.get(this.insertColumns.get(i));
+			if (field == null) {
+				throw new IllegalArgumentException("Field " + this.insertColumns.get(i) + " not found");
+			}
+			if (Modifier.isStatic(field.getModifiers())) {
+				continue;
+			}
+			values[i] = getValue(entity, field, this.insertColumns.get(i));
+			if (sqlLog.isLoggable(Level.FINEST)) {
+				log.finest(field.getName() + " set to " + values[i]);
 			}
-		} catch (final IntrospectionException e) {
-			log.log(Level.SEVERE, entity.getClass().getName() + ": " + e.getMessage(), e);
 		}
 		return values;
 	}
 
+	/**
+	 * Returns the number of rows sent to the database in a single batch by
+	 * {@link #insertAll(Collection)} and {@link #updateAll(Collection)}.
+	 * 
+	 * @return The batch size.
+	 */
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+
 	/**
 	 * Returns the Spring JDBC template.
 	 * 
@@ -678,6 +903,111 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 		return this.jdbcTemplate;
 	}
 
+	/**
+	 * Returns the Spring JDBC template to use for reads. This is a replica if
+	 * this DAO has a {@link ReplicaManager} with a healthy replica, the
+	 * current thread has not written recently and is not in a transaction,
+	 * otherwise it is the primary.
+	 * 
+	 * @return The Spring JDBC template to read from, may be null.
+	 */
+	protected JdbcTemplate getReadJdbcTemplate() {
+		// A transaction must see its own uncommitted writes
+		if (this.replicaManager != null && !TransactionSynchronizationManager.isActualTransactionActive()) {
+			final JdbcTemplate replicaJdbcTemplate = this.replicaManager.getJdbcTemplate();
+			if (replicaJdbcTemplate != null) {
+				return replicaJdbcTemplate;
+			}
+		}
+		return this.jdbcTemplate;
+	}
+
+	private boolean isReplica(final JdbcTemplate template) {
+		return this.replicaManager != null && template != null && template != getJdbcTemplate() && !isSharded();
+	}
+
+	/**
+	 * Returns the Spring JDBC template for the shard an entity is stored on,
+	 * or the default template if this DAO is not sharded.
+	 * 
+	 * @param entity
+	 *            The entity, required.
+	 * @return The Spring JDBC template, may be null.
+	 */
+	protected JdbcTemplate getJdbcTemplate(final T entity) {
+		if (isSharded()) {
+			return this.shardManager.getShardJdbcTemplate(this.shardManager.getShard(entity));
+		}
+		return this.jdbcTemplate;
+	}
+
+	/**
+	 * Returns the Spring JDBC template for the shard an ID is stored on. This
+	 * is only possible if the entity's only
+	 * {@link com.ajah.spring.jdbc.shard.ShardKey} is its id field;
+	 * otherwise every shard must be queried.
+	 * 
+	 * @param id
+	 *            The ID of the entity, required.
+	 * @return The Spring JDBC template, or null if the ID does not determine
+	 *         the shard.
+	 */
+	protected JdbcTemplate getJdbcTemplateForId(final K id) {
+		if (!isSharded()) {
+			return this.jdbcTemplate;
+		}
+		final List<Field> shardKeyFields = this.shardManager.getShardKeyFields(getTargetClass());
+		if (shardKeyFields.size() == 1 && "id".equals(shardKeyFields.get(0).getName())) {
+			return this.shardManager.getShardJdbcTemplate(this.shardManager.getShardForKey(id));
+		}
+		return null;
+	}
+
+	private Comparator<T> getOrderComparator(final Criteria criteria) {
+		final List<Field> fields = new ArrayList<>();
+		final List<String> columns = new ArrayList<>();
+		final List<Order> orders = new ArrayList<>();
+		for (final NameValuePair<Order> orderBy : criteria.getOrderBys()) {
+			final String name = orderBy.getName().replace("`", "");
+			final String column = name.substring(name.lastIndexOf('.') + 1);
+			final Field field = this.colMap.get(column);
+			if (field == null || orderBy.getValue() == null) {
+				log.warning("Cannot merge shard results ordered by " + orderBy.getName() + ", results will not be ordered");
+				return null;
+			}
+			fields.add(field);
+			columns.add(column);
+			orders.add(orderBy.getValue());
+		}
+		if (fields.isEmpty()) {
+			return null;
+		}
+		return new Comparator<T>() {
+
+			@Override
+			@SuppressWarnings({ "unchecked", "rawtypes" })
+			public int compare(final T o1, final T o2) {
+				for (int i = 0; i < fields.size(); i++) {
+					final Object v1 = getValue(o1, fields.get(i), columns.get(i));
+					final Object v2 = getValue(o2, fields.get(i), columns.get(i));
+					int result;
+					if (v1 == null || v2 == null) {
+						result = v1 == null ? (v2 == null ? 0 : -1) : 1;
+					} else if (v1 instanceof Comparable && v1.getClass() == v2.getClass()) {
+						result = ((Comparable) v1).compareTo(v2);
+					} else {
+						result = v1.toString().compareTo(v2.toString());
+					}
+					if (result != 0) {
+						return orders.get(i) == Order.DESC ? -result : result;
+					}
+				}
+				return 0;
+			}
+
+		};
+	}
+
 	protected RowMapper<T> getRowMapper() {
 		return new SimpleAjahRowMapper<>(this);
 	}
@@ -709,6 +1039,24 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 		return tablePrefix ? this.selectFieldsWithTablePrefix : this.selectFields;
 	}
 
+	/**
+	 * Returns the replica manager, if this DAO has one.
+	 * 
+	 * @return The replica manager, may be null.
+	 */
+	public ReplicaManager getReplicaManager() {
+		return this.replicaManager;
+	}
+
+	/**
+	 * Returns the shard manager, if this DAO has one.
+	 * 
+	 * @return The shard manager, may be null.
+	 */
+	public ShardManager getShardManager() {
+		return this.shardManager;
+	}
+
 	/**
 	 * Returns the table name for this class.
 	 * 
@@ -747,29 +1095,23 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 
 	private Object[] getUpdateValues(final T entity) {
 		final Object[] values = new Object[getUpdateFieldsList().size() + 1];
-		try {
-			final BeanInfo componentBeanInfo = Introspector.getBeanInfo(entity.getClass());
-			final PropertyDescriptor[] props = componentBeanInfo.getPropertyDescriptors();
-			for (int i = 0; i < (values.length - 1); i++) {
-				final Field field = this.colMap.get(this.updateFieldsList.get(i));
-				if (LocalDate.class.isAssignableFrom(field.getType())) {
-					final LocalDate localDate = (LocalDate) ReflectionUtils.propGetSafe(entity, getProp(field, props));
-					if (localDate != null) {
-						values[i] = localDate.toString(LOCAL_DATE_FORMAT);
-					} else {
-						values[i] = null;
-					}
-				} else {
-					values[i] = ReflectionUtils.propGetSafeAuto(entity, field, getProp(field, props));
-				}
-			}
-			values[values.length - 1] = entity.getId().toString();
-		} catch (final IntrospectionException e) {
-			log.log(Level.SEVERE, entity.getClass().getName() + ": " + e.getMessage(), e);
+		for (int i = 0; i < (values.length - 1); i++) {
+			final Field field = this.colMap.get(this.updateFieldsList.get(i));
+			values[i] = getValue(entity, field, this.updateFieldsList.get(i));
 		}
+		values[values.length - 1] = entity.getId().toString();
 		return values;
 	}
 
+	private Object getValue(final T entity, final Field field, final String column) {
+		final PropertyDescriptor prop = this.propMap.get(column);
+		if (LocalDate.class.isAssignableFrom(field.getType())) {
+			final LocalDate localDate = (LocalDate) ReflectionUtils.propGetSafe(entity, prop);
+			return localDate == null ? null : localDate.toString(LOCAL_DATE_FORMAT);
+		}
+		return ReflectionUtils.propGetSafeAuto(entity, field, prop);
+	}
+
 	/**
 	 * Increments the field of the record by 1.
 	 * 
@@ -786,30 +1128,280 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 	}
 
 	/**
-	 * Increments the field of the record by a certain amount.
-	 * 
-	 * @param entity
-	 *            Entity to update.
-	 * @param field
-	 *            The field to increase.
-	 * @param amount
-	 *            The amount to increase the field by.
-	 * @return Number of rows affected.
-	 * @throws DataOperationException
-	 *             If an error occurs executing the query.
+	 * Increments the field of the record by a certain amount.
+	 * 
+	 * @param entity
+	 *            Entity to update.
+	 * @param field
+	 *            The field to increase.
+	 * @param amount
+	 *            The amount to increase the field by.
+	 * @return Number of rows affected.
+	 * @throws DataOperationException
+	 *             If an error occurs executing the query.
+	 */
+	public DataOperationResult<T> increment(final T entity, final String field, final int amount) throws DataOperationException {
+		AjahUtils.requireParam(entity, "entity");
+		AjahUtils.requireParam(entity.getId(), "entity.id");
+		AjahUtils.requireParam(getJdbcTemplate(), "this.jdbcTemplate");
+		try {
+			invalidate(entity.getId());
+			markWrite();
+			final String sql = "UPDATE `" + getTableName() + "` SET " + field + "=" + field + " + " + amount + " WHERE " + getTableName() + "_id = ?";
+			if (sqlLog.isLoggable(Level.FINEST)) {
+				sqlLog.finest(sql);
+			}
+			return new DataOperationResult<>(entity, getJdbcTemplate(entity).update(sql, entity.getId().toString()));
+		} catch (final DataAccessException e) {
+			throw DataOperationExceptionUtils.translate(e, getTableName());
+		} finally {
+			invalidateWritten(Collections.singletonList(entity.getId()));
+		}
+	}
+
+	private String getFindByIdsSql(final int count) {
+		final Integer key = Integer.valueOf(count);
+		String sql = this.findByIdsStatements.get(key);
+		if (sql == null) {
+			final StringBuilder builder = new StringBuilder(getSelectPrefix().length() + getTableName().length() + 16 + count * 2);
+			builder.append(getSelectPrefix()).append(" WHERE `").append(getTableName()).append("_id` IN (");
+			for (int i = 0; i < count; i++) {
+				builder.append(i == 0 ? "?" : ",?");
+			}
+			sql = builder.append(")").toString();
+			if (this.findByIdsStatements.size() < MAX_CACHED_STATEMENTS) {
+				this.findByIdsStatements.put(key, sql);
+			}
+		}
+		return sql;
+	}
+
+	/**
+	 * Queries IDs on the shards they are stored on. IDs that do not determine
+	 * their shard are queried on every shard.
+	 */
+	private List<T> queryByIdsSharded(final List<K> ids) throws DataOperationException {
+		final Map<JdbcTemplate, List<K>> routed = new LinkedHashMap<>();
+		final List<K> unrouted = new ArrayList<>();
+		for (final K id : ids) {
+			final JdbcTemplate template = getJdbcTemplateForId(id);
+			if (template == null) {
+				unrouted.add(id);
+				continue;
+			}
+			List<K> shardIds = routed.get(template);
+			if (shardIds == null) {
+				shardIds = new ArrayList<>();
+				routed.put(template, shardIds);
+			}
+			shardIds.add(id);
+		}
+		final List<T> entities = new ArrayList<>(ids.size());
+		for (final Map.Entry<JdbcTemplate, List<K>> shard : routed.entrySet()) {
+			entities.addAll(queryByIds(shard.getKey(), shard.getValue()));
+		}
+		if (!unrouted.isEmpty()) {
+			for (int shard = 0; shard < this.shardManager.getShardCount(); shard++) {
+				entities.addAll(queryByIds(this.shardManager.getShardJdbcTemplate(shard), unrouted));
+			}
+		}
+		return entities;
+	}
+
+	private List<T> queryByIds(final JdbcTemplate template, final List<K> ids) throws DataOperationException {
+		final RowMapper<T> rowMapper = getRowMapper();
+		final List<Callable<List<T>>> chunks = new ArrayList<>();
+		for (int start = 0; start < ids.size(); start += this.batchSize) {
+			final List<K> chunk = ids.subList(start, Math.min(start + this.batchSize, ids.size()));
+			final String sql = getFindByIdsSql(chunk.size());
+			final Object[] values = new Object[chunk.size()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = chunk.get(i).toString();
+			}
+			if (sqlLog.isLoggable(Level.FINEST)) {
+				sqlLog.finest(sql);
+				sqlLog.finest(chunk.toString());
+			}
+			chunks.add(new Callable<List<T>>() {
+
+				@Override
+				public List<T> call() {
+					return template.query(sql, values, rowMapper);
+				}
+
+			});
+		}
+		final List<T> entities = new ArrayList<>(ids.size());
+		try {
+			if (this.queryExecutor == null || chunks.size() == 1) {
+				for (final Callable<List<T>> chunk : chunks) {
+					entities.addAll(chunk.call());
+				}
+				return entities;
+			}
+			for (final Future<List<T>> future : this.queryExecutor.invokeAll(chunks)) {
+				entities.addAll(future.get());
+			}
+			return entities;
+		} catch (final DataAccessException e) {
+			throw DataOperationExceptionUtils.translate(e, getTableName());
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof DataAccessException) {
+				throw DataOperationExceptionUtils.translate((DataAccessException) e.getCause(), getTableName());
+			}
+			throw new UnknownDataOperationException(e.getCause().getMessage(), e.getCause());
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UnknownDataOperationException("Interrupted loading " + ids.size() + " IDs", e);
+		} catch (final Exception e) {
+			throw new UnknownDataOperationException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Finds the entities whose column matches any of the values, and that
+	 * match the extra criteria. Values are queried in {@code IN} lists of at
+	 * most {@link #getBatchSize()} values. If this DAO is sharded, every shard
+	 * is queried. Any ORDER BY or LIMIT on the criteria is ignored.
+	 * 
+	 * @param column
+	 *            The column to match the values against, required.
+	 * @param values
+	 *            The values to match, required. Each is matched by its
+	 *            {@link Object#toString()}.
+	 * @param extraCriteria
+	 *            Additional criteria to match, may be null.
+	 * @return The matching entities, or an empty list.
+	 * @throws DataOperationException
+	 *             If an error occurs executing the query.
+	 */
+	protected List<T> queryIn(final String column, final Collection<?> values, final Criteria extraCriteria) throws DataOperationException {
+		AjahUtils.requireParam(column, "column");
+		AjahUtils.requireParam(values, "values");
+		final List<Object> list = new ArrayList<Object>(values);
+		final List<T> entities = new ArrayList<>(list.size());
+		final Where where = extraCriteria == null ? null : extraCriteria.getWhere();
+		final String whereSql = where == null ? " " : where.getSql(false);
+		final String prefix = StringUtils.isBlank(whereSql) ? " WHERE `" + column + "` IN (" : " WHERE (" + whereSql + ") AND `" + column + "` IN (";
+		final RowMapper<T> rowMapper = getRowMapper();
+		try {
+			for (int start = 0; start < list.size(); start += this.batchSize) {
+				final List<Object> chunk = list.subList(start, Math.min(start + this.batchSize, list.size()));
+				final StringBuilder clauses = new StringBuilder(prefix);
+				final List<Object> params = new ArrayList<>(chunk.size() + (where == null ? 0 : where.getValues().size()));
+				if (where != null) {
+					params.addAll(where.getValues());
+				}
+				for (int i = 0; i < chunk.size(); i++) {
+					clauses.append(i == 0 ? "?" : ",?");
+					params.add(chunk.get(i).toString());
+				}
+				clauses.append(')');
+				final String sql = getSelectSql(clauses.toString());
+				final Object[] args = params.toArray();
+				if (sqlLog.isLoggable(Level.FINEST)) {
+					sqlLog.finest(sql);
+					log.finest(params.toString());
+				}
+				if (isSharded()) {
+					for (final List<T> shardEntities : this.shardManager.scatter(new ShardCallback<List<T>>() {
+
+						@Override
+						public List<T> doInShard(final JdbcTemplate jdbcTemplate) {
+							return jdbcTemplate.query(sql, args, rowMapper);
+						}
+
+					})) {
+						entities.addAll(shardEntities);
+					}
+				} else {
+					entities.addAll(getReadJdbcTemplate().query(sql, args, rowMapper));
+				}
+			}
+		} catch (final DataAccessException e) {
+			throw DataOperationExceptionUtils.translate(e, getTableName());
+		}
+		return entities;
+	}
+
+	/**
+	 * Removes an entity from the cache, if this DAO has one. Subclasses that
+	 * modify rows without going through {@link #update(Identifiable)},
+	 * {@link #deleteById(Comparable)}, {@link #increment(Identifiable, String)}
+	 * or {@link #updateSql(String)} should call this.
+	 * 
+	 * @param id
+	 *            The ID of the entity that was modified.
+	 */
+	protected void invalidate(final K id) {
+		final EntityCache<K, T> entityCache = getCache();
+		if (entityCache != null) {
+			this.cacheGeneration.incrementAndGet();
+			entityCache.invalidate(id);
+		}
+	}
+
+	private void invalidateAll() {
+		final EntityCache<K, T> entityCache = getCache();
+		if (entityCache != null) {
+			this.cacheGeneration.incrementAndGet();
+			entityCache.invalidateAll();
+		}
+	}
+
+	/**
+	 * Invalidates entities again after they have been written, and once more
+	 * when the surrounding transaction completes, if there is one. Without
+	 * this, a load that read the old row while the write was in progress
+	 * could put it back in the cache.
+	 * 
+	 * @param ids
+	 *            The IDs that were written, or null to invalidate everything.
+	 */
+	private void invalidateWritten(final List<K> ids) {
+		if (getCache() == null) {
+			return;
+		}
+		invalidateIds(ids);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+				@Override
+				public void afterCompletion(final int status) {
+					invalidateIds(ids);
+				}
+
+			});
+		}
+	}
+
+	private void invalidateIds(final List<K> ids) {
+		if (ids == null) {
+			invalidateAll();
+			return;
+		}
+		for (final K id : ids) {
+			invalidate(id);
+		}
+	}
+
+	/**
+	 * Caches an entity that was read, unless an invalidation happened since
+	 * the read started, in which case the row may already be out of date. A
+	 * row read from a replica is also not cached if this DAO wrote recently
+	 * enough that the replica may not have the write yet.
 	 */
-	public DataOperationResult<T> increment(final T entity, final String field, final int amount) throws DataOperationException {
-		AjahUtils.requireParam(entity, "entity");
-		AjahUtils.requireParam(entity.getId(), "entity.id");
-		AjahUtils.requireParam(getJdbcTemplate(), "this.jdbcTemplate");
-		try {
-			final String sql = "UPDATE `" + getTableName() + "` SET " + field + "=" + field + " + " + amount + " WHERE " + getTableName() + "_id = ?";
-			if (sqlLog.isLoggable(Level.FINEST)) {
-				sqlLog.finest(sql);
-			}
-			return new DataOperationResult<>(entity, getJdbcTemplate().update(sql, entity.getId().toString()));
-		} catch (final DataAccessException e) {
-			throw DataOperationExceptionUtils.translate(e, getTableName());
+	private void cacheLoaded(final EntityCache<K, T> entityCache, final T entity, final long generation, final boolean fromReplica) {
+		if (this.cacheGeneration.get() != generation) {
+			return;
+		}
+		if (fromReplica && System.currentTimeMillis() - this.lastWrite < this.replicaManager.getMaxLag() * 1000 + this.replicaManager.getCheckInterval()) {
+			return;
+		}
+		entityCache.put(entity);
+		// An invalidation may have slipped in between the check and the put
+		if (this.cacheGeneration.get() != generation) {
+			entityCache.invalidate(entity.getId());
 		}
 	}
 
@@ -844,20 +1436,20 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 			AjahUtils.requireParam(entity.getId(), "entity.id");
 		}
 		AjahUtils.requireParam(getJdbcTemplate(), "this.jdbcTemplate");
+		markWrite();
 		try {
 			if (isAutoIdAssign()) {
 				// Generated (auto_increment) ID
 				final KeyHolder holder = new GeneratedKeyHolder();
 
-				final int rows = getJdbcTemplate().update(new PreparedStatementCreator() {
+				final int rows = getJdbcTemplate(entity).update(new SqlStatementCreator(getInsertSql(delayed)) {
 
 					@Override
 					public PreparedStatement createPreparedStatement(final Connection connection) throws SQLException {
-						final String sql = "INSERT " + (delayed ? "DELAYED " : "") + "INTO `" + getTableName() + "` (" + getInsertFields() + ") VALUES (" + getInsertPlaceholders() + ")";
 						if (sqlLog.isLoggable(Level.FINEST)) {
-							sqlLog.finest(sql);
+							sqlLog.finest(getSql());
 						}
-						final PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+						final PreparedStatement ps = connection.prepareStatement(getSql(), Statement.RETURN_GENERATED_KEYS);
 						final Object[] values = getInsertValues(entity);
 						for (int i = 0; i < values.length; i++) {
 							if (sqlLog.isLoggable(Level.FINEST)) {
@@ -874,11 +1466,11 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 				return new DataOperationResult<>(entity, rows);
 			}
 			// Pre-assigned ID
-			final String sql = "INSERT " + (delayed ? "DELAYED " : "") + "INTO `" + getTableName() + "` (" + getInsertFields() + ") VALUES (" + getInsertPlaceholders() + ")";
+			final String sql = getInsertSql(delayed);
 			if (sqlLog.isLoggable(Level.FINEST)) {
 				sqlLog.finest(sql);
 			}
-			return new DataOperationResult<>(entity, getJdbcTemplate().update(sql, getInsertValues(entity)));
+			return new DataOperationResult<>(entity, getJdbcTemplate(entity).update(sql, getInsertValues(entity)));
 		} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException | NoSuchMethodException | SecurityException | InstantiationException e) {
 			throw new DataObjectCreationException(e);
 		} catch (final DataAccessException e) {
@@ -886,6 +1478,177 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 		}
 	}
 
+	/**
+	 * Inserts a collection of records using JDBC batches of
+	 * {@link #getBatchSize()} rows. If the ID is generated by the database, the
+	 * generated keys are assigned to the entities in order.
+	 * 
+	 * Note: DAOs that override {@link #insert(Identifiable)} to write
+	 * additional columns should also override this method.
+	 * 
+	 * @param entities
+	 *            Entities to insert into the table, required.
+	 * @return The results of the inserts, in the same order as the entities.
+	 * @throws DataOperationException
+	 *             If an error occurs executing the query. Batches already
+	 *             executed are not rolled back unless a transaction is active.
+	 */
+	@Override
+	public List<DataOperationResult<T>> insertAll(final Collection<T> entities) throws DataOperationException {
+		AjahUtils.requireParam(entities, "entities");
+		AjahUtils.requireParam(getJdbcTemplate(), "this.jdbcTemplate");
+		final List<T> list = new ArrayList<>(entities);
+		if (!isAutoIdAssign()) {
+			for (final T entity : list) {
+				AjahUtils.requireParam(entity.getId(), "entity.id");
+			}
+		}
+		final String sql = getInsertSql(false);
+		if (sqlLog.isLoggable(Level.FINEST)) {
+			sqlLog.finest(sql + " [" + list.size() + " rows]");
+		}
+		markWrite();
+		try {
+			if (isSharded()) {
+				final List<DataOperationResult<T>> results = new ArrayList<>(list.size());
+				for (final Map.Entry<Integer, List<T>> shard : partitionByShard(list).entrySet()) {
+					results.addAll(insertBatches(this.shardManager.getShardJdbcTemplate(shard.getKey().intValue()), sql, shard.getValue()));
+				}
+				return inOrder(list, results);
+			}
+			return insertBatches(getJdbcTemplate(), sql, list);
+		} catch (final DataAccessException e) {
+			throw DataOperationExceptionUtils.translate(e, getTableName());
+		}
+	}
+
+	private List<DataOperationResult<T>> insertBatches(final JdbcTemplate template, final String sql, final List<T> list) {
+		final List<DataOperationResult<T>> results = new ArrayList<>(list.size());
+		for (int start = 0; start < list.size(); start += this.batchSize) {
+			final List<T> batch = list.subList(start, Math.min(start + this.batchSize, list.size()));
+			final int[] rows;
+			if (isAutoIdAssign()) {
+				rows = template.execute(new ConnectionCallback<int[]>() {
+
+					@Override
+					public int[] doInConnection(final Connection connection) throws SQLException {
+						return insertBatchWithKeys(connection, sql, batch);
+					}
+
+				});
+			} else {
+				rows = template.batchUpdate(sql, new BatchPreparedStatementSetter() {
+
+					@Override
+					public int getBatchSize() {
+						return batch.size();
+					}
+
+					@Override
+					public void setValues(final PreparedStatement ps, final int i) throws SQLException {
+						setPreparedStatement(ps, getInsertValues(batch.get(i)));
+					}
+
+				});
+			}
+			for (int i = 0; i < batch.size(); i++) {
+				// Drivers that rewrite batches may not report per-row counts
+				results.add(new DataOperationResult<>(batch.get(i), rows[i] == Statement.SUCCESS_NO_INFO ? 1 : rows[i]));
+			}
+		}
+		return results;
+	}
+
+	private Map<Integer, List<T>> partitionByShard(final List<T> list) {
+		final Map<Integer, List<T>> shards = new LinkedHashMap<>();
+		for (final T entity : list) {
+			final Integer shard = Integer.valueOf(this.shardManager.getShard(entity));
+			List<T> shardList = shards.get(shard);
+			if (shardList == null) {
+				shardList = new ArrayList<>();
+				shards.put(shard, shardList);
+			}
+			shardList.add(entity);
+		}
+		return shards;
+	}
+
+	private List<DataOperationResult<T>> inOrder(final List<T> list, final List<DataOperationResult<T>> results) {
+		final Map<T, DataOperationResult<T>> byEntity = new IdentityHashMap<>();
+		for (final DataOperationResult<T> result : results) {
+			byEntity.put(result.getEntity(), result);
+		}
+		final List<DataOperationResult<T>> ordered = new ArrayList<>(list.size());
+		for (final T entity : list) {
+			ordered.add(byEntity.get(entity));
+		}
+		return ordered;
+	}
+
+	private int[] insertBatchWithKeys(final Connection connection, final String sql, final List<T> batch) throws SQLException {
+		try (final PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+			for (final T entity : batch) {
+				setPreparedStatement(ps, getInsertValues(entity));
+				ps.addBatch();
+			}
+			final int[] rows = ps.executeBatch();
+			try (final ResultSet keys = ps.getGeneratedKeys()) {
+				final Constructor<K> idConstructor = getIdClass().getConstructor(String.class);
+				for (final T entity : batch) {
+					if (!keys.next()) {
+						throw new SQLException("Expected " + batch.size() + " generated keys for " + getTableName());
+					}
+					entity.setId(idConstructor.newInstance(String.valueOf(keys.getLong(1))));
+				}
+			} catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
+				throw new SQLException(e);
+			}
+			return rows;
+		}
+	}
+
+	/**
+	 * Returns "SELECT &lt;fields&gt; FROM `&lt;table&gt;`", built once.
+	 */
+	private String getSelectPrefix() {
+		if (this.selectPrefix == null) {
+			this.selectPrefix = "SELECT " + getSelectFields() + " FROM `" + getTableName() + "`";
+		}
+		return this.selectPrefix;
+	}
+
+	/**
+	 * Returns a SELECT statement for this table with the supplied WHERE, ORDER
+	 * BY and LIMIT clauses. Statements are cached by their clauses, so a query
+	 * with the same shape as a previous one reuses the same SQL string, which
+	 * also lets drivers that cache prepared statements by SQL text reuse them.
+	 */
+	private String getSelectSql(final String clauses) {
+		String sql = this.selectStatements.get(clauses);
+		if (sql == null) {
+			sql = getSelectPrefix() + clauses;
+			cacheStatement(this.selectStatements, clauses, sql);
+		}
+		return sql;
+	}
+
+	private String getUpdateSql() {
+		if (this.updateStatement == null) {
+			this.updateStatement = "UPDATE `" + getTableName() + "` SET " + getUpdateFields() + " WHERE " + getTableName() + "_id = ?";
+		}
+		return this.updateStatement;
+	}
+
+	private String getInsertSql(final boolean delayed) {
+		if (delayed) {
+			return "INSERT DELAYED INTO `" + getTableName() + "` (" + getInsertFields() + ") VALUES (" + getInsertPlaceholders() + ")";
+		}
+		if (this.insertStatement == null) {
+			this.insertStatement = "INSERT INTO `" + getTableName() + "` (" + getInsertFields() + ") VALUES (" + getInsertPlaceholders() + ")";
+		}
+		return this.insertStatement;
+	}
+
 	protected boolean isAutoIdAssign() {
 		if (this.autoIdAssign == null) {
 			try {
@@ -902,6 +1665,53 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 		return this.autoIdAssign.booleanValue();
 	}
 
+	/**
+	 * Determines if this DAO routes entities to shards, meaning it has a
+	 * {@link ShardManager} with shards configured and the target class is
+	 * annotated with {@link com.ajah.spring.jdbc.shard.Sharded}.
+	 * 
+	 * Only inserts, updates, increments, {@link #load(Comparable)},
+	 * {@link #deleteById(Comparable)}, {@link #list(Criteria)} and
+	 * {@link #count(Criteria)} are shard-aware. Other queries go to the
+	 * default data source.
+	 * 
+	 * @return true if this DAO routes entities to shards.
+	 */
+	public boolean isSharded() {
+		return this.shardManager != null && this.shardManager.isSharded(getTargetClass());
+	}
+
+	/**
+	 * Iterates over every entity matching the criteria in ID order, fetching
+	 * one page at a time using keyset (seek) pagination on the
+	 * &lt;table&gt;_id column. Unlike {@link #list(int, int)}, the cost of each
+	 * page does not grow with its position in the table, and no connection is
+	 * held between pages.
+	 * 
+	 * Any ORDER BY or LIMIT on the criteria is ignored.
+	 * 
+	 * @param criteria
+	 *            The criteria object to use to build the query, required.
+	 * @param pageSize
+	 *            The number of rows to fetch per query.
+	 * @return An iterable over the matching entities. Errors while fetching a
+	 *         page are thrown as {@link IllegalStateException}s.
+	 */
+	public Iterable<T> iterate(final Criteria criteria, final int pageSize) {
+		AjahUtils.requireParam(criteria, "criteria");
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("Page size must be greater than zero");
+		}
+		return new Iterable<T>() {
+
+			@Override
+			public Iterator<T> iterator() {
+				return new KeysetIterator<>(AbstractAjahDao.this, criteria, pageSize);
+			}
+
+		};
+	}
+
 	/**
 	 * Find a list of all entities.
 	 * 
@@ -912,11 +1722,11 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 	 */
 	protected List<T> list() throws DataOperationException {
 		try {
-			final String sql = "SELECT " + getSelectFields() + " FROM `" + getTableName() + "`";
+			final String sql = getSelectPrefix();
 			if (sqlLog.isLoggable(Level.FINEST)) {
 				sqlLog.finest(sql);
 			}
-			return getJdbcTemplate().query(sql, getRowMapper());
+			return getReadJdbcTemplate().query(sql, getRowMapper());
 		} catch (final EmptyResultDataAccessException e) {
 			log.fine(e.getMessage());
 			return Collections.emptyList();
@@ -938,12 +1748,16 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 	public List<T> list(final Criteria criteria) throws DataOperationException {
 		AjahUtils.requireParam(criteria, "criteria");
 		try {
-			final String sql = "SELECT " + getSelectFields() + " FROM `" + getTableName() + "`" + criteria.getWhere().getSql() + criteria.getOrderBySql() + criteria.getLimit().getSql();
+			if (isSharded()) {
+				return listSharded(criteria);
+			}
+			final Where where = criteria.getWhere();
+			final String sql = getSelectSql(criteria.getClausesSql());
 			if (sqlLog.isLoggable(Level.FINEST)) {
 				sqlLog.finest(sql);
-				log.finest(criteria.getWhere().getValues().toString());
+				log.finest(where.getValues().toString());
 			}
-			return getJdbcTemplate().query(sql, criteria.getWhere().getValues().toArray(), getRowMapper());
+			return getReadJdbcTemplate().query(sql, where.getValues().toArray(), getRowMapper());
 		} catch (final EmptyResultDataAccessException e) {
 			log.fine(e.getMessage());
 			return Collections.emptyList();
@@ -955,6 +1769,10 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 	/**
 	 * Lists an entity, ordering by it's ID field.
 	 * 
+	 * Note: This uses OFFSET paging, which gets slower as the page number grows.
+	 * Use {@link #listAfter(Comparable, int)} or {@link #iterate(Criteria, int)}
+	 * to walk large tables.
+	 * 
 	 * @param page
 	 *            Page of results (offset).
 	 * @param count
@@ -965,11 +1783,11 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 	 */
 	public List<T> list(final int page, final int count) throws DataOperationException {
 		try {
-			final String sql = "SELECT " + getSelectFields() + " FROM `" + getTableName() + "` ORDER BY " + this.getTableName() + "_id LIMIT " + (page * count) + "," + count;
+			final String sql = getSelectPrefix() + " ORDER BY " + this.getTableName() + "_id LIMIT " + (page * count) + "," + count;
 			if (sqlLog.isLoggable(Level.FINEST)) {
 				sqlLog.finest(sql);
 			}
-			return getJdbcTemplate().query(sql, getRowMapper());
+			return getReadJdbcTemplate().query(sql, getRowMapper());
 		} catch (final EmptyResultDataAccessException e) {
 			log.fine(e.getMessage());
 			return Collections.emptyList();
@@ -991,11 +1809,11 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 	public List<T> list(final String where) throws DataOperationException {
 		AjahUtils.requireParam(where, "where");
 		try {
-			final String sql = "SELECT " + getSelectFields() + " FROM `" + getTableName() + "` WHERE " + where;
+			final String sql = getSelectPrefix() + " WHERE " + where;
 			if (sqlLog.isLoggable(Level.FINEST)) {
 				sqlLog.finest(sql);
 			}
-			return getJdbcTemplate().query(sql, getRowMapper());
+			return getReadJdbcTemplate().query(sql, getRowMapper());
 		} catch (final EmptyResultDataAccessException e) {
 			log.fine(e.getMessage());
 			return Collections.emptyList();
@@ -1041,7 +1859,7 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 			if (sqlLog.isLoggable(Level.FINEST)) {
 				sqlLog.finest(sql);
 			}
-			return getJdbcTemplate().query(sql, getRowMapper());
+			return getReadJdbcTemplate().query(sql, getRowMapper());
 		} catch (final EmptyResultDataAccessException e) {
 			log.fine(e.getMessage());
 			return Collections.emptyList();
@@ -1088,6 +1906,98 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 		return list(new Criteria().eq(value).rows(count).offset(page * count));
 	}
 
+	/**
+	 * Queries every shard in parallel and merges the results. Each shard is
+	 * asked for at most offset + count rows, already ordered, so the merge only
+	 * has to interleave them and then skip the offset.
+	 */
+	private List<T> listSharded(final Criteria criteria) {
+		final Limit limit = criteria.getLimit();
+		final Limit shardLimit = new Limit(0, limit.getCount() > 0 ? limit.getOffset() + limit.getCount() : 0);
+		final Where where = criteria.getWhere();
+		final String sql = getSelectSql(where.getSql() + criteria.getOrderBySql() + shardLimit.getSql());
+		final Object[] values = where.getValues().toArray();
+		if (sqlLog.isLoggable(Level.FINEST)) {
+			sqlLog.finest(sql + " [" + this.shardManager.getShardCount() + " shards]");
+			log.finest(where.getValues().toString());
+		}
+		final RowMapper<T> rowMapper = getRowMapper();
+		final List<List<T>> results = this.shardManager.scatter(new ShardCallback<List<T>>() {
+
+			@Override
+			public List<T> doInShard(final JdbcTemplate jdbcTemplate) {
+				return jdbcTemplate.query(sql, values, rowMapper);
+			}
+
+		});
+		return ShardManager.mergeSorted(results, getOrderComparator(criteria), limit.getOffset(), limit.getCount());
+	}
+
+	/**
+	 * Fetches a page of entities in ID order, starting after the specified
+	 * ID. This is keyset (seek) pagination, which uses the primary key index
+	 * rather than scanning and discarding an offset.
+	 * 
+	 * @param afterId
+	 *            The last ID of the previous page, or null for the first page.
+	 * @param count
+	 *            Number of results to return.
+	 * @return List of entities, or an empty list.
+	 * @throws DataOperationException
+	 *             If an error occurs executing the query.
+	 */
+	public List<T> listAfter(final K afterId, final int count) throws DataOperationException {
+		return listAfter(new Criteria(), afterId, count);
+	}
+
+	/**
+	 * Fetches a page of entities matching the criteria in ID order, starting
+	 * after the specified ID. Any ORDER BY or LIMIT on the criteria is ignored.
+	 * 
+	 * @param criteria
+	 *            The criteria object to use to build the query, required.
+	 * @param afterId
+	 *            The last ID of the previous page, or null for the first page.
+	 * @param count
+	 *            Number of results to return.
+	 * @return List of entities, or an empty list.
+	 * @throws DataOperationException
+	 *             If an error occurs executing the query.
+	 */
+	public List<T> listAfter(final Criteria criteria, final K afterId, final int count) throws DataOperationException {
+		AjahUtils.requireParam(criteria, "criteria");
+		final Where where = criteria.getWhere();
+		final List<Object> values = new ArrayList<Object>(where.getValues());
+		final StringBuilder sql = new StringBuilder();
+		sql.append(getSelectPrefix());
+		if (StringUtils.isBlank(where.getSql(false))) {
+			if (afterId != null) {
+				sql.append(" WHERE `").append(getTableName()).append("_id` > ?");
+			}
+		} else {
+			sql.append(" WHERE (").append(where.getSql(false)).append(")");
+			if (afterId != null) {
+				sql.append(" AND `").append(getTableName()).append("_id` > ?");
+			}
+		}
+		if (afterId != null) {
+			values.add(afterId.toString());
+		}
+		sql.append(" ORDER BY `").append(getTableName()).append("_id` LIMIT ").append(count);
+		try {
+			if (sqlLog.isLoggable(Level.FINEST)) {
+				sqlLog.finest(sql.toString());
+				log.finest(values.toString());
+			}
+			return getReadJdbcTemplate().query(sql.toString(), values.toArray(), getRowMapper());
+		} catch (final EmptyResultDataAccessException e) {
+			log.fine(e.getMessage());
+			return Collections.emptyList();
+		} catch (final DataAccessException e) {
+			throw DataOperationExceptionUtils.translate(e, getTableName());
+		}
+	}
+
 	/**
 	 * Find a list of entities by non-unique match.
 	 * 
@@ -1161,18 +2071,18 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 		AjahUtils.requireParam(value, "value");
 		try {
 			if (value.equals("NULL")) {
-				final String sql = "SELECT " + getSelectFields() + " FROM `" + getTableName() + "` WHERE " + field + " IS NULL ORDER BY " + orderBy + " LIMIT " + (page * count) + "," + count;
+				final String sql = getSelectPrefix() + " WHERE " + field + " IS NULL ORDER BY " + orderBy + " LIMIT " + (page * count) + "," + count;
 				if (sqlLog.isLoggable(Level.FINEST)) {
 					sqlLog.finest(sql);
 				}
-				return getJdbcTemplate().query(sql, getRowMapper());
+				return getReadJdbcTemplate().query(sql, getRowMapper());
 			}
-			final String sql = "SELECT " + getSelectFields() + " FROM `" + getTableName() + "` WHERE " + field + " = ? ORDER BY " + orderBy + " LIMIT " + (page * count) + "," + count;
+			final String sql = getSelectPrefix() + " WHERE " + field + " = ? ORDER BY " + orderBy + " LIMIT " + (page * count) + "," + count;
 			if (sqlLog.isLoggable(Level.FINEST)) {
 				sqlLog.finest(sql);
 				log.finest(value.toString());
 			}
-			return getJdbcTemplate().query(sql, new Object[] { value }, getRowMapper());
+			return getReadJdbcTemplate().query(sql, new Object[] { value }, getRowMapper());
 		} catch (final EmptyResultDataAccessException e) {
 			log.fine(e.getMessage());
 			return Collections.emptyList();
@@ -1217,6 +2127,43 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 		return listByField(field, value.toString(), orderBy, page, count);
 	}
 
+	/**
+	 * Records a write with the replica manager, if there is one, so that the
+	 * current thread reads its own writes from the primary.
+	 */
+	protected void markWrite() {
+		if (this.replicaManager != null) {
+			this.lastWrite = System.currentTimeMillis();
+			this.replicaManager.markWrite();
+		}
+	}
+
+	/**
+	 * Runs an INSERT, UPDATE or DELETE against the primary, recording the
+	 * write with {@link #markWrite()}. Subclasses with hand-written writes
+	 * should use this rather than the JDBC template directly, and
+	 * {@link #invalidate(Comparable)} any cached entities they modify.
+	 * 
+	 * @param sql
+	 *            The SQL statement to execute, required.
+	 * @param values
+	 *            The values to bind to the statement.
+	 * @return The number of rows affected.
+	 * @throws DataAccessException
+	 *             If the statement could not be executed.
+	 */
+	protected int executeUpdate(final String sql, final Object... values) {
+		AjahUtils.requireParam(sql, "sql");
+		AjahUtils.requireParam(getJdbcTemplate(), "this.jdbcTemplate");
+		markWrite();
+		if (sqlLog.isLoggable(Level.FINEST)) {
+			sqlLog.finest(sql);
+		}
+		final int rows = getJdbcTemplate().update(sql, values);
+		markWrite();
+		return rows;
+	}
+
 	/**
 	 * Find an entity by unique ID.
 	 * 
@@ -1229,13 +2176,49 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 	@Override
 	public T load(final K id) throws DataOperationException {
 		AjahUtils.requireParam(id, "id");
+		final EntityCache<K, T> entityCache = getCache();
+		if (entityCache != null) {
+			final T cached = entityCache.get(id);
+			if (cached != null) {
+				return cached;
+			}
+		}
+		final long generation = this.cacheGeneration.get();
 		try {
-			final String sql = "SELECT " + getSelectFields() + " FROM `" + getTableName() + "` WHERE " + getTableName() + "_id = ?";
+			if (this.loadStatement == null) {
+				this.loadStatement = getSelectPrefix() + " WHERE " + getTableName() + "_id = ?";
+			}
+			final String sql = this.loadStatement;
 			if (sqlLog.isLoggable(Level.FINEST)) {
 				sqlLog.finest(sql);
 				log.finest(id.toString());
 			}
-			return getJdbcTemplate().queryForObject(sql, new Object[] { id.toString() }, getRowMapper());
+			final JdbcTemplate jdbcTemplate = isSharded() ? getJdbcTemplateForId(id) : getReadJdbcTemplate();
+			T entity = null;
+			if (jdbcTemplate == null && isSharded()) {
+				final List<T> matches = new ArrayList<>();
+				final RowMapper<T> rowMapper = getRowMapper();
+				for (final List<T> shardMatches : this.shardManager.scatter(new ShardCallback<List<T>>() {
+
+					@Override
+					public List<T> doInShard(final JdbcTemplate shardJdbcTemplate) {
+						return shardJdbcTemplate.query(sql, new Object[] { id.toString() }, rowMapper);
+					}
+
+				})) {
+					matches.addAll(shardMatches);
+				}
+				if (matches.isEmpty()) {
+					return null;
+				}
+				entity = matches.get(0);
+			} else {
+				entity = jdbcTemplate.queryForObject(sql, new Object[] { id.toString() }, getRowMapper());
+			}
+			if (entityCache != null && entity != null) {
+				cacheLoaded(entityCache, entity, generation, isReplica(jdbcTemplate));
+			}
+			return entity;
 		} catch (final EmptyResultDataAccessException e) {
 			log.finest(e.getMessage());
 			return null;
@@ -1337,6 +2320,27 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 		}
 		this.insertPlaceholders = iph.toString();
 
+		if (this.entityMapper == null) {
+			this.entityMapper = createEntityMapper();
+		}
+	}
+
+	private EntityMapper<T> createEntityMapper() {
+		final List<ColumnMapping> mappings = new ArrayList<>(this.columns.size());
+		try {
+			final PropertyDescriptor[] props = Introspector.getBeanInfo(getTargetClass()).getPropertyDescriptors();
+			for (final String column : this.columns) {
+				final Field field = this.colMap.get(column);
+				final PropertyDescriptor prop = getProp(field, props);
+				if (prop != null) {
+					this.propMap.put(column, prop);
+				}
+				mappings.add(new ColumnMapping(column, field, prop));
+			}
+		} catch (final IntrospectionException e) {
+			log.log(Level.SEVERE, getTargetClass().getName() + ": " + e.getMessage(), e);
+		}
+		return new EntityMapper<T>(getTargetClass(), mappings);
 	}
 
 	protected int maxInt(final String field, final Criteria criteria) throws DataOperationException {
@@ -1345,7 +2349,7 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 			if (sqlLog.isLoggable(Level.FINEST)) {
 				sqlLog.finest(sql);
 			}
-			return getJdbcTemplate().queryForObject(sql, criteria.getWhere().getValues().toArray(), Integer.class).intValue();
+			return getReadJdbcTemplate().queryForObject(sql, criteria.getWhere().getValues().toArray(), Integer.class).intValue();
 		} catch (final EmptyResultDataAccessException e) {
 			log.fine(e.getMessage());
 			return 0;
@@ -1360,7 +2364,7 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 			if (sqlLog.isLoggable(Level.FINEST)) {
 				sqlLog.finest(sql);
 			}
-			return getJdbcTemplate().queryForObject(sql, criteria.getWhere().getValues().toArray(), Integer.class).intValue();
+			return getReadJdbcTemplate().queryForObject(sql, criteria.getWhere().getValues().toArray(), Integer.class).intValue();
 		} catch (final EmptyResultDataAccessException e) {
 			log.fine(e.getMessage());
 			return 0;
@@ -1375,7 +2379,7 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 			if (sqlLog.isLoggable(Level.FINEST)) {
 				sqlLog.finest(sql);
 			}
-			return getJdbcTemplate().queryForObject(sql, criteria.getWhere().getValues().toArray(), Integer.class).intValue();
+			return getReadJdbcTemplate().queryForObject(sql, criteria.getWhere().getValues().toArray(), Integer.class).intValue();
 		} catch (final EmptyResultDataAccessException e) {
 			log.fine(e.getMessage());
 			return 0;
@@ -1390,7 +2394,7 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 			if (sqlLog.isLoggable(Level.FINEST)) {
 				sqlLog.finest(sql);
 			}
-			return getJdbcTemplate().queryForObject(sql, criteria.getWhere().getValues().toArray(), Long.class).longValue();
+			return getReadJdbcTemplate().queryForObject(sql, criteria.getWhere().getValues().toArray(), Long.class).longValue();
 		} catch (final EmptyResultDataAccessException e) {
 			log.fine(e.getMessage());
 			return 0;
@@ -1399,37 +2403,93 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 		}
 	}
 
-	private void propSet(final T entity, final PropertyDescriptor prop, final Object value) {
-		try {
-			AjahUtils.requireParam(prop, "prop");
-			final Method setter = prop.getWriteMethod();
-			if (setter == null) {
-				throw new IllegalArgumentException("No setter found for " + prop.getName());
-			}
-			setter.invoke(entity, value);
-		} catch (final IllegalAccessException e) {
-			log.log(Level.SEVERE, prop.getName() + ": " + e.getMessage(), e);
-		} catch (final IllegalArgumentException e) {
-			// TODO See if we're trying to set a null on a primitive
-			if (prop == null) {
-				log.log(Level.SEVERE, e.getMessage(), e);
-			} else {
-				log.log(Level.SEVERE, prop.getName() + ": " + e.getMessage(), e);
-			}
-		} catch (final InvocationTargetException e) {
-			log.log(Level.SEVERE, prop.getName() + ": " + e.getMessage(), e);
-		}
-	}
-
 	/**
-	 * Sets up a new JDBC template with the supplied data source.
+	 * Sets up a new JDBC template with the supplied data source. Statements
+	 * executed through it are recorded to {@link com.ajah.spring.jdbc.metrics.SqlMetrics#getDefault()}.
 	 * 
 	 * @param dataSource
 	 *            DataSource to use for a new JDBC template.
 	 */
 	@Autowired
 	public void setDataSource(final DataSource dataSource) {
-		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.jdbcTemplate = new MetricsJdbcTemplate(dataSource);
+	}
+
+	/**
+	 * Sets the number of rows sent to the database in a single batch by
+	 * {@link #insertAll(Collection)} and {@link #updateAll(Collection)}, and
+	 * the number of IDs in each {@code IN} list of
+	 * {@link #findMapByIds(Collection)}.
+	 * 
+	 * @param batchSize
+	 *            The batch size, must be greater than zero.
+	 */
+	public void setBatchSize(final int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be greater than zero");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Sets the entity cache for this DAO, overriding {@link #createCache()}.
+	 * 
+	 * @param cache
+	 *            The cache to use, or null to disable caching.
+	 */
+	public synchronized void setCache(final EntityCache<K, T> cache) {
+		this.cache = cache;
+		this.cacheCreated = true;
+	}
+
+	/**
+	 * Sets the fetch size used by {@link #forEach(Criteria, EntityHandler)}.
+	 * The default is {@link Integer#MIN_VALUE}, which tells the MySQL driver to
+	 * stream rows one at a time instead of reading the entire result into
+	 * memory. Other drivers expect a positive number of rows.
+	 * 
+	 * @param fetchSize
+	 *            The fetch size.
+	 */
+	public void setFetchSize(final int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Sets the executor used to run the {@code IN} list queries of
+	 * {@link #findMapByIds(Collection)} in parallel. If not set, they are run
+	 * one after another on the calling thread.
+	 * 
+	 * @param queryExecutor
+	 *            The executor to use, or null to run queries serially.
+	 */
+	public void setQueryExecutor(final ExecutorService queryExecutor) {
+		this.queryExecutor = queryExecutor;
+	}
+
+	/**
+	 * Sets the replica manager. If set, reads will go to its replicas when
+	 * they are healthy.
+	 * 
+	 * @param replicaManager
+	 *            The replica manager.
+	 */
+	@Autowired(required = false)
+	public void setReplicaManager(final ReplicaManager replicaManager) {
+		this.replicaManager = replicaManager;
+	}
+
+	/**
+	 * Sets the shard manager. If the target class is annotated with
+	 * {@link com.ajah.spring.jdbc.shard.Sharded}, entities will be routed to
+	 * its shards.
+	 * 
+	 * @param shardManager
+	 *            The shard manager.
+	 */
+	@Autowired(required = false)
+	public void setShardManager(final ShardManager shardManager) {
+		this.shardManager = shardManager;
 	}
 
 	/**
@@ -1439,13 +2499,21 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 	 */
 	public void setTableName(final String tableName) {
 		this.tableName = tableName;
+		this.selectPrefix = null;
+		this.loadStatement = null;
+		this.insertStatement = null;
+		this.updateStatement = null;
+		this.deleteStatement = null;
+		this.selectStatements.clear();
+		this.countStatements.clear();
+		this.findByIdsStatements.clear();
 	}
 
 	protected long sum(final String field, final Criteria criteria) throws DataOperationException {
 		try {
 			final String sql = "SELECT SUM(`" + field + "`) FROM `" + getTableName() + "`" + criteria.getWhere().getSql();
 			sqlLog.finest(sql);
-			final Long sum = getJdbcTemplate().queryForObject(sql, criteria.getWhere().getValues().toArray(), Long.class);
+			final Long sum = getReadJdbcTemplate().queryForObject(sql, criteria.getWhere().getValues().toArray(), Long.class);
 			return sum == null ? 0 : sum.longValue();
 		} catch (final EmptyResultDataAccessException e) {
 			log.fine(e.getMessage());
@@ -1459,7 +2527,7 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 		try {
 			final String sql = "SELECT SUM(`" + field + "`) FROM `" + getTableName() + "`" + criteria.getWhere().getSql();
 			sqlLog.finest(sql);
-			final T sum = getJdbcTemplate().queryForObject(sql, criteria.getWhere().getValues().toArray(), clazz);
+			final T sum = getReadJdbcTemplate().queryForObject(sql, criteria.getWhere().getValues().toArray(), clazz);
 			return sum;
 		} catch (final EmptyResultDataAccessException e) {
 			log.fine(e.getMessage());
@@ -1473,7 +2541,7 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 		try {
 			final String sql = "SELECT SUM(`" + field + "`) FROM `" + getTableName() + "`" + criteria.getWhere().getSql();
 			sqlLog.finest(sql);
-			final BigDecimal sum = getJdbcTemplate().queryForObject(sql, criteria.getWhere().getValues().toArray(), BigDecimal.class);
+			final BigDecimal sum = getReadJdbcTemplate().queryForObject(sql, criteria.getWhere().getValues().toArray(), BigDecimal.class);
 			return sum == null ? BigDecimal.ZERO : sum;
 		} catch (final EmptyResultDataAccessException e) {
 			log.fine(e.getMessage());
@@ -1499,18 +2567,95 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 		AjahUtils.requireParam(entity.getId(), "entity.id");
 		AjahUtils.requireParam(getJdbcTemplate(), "this.jdbcTemplate");
 		try {
-			final String sql = "UPDATE `" + getTableName() + "` SET " + getUpdateFields() + " WHERE " + getTableName() + "_id = ?";
+			invalidate(entity.getId());
+			markWrite();
+			final String sql = getUpdateSql();
 			if (sqlLog.isLoggable(Level.FINEST)) {
 				sqlLog.finest(sql);
 			}
-			return new DataOperationResult<>(entity, getJdbcTemplate().update(sql, getUpdateValues(entity)));
+			return new DataOperationResult<>(entity, getJdbcTemplate(entity).update(sql, getUpdateValues(entity)));
+		} catch (final DataAccessException e) {
+			throw DataOperationExceptionUtils.translate(e, getTableName());
+		} finally {
+			invalidateWritten(Collections.singletonList(entity.getId()));
+		}
+	}
+
+	/**
+	 * Updates a collection of records using JDBC batches of
+	 * {@link #getBatchSize()} rows.
+	 * 
+	 * @param entities
+	 *            Entities to update, required.
+	 * @return The results of the updates, in the same order as the entities.
+	 *         The number of rows affected may be
+	 *         {@link Statement#SUCCESS_NO_INFO} if the driver does not report
+	 *         it.
+	 * @throws DataOperationException
+	 *             If an error occurs executing the query. Batches already
+	 *             executed are not rolled back unless a transaction is active.
+	 */
+	@Override
+	public List<DataOperationResult<T>> updateAll(final Collection<T> entities) throws DataOperationException {
+		AjahUtils.requireParam(entities, "entities");
+		AjahUtils.requireParam(getJdbcTemplate(), "this.jdbcTemplate");
+		final List<T> list = new ArrayList<>(entities);
+		for (final T entity : list) {
+			AjahUtils.requireParam(entity.getId(), "entity.id");
+			invalidate(entity.getId());
+		}
+		markWrite();
+		final String sql = getUpdateSql();
+		if (sqlLog.isLoggable(Level.FINEST)) {
+			sqlLog.finest(sql + " [" + list.size() + " rows]");
+		}
+		try {
+			if (isSharded()) {
+				final List<DataOperationResult<T>> results = new ArrayList<>(list.size());
+				for (final Map.Entry<Integer, List<T>> shard : partitionByShard(list).entrySet()) {
+					results.addAll(updateBatches(this.shardManager.getShardJdbcTemplate(shard.getKey().intValue()), sql, shard.getValue()));
+				}
+				return inOrder(list, results);
+			}
+			return updateBatches(getJdbcTemplate(), sql, list);
 		} catch (final DataAccessException e) {
 			throw DataOperationExceptionUtils.translate(e, getTableName());
+		} finally {
+			final List<K> ids = new ArrayList<>(list.size());
+			for (final T entity : list) {
+				ids.add(entity.getId());
+			}
+			invalidateWritten(ids);
+		}
+	}
+
+	private List<DataOperationResult<T>> updateBatches(final JdbcTemplate template, final String sql, final List<T> list) {
+		final List<DataOperationResult<T>> results = new ArrayList<>(list.size());
+		for (int start = 0; start < list.size(); start += this.batchSize) {
+			final List<T> batch = list.subList(start, Math.min(start + this.batchSize, list.size()));
+			final int[] rows = template.batchUpdate(sql, new BatchPreparedStatementSetter() {
+
+				@Override
+				public int getBatchSize() {
+					return batch.size();
+				}
+
+				@Override
+				public void setValues(final PreparedStatement ps, final int i) throws SQLException {
+					setPreparedStatement(ps, getUpdateValues(batch.get(i)));
+				}
+
+			});
+			for (int i = 0; i < batch.size(); i++) {
+				results.add(new DataOperationResult<>(batch.get(i), rows[i]));
+			}
 		}
+		return results;
 	}
 
 	/**
-	 * Runs a {@link JdbcTemplate#update(String)}.
+	 * Runs a {@link JdbcTemplate#update(String)}. Since the rows affected are
+	 * not known, this clears the entity cache, if there is one.
 	 * 
 	 * @param sql
 	 *            The full SQL statement to execute.
@@ -1525,9 +2670,13 @@ public abstract class AbstractAjahDao<K extends Comparable<K>, T extends Identif
 			if (sqlLog.isLoggable(Level.FINEST)) {
 				sqlLog.finest(sql);
 			}
+			invalidateAll();
+			markWrite();
 			return getJdbcTemplate().update(sql);
 		} catch (final DataAccessException e) {
 			throw DataOperationExceptionUtils.translate(e, getTableName());
+		} finally {
+			invalidateWritten(null);
 		}
 	}
 
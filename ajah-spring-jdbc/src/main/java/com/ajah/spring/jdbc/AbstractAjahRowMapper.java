@@ -54,16 +54,9 @@ public abstract class AbstractAjahRowMapper<K extends Comparable<K>, T extends I
 	 */
 	@Override
 	public T mapRow(final ResultSet rs, final int rowNum) throws SQLException {
-		T entity;
-		try {
-			entity = this.dao.getTargetClass().newInstance();
-			this.dao.autoPopulate(entity, rs);
-			return entity;
-		} catch (final InstantiationException e) {
-			throw new SQLException(e);
-		} catch (final IllegalAccessException e) {
-			throw new SQLException(e);
-		}
+		final T entity = this.dao.getEntityMapper().newInstance();
+		this.dao.autoPopulate(entity, rs);
+		return entity;
 	}
 
 	/**
@@ -17,8 +17,11 @@ package com.ajah.spring.jdbc;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
 
 import com.ajah.spring.jdbc.err.DataOperationException;
+import com.ajah.spring.jdbc.mapper.EntityMapper;
 import com.ajah.util.Identifiable;
 
 /**
@@ -58,6 +61,14 @@ public interface AjahDao<K extends Comparable<K>, T extends Identifiable<K>> {
 	 */
 	void autoPopulate(final T entity, final ResultSet resultSet) throws SQLException;
 
+	/**
+	 * Returns the mapper used to instantiate and populate entities from result
+	 * sets.
+	 * 
+	 * @return The entity mapper for the managed entity.
+	 */
+	EntityMapper<T> getEntityMapper();
+
 	/**
 	 * Finds a record by it's unique ID.
 	 * 
@@ -80,6 +91,17 @@ public interface AjahDao<K extends Comparable<K>, T extends Identifiable<K>> {
 	 */
 	DataOperationResult<T> insert(final T entity) throws DataOperationException;
 
+	/**
+	 * Inserts a collection of records, in batches.
+	 * 
+	 * @param entities
+	 *            The entities to insert as records.
+	 * @return The result of each insert, in the same order as the entities.
+	 * @throws DataOperationException
+	 *             if the query could not be executed.
+	 */
+	List<DataOperationResult<T>> insertAll(final Collection<T> entities) throws DataOperationException;
+
 	/**
 	 * Inserts a record.
 	 * 
@@ -91,6 +113,17 @@ public interface AjahDao<K extends Comparable<K>, T extends Identifiable<K>> {
 	 */
 	DataOperationResult<T> update(final T entity) throws DataOperationException;
 
+	/**
+	 * Updates a collection of records, in batches.
+	 * 
+	 * @param entities
+	 *            The entities to update.
+	 * @return The result of each update, in the same order as the entities.
+	 * @throws DataOperationException
+	 *             if the query could not be executed.
+	 */
+	List<DataOperationResult<T>> updateAll(final Collection<T> entities) throws DataOperationException;
+
 	/**
 	 * Deletes a record, or marks it as deleted.
 	 * 
@@ -0,0 +1,39 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc;
+
+/**
+ * Receives entities one at a time as they are read from the database, so that
+ * large result sets can be processed without holding them in memory.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ * @param <T>
+ *            The type of entity being handled.
+ */
+public interface EntityHandler<T> {
+
+	/**
+	 * Handles a single entity. This is invoked on the calling thread while
+	 * the result set is still open, so long-running work should be queued
+	 * elsewhere.
+	 * 
+	 * @param entity
+	 *            The entity that was read.
+	 */
+	void handle(final T entity);
+
+}
@@ -0,0 +1,106 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.ajah.spring.jdbc.criteria.Criteria;
+import com.ajah.spring.jdbc.err.DataOperationException;
+import com.ajah.util.Identifiable;
+
+/**
+ * Iterates over every entity matching a {@link Criteria}, fetching one page at
+ * a time by seeking past the last ID seen rather than using an offset. Each
+ * page costs the same regardless of how deep into the table it is, and only
+ * one page is held in memory.
+ * 
+ * Because {@link Iterator} cannot throw checked exceptions, a
+ * {@link DataOperationException} while fetching a page is wrapped in an
+ * {@link IllegalStateException}.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ * @param <K>
+ *            The primary key class.
+ * @param <T>
+ *            The type of entity being iterated over.
+ */
+class KeysetIterator<K extends Comparable<K>, T extends Identifiable<K>> implements Iterator<T> {
+
+	private final AbstractAjahDao<K, T, ?> dao;
+	private final Criteria criteria;
+	private final int pageSize;
+
+	private List<T> page;
+	private int position;
+	private K lastId;
+	private boolean exhausted;
+
+	KeysetIterator(final AbstractAjahDao<K, T, ?> dao, final Criteria criteria, final int pageSize) {
+		this.dao = dao;
+		this.criteria = criteria;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasNext() {
+		if (this.page != null && this.position < this.page.size()) {
+			return true;
+		}
+		if (this.exhausted) {
+			return false;
+		}
+		try {
+			this.page = this.dao.listAfter(this.criteria, this.lastId, this.pageSize);
+		} catch (final DataOperationException e) {
+			throw new IllegalStateException(e);
+		}
+		this.position = 0;
+		if (this.page.size() < this.pageSize) {
+			this.exhausted = true;
+		}
+		return !this.page.isEmpty();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		final T entity = this.page.get(this.position++);
+		this.lastId = entity.getId();
+		return entity;
+	}
+
+	/**
+	 * Throws {@link UnsupportedOperationException}.
+	 * 
+	 * @see java.util.Iterator#remove()
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("remove() is not supported, iteration is read-only");
+	}
+
+}
@@ -0,0 +1,310 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.java.Log;
+
+import org.springframework.beans.factory.DisposableBean;
+
+import com.ajah.spring.jdbc.err.DataOperationException;
+import com.ajah.util.AjahUtils;
+
+/**
+ * Writes entities asynchronously in batches. Callers hand entities to
+ * {@link #offer(Object)}, which never waits for the queue; a single background
+ * thread collects them into batches of up to {@link #batchSize}, waiting at most
+ * {@link #flushInterval} milliseconds for a batch to fill, and passes each
+ * batch to {@link #write(List)}.
+ * 
+ * The queue is bounded. When it is full, new entities are dropped and counted
+ * rather than slowing down the caller, so this is only suitable for data that
+ * can be lost under load, such as logs and audit trails. Entities still queued
+ * when the writer is closed are written before {@link #close()} returns, up to
+ * {@link #shutdownTimeout} milliseconds.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ * @param <T>
+ *            The type of entity being written.
+ */
+@Log
+public abstract class BatchWriter<T> implements DisposableBean {
+
+	private final BlockingQueue<T> queue;
+
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	/**
+	 * The maximum number of entities passed to {@link #write(List)} at once.
+	 */
+	@Getter
+	@Setter
+	private volatile int batchSize = 500;
+
+	/**
+	 * The longest time, in milliseconds, an entity waits for its batch to fill
+	 * before being written.
+	 */
+	@Getter
+	@Setter
+	private volatile long flushInterval = 1000;
+
+	/**
+	 * The longest time, in milliseconds, {@link #close()} waits for queued
+	 * entities to be written.
+	 */
+	@Getter
+	@Setter
+	private volatile long shutdownTimeout = 30000;
+
+	/**
+	 * Held shared while offering and exclusively while closing, so nothing
+	 * can be queued once the writer has started to close.
+	 */
+	private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+	private volatile boolean closed;
+
+	private volatile boolean started;
+
+	private Thread thread;
+
+	/**
+	 * Creates a writer.
+	 * 
+	 * @param capacity
+	 *            The maximum number of entities waiting to be written.
+	 */
+	protected BatchWriter(final int capacity) {
+		this.queue = new ArrayBlockingQueue<>(capacity);
+	}
+
+	/**
+	 * Writes a batch of entities. Failures are logged and counted, and the
+	 * entities are not retried.
+	 * 
+	 * @param batch
+	 *            The entities to write, will not be empty.
+	 * @throws DataOperationException
+	 *             If the entities could not be written.
+	 */
+	protected abstract void write(final List<T> batch) throws DataOperationException;
+
+	/**
+	 * Queues an entity to be written. This never waits for space in the queue.
+	 * 
+	 * @param entity
+	 *            The entity to write, required.
+	 * @return true if the entity was queued, false if it was dropped because
+	 *         the queue was full or the writer is closed.
+	 */
+	public boolean offer(final T entity) {
+		AjahUtils.requireParam(entity, "entity");
+		boolean queued = false;
+		this.closeLock.readLock().lock();
+		try {
+			if (!this.closed) {
+				if (!this.started) {
+					start();
+				}
+				queued = this.queue.offer(entity);
+			}
+		} finally {
+			this.closeLock.readLock().unlock();
+		}
+		if (queued) {
+			return true;
+		}
+		final long count = this.dropped.incrementAndGet();
+		// Log on powers of two so a sustained overload doesn't flood the log
+		if ((count & (count - 1)) == 0) {
+			log.warning(getClass().getSimpleName() + " has dropped " + count + " entities");
+		}
+		return false;
+	}
+
+	private synchronized void start() {
+		if (this.thread != null || this.closed) {
+			return;
+		}
+		this.thread = new Thread(getClass().getSimpleName()) {
+
+			@Override
+			public void run() {
+				drain();
+			}
+
+		};
+		this.thread.setDaemon(true);
+		this.thread.start();
+		this.started = true;
+	}
+
+	private void drain() {
+		final List<T> batch = new ArrayList<>(this.batchSize);
+		while (!this.closed || !this.queue.isEmpty()) {
+			try {
+				final T first = this.queue.poll(this.flushInterval, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				final long deadline = System.currentTimeMillis() + this.flushInterval;
+				while (batch.size() < this.batchSize) {
+					if (this.queue.drainTo(batch, this.batchSize - batch.size()) > 0) {
+						continue;
+					}
+					final long wait = deadline - System.currentTimeMillis();
+					if (wait <= 0 || this.closed) {
+						break;
+					}
+					final T next = this.queue.poll(wait, TimeUnit.MILLISECONDS);
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+			} catch (final InterruptedException e) {
+				// Stop accepting entities but write what is already queued
+				// rather than losing it, then leave with the interrupt intact
+				log.warning(getClass().getSimpleName() + " interrupted, writing " + (batch.size() + this.queue.size()) + " remaining entities");
+				markClosed();
+				flushRemaining(batch);
+				Thread.currentThread().interrupt();
+				return;
+			} finally {
+				if (!batch.isEmpty()) {
+					flush(batch);
+					batch.clear();
+				}
+			}
+		}
+	}
+
+	private void flushRemaining(final List<T> batch) {
+		do {
+			this.queue.drainTo(batch, this.batchSize - batch.size());
+			if (batch.isEmpty()) {
+				return;
+			}
+			flush(batch);
+			batch.clear();
+		} while (true);
+	}
+
+	private void flush(final List<T> batch) {
+		try {
+			write(batch);
+			this.written.addAndGet(batch.size());
+		} catch (final DataOperationException | RuntimeException e) {
+			this.failed.addAndGet(batch.size());
+			log.log(Level.SEVERE, getClass().getSimpleName() + " failed to write " + batch.size() + " entities: " + e.getMessage(), e);
+		}
+	}
+
+	private void markClosed() {
+		this.closeLock.writeLock().lock();
+		try {
+			this.closed = true;
+		} finally {
+			this.closeLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Stops accepting entities and waits for the queued ones to be written.
+	 */
+	public void close() {
+		markClosed();
+		final Thread current;
+		synchronized (this) {
+			current = this.thread;
+		}
+		if (current == null) {
+			return;
+		}
+		try {
+			current.join(this.shutdownTimeout);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (current.isAlive()) {
+			log.warning(getClass().getSimpleName() + " closed with " + this.queue.size() + " entities unwritten");
+		}
+	}
+
+	/**
+	 * Closes this writer when the Spring context shuts down.
+	 * 
+	 * @see #close()
+	 */
+	@Override
+	public void destroy() {
+		close();
+	}
+
+	/**
+	 * Returns the number of entities waiting to be written.
+	 * 
+	 * @return The number of entities waiting to be written.
+	 */
+	public int getQueueDepth() {
+		return this.queue.size();
+	}
+
+	/**
+	 * Returns the number of entities dropped because the queue was full or the
+	 * writer was closed.
+	 * 
+	 * @return The number of entities dropped.
+	 */
+	public long getDropped() {
+		return this.dropped.get();
+	}
+
+	/**
+	 * Returns the number of entities written successfully.
+	 * 
+	 * @return The number of entities written.
+	 */
+	public long getWritten() {
+		return this.written.get();
+	}
+
+	/**
+	 * Returns the number of entities in batches that failed to write.
+	 * 
+	 * @return The number of entities that failed to write.
+	 */
+	public long getFailed() {
+		return this.failed.get();
+	}
+
+}
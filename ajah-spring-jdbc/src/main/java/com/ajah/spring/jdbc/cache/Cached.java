@@ -0,0 +1,54 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.cache;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Denotes that a DAO should cache the entities it loads by ID. Place this on
+ * the DAO implementation class.
+ * 
+ * Only writes made through the DAO's own methods invalidate the cache, so this
+ * should not be used for tables that are modified elsewhere unless a short
+ * {@link #ttl()} is acceptable.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ * @see com.ajah.spring.jdbc.AbstractAjahDao#createCache()
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Cached {
+
+	/**
+	 * The maximum number of entities to cache.
+	 * 
+	 * @return The maximum number of entities to cache.
+	 */
+	int maxSize() default 10000;
+
+	/**
+	 * The maximum age of a cached entity, in seconds. Zero means entities do
+	 * not expire.
+	 * 
+	 * @return The maximum age of a cached entity, in seconds.
+	 */
+	int ttl() default 300;
+
+}
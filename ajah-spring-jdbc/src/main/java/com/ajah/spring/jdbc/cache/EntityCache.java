@@ -0,0 +1,67 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.cache;
+
+import com.ajah.util.Identifiable;
+
+/**
+ * A cache of entities by ID, used by
+ * {@link com.ajah.spring.jdbc.AbstractAjahDao} to avoid querying for entities
+ * it has recently loaded. Each DAO has its own cache, so IDs only need to be
+ * unique within a table.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ * @param <K>
+ *            The primary key class.
+ * @param <T>
+ *            The type of entity being cached.
+ */
+public interface EntityCache<K extends Comparable<K>, T extends Identifiable<K>> {
+
+	/**
+	 * Returns a cached entity. Callers may modify the entity, so
+	 * implementations should not return the same instance twice.
+	 * 
+	 * @param id
+	 *            The ID of the entity, required.
+	 * @return The cached entity, or null if it is not cached.
+	 */
+	T get(final K id);
+
+	/**
+	 * Caches an entity under its ID. The caller may go on to modify the
+	 * entity, so implementations should not hold on to the same instance.
+	 * 
+	 * @param entity
+	 *            The entity to cache, required.
+	 */
+	void put(final T entity);
+
+	/**
+	 * Removes an entity from the cache, if present.
+	 * 
+	 * @param id
+	 *            The ID of the entity, required.
+	 */
+	void invalidate(final K id);
+
+	/**
+	 * Removes all entities from the cache.
+	 */
+	void invalidateAll();
+
+}
@@ -0,0 +1,90 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.cache;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Makes copies of entities, so that a cache can hold a snapshot that callers
+ * cannot modify and hand each caller its own instance. Every non-static field,
+ * including inherited ones, is copied. {@link Date}s are copied as well, since
+ * they are mutable; other field values are shared.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+public final class EntityCopier {
+
+	private static final Map<Class<?>, Field[]> FIELDS = new ConcurrentHashMap<>();
+
+	private EntityCopier() {
+		// Utility class
+	}
+
+	/**
+	 * Returns a copy of an entity.
+	 * 
+	 * @param entity
+	 *            The entity to copy, may be null.
+	 * @return A new instance of the entity's class with the same field values,
+	 *         or null if the entity was null.
+	 * @throws IllegalStateException
+	 *             If the class does not have a no-arg constructor or its fields
+	 *             cannot be accessed.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T copy(final T entity) {
+		if (entity == null) {
+			return null;
+		}
+		final Class<?> clazz = entity.getClass();
+		try {
+			final T copy = (T) clazz.newInstance();
+			for (final Field field : getFields(clazz)) {
+				final Object value = field.get(entity);
+				field.set(copy, value instanceof Date ? ((Date) value).clone() : value);
+			}
+			return copy;
+		} catch (final InstantiationException | IllegalAccessException e) {
+			throw new IllegalStateException("Could not copy " + clazz.getName() + ": " + e.getMessage(), e);
+		}
+	}
+
+	private static Field[] getFields(final Class<?> clazz) {
+		Field[] fields = FIELDS.get(clazz);
+		if (fields == null) {
+			final List<Field> list = new ArrayList<>();
+			for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+				for (final Field field : current.getDeclaredFields()) {
+					if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) {
+						field.setAccessible(true);
+						list.add(field);
+					}
+				}
+			}
+			fields = list.toArray(new Field[list.size()]);
+			FIELDS.put(clazz, fields);
+		}
+		return fields;
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.cache;
+
+import lombok.Getter;
+
+import com.ajah.cache.LruCache;
+import com.ajah.util.Identifiable;
+
+/**
+ * An {@link EntityCache} backed by an in-memory {@link LruCache}. Entities are
+ * copied with {@link EntityCopier} on the way in and on the way out, so
+ * changes a caller makes to an entity it loaded are not seen by other callers
+ * until they are saved.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ * @param <K>
+ *            The primary key class.
+ * @param <T>
+ *            The type of entity being cached.
+ */
+public class LruEntityCache<K extends Comparable<K>, T extends Identifiable<K>> implements EntityCache<K, T> {
+
+	/**
+	 * The underlying cache, which exposes size and hit/miss/eviction
+	 * statistics.
+	 */
+	@Getter
+	private final LruCache<K, T> cache;
+
+	/**
+	 * Creates a cache.
+	 * 
+	 * @param maxSize
+	 *            The maximum number of entities to hold.
+	 * @param ttl
+	 *            The maximum age of a cached entity, in milliseconds. Zero or
+	 *            less means entities do not expire.
+	 */
+	public LruEntityCache(final int maxSize, final long ttl) {
+		this.cache = new LruCache<>(maxSize, ttl);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public T get(final K id) {
+		return EntityCopier.copy(this.cache.get(id));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void put(final T entity) {
+		this.cache.put(entity.getId(), EntityCopier.copy(entity));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void invalidate(final K id) {
+		this.cache.remove(id);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void invalidateAll() {
+		this.cache.clear();
+	}
+
+}
@@ -102,6 +102,7 @@ public abstract class AbstractCriteria<C> {
 			this.eqs = new ArrayList<>();
 		}
 		this.eqs.add(new NameValuePair<>(field, value));
+		changed();
 		return getThis();
 	}
 
@@ -136,6 +137,14 @@ public abstract class AbstractCriteria<C> {
 		return eq(StringUtils.splitCamelCase(value.getClass().getSimpleName()).replaceAll("\\W+", "_").toLowerCase(), value.toString());
 	}
 
+	/**
+	 * Called whenever a condition is added, so that subclasses can discard
+	 * anything they have rendered from the previous conditions.
+	 */
+	protected void changed() {
+		// Empty
+	}
+
 	protected abstract C getThis();
 
 }
@@ -16,6 +16,7 @@
 package com.ajah.spring.jdbc.criteria;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
 
@@ -49,6 +50,9 @@ public class Criteria extends AbstractCriteria<Criteria> {
 	private List<SubCriteria> ors = null;
 	private long offset = 0;
 	private long rowCount = 0;
+	private Where where = null;
+	private String orderBySql = null;
+	private String clausesSql = null;
 
 	/**
 	 * A subclause, included as an AND, but may contain ORs.
@@ -63,6 +67,7 @@ public class Criteria extends AbstractCriteria<Criteria> {
 			this.ands = new ArrayList<>();
 		}
 		this.ands.add(subCriteria);
+		changed();
 		return this;
 	}
 
@@ -90,6 +95,34 @@ public class Criteria extends AbstractCriteria<Criteria> {
 		return orderBy(field, Order.DESC);
 	}
 
+	/**
+	 * Discards the rendered WHERE and ORDER BY clauses.
+	 */
+	@Override
+	protected void changed() {
+		this.where = null;
+		this.orderBySql = null;
+		this.clausesSql = null;
+	}
+
+	/**
+	 * Returns the SQL for the WHERE, ORDER BY and LIMIT portions of this
+	 * query. It is rendered once and reused until the criteria changes, unless
+	 * it has sub-criteria, which can change without this criteria knowing.
+	 * 
+	 * @return The SQL for the WHERE, ORDER BY and LIMIT portions of this query.
+	 */
+	public String getClausesSql() {
+		if (this.clausesSql != null) {
+			return this.clausesSql;
+		}
+		final String sql = getWhere().getSql() + getOrderBySql() + getLimit().getSql();
+		if (this.ands == null && this.ors == null) {
+			this.clausesSql = sql;
+		}
+		return sql;
+	}
+
 	/**
 	 * Returns the LIMIT number of this Criteria. The default value is 0, which
 	 * will yield a query without a LIMIT clause.
@@ -101,6 +134,19 @@ public class Criteria extends AbstractCriteria<Criteria> {
 		return new Limit(this.offset, this.rowCount);
 	}
 
+	/**
+	 * Returns the fields and directions this query is ordered by.
+	 * 
+	 * @return The fields and directions this query is ordered by, may be empty
+	 *         but will not be null. The direction is null for random ordering.
+	 */
+	public List<NameValuePair<Order>> getOrderBys() {
+		if (this.orderBys == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(this.orderBys);
+	}
+
 	/**
 	 * Returns the SQL for the ORDER BY portion of this query, or an empty
 	 * string.
@@ -112,6 +158,13 @@ public class Criteria extends AbstractCriteria<Criteria> {
 		if (CollectionUtils.isEmpty(this.orderBys)) {
 			return " ";
 		}
+		if (this.orderBySql == null) {
+			this.orderBySql = renderOrderBySql();
+		}
+		return this.orderBySql;
+	}
+
+	private String renderOrderBySql() {
 		final StringBuilder sql = new StringBuilder();
 		boolean first = true;
 		for (final NameValuePair<Order> orderBy : this.orderBys) {
@@ -151,6 +204,9 @@ public class Criteria extends AbstractCriteria<Criteria> {
 	 * @return A where clause that is equivalent to this criteria.
 	 */
 	public Where getWhere(String tableName) {
+		if (tableName == null && this.where != null) {
+			return this.where;
+		}
 		final List<String> values = new ArrayList<>();
 		final StringBuilder where = new StringBuilder();
 		boolean first = true;
@@ -271,8 +327,9 @@ public class Criteria extends AbstractCriteria<Criteria> {
 				} else {
 					where.append(" AND ");
 				}
-				where.append(and.getWhere().getSql(false));
-				values.addAll(and.getWhere().getValues());
+				final Where andWhere = and.getWhere();
+				where.append(andWhere.getSql(false));
+				values.addAll(andWhere.getValues());
 			}
 		}
 		if (!CollectionUtils.isEmpty(this.ors)) {
@@ -282,14 +339,21 @@ public class Criteria extends AbstractCriteria<Criteria> {
 				} else {
 					where.append(" OR ");
 				}
-				where.append(or.getWhere().getSql(false));
-				values.addAll(or.getWhere().getValues());
+				final Where orWhere = or.getWhere();
+				where.append(orWhere.getSql(false));
+				values.addAll(orWhere.getValues());
 			}
 		}
 		if (log.isLoggable(Level.FINEST)) {
 			log.finest(where.toString());
 		}
-		return new Where(where.toString(), values);
+		final Where rendered = new Where(where.toString(), Collections.unmodifiableList(values));
+		// Sub-criteria can change after they are added, so only cache flat
+		// criteria.
+		if (tableName == null && this.ands == null && this.ors == null) {
+			this.where = rendered;
+		}
+		return rendered;
 	}
 
 	/**
@@ -321,6 +385,7 @@ public class Criteria extends AbstractCriteria<Criteria> {
 			this.gts = new ArrayList<>();
 		}
 		this.gts.add(new NameValuePair<>(field, value));
+		changed();
 		return this;
 	}
 
@@ -353,6 +418,7 @@ public class Criteria extends AbstractCriteria<Criteria> {
 			this.gtes = new ArrayList<>();
 		}
 		this.gtes.add(new NameValuePair<>(field, value));
+		changed();
 		return this;
 	}
 
@@ -401,6 +467,7 @@ public class Criteria extends AbstractCriteria<Criteria> {
 			this.joins = new ArrayList<>();
 		}
 		this.joins.add(new NameValuePair<>("`" + table1 + "`.`" + field1 + "`", "`" + table2 + "`.`" + field2 + "`"));
+		changed();
 		return this;
 	}
 
@@ -420,6 +487,7 @@ public class Criteria extends AbstractCriteria<Criteria> {
 			this.likes = new ArrayList<>();
 		}
 		this.likes.add(new NameValuePair<>(field, pattern));
+		changed();
 		return this;
 	}
 
@@ -441,6 +509,7 @@ public class Criteria extends AbstractCriteria<Criteria> {
 			this.reverseLikes = new ArrayList<>();
 		}
 		this.reverseLikes.add(new NameValuePair<>(field, pattern));
+		changed();
 		return this;
 	}
 
@@ -473,6 +542,7 @@ public class Criteria extends AbstractCriteria<Criteria> {
 			this.ltes = new ArrayList<>();
 		}
 		this.ltes.add(new NameValuePair<>(field, value));
+		changed();
 		return this;
 	}
 
@@ -485,6 +555,7 @@ public class Criteria extends AbstractCriteria<Criteria> {
 	 */
 	public Criteria offset(final long offsetIndex) {
 		this.offset = offsetIndex;
+		this.clausesSql = null;
 		return this;
 	}
 
@@ -501,6 +572,7 @@ public class Criteria extends AbstractCriteria<Criteria> {
 			this.ors = new ArrayList<>();
 		}
 		this.ors.add(subCriteria);
+		changed();
 		return this;
 	}
 
@@ -520,6 +592,7 @@ public class Criteria extends AbstractCriteria<Criteria> {
 			this.orderBys = new ArrayList<>();
 		}
 		this.orderBys.add(new NameValuePair<>(field, order));
+		changed();
 		return this;
 	}
 
@@ -533,6 +606,7 @@ public class Criteria extends AbstractCriteria<Criteria> {
 			this.orderBys = new ArrayList<>();
 		}
 		this.orderBys.add(new NameValuePair<>("RAND()", (Order) null));
+		changed();
 		return this;
 	}
 
@@ -545,6 +619,7 @@ public class Criteria extends AbstractCriteria<Criteria> {
 	 */
 	public Criteria rows(final long maximumRowsFetched) {
 		this.rowCount = maximumRowsFetched;
+		this.clausesSql = null;
 		return this;
 	}
 
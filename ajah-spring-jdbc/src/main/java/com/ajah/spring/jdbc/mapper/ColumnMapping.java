@@ -0,0 +1,213 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.mapper;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+import org.joda.time.LocalDate;
+
+import com.ajah.util.ArrayUtils;
+import com.ajah.util.Identifiable;
+import com.ajah.util.StringUtils;
+import com.ajah.util.reflect.IntrospectionUtils;
+
+/**
+ * Maps a single column of a result set to a property of an entity. All of the
+ * reflective work (type resolution, setter lookup, constructor lookup, enum
+ * lookup) is done when the mapping is created, so applying it to a row is just
+ * a typed read and a direct setter invocation.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ * 
+ */
+@Log
+public class ColumnMapping {
+
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	private static final MethodType FROM_STRING_TYPE = MethodType.methodType(Object.class, String.class);
+
+	@Getter
+	private final String column;
+
+	@Getter
+	private final Field field;
+
+	@Getter
+	private final ColumnType type;
+
+	@Getter
+	private final PropertyDescriptor property;
+
+	private final boolean primitive;
+
+	private final MethodHandle setter;
+
+	private MethodHandle fromString;
+
+	private Map<Object, Object> enumValues;
+
+	/**
+	 * Creates a mapping between a column and a property.
+	 * 
+	 * @param column
+	 *            The name of the column, required.
+	 * @param field
+	 *            The field the column maps to, required.
+	 * @param property
+	 *            The property descriptor of the field, may be null if no
+	 *            matching property exists, in which case the column will be
+	 *            ignored.
+	 */
+	public ColumnMapping(final String column, final Field field, final PropertyDescriptor property) {
+		this.column = column;
+		this.field = field;
+		this.property = property;
+		this.primitive = IntrospectionUtils.isPrimitive(field);
+		ColumnType columnType = ColumnType.of(field);
+		this.setter = findSetter(property);
+		if (columnType == ColumnType.FROM_STRINGABLE) {
+			try {
+				this.fromString = MethodHandles.publicLookup().unreflectConstructor(field.getType().getConstructor(String.class)).asType(FROM_STRING_TYPE);
+			} catch (NoSuchMethodException | IllegalAccessException e) {
+				log.log(Level.SEVERE, field.getType().getName() + " is FromStringable but has no public String constructor", e);
+				columnType = ColumnType.UNSUPPORTED;
+			}
+		} else if (columnType == ColumnType.IDENTIFIABLE_ENUM) {
+			this.enumValues = new HashMap<>();
+			for (final Object element : field.getType().getEnumConstants()) {
+				this.enumValues.put(((Identifiable<?>) element).getId(), element);
+			}
+		} else if (columnType == ColumnType.UNSUPPORTED) {
+			if (IntrospectionUtils.isEnum(field)) {
+				log.warning("Can't handle non-Identifiable enum for column " + column + " [" + field.getType() + "]");
+			} else {
+				log.warning("Can't handle auto-populating of column " + column + " of type " + field.getType());
+			}
+		}
+		this.type = columnType;
+	}
+
+	private static MethodHandle findSetter(final PropertyDescriptor property) {
+		if (property == null) {
+			return null;
+		}
+		if (property.getWriteMethod() == null) {
+			log.warning("No setter found for " + property.getName());
+			return null;
+		}
+		try {
+			return MethodHandles.publicLookup().unreflect(property.getWriteMethod()).asType(SETTER_TYPE);
+		} catch (final IllegalAccessException e) {
+			log.log(Level.SEVERE, property.getName() + ": " + e.getMessage(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the column from the current row of a result set and sets it on
+	 * the entity.
+	 * 
+	 * @param entity
+	 *            The entity to populate.
+	 * @param rs
+	 *            The result set, positioned on the row to read.
+	 * @param index
+	 *            The index of this mapping's column in the result set.
+	 * @throws SQLException
+	 *             If thrown by the result set.
+	 */
+	public void apply(final Object entity, final ResultSet rs, final int index) throws SQLException {
+		if (this.setter == null || this.type == ColumnType.UNSUPPORTED) {
+			return;
+		}
+		final Object value = read(rs, index);
+		if (value == null && this.primitive) {
+			if (log.isLoggable(Level.FINE)) {
+				log.fine("Null value for primitive field " + this.field.getName() + ", leaving default");
+			}
+			return;
+		}
+		set(entity, value);
+	}
+
+	private Object read(final ResultSet rs, final int index) throws SQLException {
+		switch (this.type) {
+		case STRING:
+			return rs.getString(index);
+		case DATE:
+			final long time = rs.getLong(index);
+			return rs.wasNull() ? null : new Date(time);
+		case FROM_STRINGABLE:
+			final String string = rs.getString(index);
+			if (string == null) {
+				return null;
+			}
+			try {
+				return this.fromString.invokeExact(string);
+			} catch (final Throwable e) {
+				log.log(Level.SEVERE, this.field.getType().getName() + ": " + e.getMessage(), e);
+				return null;
+			}
+		case IDENTIFIABLE_ENUM:
+			final String id = rs.getString(index);
+			return id == null ? null : this.enumValues.get(id);
+		case INT:
+			final int intValue = rs.getInt(index);
+			return rs.wasNull() ? null : Integer.valueOf(intValue);
+		case LONG:
+			final long longValue = rs.getLong(index);
+			return rs.wasNull() ? null : Long.valueOf(longValue);
+		case BOOLEAN:
+			final boolean booleanValue = rs.getBoolean(index);
+			return rs.wasNull() ? null : Boolean.valueOf(booleanValue);
+		case BIG_DECIMAL:
+			return rs.getBigDecimal(index);
+		case LOCAL_DATE:
+			final String localDate = rs.getString(index);
+			if (StringUtils.isBlank(localDate)) {
+				return null;
+			}
+			final int[] parts = ArrayUtils.parseInt(localDate.split("-"));
+			return new LocalDate(parts[0], parts[1], parts[2]);
+		default:
+			return null;
+		}
+	}
+
+	private void set(final Object entity, final Object value) {
+		try {
+			this.setter.invokeExact(entity, value);
+		} catch (final Throwable e) {
+			log.log(Level.SEVERE, this.field.getName() + ": " + e.getMessage(), e);
+		}
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.mapper;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+
+import org.joda.time.LocalDate;
+
+import com.ajah.util.reflect.IntrospectionUtils;
+
+/**
+ * The ways a column can be read from a result set and applied to a field. This
+ * is resolved once per field so that rows can be mapped without repeating the
+ * type checks.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ * 
+ */
+public enum ColumnType {
+
+	/**
+	 * A {@link String}.
+	 */
+	STRING,
+	/**
+	 * A {@link java.util.Date}, stored as milliseconds.
+	 */
+	DATE,
+	/**
+	 * A {@link com.ajah.util.FromStringable}, constructed from a String.
+	 */
+	FROM_STRINGABLE,
+	/**
+	 * An enum that implements {@link com.ajah.util.Identifiable}.
+	 */
+	IDENTIFIABLE_ENUM,
+	/**
+	 * An int or {@link Integer}.
+	 */
+	INT,
+	/**
+	 * A long or {@link Long}.
+	 */
+	LONG,
+	/**
+	 * A primitive boolean.
+	 */
+	BOOLEAN,
+	/**
+	 * A {@link BigDecimal}.
+	 */
+	BIG_DECIMAL,
+	/**
+	 * A Joda {@link LocalDate}, stored as yyyy-MM-dd.
+	 */
+	LOCAL_DATE,
+	/**
+	 * A type that cannot be automatically populated.
+	 */
+	UNSUPPORTED;
+
+	/**
+	 * Determines the column type of a field. The order of checks matches the
+	 * historical behavior of automatic population, so a type matching several
+	 * checks (e.g. a FromStringable enum) is handled the same way.
+	 * 
+	 * @param field
+	 *            The field to inspect, required.
+	 * @return The column type, will not be null.
+	 */
+	public static ColumnType of(final Field field) {
+		if (IntrospectionUtils.isString(field)) {
+			return STRING;
+		} else if (IntrospectionUtils.isDate(field)) {
+			return DATE;
+		} else if (IntrospectionUtils.isFromStringable(field)) {
+			return FROM_STRINGABLE;
+		} else if (IntrospectionUtils.isIdentifiableEnum(field)) {
+			return IDENTIFIABLE_ENUM;
+		} else if (IntrospectionUtils.isInt(field)) {
+			return INT;
+		} else if (IntrospectionUtils.isLong(field)) {
+			return LONG;
+		} else if (IntrospectionUtils.isBoolean(field)) {
+			return BOOLEAN;
+		} else if (IntrospectionUtils.isBigDecimal(field)) {
+			return BIG_DECIMAL;
+		} else if (LocalDate.class.isAssignableFrom(field.getType())) {
+			return LOCAL_DATE;
+		}
+		return UNSUPPORTED;
+	}
+
+}
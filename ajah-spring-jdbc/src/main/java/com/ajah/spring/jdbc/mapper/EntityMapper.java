@@ -0,0 +1,168 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.mapper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+/**
+ * Populates entities from result sets using a set of precompiled
+ * {@link ColumnMapping}s. Column positions are resolved once per result set
+ * and then every row is read by index.
+ * 
+ * Instances are thread-safe and are intended to be created once per DAO.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ * @param <T>
+ *            The type of entity this mapper populates.
+ * 
+ */
+@Log
+public class EntityMapper<T> {
+
+	private static final class ResolvedColumns {
+
+		final WeakReference<ResultSet> resultSet;
+		final int[] indexes;
+
+		ResolvedColumns(final ResultSet resultSet, final int[] indexes) {
+			this.resultSet = new WeakReference<>(resultSet);
+			this.indexes = indexes;
+		}
+
+	}
+
+	private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+	@Getter
+	private final Class<? extends T> targetClass;
+
+	private final ColumnMapping[] mappings;
+
+	private final MethodHandle constructor;
+
+	private final ThreadLocal<ResolvedColumns> resolved = new ThreadLocal<>();
+
+	/**
+	 * Creates a mapper for a class.
+	 * 
+	 * @param targetClass
+	 *            The concrete class that will be instantiated, required.
+	 * @param mappings
+	 *            The column mappings, in SELECT order.
+	 */
+	public EntityMapper(final Class<? extends T> targetClass, final List<ColumnMapping> mappings) {
+		this.targetClass = targetClass;
+		this.mappings = mappings.toArray(new ColumnMapping[mappings.size()]);
+		MethodHandle handle = null;
+		try {
+			handle = MethodHandles.publicLookup().findConstructor(targetClass, MethodType.methodType(void.class)).asType(CONSTRUCTOR_TYPE);
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			log.warning("No public no-arg constructor for " + targetClass.getName() + ", falling back to reflection");
+		}
+		this.constructor = handle;
+	}
+
+	/**
+	 * Returns the column mappings, in SELECT order.
+	 * 
+	 * @return The column mappings, will not be null.
+	 */
+	public List<ColumnMapping> getMappings() {
+		return Collections.unmodifiableList(Arrays.asList(this.mappings));
+	}
+
+	/**
+	 * Creates a new, empty instance of the target class.
+	 * 
+	 * @return A new instance of the target class.
+	 * @throws SQLException
+	 *             If the class could not be instantiated.
+	 */
+	@SuppressWarnings("unchecked")
+	public T newInstance() throws SQLException {
+		try {
+			if (this.constructor != null) {
+				final Object instance = this.constructor.invokeExact();
+				return (T) instance;
+			}
+			return this.targetClass.newInstance();
+		} catch (final Throwable e) {
+			log.log(Level.SEVERE, this.targetClass.getName() + ": " + e.getMessage(), e);
+			throw new SQLException(e);
+		}
+	}
+
+	/**
+	 * Creates a new instance of the target class and populates it from the
+	 * current row of the result set.
+	 * 
+	 * @param rs
+	 *            The result set, positioned on the row to read.
+	 * @return The populated entity.
+	 * @throws SQLException
+	 *             If thrown by the result set.
+	 */
+	public T mapRow(final ResultSet rs) throws SQLException {
+		final T entity = newInstance();
+		populate(entity, rs);
+		return entity;
+	}
+
+	/**
+	 * Populates an entity from the current row of the result set.
+	 * 
+	 * @param entity
+	 *            The entity to populate.
+	 * @param rs
+	 *            The result set, positioned on the row to read.
+	 * @throws SQLException
+	 *             If thrown by the result set, including if a mapped column is
+	 *             not present.
+	 */
+	public void populate(final T entity, final ResultSet rs) throws SQLException {
+		final int[] indexes = getIndexes(rs);
+		for (int i = 0; i < this.mappings.length; i++) {
+			this.mappings[i].apply(entity, rs, indexes[i]);
+		}
+	}
+
+	private int[] getIndexes(final ResultSet rs) throws SQLException {
+		final ResolvedColumns current = this.resolved.get();
+		if (current != null && current.resultSet.get() == rs) {
+			return current.indexes;
+		}
+		final int[] indexes = new int[this.mappings.length];
+		for (int i = 0; i < this.mappings.length; i++) {
+			indexes[i] = rs.findColumn(this.mappings[i].getColumn());
+		}
+		this.resolved.set(new ResolvedColumns(rs, indexes));
+		return indexes;
+	}
+
+}
@@ -0,0 +1,161 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.metrics;
+
+import java.util.Collection;
+
+import javax.sql.DataSource;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.CallableStatementCallback;
+import org.springframework.jdbc.core.CallableStatementCreator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.core.StatementCallback;
+
+import com.ajah.spring.jdbc.err.DataOperationExceptionUtils;
+
+/**
+ * A {@link JdbcTemplate} that times every statement it executes and records it
+ * to a {@link SqlMetrics}. Every query, update and batch method of
+ * {@link JdbcTemplate} funnels through the statement-level execute methods
+ * overridden here, so no call sites need to change. The SQL of a statement is
+ * only known if its creator or callback implements {@link SqlProvider}, which
+ * all of the ones created by {@link JdbcTemplate} do; others are recorded as
+ * {@link SqlMetrics#OTHER}. {@link #execute(org.springframework.jdbc.core.ConnectionCallback)}
+ * is not recorded because it may run any number of statements.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+public class MetricsJdbcTemplate extends JdbcTemplate {
+
+	@Getter
+	@Setter
+	private SqlMetrics sqlMetrics;
+
+	/**
+	 * Creates a template that records to the shared {@link SqlMetrics}.
+	 * 
+	 * @param dataSource
+	 *            The data source to execute statements against.
+	 */
+	public MetricsJdbcTemplate(final DataSource dataSource) {
+		this(dataSource, SqlMetrics.getDefault());
+	}
+
+	/**
+	 * Creates a template that records to a specific {@link SqlMetrics}.
+	 * 
+	 * @param dataSource
+	 *            The data source to execute statements against.
+	 * @param sqlMetrics
+	 *            The metrics to record to, if null nothing is recorded.
+	 */
+	public MetricsJdbcTemplate(final DataSource dataSource, final SqlMetrics sqlMetrics) {
+		super(dataSource);
+		this.sqlMetrics = sqlMetrics;
+	}
+
+	private static String getSql(final Object provider) {
+		if (provider instanceof SqlProvider) {
+			return ((SqlProvider) provider).getSql();
+		}
+		return null;
+	}
+
+	private static int getRows(final Object result) {
+		if (result instanceof Collection) {
+			return ((Collection<?>) result).size();
+		} else if (result instanceof Number) {
+			return ((Number) result).intValue();
+		} else if (result instanceof int[]) {
+			int rows = 0;
+			for (final int count : (int[]) result) {
+				rows += Math.max(count, 0);
+			}
+			return rows;
+		}
+		return 0;
+	}
+
+	private <T> T record(final String sql, final long start, final T result) {
+		if (this.sqlMetrics != null) {
+			this.sqlMetrics.record(sql, start, getRows(result), null);
+		}
+		return result;
+	}
+
+	private void record(final String sql, final long start, final DataAccessException e) {
+		if (this.sqlMetrics != null) {
+			String errorType;
+			try {
+				errorType = DataOperationExceptionUtils.translate(e, SqlMetrics.parseTable(sql)).getClass().getSimpleName();
+			} catch (final RuntimeException translationError) {
+				errorType = e.getClass().getSimpleName();
+			}
+			this.sqlMetrics.record(sql, start, 0, errorType);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <T> T execute(final StatementCallback<T> action) throws DataAccessException {
+		final long start = System.nanoTime();
+		try {
+			return record(getSql(action), start, super.execute(action));
+		} catch (final DataAccessException e) {
+			record(getSql(action), start, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <T> T execute(final PreparedStatementCreator psc, final PreparedStatementCallback<T> action) throws DataAccessException {
+		final long start = System.nanoTime();
+		try {
+			return record(getSql(psc), start, super.execute(psc, action));
+		} catch (final DataAccessException e) {
+			record(getSql(psc), start, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <T> T execute(final CallableStatementCreator csc, final CallableStatementCallback<T> action) throws DataAccessException {
+		final long start = System.nanoTime();
+		try {
+			return record(getSql(csc), start, super.execute(csc, action));
+		} catch (final DataAccessException e) {
+			record(getSql(csc), start, e);
+			throw e;
+		}
+	}
+
+}
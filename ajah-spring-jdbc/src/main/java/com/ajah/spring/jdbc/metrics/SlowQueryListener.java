@@ -0,0 +1,38 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.metrics;
+
+import com.ajah.event.sql.SqlEvent;
+
+/**
+ * Notified when a statement takes longer than the slow query threshold of a
+ * {@link SqlMetrics}.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+public interface SlowQueryListener {
+
+	/**
+	 * Handles a slow query. This is invoked on the thread that executed the
+	 * statement, so it should return quickly.
+	 * 
+	 * @param event
+	 *            The completed query.
+	 */
+	void slowQuery(final SqlEvent event);
+
+}
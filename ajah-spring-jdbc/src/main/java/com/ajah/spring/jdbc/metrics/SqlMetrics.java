@@ -0,0 +1,380 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.java.Log;
+
+import com.ajah.event.sql.SqlEvent;
+import com.ajah.event.sql.SqlEventId;
+
+/**
+ * Collects per-statement timings, row counts and errors, keyed by the
+ * parameterized SQL of each statement, and captures statements slower than a
+ * threshold as {@link SqlEvent}s. Statements are recorded by
+ * {@link MetricsJdbcTemplate}. Statements that inline literals or vary the
+ * length of IN lists are normalized (see {@link #normalize(String)}) so they
+ * are counted together.
+ * 
+ * A shared instance is available from {@link #getDefault()}, and is
+ * registered with the platform MBean server as
+ * {@value #DEFAULT_OBJECT_NAME}.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+@Log
+public class SqlMetrics implements SqlMetricsMXBean {
+
+	/**
+	 * The JMX name of the shared instance.
+	 */
+	public static final String DEFAULT_OBJECT_NAME = "com.ajah:type=SqlMetrics,name=default";
+
+	/**
+	 * The key that statements are recorded under once
+	 * {@link #getMaxStatements()} distinct statements are being tracked.
+	 */
+	public static final String OTHER = "(other)";
+
+	private static final Pattern TABLE = Pattern.compile("\\b(?:FROM|INTO|UPDATE)\\s+`?([\\w.]+)", Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]++|\\\\.|'')*+'|\"(?:[^\"\\\\]++|\\\\.|\"\")*+\"");
+
+	private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w`.])\\d+(?:\\.\\d+)?(?![\\w`])");
+
+	private static final Pattern IN_LIST = Pattern.compile("\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)", Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private static final SqlMetrics DEFAULT = new SqlMetrics();
+
+	static {
+		DEFAULT.register(DEFAULT_OBJECT_NAME);
+	}
+
+	private final ConcurrentMap<String, StatementMetrics> statements = new ConcurrentHashMap<>();
+
+	/**
+	 * Normalized keys by raw SQL, so repeated statements are only normalized
+	 * once. Bounded like {@link #statements}.
+	 */
+	private final ConcurrentMap<String, String> keys = new ConcurrentHashMap<>();
+
+	private final Deque<SqlEvent> slowQueries = new ArrayDeque<>();
+
+	private final List<SlowQueryListener> listeners = new CopyOnWriteArrayList<>();
+
+	private volatile boolean enabled = true;
+
+	private volatile long slowQueryThreshold = 1000;
+
+	/**
+	 * The maximum number of distinct statements tracked, so that callers
+	 * building SQL from unbounded input cannot exhaust memory.
+	 */
+	@Getter
+	@Setter
+	private int maxStatements = 1000;
+
+	/**
+	 * The number of slow queries retained for {@link #getSlowQueries()}.
+	 */
+	@Getter
+	@Setter
+	private int maxSlowQueries = 100;
+
+	/**
+	 * Returns the shared instance.
+	 * 
+	 * @return The shared instance, will not be null.
+	 */
+	public static SqlMetrics getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Finds the table a statement operates on, i.e. the first table after
+	 * FROM, INTO or UPDATE.
+	 * 
+	 * @param sql
+	 *            The SQL statement.
+	 * @return The table name, or null if none could be found.
+	 */
+	public static String parseTable(final String sql) {
+		if (sql == null) {
+			return null;
+		}
+		final Matcher matcher = TABLE.matcher(sql);
+		return matcher.find() ? matcher.group(1) : null;
+	}
+
+	/**
+	 * Normalizes a statement so that executions differing only in their
+	 * values share a key: string and number literals become ?, IN lists of
+	 * any length become IN (...), and runs of whitespace become one space.
+	 * 
+	 * @param sql
+	 *            The SQL statement.
+	 * @return The normalized statement, or null if the statement was null.
+	 */
+	public static String normalize(final String sql) {
+		if (sql == null) {
+			return null;
+		}
+		String normalized = sql;
+		if (normalized.indexOf('\'') >= 0 || normalized.indexOf('"') >= 0) {
+			normalized = STRING_LITERAL.matcher(normalized).replaceAll("?");
+		}
+		for (int i = 0; i < normalized.length(); i++) {
+			if (Character.isDigit(normalized.charAt(i))) {
+				normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+				break;
+			}
+		}
+		if (normalized.indexOf('?') >= 0) {
+			normalized = IN_LIST.matcher(normalized).replaceAll("IN (...)");
+		}
+		return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+	}
+
+	/**
+	 * Adds a listener to be notified of slow queries.
+	 * 
+	 * @param listener
+	 *            The listener, required.
+	 */
+	public void addListener(final SlowQueryListener listener) {
+		this.listeners.add(listener);
+	}
+
+	/**
+	 * Returns the metrics for a statement, creating them if needed.
+	 * 
+	 * @param sql
+	 *            The SQL statement, which is normalized before it is used as a
+	 *            key.
+	 * @return The metrics for the statement, or for {@link #OTHER} if too many
+	 *         statements are already tracked.
+	 */
+	public StatementMetrics getStatement(final String sql) {
+		final String key = sql == null ? OTHER : getKey(sql);
+		StatementMetrics metrics = this.statements.get(key);
+		if (metrics != null) {
+			return metrics;
+		}
+		if (this.statements.size() >= this.maxStatements && !OTHER.equals(key)) {
+			return getStatement(OTHER);
+		}
+		final StatementMetrics created = new StatementMetrics(parseTable(key), key);
+		metrics = this.statements.putIfAbsent(key, created);
+		return metrics == null ? created : metrics;
+	}
+
+	private String getKey(final String sql) {
+		String key = this.keys.get(sql);
+		if (key == null) {
+			key = normalize(sql);
+			if (this.keys.size() < this.maxStatements * 4) {
+				this.keys.put(sql, key);
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * Records an execution of a statement.
+	 * 
+	 * @param sql
+	 *            The SQL statement, may be null if it is not known.
+	 * @param startNanos
+	 *            The value of {@link System#nanoTime()} when the statement
+	 *            started.
+	 * @param rows
+	 *            The number of rows returned or affected.
+	 * @param errorType
+	 *            The type of error, if the statement failed, otherwise null.
+	 */
+	public void record(final String sql, final long startNanos, final int rows, final String errorType) {
+		if (!this.enabled) {
+			return;
+		}
+		final long micros = (System.nanoTime() - startNanos) / 1000;
+		final StatementMetrics metrics = getStatement(sql);
+		metrics.record(micros, rows, errorType);
+		if (micros >= this.slowQueryThreshold * 1000) {
+			final SqlEvent event = new SqlEvent();
+			event.setId(new SqlEventId(UUID.randomUUID().toString()));
+			event.setEnd(System.currentTimeMillis());
+			event.setStart(event.getEnd() - micros / 1000);
+			event.setTable(metrics.getTable());
+			event.setSql(sql);
+			event.setRows(rows);
+			event.setError(errorType);
+			slowQuery(event);
+		}
+	}
+
+	private void slowQuery(final SqlEvent event) {
+		if (log.isLoggable(Level.WARNING)) {
+			log.warning("Slow query (" + (event.getEnd() - event.getStart()) + "ms, " + event.getRows() + " rows): " + event.getSql());
+		}
+		synchronized (this.slowQueries) {
+			this.slowQueries.addFirst(event);
+			while (this.slowQueries.size() > this.maxSlowQueries) {
+				this.slowQueries.removeLast();
+			}
+		}
+		for (final SlowQueryListener listener : this.listeners) {
+			try {
+				listener.slowQuery(event);
+			} catch (final RuntimeException e) {
+				log.log(Level.WARNING, e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the most recent slow queries, newest first.
+	 * 
+	 * @return The most recent slow queries, will not be null.
+	 */
+	public List<SqlEvent> getSlowQueries() {
+		synchronized (this.slowQueries) {
+			return new ArrayList<>(this.slowQueries);
+		}
+	}
+
+	/**
+	 * Registers this instance with the platform MBean server. Failures, such
+	 * as the name already being registered by another class loader, are logged
+	 * and otherwise ignored.
+	 * 
+	 * @param objectName
+	 *            The JMX name to register as.
+	 */
+	public void register(final String objectName) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(objectName));
+		} catch (final JMException | SecurityException e) {
+			log.log(Level.INFO, "Could not register " + objectName + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getSlowQueryThreshold() {
+		return this.slowQueryThreshold;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setSlowQueryThreshold(final long slowQueryThreshold) {
+		this.slowQueryThreshold = slowQueryThreshold;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getStatementCount() {
+		return this.statements.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<StatementStats> getStatements() {
+		final List<StatementStats> stats = new ArrayList<>(this.statements.size());
+		for (final StatementMetrics metrics : this.statements.values()) {
+			stats.add(metrics.getStats());
+		}
+		Collections.sort(stats, new Comparator<StatementStats>() {
+
+			@Override
+			public int compare(final StatementStats o1, final StatementStats o2) {
+				return Long.compare(o2.getMeanMicros() * o2.getCount(), o1.getMeanMicros() * o1.getCount());
+			}
+
+		});
+		return stats;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<String> getRecentSlowQueries() {
+		final List<SqlEvent> events = getSlowQueries();
+		final List<String> descriptions = new ArrayList<>(events.size());
+		for (final SqlEvent event : events) {
+			descriptions.add((event.getEnd() - event.getStart()) + "ms " + event.getTable() + ": " + event.getSql());
+		}
+		return descriptions;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void reset() {
+		this.statements.clear();
+		synchronized (this.slowQueries) {
+			this.slowQueries.clear();
+		}
+	}
+
+}
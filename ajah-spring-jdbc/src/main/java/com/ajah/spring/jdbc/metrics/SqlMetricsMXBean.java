@@ -0,0 +1,86 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.metrics;
+
+import java.util.List;
+
+/**
+ * The JMX management interface of {@link SqlMetrics}.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+public interface SqlMetricsMXBean {
+
+	/**
+	 * Returns whether statements are being recorded.
+	 * 
+	 * @return true if statements are being recorded.
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Turns recording on or off.
+	 * 
+	 * @param enabled
+	 *            true to record statements.
+	 */
+	void setEnabled(final boolean enabled);
+
+	/**
+	 * Returns the duration above which a statement is captured as a slow
+	 * query.
+	 * 
+	 * @return The slow query threshold, in milliseconds.
+	 */
+	long getSlowQueryThreshold();
+
+	/**
+	 * Sets the duration above which a statement is captured as a slow query.
+	 * 
+	 * @param slowQueryThreshold
+	 *            The slow query threshold, in milliseconds.
+	 */
+	void setSlowQueryThreshold(final long slowQueryThreshold);
+
+	/**
+	 * Returns the number of distinct statements being tracked.
+	 * 
+	 * @return The number of distinct statements.
+	 */
+	int getStatementCount();
+
+	/**
+	 * Returns a snapshot of every statement, most total time first.
+	 * 
+	 * @return The statement snapshots, will not be null.
+	 */
+	List<StatementStats> getStatements();
+
+	/**
+	 * Returns the most recent slow queries, newest first, as
+	 * "duration table: sql" strings.
+	 * 
+	 * @return The most recent slow queries, will not be null.
+	 */
+	List<String> getRecentSlowQueries();
+
+	/**
+	 * Discards all recorded metrics and slow queries.
+	 */
+	void reset();
+
+}
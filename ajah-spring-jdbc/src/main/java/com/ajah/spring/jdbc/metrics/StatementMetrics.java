@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+
+import com.ajah.util.metrics.LatencyHistogram;
+
+/**
+ * Accumulates timings, row counts and errors for a single statement shape,
+ * i.e. one parameterized SQL string.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+public class StatementMetrics {
+
+	@Getter
+	private final String table;
+
+	@Getter
+	private final String sql;
+
+	@Getter
+	private final LatencyHistogram histogram = new LatencyHistogram();
+
+	private final AtomicLong rows = new AtomicLong();
+
+	private final ConcurrentMap<String, AtomicLong> errors = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates metrics for a statement.
+	 * 
+	 * @param table
+	 *            The table the statement operates on, may be null.
+	 * @param sql
+	 *            The SQL of the statement.
+	 */
+	public StatementMetrics(final String table, final String sql) {
+		this.table = table;
+		this.sql = sql;
+	}
+
+	/**
+	 * Records an execution of this statement.
+	 * 
+	 * @param micros
+	 *            How long the statement took, in microseconds.
+	 * @param rowCount
+	 *            The number of rows returned or affected.
+	 * @param errorType
+	 *            The type of error, if the statement failed, otherwise null.
+	 */
+	public void record(final long micros, final int rowCount, final String errorType) {
+		this.histogram.record(micros);
+		if (rowCount > 0) {
+			this.rows.addAndGet(rowCount);
+		}
+		if (errorType != null) {
+			AtomicLong errorCount = this.errors.get(errorType);
+			if (errorCount == null) {
+				final AtomicLong created = new AtomicLong();
+				errorCount = this.errors.putIfAbsent(errorType, created);
+				if (errorCount == null) {
+					errorCount = created;
+				}
+			}
+			errorCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns the total number of rows returned or affected.
+	 * 
+	 * @return The total number of rows.
+	 */
+	public long getRows() {
+		return this.rows.get();
+	}
+
+	/**
+	 * Returns the number of failures, by error type.
+	 * 
+	 * @return The number of failures by error type, sorted by type.
+	 */
+	public Map<String, Long> getErrors() {
+		final Map<String, Long> snapshot = new TreeMap<>();
+		for (final Map.Entry<String, AtomicLong> entry : this.errors.entrySet()) {
+			snapshot.put(entry.getKey(), Long.valueOf(entry.getValue().get()));
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Returns a point-in-time copy of these metrics.
+	 * 
+	 * @return A snapshot of these metrics, will not be null.
+	 */
+	public StatementStats getStats() {
+		long errorCount = 0;
+		for (final AtomicLong value : this.errors.values()) {
+			errorCount += value.get();
+		}
+		return new StatementStats(this.table, this.sql, this.histogram.getCount(), getRows(), errorCount, this.histogram.getMean(), this.histogram.getPercentile(50),
+				this.histogram.getPercentile(99), this.histogram.getMax(), getErrors());
+	}
+
+}
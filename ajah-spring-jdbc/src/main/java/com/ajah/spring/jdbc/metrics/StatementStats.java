@@ -0,0 +1,83 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.metrics;
+
+import java.beans.ConstructorProperties;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * An immutable snapshot of the metrics for one statement shape, suitable for
+ * exposing over JMX.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+@Getter
+public class StatementStats {
+
+	private final String table;
+	private final String sql;
+	private final long count;
+	private final long rows;
+	private final long errorCount;
+	private final long meanMicros;
+	private final long p50Micros;
+	private final long p99Micros;
+	private final long maxMicros;
+	private final Map<String, Long> errors;
+
+	/**
+	 * Populated constructor.
+	 * 
+	 * @param table
+	 *            The table the statement operates on, may be null.
+	 * @param sql
+	 *            The SQL of the statement.
+	 * @param count
+	 *            The number of executions.
+	 * @param rows
+	 *            The total rows returned or affected.
+	 * @param errorCount
+	 *            The number of failed executions.
+	 * @param meanMicros
+	 *            The mean duration, in microseconds.
+	 * @param p50Micros
+	 *            The median duration, in microseconds.
+	 * @param p99Micros
+	 *            The 99th percentile duration, in microseconds.
+	 * @param maxMicros
+	 *            The longest duration, in microseconds.
+	 * @param errors
+	 *            The number of failures, by error type.
+	 */
+	@ConstructorProperties({ "table", "sql", "count", "rows", "errorCount", "meanMicros", "p50Micros", "p99Micros", "maxMicros", "errors" })
+	public StatementStats(final String table, final String sql, final long count, final long rows, final long errorCount, final long meanMicros, final long p50Micros,
+			final long p99Micros, final long maxMicros, final Map<String, Long> errors) {
+		this.table = table;
+		this.sql = sql;
+		this.count = count;
+		this.rows = rows;
+		this.errorCount = errorCount;
+		this.meanMicros = meanMicros;
+		this.p50Micros = p50Micros;
+		this.p99Micros = p99Micros;
+		this.maxMicros = maxMicros;
+		this.errors = errors;
+	}
+
+}
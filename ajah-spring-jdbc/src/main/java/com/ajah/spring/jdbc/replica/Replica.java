@@ -0,0 +1,125 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.replica;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import lombok.Getter;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import com.ajah.spring.jdbc.metrics.MetricsJdbcTemplate;
+import com.ajah.spring.jdbc.status.DataSourceStatus;
+
+/**
+ * A read replica, with its health and the number of connections currently
+ * borrowed from it.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ * 
+ */
+public class Replica {
+
+	/**
+	 * The underlying data source.
+	 */
+	@Getter
+	private final DataSource dataSource;
+
+	/**
+	 * A JDBC template whose connections are counted as outstanding until they
+	 * are closed.
+	 */
+	@Getter
+	private final JdbcTemplate jdbcTemplate;
+
+	private final AtomicInteger outstanding = new AtomicInteger();
+
+	/**
+	 * Whether this replica passed its last check.
+	 */
+	@Getter
+	private volatile boolean healthy;
+
+	/**
+	 * The result of the last check, null if it has not been checked.
+	 */
+	@Getter
+	private volatile DataSourceStatus status;
+
+	Replica(final DataSource dataSource) {
+		this.dataSource = dataSource;
+		this.jdbcTemplate = new MetricsJdbcTemplate(new DelegatingDataSource(dataSource) {
+
+			@Override
+			public Connection getConnection() throws SQLException {
+				return track(super.getConnection());
+			}
+
+			@Override
+			public Connection getConnection(final String username, final String password) throws SQLException {
+				return track(super.getConnection(username, password));
+			}
+
+		});
+	}
+
+	/**
+	 * Returns the number of connections currently borrowed from this replica.
+	 * 
+	 * @return The number of connections currently borrowed.
+	 */
+	public int getOutstanding() {
+		return this.outstanding.get();
+	}
+
+	void setStatus(final DataSourceStatus status, final boolean healthy) {
+		this.status = status;
+		this.healthy = healthy;
+	}
+
+	private Connection track(final Connection connection) {
+		this.outstanding.incrementAndGet();
+		final AtomicBoolean closed = new AtomicBoolean();
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, new InvocationHandler() {
+
+			@Override
+			public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+				if ("close".equals(method.getName()) && closed.compareAndSet(false, true)) {
+					Replica.this.outstanding.decrementAndGet();
+				}
+				try {
+					return method.invoke(connection, args);
+				} catch (final InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+
+		});
+	}
+
+}
@@ -0,0 +1,216 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.replica;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.java.Log;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.ajah.spring.jdbc.status.DataSourceChecker;
+import com.ajah.spring.jdbc.status.DataSourceStatus;
+import com.ajah.util.AjahUtils;
+
+/**
+ * Routes reads to a pool of read replicas. Each read goes to the healthy
+ * replica with the fewest connections currently in use. Replicas are checked
+ * periodically with {@link DataSourceChecker#checkReplica(DataSource)}, and
+ * ones that are unreachable or lagging by more than {@link #getMaxLag()}
+ * seconds are skipped until they recover.
+ * 
+ * After a thread writes to the primary, its reads go to the primary for
+ * {@link #getReadYourWritesWindow()} milliseconds so that it sees its own
+ * changes.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ * 
+ */
+@Log
+public class ReplicaManager {
+
+	@Getter
+	private List<Replica> replicas = Collections.emptyList();
+
+	/**
+	 * The maximum replication lag, in seconds, before a replica is skipped.
+	 */
+	@Getter
+	@Setter
+	private long maxLag = 10;
+
+	/**
+	 * How long, in milliseconds, a thread's reads go to the primary after it
+	 * writes.
+	 */
+	@Getter
+	@Setter
+	private long readYourWritesWindow = 5000;
+
+	/**
+	 * How often, in milliseconds, replicas are checked.
+	 */
+	@Getter
+	@Setter
+	private long checkInterval = 5000;
+
+	private final ThreadLocal<Long> lastWrite = new ThreadLocal<>();
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Sets the replica data sources.
+	 * 
+	 * @param dataSources
+	 *            The replica data sources, required.
+	 */
+	public void setDataSources(final List<DataSource> dataSources) {
+		AjahUtils.requireParam(dataSources, "dataSources");
+		final List<Replica> newReplicas = new ArrayList<>(dataSources.size());
+		for (final DataSource dataSource : dataSources) {
+			newReplicas.add(new Replica(dataSource));
+		}
+		this.replicas = Collections.unmodifiableList(newReplicas);
+	}
+
+	/**
+	 * Checks every replica now and schedules periodic checks. This is called
+	 * automatically on the first read if it has not been called already.
+	 */
+	public synchronized void start() {
+		if (this.scheduler != null) {
+			return;
+		}
+		checkReplicas();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "replica-checker");
+				thread.setDaemon(true);
+				return thread;
+			}
+
+		});
+		this.scheduler.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				checkReplicas();
+			}
+
+		}, this.checkInterval, this.checkInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops periodic checks.
+	 */
+	public synchronized void stop() {
+		if (this.scheduler != null) {
+			this.scheduler.shutdownNow();
+			this.scheduler = null;
+		}
+	}
+
+	/**
+	 * Checks the health and lag of every replica.
+	 */
+	public void checkReplicas() {
+		for (final Replica replica : this.replicas) {
+			try {
+				final DataSourceStatus status = DataSourceChecker.checkReplica(replica.getDataSource());
+				final boolean healthy = status.error == null && (!status.replica || (status.replicationLag != null && status.replicationLag.longValue() <= this.maxLag));
+				if (healthy != replica.isHealthy()) {
+					log.warning("Replica " + replica.getDataSource() + " is now " + (healthy ? "healthy" : "unhealthy") + " (lag: " + status.replicationLag + ", error: "
+							+ (status.error == null ? null : status.error.getMessage()) + ")");
+				}
+				replica.setStatus(status, healthy);
+			} catch (final RuntimeException e) {
+				log.warning("Replica check failed: " + e.getMessage());
+				replica.setStatus(null, false);
+			}
+		}
+	}
+
+	/**
+	 * Records that the current thread has written to the primary, so that its
+	 * reads go to the primary for the read-your-writes window.
+	 */
+	public void markWrite() {
+		this.lastWrite.set(Long.valueOf(System.currentTimeMillis()));
+	}
+
+	/**
+	 * Determines if the current thread wrote recently enough that it should
+	 * read from the primary.
+	 * 
+	 * @return true if reads should go to the primary.
+	 */
+	public boolean isPinnedToPrimary() {
+		final Long written = this.lastWrite.get();
+		if (written == null) {
+			return false;
+		}
+		if (System.currentTimeMillis() - written.longValue() < this.readYourWritesWindow) {
+			return true;
+		}
+		this.lastWrite.remove();
+		return false;
+	}
+
+	/**
+	 * Returns the JDBC template to read from.
+	 * 
+	 * @return The JDBC template for the healthy replica with the fewest
+	 *         outstanding connections, or null if reads should go to the
+	 *         primary because the current thread wrote recently or there are no
+	 *         healthy replicas.
+	 */
+	public JdbcTemplate getJdbcTemplate() {
+		final List<Replica> current = this.replicas;
+		if (current.isEmpty() || isPinnedToPrimary()) {
+			return null;
+		}
+		if (this.scheduler == null) {
+			start();
+		}
+		// Start at a rotating position so ties are spread across replicas
+		final int start = (this.next.getAndIncrement() & Integer.MAX_VALUE) % current.size();
+		Replica best = null;
+		for (int i = 0; i < current.size(); i++) {
+			final Replica replica = current.get((start + i) % current.size());
+			if (replica.isHealthy() && (best == null || replica.getOutstanding() < best.getOutstanding())) {
+				best = replica;
+			}
+		}
+		return best == null ? null : best.getJdbcTemplate();
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.shard;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.Getter;
+
+import com.ajah.util.data.HashUtils;
+
+/**
+ * Assigns keys to shards using a consistent hash ring. Each shard is placed on
+ * the ring at a number of points, and a key belongs to the first shard point at
+ * or after the hash of the key. When a shard is added, only about 1/n of the
+ * keys move, unlike modulo hashing where almost all of them would.
+ * 
+ * Shards are identified by their index, so new shards must be appended to the
+ * end of the list of data sources.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+public class ConsistentHashShardStrategy implements ShardStrategy {
+
+	private static long hash(final String value) {
+		return Long.parseLong(HashUtils.md5Hex(value).substring(0, 15), 16);
+	}
+
+	@Getter
+	private final int virtualNodes;
+
+	private final Map<Integer, TreeMap<Long, Integer>> rings = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a strategy with 128 points per shard.
+	 */
+	public ConsistentHashShardStrategy() {
+		this(128);
+	}
+
+	/**
+	 * Creates a strategy.
+	 * 
+	 * @param virtualNodes
+	 *            The number of points on the ring for each shard. More points
+	 *            give a more even distribution.
+	 */
+	public ConsistentHashShardStrategy(final int virtualNodes) {
+		if (virtualNodes < 1) {
+			throw new IllegalArgumentException("Virtual nodes must be greater than zero");
+		}
+		this.virtualNodes = virtualNodes;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getShard(final Object key, final int shardCount) {
+		if (shardCount == 1) {
+			return 0;
+		}
+		final TreeMap<Long, Integer> current = getRing(shardCount);
+		Map.Entry<Long, Integer> entry = current.ceilingEntry(Long.valueOf(hash(key.toString())));
+		if (entry == null) {
+			// Wrap around the ring
+			entry = current.firstEntry();
+		}
+		return entry.getValue().intValue();
+	}
+
+	private TreeMap<Long, Integer> getRing(final int shardCount) {
+		final Integer key = Integer.valueOf(shardCount);
+		TreeMap<Long, Integer> ring = this.rings.get(key);
+		if (ring == null) {
+			ring = new TreeMap<>();
+			for (int shard = 0; shard < shardCount; shard++) {
+				for (int node = 0; node < this.virtualNodes; node++) {
+					ring.put(Long.valueOf(hash("shard-" + shard + "-" + node)), Integer.valueOf(shard));
+				}
+			}
+			this.rings.put(key, ring);
+		}
+		return ring;
+	}
+
+}
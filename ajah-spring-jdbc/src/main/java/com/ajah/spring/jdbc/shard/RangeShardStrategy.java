@@ -0,0 +1,95 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.shard;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Assigns keys to shards by range. Each range is defined by its inclusive
+ * lower bound, and extends up to the next lower bound. Keys below the lowest
+ * bound are rejected.
+ * 
+ * Keys are compared as Longs if they are {@link Number}s and the bounds are
+ * Longs, otherwise by their String values.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+public class RangeShardStrategy implements ShardStrategy {
+
+	private final TreeMap<Comparable<?>, Integer> ranges = new TreeMap<>();
+
+	/**
+	 * Adds a range.
+	 * 
+	 * @param lowerBound
+	 *            The inclusive lower bound of the range, a {@link Long} or a
+	 *            {@link String}. All bounds must be of the same type.
+	 * @param shard
+	 *            The index of the shard the range belongs to.
+	 * @return This strategy, for chaining.
+	 */
+	public synchronized RangeShardStrategy addRange(final Comparable<?> lowerBound, final int shard) {
+		if (!(lowerBound instanceof Long) && !(lowerBound instanceof String)) {
+			throw new IllegalArgumentException("Lower bound must be a Long or a String");
+		}
+		if (!this.ranges.isEmpty() && this.ranges.firstKey().getClass() != lowerBound.getClass()) {
+			throw new IllegalArgumentException("All lower bounds must be of the same type");
+		}
+		this.ranges.put(lowerBound, Integer.valueOf(shard));
+		return this;
+	}
+
+	/**
+	 * Sets the ranges, replacing any existing ranges.
+	 * 
+	 * @param ranges
+	 *            A map of inclusive lower bounds to shard indexes.
+	 */
+	public synchronized void setRanges(final Map<? extends Comparable<?>, Integer> ranges) {
+		this.ranges.clear();
+		for (final Map.Entry<? extends Comparable<?>, Integer> range : ranges.entrySet()) {
+			addRange(range.getKey(), range.getValue().intValue());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized int getShard(final Object key, final int shardCount) {
+		if (this.ranges.isEmpty()) {
+			throw new IllegalStateException("No ranges defined");
+		}
+		Comparable<?> value;
+		if (this.ranges.firstKey() instanceof Long) {
+			value = Long.valueOf(key instanceof Number ? ((Number) key).longValue() : Long.parseLong(key.toString()));
+		} else {
+			value = key.toString();
+		}
+		final Map.Entry<Comparable<?>, Integer> entry = this.ranges.floorEntry(value);
+		if (entry == null) {
+			throw new IllegalArgumentException("Shard key " + key + " is below the lowest range");
+		}
+		final int shard = entry.getValue().intValue();
+		if (shard >= shardCount) {
+			throw new IllegalStateException("Range for " + key + " maps to shard " + shard + " but there are only " + shardCount + " shards");
+		}
+		return shard;
+	}
+
+}
@@ -0,0 +1,41 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.shard;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * An operation run against a single shard, used to scatter a query to every
+ * shard.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ * @param <V>
+ *            The type of result.
+ * @see ShardManager#scatter(ShardCallback)
+ */
+public interface ShardCallback<V> {
+
+	/**
+	 * Runs the operation against a shard.
+	 * 
+	 * @param jdbcTemplate
+	 *            The JDBC template for the shard.
+	 * @return The result of the operation.
+	 */
+	V doInShard(final JdbcTemplate jdbcTemplate);
+
+}
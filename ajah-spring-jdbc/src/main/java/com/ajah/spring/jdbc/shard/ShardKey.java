@@ -34,7 +34,9 @@ public @interface ShardKey {
 
 	/**
 	 * The placement of this key in the composite shard key.
+	 * 
+	 * @return The placement of this key in the composite shard key.
 	 */
-	int sequence = 0;
+	int sequence() default 0;
 
 }
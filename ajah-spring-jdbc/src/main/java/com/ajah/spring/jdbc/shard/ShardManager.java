@@ -15,24 +15,279 @@
  */
 package com.ajah.spring.jdbc.shard;
 
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.sql.DataSource;
 
 import lombok.Getter;
 import lombok.Setter;
 
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.ajah.spring.jdbc.metrics.MetricsJdbcTemplate;
+import com.ajah.util.AjahUtils;
+
 /**
  * Manages the matching of shard keys to data sources.
  * 
+ * Entities whose class is annotated with {@link Sharded} are routed by the
+ * value of their {@link ShardKey} fields to one of the configured data sources,
+ * using the {@link ShardStrategy} (consistent hashing by default). Entities
+ * that are not sharded, or any entity if no shard data sources are configured,
+ * use the default data source.
+ * 
  * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
  *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
  * 
  */
 public class ShardManager {
 
+	private static final class MergeCursor<V> {
+
+		final List<V> list;
+		int position;
+
+		MergeCursor(final List<V> list) {
+			this.list = list;
+		}
+
+		V current() {
+			return this.list.get(this.position);
+		}
+
+	}
+
+	/**
+	 * Merges lists that are each sorted by the same comparator into a single
+	 * sorted list, then applies an offset and count. Only as many elements as
+	 * are needed are merged.
+	 * 
+	 * @param <V>
+	 *            The type of element.
+	 * @param lists
+	 *            The sorted lists, required.
+	 * @param comparator
+	 *            The comparator the lists are sorted by. If null, the lists are
+	 *            concatenated in order.
+	 * @param offset
+	 *            The number of merged elements to skip.
+	 * @param count
+	 *            The maximum number of elements to return, or zero for no
+	 *            limit.
+	 * @return The merged list.
+	 */
+	public static <V> List<V> mergeSorted(final List<List<V>> lists, final Comparator<V> comparator, final long offset, final long count) {
+		final List<V> merged = new ArrayList<>();
+		final long end = count > 0 ? offset + count : Long.MAX_VALUE;
+		long index = 0;
+		if (comparator == null) {
+			for (final List<V> list : lists) {
+				for (final V value : list) {
+					if (index >= end) {
+						return merged;
+					}
+					if (index++ >= offset) {
+						merged.add(value);
+					}
+				}
+			}
+			return merged;
+		}
+		final PriorityQueue<MergeCursor<V>> queue = new PriorityQueue<>(Math.max(1, lists.size()), new Comparator<MergeCursor<V>>() {
+
+			@Override
+			public int compare(final MergeCursor<V> o1, final MergeCursor<V> o2) {
+				return comparator.compare(o1.current(), o2.current());
+			}
+
+		});
+		for (final List<V> list : lists) {
+			if (!list.isEmpty()) {
+				queue.add(new MergeCursor<>(list));
+			}
+		}
+		while (!queue.isEmpty() && index < end) {
+			final MergeCursor<V> cursor = queue.poll();
+			if (index++ >= offset) {
+				merged.add(cursor.current());
+			}
+			cursor.position++;
+			if (cursor.position < cursor.list.size()) {
+				queue.add(cursor);
+			}
+		}
+		return merged;
+	}
+
 	@Getter
 	@Setter
 	DataSource defaultDataSource;
 
+	@Getter
+	@Setter
+	private ShardStrategy strategy = new ConsistentHashShardStrategy();
+
+	@Getter
+	private List<DataSource> dataSources = Collections.emptyList();
+
+	private List<JdbcTemplate> jdbcTemplates = Collections.emptyList();
+
+	@Setter
+	private ExecutorService executor;
+
+	private final Map<Class<?>, List<Field>> shardKeyFields = new ConcurrentHashMap<>();
+
+	/**
+	 * Sets the shard data sources. The position of each data source in the
+	 * list is its shard index, so shards should only ever be appended.
+	 * 
+	 * @param dataSources
+	 *            The shard data sources, required.
+	 */
+	public void setDataSources(final List<DataSource> dataSources) {
+		AjahUtils.requireParam(dataSources, "dataSources");
+		final List<JdbcTemplate> templates = new ArrayList<>(dataSources.size());
+		for (final DataSource dataSource : dataSources) {
+			templates.add(new MetricsJdbcTemplate(dataSource));
+		}
+		this.dataSources = Collections.unmodifiableList(new ArrayList<>(dataSources));
+		this.jdbcTemplates = Collections.unmodifiableList(templates);
+	}
+
+	/**
+	 * Returns the number of shards.
+	 * 
+	 * @return The number of shards, may be zero.
+	 */
+	public int getShardCount() {
+		return this.dataSources.size();
+	}
+
+	/**
+	 * Determines if a class is sharded, meaning it is annotated with
+	 * {@link Sharded} and there are shard data sources configured.
+	 * 
+	 * @param entityClass
+	 *            The entity class.
+	 * @return true if entities of this class are routed to shards.
+	 */
+	public boolean isSharded(final Class<?> entityClass) {
+		return !this.dataSources.isEmpty() && entityClass.isAnnotationPresent(Sharded.class);
+	}
+
+	/**
+	 * Returns the {@link ShardKey} fields of a class, in sequence order.
+	 * 
+	 * @param entityClass
+	 *            The entity class.
+	 * @return The shard key fields, will not be empty.
+	 * @throws IllegalArgumentException
+	 *             If the class has no shard key fields.
+	 */
+	public List<Field> getShardKeyFields(final Class<?> entityClass) {
+		List<Field> fields = this.shardKeyFields.get(entityClass);
+		if (fields == null) {
+			fields = new ArrayList<>();
+			for (Class<?> current = entityClass; current != null && current != Object.class; current = current.getSuperclass()) {
+				for (final Field field : current.getDeclaredFields()) {
+					if (field.isAnnotationPresent(ShardKey.class)) {
+						field.setAccessible(true);
+						fields.add(field);
+					}
+				}
+			}
+			if (fields.isEmpty()) {
+				throw new IllegalArgumentException(entityClass.getName() + " is sharded but has no @ShardKey fields");
+			}
+			Collections.sort(fields, new Comparator<Field>() {
+
+				@Override
+				public int compare(final Field o1, final Field o2) {
+					return Integer.compare(o1.getAnnotation(ShardKey.class).sequence(), o2.getAnnotation(ShardKey.class).sequence());
+				}
+
+			});
+			fields = Collections.unmodifiableList(fields);
+			this.shardKeyFields.put(entityClass, fields);
+		}
+		return fields;
+	}
+
+	/**
+	 * Returns the shard key of an entity. If there is more than one
+	 * {@link ShardKey} field, their values are joined with colons.
+	 * 
+	 * @param entity
+	 *            The entity, required.
+	 * @return The shard key.
+	 * @throws IllegalArgumentException
+	 *             If a shard key field is null.
+	 */
+	public Object getShardKey(final Object entity) {
+		AjahUtils.requireParam(entity, "entity");
+		final List<Field> fields = getShardKeyFields(entity.getClass());
+		final StringBuilder key = new StringBuilder();
+		for (final Field field : fields) {
+			final Object value;
+			try {
+				value = field.get(entity);
+			} catch (final IllegalAccessException e) {
+				throw new IllegalArgumentException(e);
+			}
+			if (value == null) {
+				throw new IllegalArgumentException("Shard key field " + field.getName() + " of " + entity.getClass().getName() + " is null");
+			}
+			if (fields.size() == 1) {
+				return value;
+			}
+			if (key.length() > 0) {
+				key.append(':');
+			}
+			key.append(value);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Returns the shard an entity belongs to.
+	 * 
+	 * @param entity
+	 *            The entity, required.
+	 * @return The index of the shard.
+	 */
+	public int getShard(final Object entity) {
+		return getShardForKey(getShardKey(entity));
+	}
+
+	/**
+	 * Returns the shard a key belongs to.
+	 * 
+	 * @param key
+	 *            The shard key, required.
+	 * @return The index of the shard.
+	 */
+	public int getShardForKey(final Object key) {
+		AjahUtils.requireParam(key, "key");
+		if (this.dataSources.isEmpty()) {
+			throw new IllegalStateException("No shard data sources configured");
+		}
+		return this.strategy.getShard(key, this.dataSources.size());
+	}
+
 	/**
 	 * Returns the data source that matches the entity.
 	 * 
@@ -41,7 +296,99 @@ public class ShardManager {
 	 * @return The datasource that matches the entities shard.
 	 */
 	public DataSource getDataSource(final Object entity) {
-		return this.defaultDataSource;
+		if (entity == null || !isSharded(entity.getClass())) {
+			return this.defaultDataSource;
+		}
+		return this.dataSources.get(getShard(entity));
+	}
+
+	/**
+	 * Returns the data source for a shard key.
+	 * 
+	 * @param key
+	 *            The shard key, required.
+	 * @return The data source for the key's shard.
+	 */
+	public DataSource getDataSourceForKey(final Object key) {
+		return this.dataSources.get(getShardForKey(key));
+	}
+
+	/**
+	 * Returns the JDBC template for a shard.
+	 * 
+	 * @param shard
+	 *            The index of the shard.
+	 * @return The JDBC template for the shard.
+	 */
+	public JdbcTemplate getShardJdbcTemplate(final int shard) {
+		return this.jdbcTemplates.get(shard);
+	}
+
+	/**
+	 * Runs an operation against every shard in parallel.
+	 * 
+	 * @param <V>
+	 *            The type of result.
+	 * @param callback
+	 *            The operation to run, required.
+	 * @return The results, in shard order.
+	 * @throws RuntimeException
+	 *             If the operation throws one on any shard, typically a
+	 *             {@link org.springframework.dao.DataAccessException}.
+	 */
+	public <V> List<V> scatter(final ShardCallback<V> callback) {
+		AjahUtils.requireParam(callback, "callback");
+		final List<JdbcTemplate> templates = this.jdbcTemplates;
+		if (templates.size() == 1) {
+			return Collections.singletonList(callback.doInShard(templates.get(0)));
+		}
+		final List<Future<V>> futures = new ArrayList<>(templates.size());
+		for (final JdbcTemplate template : templates) {
+			futures.add(getExecutor().submit(new Callable<V>() {
+
+				@Override
+				public V call() {
+					return callback.doInShard(template);
+				}
+
+			}));
+		}
+		final List<V> results = new ArrayList<>(templates.size());
+		try {
+			for (final Future<V> future : futures) {
+				results.add(future.get());
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for shards", e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			for (final Future<V> future : futures) {
+				future.cancel(true);
+			}
+		}
+		return results;
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (this.executor == null) {
+			final AtomicInteger threadCount = new AtomicInteger();
+			this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "shard-scatter-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+
+			});
+		}
+		return this.executor;
 	}
 
 }
@@ -0,0 +1,37 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.spring.jdbc.shard;
+
+/**
+ * Determines which shard a shard key belongs to.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+public interface ShardStrategy {
+
+	/**
+	 * Returns the shard a key belongs to.
+	 * 
+	 * @param key
+	 *            The shard key, required.
+	 * @param shardCount
+	 *            The number of shards, greater than zero.
+	 * @return The index of the shard, from zero to shardCount - 1.
+	 */
+	int getShard(final Object key, final int shardCount);
+
+}
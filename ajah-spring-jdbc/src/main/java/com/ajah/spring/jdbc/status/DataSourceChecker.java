@@ -69,4 +69,33 @@ public class DataSourceChecker {
 		return status;
 	}
 
+	/**
+	 * Checks a {@link DataSource} that may be a MySQL replica. In addition to
+	 * {@link #check(DataSource)}, this records whether the server is a replica
+	 * and, if so, how many seconds it is behind its primary. The lag is null if
+	 * replication is not running.
+	 * 
+	 * @param dataSource
+	 *            The data source to check.
+	 * @return The status report. Should return even in the event of an error.
+	 */
+	public static DataSourceStatus checkReplica(DataSource dataSource) {
+		DataSourceStatus status = check(dataSource);
+		if (status.error != null) {
+			return status;
+		}
+		try (Connection connection = dataSource.getConnection()) {
+			try (ResultSet rs = connection.createStatement().executeQuery("SHOW SLAVE STATUS")) {
+				if (rs.next()) {
+					status.replica = true;
+					long lag = rs.getLong("Seconds_Behind_Master");
+					status.replicationLag = rs.wasNull() ? null : Long.valueOf(lag);
+				}
+			}
+		} catch (SQLException e) {
+			status.error = e;
+		}
+		return status;
+	}
+
 }
@@ -34,5 +34,7 @@ public class DataSourceStatus {
 	public Date serverTimestamp;
 	public SQLException error;
 	public DriverInfo driver = new DriverInfo();
+	public boolean replica;
+	public Long replicationLag;
 
 }
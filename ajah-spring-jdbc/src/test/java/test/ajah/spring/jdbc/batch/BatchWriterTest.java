@@ -0,0 +1,225 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package test.ajah.spring.jdbc.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ajah.spring.jdbc.batch.BatchWriter;
+
+/**
+ * Tests {@link BatchWriter}.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+@SuppressWarnings("static-method")
+public class BatchWriterTest {
+
+	private static class ListWriter extends BatchWriter<Integer> {
+
+		final List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<List<Integer>>());
+
+		ListWriter(final int capacity) {
+			super(capacity);
+		}
+
+		@Override
+		protected void write(final List<Integer> batch) {
+			this.batches.add(new ArrayList<>(batch));
+		}
+
+	}
+
+	/**
+	 * Everything offered should be written, in order and in bounded batches,
+	 * by the time the writer is closed.
+	 */
+	@Test
+	public void testFlushOnClose() {
+		final ListWriter writer = new ListWriter(10000);
+		writer.setBatchSize(100);
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertTrue(writer.offer(Integer.valueOf(i)));
+		}
+		writer.close();
+		int expected = 0;
+		for (final List<Integer> batch : writer.batches) {
+			Assert.assertTrue(batch.size() <= 100);
+			for (final Integer value : batch) {
+				Assert.assertEquals(expected++, value.intValue());
+			}
+		}
+		Assert.assertEquals(1000, expected);
+		Assert.assertEquals(1000, writer.getWritten());
+		Assert.assertEquals(0, writer.getQueueDepth());
+		Assert.assertFalse(writer.offer(Integer.valueOf(0)));
+		Assert.assertEquals(1, writer.getDropped());
+	}
+
+	/**
+	 * A partial batch should be written once the flush interval passes.
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testFlushInterval() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		final BatchWriter<Integer> writer = new BatchWriter<Integer>(10) {
+
+			@Override
+			protected void write(final List<Integer> batch) {
+				latch.countDown();
+			}
+
+		};
+		writer.setFlushInterval(50);
+		writer.offer(Integer.valueOf(1));
+		Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+		writer.close();
+	}
+
+	/**
+	 * Entities should be dropped and counted when the queue is full.
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testDropWhenFull() throws InterruptedException {
+		final CountDownLatch writing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final BatchWriter<Integer> writer = new BatchWriter<Integer>(2) {
+
+			@Override
+			protected void write(final List<Integer> batch) {
+				writing.countDown();
+				try {
+					release.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+		};
+		writer.setBatchSize(1);
+		writer.offer(Integer.valueOf(0));
+		Assert.assertTrue(writing.await(5, TimeUnit.SECONDS));
+		Assert.assertTrue(writer.offer(Integer.valueOf(1)));
+		Assert.assertTrue(writer.offer(Integer.valueOf(2)));
+		Assert.assertFalse(writer.offer(Integer.valueOf(3)));
+		Assert.assertEquals(2, writer.getQueueDepth());
+		Assert.assertEquals(1, writer.getDropped());
+		release.countDown();
+		writer.close();
+		Assert.assertEquals(3, writer.getWritten());
+	}
+
+	/**
+	 * Entities already queued when the writer thread is interrupted should
+	 * still be written, and nothing offered afterwards should be accepted.
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testDrainOnInterrupt() throws InterruptedException {
+		final AtomicReference<Thread> writerThread = new AtomicReference<>();
+		final CountDownLatch writing = new CountDownLatch(1);
+		final List<Integer> written = Collections.synchronizedList(new ArrayList<Integer>());
+		final BatchWriter<Integer> writer = new BatchWriter<Integer>(10) {
+
+			@Override
+			protected void write(final List<Integer> batch) {
+				written.addAll(batch);
+				if (writerThread.compareAndSet(null, Thread.currentThread())) {
+					writing.countDown();
+					try {
+						new CountDownLatch(1).await();
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+
+		};
+		writer.setBatchSize(2);
+		writer.offer(Integer.valueOf(0));
+		Assert.assertTrue(writing.await(5, TimeUnit.SECONDS));
+		for (int i = 1; i < 6; i++) {
+			Assert.assertTrue(writer.offer(Integer.valueOf(i)));
+		}
+		writerThread.get().interrupt();
+		writerThread.get().join(5000);
+		Assert.assertFalse(writerThread.get().isAlive());
+		Assert.assertEquals(6, written.size());
+		Assert.assertEquals(6, writer.getWritten());
+		Assert.assertEquals(0, writer.getQueueDepth());
+		Assert.assertFalse(writer.offer(Integer.valueOf(6)));
+		writer.close();
+	}
+
+	/**
+	 * Every entity accepted while the writer is being closed should still be
+	 * written.
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testOfferDuringClose() throws InterruptedException {
+		for (int run = 0; run < 20; run++) {
+			final ListWriter writer = new ListWriter(100000);
+			writer.setFlushInterval(1);
+			final AtomicLong accepted = new AtomicLong();
+			final CountDownLatch ready = new CountDownLatch(4);
+			final Thread[] threads = new Thread[4];
+			for (int i = 0; i < threads.length; i++) {
+				threads[i] = new Thread() {
+
+					@Override
+					public void run() {
+						ready.countDown();
+						for (int j = 0; j < 20000; j++) {
+							if (writer.offer(Integer.valueOf(j))) {
+								accepted.incrementAndGet();
+							}
+						}
+					}
+
+				};
+				threads[i].start();
+			}
+			ready.await();
+			writer.close();
+			for (final Thread thread : threads) {
+				thread.join();
+			}
+			long written = 0;
+			for (final List<Integer> batch : writer.batches) {
+				written += batch.size();
+			}
+			Assert.assertEquals(accepted.get(), written);
+			Assert.assertEquals(accepted.get(), writer.getWritten());
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package test.ajah.spring.jdbc.cache;
+
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ajah.event.sql.SqlEventId;
+import com.ajah.spring.jdbc.cache.LruEntityCache;
+import com.ajah.util.Identifiable;
+
+/**
+ * Tests {@link LruEntityCache}.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+@SuppressWarnings("static-method")
+public class LruEntityCacheTest {
+
+	/**
+	 * A simple entity to cache.
+	 */
+	public static class Widget implements Identifiable<String> {
+
+		private String id;
+		private String name;
+		private Date created;
+
+		@Override
+		public String getId() {
+			return this.id;
+		}
+
+		@Override
+		public void setId(final String id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public void setName(final String name) {
+			this.name = name;
+		}
+
+		public Date getCreated() {
+			return this.created;
+		}
+
+		public void setCreated(final Date created) {
+			this.created = created;
+		}
+
+	}
+
+	/**
+	 * An entity keyed by a typed ID.
+	 */
+	public static class Event implements Identifiable<SqlEventId> {
+
+		private SqlEventId id;
+
+		@Override
+		public SqlEventId getId() {
+			return this.id;
+		}
+
+		@Override
+		public void setId(final SqlEventId id) {
+			this.id = id;
+		}
+
+	}
+
+	/**
+	 * Changes to an entity, before or after it is cached, should not be seen
+	 * by other callers.
+	 */
+	@Test
+	public void testCopies() {
+		final LruEntityCache<String, Widget> cache = new LruEntityCache<>(10, 0);
+		final Widget widget = new Widget();
+		widget.setId("1");
+		widget.setName("foo");
+		widget.setCreated(new Date(1000));
+		cache.put(widget);
+		widget.setName("changed");
+		widget.getCreated().setTime(2000);
+
+		final Widget first = cache.get("1");
+		Assert.assertEquals("foo", first.getName());
+		Assert.assertEquals(new Date(1000), first.getCreated());
+		first.setName("bar");
+		first.getCreated().setTime(3000);
+
+		final Widget second = cache.get("1");
+		Assert.assertNotSame(first, second);
+		Assert.assertEquals("1", second.getId());
+		Assert.assertEquals("foo", second.getName());
+		Assert.assertEquals(new Date(1000), second.getCreated());
+		Assert.assertNull(cache.get("2"));
+	}
+
+	/**
+	 * Invalidated entities should no longer be returned.
+	 */
+	@Test
+	public void testInvalidate() {
+		final LruEntityCache<String, Widget> cache = new LruEntityCache<>(10, 0);
+		final Widget widget = new Widget();
+		widget.setId("1");
+		cache.put(widget);
+		cache.invalidate("1");
+		Assert.assertNull(cache.get("1"));
+		cache.put(widget);
+		cache.invalidateAll();
+		Assert.assertNull(cache.get("1"));
+	}
+
+	/**
+	 * Typed IDs with the same value should find the same entity, not just the
+	 * instance the entity was cached under.
+	 */
+	@Test
+	public void testTypedIds() {
+		final LruEntityCache<SqlEventId, Event> cache = new LruEntityCache<>(10, 0);
+		final Event event = new Event();
+		event.setId(new SqlEventId("1"));
+		cache.put(event);
+		Assert.assertNotNull(cache.get(new SqlEventId("1")));
+		cache.invalidate(new SqlEventId("1"));
+		Assert.assertNull(cache.get(event.getId()));
+
+		final Set<SqlEventId> ids = new LinkedHashSet<>();
+		ids.add(new SqlEventId("1"));
+		ids.add(new SqlEventId("1"));
+		Assert.assertEquals(1, ids.size());
+		Assert.assertFalse(new SqlEventId("1").equals((Object) "1"));
+	}
+
+}
@@ -19,6 +19,8 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.ajah.spring.jdbc.criteria.Criteria;
+import com.ajah.spring.jdbc.criteria.Order;
+import com.ajah.spring.jdbc.criteria.SubCriteria;
 
 /**
  * Tests {@link Criteria}.
@@ -49,4 +51,50 @@ public class CriteriaTest {
 		Assert.assertEquals(0, criteria.getWhere().getValues().size());
 	}
 
+	/**
+	 * The rendered WHERE clause should be reused until the criteria changes.
+	 */
+	@Test
+	public void testWhereCached() {
+		final Criteria criteria = new Criteria().eq("object_id", "1234").orderBy("created", Order.DESC);
+		Assert.assertSame(criteria.getWhere(), criteria.getWhere());
+		Assert.assertSame(criteria.getOrderBySql(), criteria.getOrderBySql());
+		criteria.gt("created", 5).asc("name");
+		Assert.assertEquals(" WHERE `object_id`=? AND `created`>?", criteria.getWhere().getSql());
+		Assert.assertEquals(" ORDER BY created DESC,name", criteria.getOrderBySql());
+	}
+
+	/**
+	 * The combined clauses should be reused until the criteria or its limit
+	 * changes.
+	 */
+	@Test
+	public void testClausesCached() {
+		final Criteria criteria = new Criteria().eq("object_id", "1234").orderBy("created", Order.DESC).rows(10);
+		Assert.assertSame(criteria.getClausesSql(), criteria.getClausesSql());
+		Assert.assertEquals(criteria.getWhere().getSql() + criteria.getOrderBySql() + criteria.getLimit().getSql(), criteria.getClausesSql());
+		final String before = criteria.getClausesSql();
+		criteria.offset(20);
+		Assert.assertNotEquals(before, criteria.getClausesSql());
+		Assert.assertEquals(criteria.getWhere().getSql() + criteria.getOrderBySql() + criteria.getLimit().getSql(), criteria.getClausesSql());
+		criteria.eq("name", "foo");
+		Assert.assertTrue(criteria.getClausesSql().contains("`name`=?"));
+	}
+
+	/**
+	 * Sub-criteria can change after they are added, so clauses that include
+	 * them must be rendered fresh each time.
+	 */
+	@Test
+	public void testSubCriteriaNotCached() {
+		final SubCriteria sub = new SubCriteria().eq("status", "A");
+		final Criteria criteria = new Criteria().eq("object_id", "1234").and(sub);
+		final String before = criteria.getClausesSql();
+		sub.eq("name", "foo");
+		final String after = criteria.getClausesSql();
+		Assert.assertNotEquals(before, after);
+		Assert.assertTrue(after.contains("`name`=?"));
+		Assert.assertEquals(criteria.getWhere().getValues().size(), after.length() - after.replace("?", "").length());
+	}
+
 }
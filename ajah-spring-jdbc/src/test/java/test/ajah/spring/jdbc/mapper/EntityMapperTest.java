@@ -0,0 +1,214 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package test.ajah.spring.jdbc.mapper;
+
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ajah.spring.jdbc.mapper.ColumnMapping;
+import com.ajah.spring.jdbc.mapper.ColumnType;
+import com.ajah.spring.jdbc.mapper.EntityMapper;
+
+/**
+ * Tests {@link EntityMapper}.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+@SuppressWarnings("static-method")
+public class EntityMapperTest {
+
+	/**
+	 * A simple bean to map rows onto.
+	 */
+	public static class Widget {
+
+		private String name;
+		private int count;
+		private Long size;
+		private Date created;
+		private BigDecimal price;
+
+		public String getName() {
+			return this.name;
+		}
+
+		public void setName(final String name) {
+			this.name = name;
+		}
+
+		public int getCount() {
+			return this.count;
+		}
+
+		public void setCount(final int count) {
+			this.count = count;
+		}
+
+		public Long getSize() {
+			return this.size;
+		}
+
+		public void setSize(final Long size) {
+			this.size = size;
+		}
+
+		public Date getCreated() {
+			return this.created;
+		}
+
+		public void setCreated(final Date created) {
+			this.created = created;
+		}
+
+		public BigDecimal getPrice() {
+			return this.price;
+		}
+
+		public void setPrice(final BigDecimal price) {
+			this.price = price;
+		}
+
+	}
+
+	private static ResultSet row(final String[] columns, final Object[] values) {
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+
+			private Object last;
+
+			@Override
+			public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+				switch (method.getName()) {
+				case "findColumn":
+					for (int i = 0; i < columns.length; i++) {
+						if (columns[i].equals(args[0])) {
+							return Integer.valueOf(i + 1);
+						}
+					}
+					throw new SQLException("Column not found: " + args[0]);
+				case "wasNull":
+					return Boolean.valueOf(this.last == null);
+				case "getString":
+					this.last = values[((Integer) args[0]).intValue() - 1];
+					return this.last == null ? null : this.last.toString();
+				case "getInt":
+					this.last = values[((Integer) args[0]).intValue() - 1];
+					return Integer.valueOf(this.last == null ? 0 : ((Number) this.last).intValue());
+				case "getLong":
+					this.last = values[((Integer) args[0]).intValue() - 1];
+					return Long.valueOf(this.last == null ? 0 : ((Number) this.last).longValue());
+				case "getBigDecimal":
+					this.last = values[((Integer) args[0]).intValue() - 1];
+					return this.last;
+				case "hashCode":
+					return Integer.valueOf(System.identityHashCode(proxy));
+				case "equals":
+					return Boolean.valueOf(proxy == args[0]);
+				default:
+					throw new UnsupportedOperationException(method.getName());
+				}
+			}
+		});
+	}
+
+	private static EntityMapper<Widget> mapper() throws Exception {
+		final PropertyDescriptor[] props = Introspector.getBeanInfo(Widget.class).getPropertyDescriptors();
+		final List<ColumnMapping> mappings = new ArrayList<>();
+		for (final String name : new String[] { "name", "count", "size", "created", "price" }) {
+			PropertyDescriptor prop = null;
+			for (final PropertyDescriptor candidate : props) {
+				if (candidate.getName().equals(name)) {
+					prop = candidate;
+				}
+			}
+			mappings.add(new ColumnMapping(name + "_col", Widget.class.getDeclaredField(name), prop));
+		}
+		return new EntityMapper<>(Widget.class, mappings);
+	}
+
+	/**
+	 * Column types should be resolved from the field types.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testColumnTypes() throws Exception {
+		Assert.assertEquals(ColumnType.STRING, ColumnType.of(Widget.class.getDeclaredField("name")));
+		Assert.assertEquals(ColumnType.INT, ColumnType.of(Widget.class.getDeclaredField("count")));
+		Assert.assertEquals(ColumnType.LONG, ColumnType.of(Widget.class.getDeclaredField("size")));
+		Assert.assertEquals(ColumnType.DATE, ColumnType.of(Widget.class.getDeclaredField("created")));
+		Assert.assertEquals(ColumnType.BIG_DECIMAL, ColumnType.of(Widget.class.getDeclaredField("price")));
+	}
+
+	/**
+	 * A full row should populate every property, in any column order.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testMapRow() throws Exception {
+		final ResultSet rs = row(new String[] { "price_col", "created_col", "size_col", "count_col", "name_col" }, new Object[] { new BigDecimal("1.50"), Long.valueOf(1000L),
+				Long.valueOf(42L), Integer.valueOf(7), "foo" });
+		final Widget widget = mapper().mapRow(rs);
+		Assert.assertEquals("foo", widget.getName());
+		Assert.assertEquals(7, widget.getCount());
+		Assert.assertEquals(Long.valueOf(42L), widget.getSize());
+		Assert.assertEquals(new Date(1000L), widget.getCreated());
+		Assert.assertEquals(new BigDecimal("1.50"), widget.getPrice());
+	}
+
+	/**
+	 * Null values should be set on objects but leave primitives alone.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testNulls() throws Exception {
+		final ResultSet rs = row(new String[] { "name_col", "count_col", "size_col", "created_col", "price_col" }, new Object[] { null, null, null, null, null });
+		final Widget widget = new Widget();
+		widget.setName("bar");
+		widget.setCount(3);
+		widget.setSize(Long.valueOf(1));
+		mapper().populate(widget, rs);
+		Assert.assertNull(widget.getName());
+		Assert.assertEquals(3, widget.getCount());
+		Assert.assertNull(widget.getSize());
+		Assert.assertNull(widget.getCreated());
+	}
+
+	/**
+	 * A missing column should fail, as it did with name-based lookups.
+	 * 
+	 * @throws Exception
+	 */
+	@Test(expected = SQLException.class)
+	public void testMissingColumn() throws Exception {
+		mapper().mapRow(row(new String[] { "name_col" }, new Object[] { "foo" }));
+	}
+
+}
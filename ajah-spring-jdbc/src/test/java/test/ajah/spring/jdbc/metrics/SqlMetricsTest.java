@@ -0,0 +1,139 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package test.ajah.spring.jdbc.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ajah.spring.jdbc.metrics.SqlMetrics;
+import com.ajah.spring.jdbc.metrics.StatementStats;
+import com.ajah.util.metrics.LatencyHistogram;
+
+/**
+ * Tests {@link SqlMetrics} and {@link LatencyHistogram}.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+@SuppressWarnings("static-method")
+public class SqlMetricsTest {
+
+	/**
+	 * Percentiles should be within a bucket's width of the true value.
+	 */
+	@Test
+	public void testPercentiles() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		Assert.assertEquals(1000, histogram.getCount());
+		Assert.assertEquals(1000, histogram.getMax());
+		Assert.assertEquals(500, histogram.getMean());
+		final long p50 = histogram.getPercentile(50);
+		Assert.assertTrue(String.valueOf(p50), p50 >= 500 && p50 <= 560);
+		final long p99 = histogram.getPercentile(99);
+		Assert.assertTrue(String.valueOf(p99), p99 >= 990 && p99 <= 1000);
+		Assert.assertEquals(1, histogram.getPercentile(0));
+	}
+
+	/**
+	 * An empty histogram should report zeros.
+	 */
+	@Test
+	public void testEmpty() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(0, histogram.getPercentile(99));
+		Assert.assertEquals(0, histogram.getMean());
+	}
+
+	/**
+	 * The table should be found in common statement shapes.
+	 */
+	@Test
+	public void testParseTable() {
+		Assert.assertEquals("user", SqlMetrics.parseTable("SELECT a,b FROM user WHERE a=?"));
+		Assert.assertEquals("user", SqlMetrics.parseTable("INSERT INTO `user` (a) VALUES (?)"));
+		Assert.assertEquals("user", SqlMetrics.parseTable("update user SET a=? WHERE id=?"));
+		Assert.assertNull(SqlMetrics.parseTable("SELECT 1"));
+	}
+
+	/**
+	 * Executions, rows, errors and slow queries should be recorded per
+	 * statement.
+	 */
+	@Test
+	public void testRecord() {
+		final SqlMetrics metrics = new SqlMetrics();
+		metrics.setSlowQueryThreshold(0);
+		final String sql = "SELECT a FROM widget WHERE id=?";
+		metrics.record(sql, System.nanoTime(), 3, null);
+		metrics.record(sql, System.nanoTime(), 0, "DuplicateKeyException");
+		Assert.assertEquals(1, metrics.getStatementCount());
+		final StatementStats stats = metrics.getStatements().get(0);
+		Assert.assertEquals("widget", stats.getTable());
+		Assert.assertEquals(2, stats.getCount());
+		Assert.assertEquals(3, stats.getRows());
+		Assert.assertEquals(1, stats.getErrorCount());
+		Assert.assertEquals(Long.valueOf(1), stats.getErrors().get("DuplicateKeyException"));
+		Assert.assertEquals(2, metrics.getSlowQueries().size());
+		Assert.assertEquals(sql, metrics.getSlowQueries().get(0).getSql());
+	}
+
+	/**
+	 * Statements beyond the limit should be recorded under a single key.
+	 */
+	@Test
+	public void testMaxStatements() {
+		final SqlMetrics metrics = new SqlMetrics();
+		metrics.setMaxStatements(2);
+		for (int i = 0; i < 5; i++) {
+			metrics.record("SELECT a FROM t" + i, System.nanoTime(), 1, null);
+		}
+		Assert.assertEquals(3, metrics.getStatementCount());
+		Assert.assertEquals(SqlMetrics.OTHER, metrics.getStatement("SELECT a FROM t4").getSql());
+	}
+
+	/**
+	 * Literals and IN lists should be normalized away, but not numbers that
+	 * are part of identifiers.
+	 */
+	@Test
+	public void testNormalize() {
+		Assert.assertEquals("SELECT a FROM t WHERE id=? AND name=? AND x=?", SqlMetrics.normalize("SELECT a FROM t WHERE id=5 AND name='bob''s' AND x=\"q\""));
+		Assert.assertEquals("SELECT a FROM t WHERE a=? AND b=?", SqlMetrics.normalize("SELECT a FROM t WHERE a='it\\'s' AND b=''"));
+		Assert.assertEquals("SELECT a FROM t2 WHERE id IN (...)", SqlMetrics.normalize("SELECT a FROM t2 WHERE id IN (1, 2,3)"));
+		Assert.assertEquals("SELECT a FROM t2 WHERE id IN (...)", SqlMetrics.normalize("SELECT a FROM t2 WHERE id in (?,?,?)"));
+		Assert.assertEquals("SELECT a FROM `t` WHERE b=? LIMIT ?, ?", SqlMetrics.normalize("SELECT a FROM `t`\n\tWHERE b=1.5 LIMIT 10, 20"));
+		Assert.assertEquals("SELECT col1 FROM `2fa` WHERE c=?", SqlMetrics.normalize("SELECT col1 FROM `2fa` WHERE c=?"));
+		Assert.assertNull(SqlMetrics.normalize(null));
+	}
+
+	/**
+	 * Executions differing only in their values should share a statement.
+	 */
+	@Test
+	public void testNormalizedRecord() {
+		final SqlMetrics metrics = new SqlMetrics();
+		metrics.record("SELECT a FROM widget WHERE id IN (?,?)", System.nanoTime(), 2, null);
+		metrics.record("SELECT a FROM widget WHERE id IN (?,?,?)", System.nanoTime(), 3, null);
+		metrics.record("SELECT a FROM widget WHERE id IN ('x')", System.nanoTime(), 1, null);
+		Assert.assertEquals(1, metrics.getStatementCount());
+		Assert.assertEquals(3, metrics.getStatements().get(0).getCount());
+		Assert.assertEquals("widget", metrics.getStatements().get(0).getTable());
+	}
+
+}
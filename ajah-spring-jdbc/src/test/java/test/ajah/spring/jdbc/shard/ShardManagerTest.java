@@ -0,0 +1,130 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package test.ajah.spring.jdbc.shard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ajah.spring.jdbc.shard.ConsistentHashShardStrategy;
+import com.ajah.spring.jdbc.shard.RangeShardStrategy;
+import com.ajah.spring.jdbc.shard.ShardKey;
+import com.ajah.spring.jdbc.shard.ShardManager;
+import com.ajah.spring.jdbc.shard.Sharded;
+
+/**
+ * Tests {@link ShardManager} and the shard strategies.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+@SuppressWarnings("static-method")
+public class ShardManagerTest {
+
+	/**
+	 * An entity with a composite shard key.
+	 */
+	@Sharded
+	public static class Widget {
+
+		@ShardKey(sequence = 1)
+		String region;
+
+		@ShardKey(sequence = 0)
+		String owner;
+
+		Widget(final String owner, final String region) {
+			this.owner = owner;
+			this.region = region;
+		}
+
+	}
+
+	/**
+	 * Composite keys should be joined in sequence order.
+	 */
+	@Test
+	public void testShardKey() {
+		Assert.assertEquals("bob:us", new ShardManager().getShardKey(new Widget("bob", "us")));
+	}
+
+	/**
+	 * Keys should always map to the same shard, spread across all shards, and
+	 * mostly stay put when a shard is added.
+	 */
+	@Test
+	public void testConsistentHash() {
+		final ConsistentHashShardStrategy strategy = new ConsistentHashShardStrategy();
+		final int[] counts = new int[4];
+		int moved = 0;
+		for (int i = 0; i < 10000; i++) {
+			final String key = "key" + i;
+			final int shard = strategy.getShard(key, 4);
+			Assert.assertEquals(shard, strategy.getShard(key, 4));
+			counts[shard]++;
+			if (strategy.getShard(key, 5) != shard) {
+				moved++;
+			}
+		}
+		for (final int count : counts) {
+			Assert.assertTrue(count > 1500);
+		}
+		// Roughly 1/5 of keys should move to the new shard
+		Assert.assertTrue(moved < 3000);
+	}
+
+	/**
+	 * Keys should map to the range with the highest lower bound at or below
+	 * them.
+	 */
+	@Test
+	public void testRange() {
+		final RangeShardStrategy strategy = new RangeShardStrategy().addRange(Long.valueOf(0), 0).addRange(Long.valueOf(1000), 1).addRange(Long.valueOf(5000), 2);
+		Assert.assertEquals(0, strategy.getShard(Integer.valueOf(999), 3));
+		Assert.assertEquals(1, strategy.getShard("1000", 3));
+		Assert.assertEquals(2, strategy.getShard(Long.valueOf(100000), 3));
+	}
+
+	/**
+	 * Sorted lists should be interleaved, with the offset and count applied to
+	 * the merged result.
+	 */
+	@Test
+	public void testMergeSorted() {
+		final List<List<Integer>> lists = new ArrayList<>();
+		lists.add(Arrays.asList(Integer.valueOf(1), Integer.valueOf(4), Integer.valueOf(7)));
+		lists.add(Collections.<Integer> emptyList());
+		lists.add(Arrays.asList(Integer.valueOf(2), Integer.valueOf(3), Integer.valueOf(9)));
+		final Comparator<Integer> comparator = new Comparator<Integer>() {
+
+			@Override
+			public int compare(final Integer o1, final Integer o2) {
+				return o1.compareTo(o2);
+			}
+
+		};
+		Assert.assertEquals(Arrays.asList(Integer.valueOf(1), Integer.valueOf(2), Integer.valueOf(3), Integer.valueOf(4), Integer.valueOf(7), Integer.valueOf(9)),
+				ShardManager.mergeSorted(lists, comparator, 0, 0));
+		Assert.assertEquals(Arrays.asList(Integer.valueOf(3), Integer.valueOf(4)), ShardManager.mergeSorted(lists, comparator, 2, 2));
+		Assert.assertEquals(Arrays.asList(Integer.valueOf(7), Integer.valueOf(2)), ShardManager.mergeSorted(lists, null, 2, 2));
+	}
+
+}
@@ -59,6 +59,17 @@ public class FeedId implements Serializable, ToStringable, FromStringable, Compa
 		return this.id.equals(other.id);
 	}
 
+	/**
+	 * Compares the wrapped string values, so that equal IDs match as map and
+	 * set keys.
+	 * 
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object other) {
+		return other instanceof FeedId && equals((FeedId) other);
+	}
+
 	/**
 	 * Returns the String passed into the constructor.
 	 * 
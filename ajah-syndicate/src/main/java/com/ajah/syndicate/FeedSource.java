@@ -50,6 +50,11 @@ public class FeedSource implements Identifiable<FeedSourceId> {
 	private Date modified;
 	// Frequency in minutes
 	private int fetchFrequency;
+	// Validators from the last successful fetch, for conditional requests
+	private String etag;
+	private String lastModified;
+	// SHA-1 of the last fetched content
+	private String contentSha1;
 
 	/**
 	 * Returns the SHA-1 of the feedUrl field, if it is available.
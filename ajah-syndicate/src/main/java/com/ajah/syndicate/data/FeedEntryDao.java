@@ -15,6 +15,7 @@
  */
 package com.ajah.syndicate.data;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.stereotype.Repository;
@@ -62,6 +63,19 @@ public interface FeedEntryDao extends AjahDao<FeedEntryId, FeedEntry> {
 
 	FeedEntry findMatch(final FeedSourceId feedId, final String htmlUrlSha1, final String contentSha1) throws DataOperationException;
 
+	/**
+	 * Lists the entries of a feed source with any of a set of URL hashes.
+	 * 
+	 * @param feedSourceId
+	 *            The feed source the entries belong to.
+	 * @param htmlUrlSha1s
+	 *            The SHA-1s of the entries' URLs.
+	 * @return The matching entries, may be empty.
+	 * @throws DataOperationException
+	 *             If the query could not be executed.
+	 */
+	List<FeedEntry> listByHtmlUrlSha1s(final FeedSourceId feedSourceId, final Collection<String> htmlUrlSha1s) throws DataOperationException;
+
 	List<FeedEntry> list(FeedSourceId feedSourceId, String[] categories, boolean orCategories) throws DataOperationException;
 
 }
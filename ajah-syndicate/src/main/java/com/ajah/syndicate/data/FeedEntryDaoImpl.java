@@ -15,6 +15,7 @@
  */
 package com.ajah.syndicate.data;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.stereotype.Repository;
@@ -55,6 +56,14 @@ public class FeedEntryDaoImpl extends AbstractAjahDao<FeedEntryId, FeedEntry, Fe
 		return find(new Criteria().eq(feedSourceId).eq("html_url_sha_1", htmlUrlSha1).eq("content_sha_1", contentSha1));
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<FeedEntry> listByHtmlUrlSha1s(final FeedSourceId feedSourceId, final Collection<String> htmlUrlSha1s) throws DataOperationException {
+		return queryIn("html_url_sha_1", htmlUrlSha1s, new Criteria().eq("feed_source_id", feedSourceId));
+	}
+
 	/**
 	 * @see com.ajah.syndicate.data.FeedEntryDao#list(FeedSourceId, String[],
 	 *      boolean)
@@ -15,8 +15,13 @@
  */
 package com.ajah.syndicate.data;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import lombok.extern.java.Log;
@@ -114,6 +119,85 @@ public class FeedEntryManager {
 		return entry;
 	}
 
+	/**
+	 * Matches a set of entries from one feed source against the stored
+	 * entries, using a single query rather than one or two per entry, and saves
+	 * only those that are new or whose content has changed. Each element of the
+	 * list is replaced with its stored match, as
+	 * {@link #matchAndSave(FeedEntry)} would return.
+	 * 
+	 * @param feedSourceId
+	 *            The feed source the entries belong to.
+	 * @param entries
+	 *            The entries to match and save, modified in place.
+	 * @return The entries that were inserted or updated.
+	 * @throws DataOperationException
+	 *             If a query could not be executed.
+	 */
+	public List<FeedEntry> matchAndSaveAll(final FeedSourceId feedSourceId, final List<FeedEntry> entries) throws DataOperationException {
+		final Set<String> hashes = new HashSet<>();
+		for (final FeedEntry entry : entries) {
+			if (entry.getId() == null) {
+				hashes.add(entry.getHtmlUrlSha1());
+			}
+		}
+		// The html URL is not unique, so as in matchAndSave, prefer a stored
+		// entry with the same content and fall back to any with the same URL
+		final Map<String, FeedEntry> exact = new HashMap<>();
+		final Map<String, FeedEntry> byUrl = new HashMap<>();
+		if (!hashes.isEmpty()) {
+			for (final FeedEntry match : this.entryDao.listByHtmlUrlSha1s(feedSourceId, hashes)) {
+				if (match.getContentSha1() != null && !exact.containsKey(getMatchKey(match.getHtmlUrlSha1(), match.getContentSha1()))) {
+					exact.put(getMatchKey(match.getHtmlUrlSha1(), match.getContentSha1()), match);
+				}
+				if (!byUrl.containsKey(match.getHtmlUrlSha1())) {
+					byUrl.put(match.getHtmlUrlSha1(), match);
+				}
+			}
+		}
+		final List<FeedEntry> changed = new ArrayList<>();
+		for (int i = 0; i < entries.size(); i++) {
+			final FeedEntry entry = entries.get(i);
+			if (entry.getId() != null) {
+				save(entry);
+				changed.add(entry);
+				continue;
+			}
+			final String contentSha1 = getContentSha1(entry);
+			FeedEntry match = exact.get(getMatchKey(entry.getHtmlUrlSha1(), contentSha1));
+			if (match != null) {
+				entries.set(i, match);
+				continue;
+			}
+			match = byUrl.get(entry.getHtmlUrlSha1());
+			if (match == null) {
+				save(entry);
+				changed.add(entry);
+				match = entry;
+			} else {
+				match.setContent(entry.getContent());
+				match.setDescription(entry.getDescription());
+				match.setCategories(entry.getCategories());
+				match.setContentSha1(contentSha1);
+				match.setFeedId(entry.getFeedId());
+				save(match);
+				entries.set(i, match);
+				changed.add(match);
+			}
+			exact.put(getMatchKey(match.getHtmlUrlSha1(), contentSha1), match);
+			byUrl.put(match.getHtmlUrlSha1(), match);
+		}
+		return changed;
+	}
+
+	private static String getContentSha1(final FeedEntry entry) {
+		return HashUtils.sha1Hex(entry.getContent() + entry.getDescription() + entry.getCategories());
+	}
+
+	private static String getMatchKey(final String htmlUrlSha1, final String contentSha1) {
+		return htmlUrlSha1 + ":" + contentSha1;
+	}
+
 	/**
 	 * Saves an entry, inserting if the ID is not set, otherwise updating. Will
 	 * set created date if that is null.
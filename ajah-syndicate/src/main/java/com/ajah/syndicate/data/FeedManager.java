@@ -16,6 +16,7 @@
 package com.ajah.syndicate.data;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -76,12 +77,14 @@ public class FeedManager {
 	 * @param feed
 	 *            The feed to save.
 	 * @param saveEntries
-	 *            If true, also save the entries for this feed.
+	 *            If true, also save the entries for this feed. Entries that
+	 *            are unchanged are not written.
+	 * @return The entries that were new or changed, empty if entries were not
+	 *         saved.
 	 * @throws DataOperationException
 	 *             If the feed could not be saved.
 	 */
-	public void save(final Feed feed, final boolean saveEntries) throws DataOperationException {
-		final List<FeedEntry> entries = new ArrayList<>();
+	public List<FeedEntry> save(final Feed feed, final boolean saveEntries) throws DataOperationException {
 		if (feed.getId() == null) {
 			feed.setId(new FeedId(UUID.randomUUID().toString()));
 			this.feedDao.insert(feed);
@@ -89,16 +92,11 @@ public class FeedManager {
 			this.feedDao.update(feed);
 		}
 		if (saveEntries && feed.getEntries() != null) {
-			for (final FeedEntry entry : feed.getEntries()) {
-				if (entry.getId() != null) {
-					entries.add(entry);
-					this.entryManager.save(entry);
-				} else {
-					final FeedEntry match = this.entryManager.matchAndSave(entry);
-					entries.add(match);
-				}
-			}
+			final List<FeedEntry> entries = new ArrayList<>(feed.getEntries());
+			final List<FeedEntry> changed = this.entryManager.matchAndSaveAll(feed.getFeedSourceId(), entries);
 			feed.setEntries(entries);
+			return changed;
 		}
+		return Collections.emptyList();
 	}
 }
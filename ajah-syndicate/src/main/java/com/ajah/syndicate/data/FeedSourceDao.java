@@ -15,6 +15,8 @@
  */
 package com.ajah.syndicate.data;
 
+import java.util.List;
+
 import org.springframework.stereotype.Repository;
 
 import com.ajah.spring.jdbc.AjahDao;
@@ -54,6 +56,20 @@ public interface FeedSourceDao extends AjahDao<FeedSourceId, FeedSource> {
 	 */
 	FeedSource getStaleFeedSource() throws DataOperationException;
 
+	/**
+	 * Lists active feed sources due to be polled by a certain time, soonest
+	 * first.
+	 * 
+	 * @param before
+	 *            The time, in milliseconds, to find feed sources due by.
+	 * @param count
+	 *            The maximum number of feed sources to return.
+	 * @return The feed sources due to be polled, may be empty.
+	 * @throws DataOperationException
+	 *             If the query could not be executed
+	 */
+	List<FeedSource> listDueFeedSources(final long before, final int count) throws DataOperationException;
+
 	/**
 	 * Finds a feed by the SHA-1 of it's url.
 	 * 
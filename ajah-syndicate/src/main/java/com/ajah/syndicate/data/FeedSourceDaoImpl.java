@@ -15,9 +15,14 @@
  */
 package com.ajah.syndicate.data;
 
+import java.util.List;
+
 import org.springframework.stereotype.Repository;
 
 import com.ajah.spring.jdbc.AbstractAjahDao;
+import com.ajah.spring.jdbc.criteria.Criteria;
+import com.ajah.spring.jdbc.criteria.Order;
+import com.ajah.spring.jdbc.criteria.SubCriteria;
 import com.ajah.spring.jdbc.err.DataOperationException;
 import com.ajah.syndicate.FeedSource;
 import com.ajah.syndicate.FeedSourceId;
@@ -46,7 +51,22 @@ public class FeedSourceDaoImpl extends AbstractAjahDao<FeedSourceId, FeedSource,
 	 */
 	@Override
 	public FeedSource getStaleFeedSource() throws DataOperationException {
-		return findByWhere("poll_status=" + PollStatus.ACTIVE.getId() + " AND next_poll_date < (unix_timestamp() * 1000)");
+		return findByWhere("poll_status IN (" + PollStatus.ACTIVE.getId() + "," + PollStatus.ERROR_TMP.getId() + ") AND next_poll_date < (unix_timestamp() * 1000)");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<FeedSource> listDueFeedSources(final long before, final int count) throws DataOperationException {
+		// Feeds with temporary errors are still polled, on a backoff
+		final SubCriteria statuses = new SubCriteria();
+		for (final PollStatus pollStatus : PollStatus.values()) {
+			if (pollStatus.isActive()) {
+				statuses.or(new SubCriteria().eq("poll_status", pollStatus));
+			}
+		}
+		return list(new Criteria().lte("next_poll_date", before).and(statuses).orderBy("next_poll_date", Order.ASC).rows(count));
 	}
 
 }
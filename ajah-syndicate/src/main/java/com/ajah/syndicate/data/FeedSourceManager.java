@@ -16,6 +16,7 @@
 package com.ajah.syndicate.data;
 
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 import lombok.extern.java.Log;
@@ -143,6 +144,22 @@ public class FeedSourceManager {
 		return this.feedSourceDao.getStaleFeedSource();
 	}
 
+	/**
+	 * Lists active feed sources due to be polled by a certain time, soonest
+	 * first.
+	 * 
+	 * @param before
+	 *            The time to find feed sources due by.
+	 * @param count
+	 *            The maximum number of feed sources to return.
+	 * @return The feed sources due to be polled, may be empty.
+	 * @throws DataOperationException
+	 *             If the query could not be executed.
+	 */
+	public List<FeedSource> listDueFeedSources(final Date before, final int count) throws DataOperationException {
+		return this.feedSourceDao.listDueFeedSources(before.getTime(), count);
+	}
+
 	/**
 	 * Loads an feed source by its ID.
 	 * 
@@ -1,25 +1,32 @@
 /*
  * PROPRIETARY and CONFIDENTIAL
- * 
+ *
  * Copyright 2012 Magellan Distribution Corporation
- * 
+ *
  * All rights reserved.
  */
 package com.ajah.syndicate.fetch;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 
+import lombok.Setter;
 import lombok.extern.java.Log;
 
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.joda.time.DateTime;
 import org.joda.time.Days;
@@ -40,26 +47,88 @@ import com.ajah.util.data.XmlString;
 import com.ajah.util.date.DateUtils;
 
 /**
- * Simple fetcher that will pull feeds and save entries.
+ * Simple fetcher that will pull feeds and save entries. All fetches share one
+ * pooled HTTP client, so a fetcher is safe to use from several threads, such
+ * as by a {@link FeedPoller}, and should be closed when no longer needed.
  * 
  * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
  *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
  */
 @Log
-public class FeedFetcher {
+public class FeedFetcher implements Closeable {
+
+	/**
+	 * The shortest fetch frequency adaptive polling will use, in minutes.
+	 */
+	public static final int MIN_FETCH_FREQUENCY = 15;
+
+	/**
+	 * The longest fetch frequency adaptive polling will use, in minutes.
+	 */
+	public static final int MAX_FETCH_FREQUENCY = 24 * 60;
+
+	/**
+	 * The fetch frequency of a feed source without one, in minutes.
+	 */
+	public static final int DEFAULT_FETCH_FREQUENCY = 60;
+
+	/**
+	 * The longest a failing feed waits between retries, in minutes.
+	 */
+	public static final int MAX_ERROR_BACKOFF = 6 * 60;
+
+	/**
+	 * Adapts a fetch frequency to how often a feed changes, halving it when a
+	 * fetch finds new or changed entries and lengthening it by half when it
+	 * does not, within {@link #MIN_FETCH_FREQUENCY} and
+	 * {@link #MAX_FETCH_FREQUENCY}.
+	 * 
+	 * @param fetchFrequency
+	 *            The current frequency, in minutes.
+	 * @param changed
+	 *            Did the last fetch find changes?
+	 * @return The new frequency, in minutes.
+	 */
+	public static int adaptFetchFrequency(final int fetchFrequency, final boolean changed) {
+		final int current = fetchFrequency > 0 ? fetchFrequency : DEFAULT_FETCH_FREQUENCY;
+		final int next = changed ? current / 2 : current + (current + 1) / 2;
+		return Math.max(MIN_FETCH_FREQUENCY, Math.min(MAX_FETCH_FREQUENCY, next));
+	}
+
+	/**
+	 * Returns how long to wait before retrying a feed that has been failing
+	 * since a certain time. Each retry waits about as long as the feed has
+	 * been failing, so the wait roughly doubles each time, from
+	 * {@link #MIN_FETCH_FREQUENCY} up to {@link #MAX_ERROR_BACKOFF}.
+	 * 
+	 * @param failingSince
+	 *            When the feed started failing, may be null.
+	 * @return The time to wait, in minutes.
+	 */
+	public static int getErrorBackoff(final Date failingSince) {
+		if (failingSince == null) {
+			return MIN_FETCH_FREQUENCY;
+		}
+		final long minutes = (System.currentTimeMillis() - failingSince.getTime()) / 60000;
+		return (int) Math.max(MIN_FETCH_FREQUENCY, Math.min(MAX_ERROR_BACKOFF, minutes));
+	}
 
 	private static void tempError(final FeedSource feedSource) {
 		if (feedSource.getPollStatus() == PollStatus.ERROR_TMP) {
 			if (feedSource.getPollStatusSince() == null) {
 				feedSource.setPollStatusSince(new Date());
-			} else if (Days.daysBetween(new DateTime(feedSource.getPollStatus()), new DateTime()).getDays() > 7) {
+				feedSource.setNextPoll(DateUtils.addMinutes(getErrorBackoff(feedSource.getPollStatusSince())));
+			} else if (Days.daysBetween(new DateTime(feedSource.getPollStatusSince()), new DateTime()).getDays() > 7) {
 				// We've failed for over a week, kill it.
 				feedSource.setNextPoll(null);
 				feedSource.setPollStatus(PollStatus.ERROR_PERM);
+			} else {
+				feedSource.setNextPoll(DateUtils.addMinutes(getErrorBackoff(feedSource.getPollStatusSince())));
 			}
 		} else if (feedSource.getPollStatus() == PollStatus.ACTIVE) {
 			feedSource.setPollStatusSince(new Date());
 			feedSource.setPollStatus(PollStatus.ERROR_TMP);
+			feedSource.setNextPoll(DateUtils.addMinutes(getErrorBackoff(feedSource.getPollStatusSince())));
 		} else {
 			log.severe("We shouldn't have gotten here!");
 			feedSource.setNextPoll(DateUtils.addHours(6));
@@ -67,6 +136,7 @@ public class FeedFetcher {
 	}
 
 	@Autowired
+	@Setter
 	FeedSourceManager feedSourceManager;
 
 	@Autowired
@@ -75,7 +145,42 @@ public class FeedFetcher {
 	@Autowired
 	FeedEntryManager entryManager;
 
-	private final List<EntryListener> entryListeners = new ArrayList<>();
+	private final List<EntryListener> entryListeners = new CopyOnWriteArrayList<>();
+
+	private final CloseableHttpClient http;
+
+	/**
+	 * Creates a fetcher with a pool of 100 connections, up to 4 per host.
+	 */
+	public FeedFetcher() {
+		this(100, 4);
+	}
+
+	/**
+	 * Creates a fetcher with a connection pool of a certain size.
+	 * 
+	 * @param maxConnections
+	 *            The maximum number of open connections.
+	 * @param maxPerHost
+	 *            The maximum number of open connections to a single host.
+	 */
+	public FeedFetcher(final int maxConnections, final int maxPerHost) {
+		final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxConnections);
+		connectionManager.setDefaultMaxPerRoute(maxPerHost);
+		final RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(10000).setConnectionRequestTimeout(30000).setSocketTimeout(30000).build();
+		this.http = HttpClientBuilder.create().setConnectionManager(connectionManager).setDefaultRequestConfig(requestConfig).build();
+	}
+
+	/**
+	 * Closes the HTTP client and its connections.
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		this.http.close();
+	}
 
 	/**
 	 * Adds a listener to the list of listeners to fire when an entry is found.
@@ -101,7 +206,7 @@ public class FeedFetcher {
 	 */
 	private boolean handle(final FeedSource feedSource, final HttpResponse response) throws DataOperationException {
 		final int statusCode = response.getStatusLine().getStatusCode();
-		if (statusCode == 200) {
+		if (statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_NOT_MODIFIED) {
 			if (feedSource.getPollStatus() != PollStatus.ACTIVE) {
 				feedSource.setPollStatus(PollStatus.ACTIVE);
 				feedSource.setPollStatusSince(null);
@@ -109,15 +214,15 @@ public class FeedFetcher {
 			}
 			return true;
 		} else if (statusCode == 404 || statusCode == 500) {
-			log.warning("404: " + feedSource.getFeedUrl());
+			log.warning(statusCode + ": " + feedSource.getFeedUrl());
 			tempError(feedSource);
 		} else {
 			log.severe(statusCode + ": " + feedSource.getFeedUrl());
-		}
-		if (feedSource.getPollStatus().isActive()) {
-			feedSource.setNextPoll(DateUtils.addHours(6));
-		} else {
-			feedSource.setNextPoll(null);
+			if (feedSource.getPollStatus().isActive()) {
+				feedSource.setNextPoll(DateUtils.addHours(6));
+			} else {
+				feedSource.setNextPoll(null);
+			}
 		}
 		this.feedSourceManager.save(feedSource);
 		return false;
@@ -126,7 +231,7 @@ public class FeedFetcher {
 	/**
 	 * Finds a stale feed and fetches it, saving it to the database and invoking
 	 * any listeners needed. This will run until interrupted by a serious
-	 * exception.
+	 * exception. For polling many feeds at once, use a {@link FeedPoller}.
 	 * 
 	 * @throws InterruptedException
 	 *             If the thread was interrupted while sleeping (while waiting
@@ -142,41 +247,114 @@ public class FeedFetcher {
 				Thread.sleep(60000);
 				continue;
 			}
-			log.fine("Polling " + feedSource.getTitle() + " [" + feedSource.getId() + "]");
-
-			try (final CloseableHttpClient http = HttpClientBuilder.create().build()) {
-				final HttpGet get = new HttpGet(feedSource.getFeedUrl());
-				try (final CloseableHttpResponse response = http.execute(get)) {
-					final String rawFeed = EntityUtils.toString(response.getEntity());
-					// log.finest(rawFeed);
-					EntityUtils.consume(response.getEntity());
-					if (!handle(feedSource, response)) {
-						continue;
-					}
-					final Feed feed = RomeUtils.createFeed(new XmlString(rawFeed), feedSource);
-					log.fine("Found " + feed.getEntries().size() + " entries");
-					this.feedManager.save(feed, true);
-					for (final EntryListener entryListener : this.entryListeners) {
-						for (final FeedEntry entry : feed.getEntries()) {
-							entryListener.handle(entry);
-						}
-					}
-					if (!StringUtils.isBlank(feed.getTitle())) {
-						feedSource.setTitle(feed.getTitle());
-					}
-					if (!StringUtils.isBlank(feed.getLink())) {
-						feedSource.setHtmlUrl(feed.getLink());
+			poll(feedSource);
+		}
+
+	}
+
+	/**
+	 * Fetches a feed, saving it to the database and invoking any listeners
+	 * needed, and schedules its next poll.
+	 * 
+	 * The request is conditional on the validators of the last fetch, and a
+	 * response that is not modified, or whose content is identical to the last
+	 * fetch, is not parsed. Only entries that are new or changed are saved and
+	 * passed to listeners. The feed's fetch frequency is adapted to how often
+	 * it changes.
+	 * 
+	 * @param feedSource
+	 *            The feed source to fetch.
+	 * @return true if the feed was fetched and parsed, or was unchanged, false
+	 *         if it failed.
+	 * @throws DataOperationException
+	 *             If a database query could not be executed.
+	 */
+	public boolean poll(final FeedSource feedSource) throws DataOperationException {
+		log.fine("Polling " + feedSource.getTitle() + " [" + feedSource.getId() + "]");
+		try {
+			final HttpGet get = new HttpGet(feedSource.getFeedUrl());
+			if (!StringUtils.isBlank(feedSource.getEtag())) {
+				get.setHeader(HttpHeaders.IF_NONE_MATCH, feedSource.getEtag());
+			}
+			if (!StringUtils.isBlank(feedSource.getLastModified())) {
+				get.setHeader(HttpHeaders.IF_MODIFIED_SINCE, feedSource.getLastModified());
+			}
+			boolean changed = false;
+			try (final CloseableHttpResponse response = this.http.execute(get)) {
+				final String rawFeed = response.getEntity() == null ? null : EntityUtils.toString(response.getEntity());
+				// log.finest(rawFeed);
+				EntityUtils.consume(response.getEntity());
+				if (!handle(feedSource, response)) {
+					return false;
+				}
+				if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+					log.fine("Not modified: " + feedSource.getFeedUrl());
+				} else {
+					// Only keep the new validators once the content has been
+					// handled, or a failed parse would never be retried
+					final String etag = getHeader(response, HttpHeaders.ETAG);
+					final String lastModified = getHeader(response, HttpHeaders.LAST_MODIFIED);
+					final XmlString xml = new XmlString(rawFeed);
+					if (xml.getSha1() != null && xml.getSha1().equals(feedSource.getContentSha1())) {
+						log.fine("Content unchanged: " + feedSource.getFeedUrl());
+					} else {
+						changed = parse(feedSource, xml);
 					}
+					feedSource.setEtag(etag);
+					feedSource.setLastModified(lastModified);
 				}
-				feedSource.setNextPoll(DateUtils.addMinutes(feedSource.getFetchFrequency()));
-				this.feedSourceManager.save(feedSource);
-			} catch (SyndicationException | IOException | RuntimeException e) {
-				log.log(Level.WARNING, e.getMessage(), e);
-				tempError(feedSource);
+			}
+			feedSource.setFetchFrequency(adaptFetchFrequency(feedSource.getFetchFrequency(), changed));
+			feedSource.setNextPoll(DateUtils.addMinutes(feedSource.getFetchFrequency()));
+			this.feedSourceManager.save(feedSource);
+			return true;
+		} catch (final DataOperationException e) {
+			// Not the feed's fault, but don't poll it again on every refill
+			// while the database is failing
+			feedSource.setNextPoll(DateUtils.addMinutes(MIN_FETCH_FREQUENCY));
+			try {
 				this.feedSourceManager.save(feedSource);
+			} catch (final DataOperationException saveError) {
+				log.log(Level.WARNING, "Could not defer " + feedSource.getFeedUrl() + ": " + saveError.getMessage(), saveError);
 			}
+			throw e;
+		} catch (SyndicationException | IOException | RuntimeException e) {
+			log.log(Level.WARNING, e.getMessage(), e);
+			tempError(feedSource);
+			this.feedSourceManager.save(feedSource);
+			return false;
 		}
+	}
+
+	/**
+	 * Parses and saves a feed whose content has changed, passing new or
+	 * changed entries to listeners.
+	 * 
+	 * @return true if any entries were new or changed.
+	 */
+	private boolean parse(final FeedSource feedSource, final XmlString xml) throws SyndicationException, DataOperationException {
+		final Feed feed = RomeUtils.createFeed(xml, feedSource);
+		log.fine("Found " + feed.getEntries().size() + " entries");
+		final List<FeedEntry> changed = this.feedManager.save(feed, true);
+		log.fine(changed.size() + " entries new or changed");
+		for (final EntryListener entryListener : this.entryListeners) {
+			for (final FeedEntry entry : changed) {
+				entryListener.handle(entry);
+			}
+		}
+		if (!StringUtils.isBlank(feed.getTitle())) {
+			feedSource.setTitle(feed.getTitle());
+		}
+		if (!StringUtils.isBlank(feed.getLink())) {
+			feedSource.setHtmlUrl(feed.getLink());
+		}
+		feedSource.setContentSha1(xml.getSha1());
+		return !changed.isEmpty();
+	}
 
+	private static String getHeader(final HttpResponse response, final String name) {
+		final Header header = response.getFirstHeader(name);
+		return header == null ? null : header.getValue();
 	}
 
 }
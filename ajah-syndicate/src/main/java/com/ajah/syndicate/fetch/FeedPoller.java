@@ -0,0 +1,356 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.syndicate.fetch;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.java.Log;
+
+import com.ajah.spring.jdbc.err.DataOperationException;
+import com.ajah.syndicate.FeedSource;
+import com.ajah.syndicate.FeedSourceId;
+import com.ajah.syndicate.data.FeedSourceManager;
+import com.ajah.util.metrics.LatencyHistogram;
+
+/**
+ * Polls many feeds concurrently using a {@link FeedFetcher}. Feed sources that
+ * are due soon are loaded from the database in batches into a queue ordered by
+ * their next poll time, and each is dispatched to a worker when it is due, as
+ * long as fewer than {@link #maxInFlight} fetches are running and fewer than
+ * {@link #maxPerHost} are running against its host. A feed whose host is busy
+ * is put back in the queue for a short time.
+ * 
+ * Latency of each fetch, and how late each fetch started relative to its
+ * scheduled time, are recorded so that throughput can be monitored and the
+ * number of workers tuned.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+@Log
+public class FeedPoller {
+
+	private static final class ScheduledPoll implements Comparable<ScheduledPoll> {
+
+		final FeedSource feedSource;
+		final String host;
+		final long scheduled;
+		long due;
+
+		ScheduledPoll(final FeedSource feedSource, final String host) {
+			this.feedSource = feedSource;
+			this.host = host;
+			this.scheduled = feedSource.getNextPoll() == null ? System.currentTimeMillis() : feedSource.getNextPoll().getTime();
+			this.due = this.scheduled;
+		}
+
+		@Override
+		public int compareTo(final ScheduledPoll other) {
+			return Long.compare(this.due, other.due);
+		}
+
+	}
+
+	private final FeedFetcher feedFetcher;
+	private final FeedSourceManager feedSourceManager;
+
+	/**
+	 * The maximum number of fetches running at once.
+	 */
+	@Getter
+	@Setter
+	private int maxInFlight = 50;
+
+	/**
+	 * The maximum number of fetches running at once against a single host.
+	 */
+	@Getter
+	@Setter
+	private int maxPerHost = 2;
+
+	/**
+	 * The maximum number of feed sources loaded per query.
+	 */
+	@Getter
+	@Setter
+	private int batchSize = 1000;
+
+	/**
+	 * How far ahead, in milliseconds, to load feed sources that are not yet
+	 * due.
+	 */
+	@Getter
+	@Setter
+	private long lookahead = 60000;
+
+	/**
+	 * The minimum time between queries for more feed sources, in
+	 * milliseconds.
+	 */
+	@Getter
+	@Setter
+	private long refillInterval = 5000;
+
+	/**
+	 * How long a feed waits, in milliseconds, when its host is busy.
+	 */
+	@Getter
+	@Setter
+	private long hostDelay = 250;
+
+	private final Object lock = new Object();
+	private final PriorityQueue<ScheduledPoll> queue = new PriorityQueue<>();
+	/**
+	 * IDs of feed sources queued or being fetched.
+	 */
+	private final Set<FeedSourceId> pending = new HashSet<>();
+	private final Map<String, Integer> hostCounts = new HashMap<>();
+	private int inFlight;
+	private long lastRefill;
+
+	private long started;
+	private final AtomicLong polled = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	/**
+	 * The time taken by each fetch, in microseconds.
+	 */
+	@Getter
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	/**
+	 * How late each fetch started relative to its scheduled time, in
+	 * microseconds.
+	 */
+	@Getter
+	private final LatencyHistogram lag = new LatencyHistogram();
+
+	/**
+	 * Creates a poller.
+	 * 
+	 * @param feedFetcher
+	 *            The fetcher to poll feeds with, whose connection pool should
+	 *            allow {@link #maxInFlight} connections.
+	 * @param feedSourceManager
+	 *            The manager to load feed sources from.
+	 */
+	public FeedPoller(final FeedFetcher feedFetcher, final FeedSourceManager feedSourceManager) {
+		this.feedFetcher = feedFetcher;
+		this.feedSourceManager = feedSourceManager;
+	}
+
+	/**
+	 * Returns the number of fetches completed.
+	 * 
+	 * @return The number of fetches completed.
+	 */
+	public long getPolled() {
+		return this.polled.get();
+	}
+
+	/**
+	 * Returns the number of fetches that failed.
+	 * 
+	 * @return The number of fetches that failed.
+	 */
+	public long getFailed() {
+		return this.failed.get();
+	}
+
+	/**
+	 * Returns the number of fetches completed per second since polling
+	 * started.
+	 * 
+	 * @return The number of fetches completed per second.
+	 */
+	public double getThroughput() {
+		final long elapsed = System.currentTimeMillis() - this.started;
+		return this.started == 0 || elapsed <= 0 ? 0 : this.polled.get() * 1000d / elapsed;
+	}
+
+	/**
+	 * Returns the number of feed sources waiting to be fetched.
+	 * 
+	 * @return The number of feed sources waiting to be fetched.
+	 */
+	public int getQueueDepth() {
+		synchronized (this.lock) {
+			return this.queue.size();
+		}
+	}
+
+	/**
+	 * Polls feeds until the thread is interrupted, then waits for running
+	 * fetches to finish.
+	 * 
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting for fetches to
+	 *             finish.
+	 */
+	public void run() throws InterruptedException {
+		final ExecutorService executor = Executors.newFixedThreadPool(this.maxInFlight, new ThreadFactory() {
+
+			private final AtomicLong count = new AtomicLong();
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "feed-poller-" + this.count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+
+		});
+		this.started = System.currentTimeMillis();
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				refill();
+				dispatch(executor);
+			}
+		} catch (final InterruptedException e) {
+			log.fine("Poller interrupted");
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+	private void refill() {
+		final long now = System.currentTimeMillis();
+		synchronized (this.lock) {
+			if (now - this.lastRefill < this.refillInterval || this.queue.size() >= this.batchSize / 2) {
+				return;
+			}
+			this.lastRefill = now;
+		}
+		final List<FeedSource> feedSources;
+		try {
+			feedSources = this.feedSourceManager.listDueFeedSources(new Date(now + this.lookahead), this.batchSize);
+		} catch (final DataOperationException e) {
+			log.log(Level.WARNING, e.getMessage(), e);
+			return;
+		}
+		int added = 0;
+		final int waiting;
+		synchronized (this.lock) {
+			for (final FeedSource feedSource : feedSources) {
+				if (this.pending.add(feedSource.getId())) {
+					this.queue.add(new ScheduledPoll(feedSource, getHost(feedSource.getFeedUrl())));
+					added++;
+				}
+			}
+			waiting = this.queue.size();
+		}
+		log.fine("Queued " + added + " feed sources, " + waiting + " waiting, " + getThroughput() + " polls/s");
+	}
+
+	/**
+	 * Starts every feed that is due and allowed to run, then waits until
+	 * another might be.
+	 */
+	private void dispatch(final ExecutorService executor) throws InterruptedException {
+		synchronized (this.lock) {
+			while (true) {
+				final long now = System.currentTimeMillis();
+				final long untilRefill = Math.max(1, this.lastRefill + this.refillInterval - now);
+				final ScheduledPoll head = this.queue.peek();
+				if (head == null || this.inFlight >= this.maxInFlight) {
+					this.lock.wait(untilRefill);
+					return;
+				}
+				if (head.due > now) {
+					this.lock.wait(Math.min(head.due - now, untilRefill));
+					return;
+				}
+				this.queue.poll();
+				final Integer hostCount = this.hostCounts.get(head.host);
+				if (hostCount != null && hostCount.intValue() >= this.maxPerHost) {
+					head.due = now + this.hostDelay;
+					this.queue.add(head);
+					continue;
+				}
+				this.hostCounts.put(head.host, Integer.valueOf(hostCount == null ? 1 : hostCount.intValue() + 1));
+				this.inFlight++;
+				executor.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						poll(head);
+					}
+
+				});
+			}
+		}
+	}
+
+	private void poll(final ScheduledPoll scheduledPoll) {
+		final long start = System.nanoTime();
+		this.lag.record(Math.max(0, System.currentTimeMillis() - scheduledPoll.scheduled) * 1000);
+		boolean success = false;
+		try {
+			success = this.feedFetcher.poll(scheduledPoll.feedSource);
+		} catch (final DataOperationException | RuntimeException e) {
+			log.log(Level.WARNING, scheduledPoll.feedSource.getFeedUrl() + ": " + e.getMessage(), e);
+		} finally {
+			final long micros = (System.nanoTime() - start) / 1000;
+			this.latency.record(micros);
+			this.polled.incrementAndGet();
+			if (!success) {
+				this.failed.incrementAndGet();
+			}
+			log.finest("Polled " + scheduledPoll.feedSource.getFeedUrl() + " in " + micros / 1000 + "ms");
+			synchronized (this.lock) {
+				this.inFlight--;
+				final Integer hostCount = this.hostCounts.get(scheduledPoll.host);
+				if (hostCount == null || hostCount.intValue() <= 1) {
+					this.hostCounts.remove(scheduledPoll.host);
+				} else {
+					this.hostCounts.put(scheduledPoll.host, Integer.valueOf(hostCount.intValue() - 1));
+				}
+				this.pending.remove(scheduledPoll.feedSource.getId());
+				this.lock.notifyAll();
+			}
+		}
+	}
+
+	private static String getHost(final String url) {
+		if (url == null) {
+			return "";
+		}
+		try {
+			final String host = new URI(url).getHost();
+			return host == null ? "" : host.toLowerCase();
+		} catch (final URISyntaxException e) {
+			return "";
+		}
+	}
+
+}
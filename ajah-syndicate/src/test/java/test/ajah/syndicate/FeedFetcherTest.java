@@ -0,0 +1,180 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package test.ajah.syndicate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ajah.spring.jdbc.err.DataOperationException;
+import com.ajah.spring.jdbc.err.UnknownDataOperationException;
+import com.ajah.syndicate.FeedSource;
+import com.ajah.syndicate.FeedSourceId;
+import com.ajah.syndicate.PollStatus;
+import com.ajah.syndicate.data.FeedSourceManager;
+import com.ajah.syndicate.fetch.FeedFetcher;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests {@link FeedFetcher}.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+@SuppressWarnings("static-method")
+public class FeedFetcherTest {
+
+	/**
+	 * Records the next poll date of each save, failing the first few.
+	 */
+	private static class FakeFeedSourceManager extends FeedSourceManager {
+
+		final List<Date> saved = new ArrayList<>();
+		int failures;
+
+		FakeFeedSourceManager(final int failures) {
+			this.failures = failures;
+		}
+
+		@Override
+		public void save(final FeedSource feedSource) throws DataOperationException {
+			if (this.failures > 0) {
+				this.failures--;
+				throw new UnknownDataOperationException("Unavailable");
+			}
+			this.saved.add(feedSource.getNextPoll());
+		}
+
+	}
+
+	private static HttpServer serve(final int status) throws IOException {
+		final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				exchange.sendResponseHeaders(status, -1);
+				exchange.close();
+			}
+
+		});
+		server.start();
+		return server;
+	}
+
+	private static FeedSource feedSource(final HttpServer server) {
+		final FeedSource feedSource = new FeedSource();
+		feedSource.setId(new FeedSourceId("1"));
+		feedSource.setFeedUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/feed");
+		feedSource.setPollStatus(PollStatus.ACTIVE);
+		return feedSource;
+	}
+
+	private static long minutesFromNow(final Date date) {
+		return Math.round((date.getTime() - System.currentTimeMillis()) / 60000.0);
+	}
+
+	/**
+	 * Frequency should shorten on changes and lengthen otherwise, within
+	 * bounds.
+	 */
+	@Test
+	public void testAdaptFetchFrequency() {
+		Assert.assertEquals(30, FeedFetcher.adaptFetchFrequency(60, true));
+		Assert.assertEquals(90, FeedFetcher.adaptFetchFrequency(60, false));
+		Assert.assertEquals(FeedFetcher.MIN_FETCH_FREQUENCY, FeedFetcher.adaptFetchFrequency(20, true));
+		Assert.assertEquals(FeedFetcher.MAX_FETCH_FREQUENCY, FeedFetcher.adaptFetchFrequency(1400, false));
+		Assert.assertEquals(FeedFetcher.DEFAULT_FETCH_FREQUENCY / 2, FeedFetcher.adaptFetchFrequency(0, true));
+		Assert.assertEquals(FeedFetcher.MIN_FETCH_FREQUENCY + 8, FeedFetcher.adaptFetchFrequency(FeedFetcher.MIN_FETCH_FREQUENCY, false));
+	}
+
+	/**
+	 * Failing feeds should be retried after about as long as they have been
+	 * failing, within bounds.
+	 */
+	@Test
+	public void testErrorBackoff() {
+		final long now = System.currentTimeMillis();
+		Assert.assertEquals(FeedFetcher.MIN_FETCH_FREQUENCY, FeedFetcher.getErrorBackoff(null));
+		Assert.assertEquals(FeedFetcher.MIN_FETCH_FREQUENCY, FeedFetcher.getErrorBackoff(new Date(now)));
+		Assert.assertEquals(60, FeedFetcher.getErrorBackoff(new Date(now - 60 * 60000L)));
+		Assert.assertEquals(FeedFetcher.MAX_ERROR_BACKOFF, FeedFetcher.getErrorBackoff(new Date(now - 3 * 24 * 60 * 60000L)));
+	}
+
+	/**
+	 * A feed that fails temporarily should stay in a status that is polled,
+	 * and be polled again once its backoff has passed, rather than dropped.
+	 * 
+	 * @throws IOException
+	 * @throws DataOperationException
+	 */
+	@Test
+	public void testTemporaryErrorRepolled() throws IOException, DataOperationException {
+		final HttpServer server = serve(500);
+		try (FeedFetcher fetcher = new FeedFetcher()) {
+			final FakeFeedSourceManager manager = new FakeFeedSourceManager(0);
+			fetcher.setFeedSourceManager(manager);
+			final FeedSource feedSource = feedSource(server);
+			Assert.assertFalse(fetcher.poll(feedSource));
+			Assert.assertEquals(PollStatus.ERROR_TMP, feedSource.getPollStatus());
+			Assert.assertTrue(feedSource.getPollStatus().isActive());
+			Assert.assertEquals(FeedFetcher.MIN_FETCH_FREQUENCY, minutesFromNow(feedSource.getNextPoll()));
+			final Date failingSince = feedSource.getPollStatusSince();
+			Assert.assertFalse(fetcher.poll(feedSource));
+			Assert.assertEquals(PollStatus.ERROR_TMP, feedSource.getPollStatus());
+			Assert.assertSame(failingSince, feedSource.getPollStatusSince());
+			Assert.assertEquals(FeedFetcher.MIN_FETCH_FREQUENCY, minutesFromNow(feedSource.getNextPoll()));
+			Assert.assertEquals(2, manager.saved.size());
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	/**
+	 * A feed that can't be saved should still have its next poll pushed back,
+	 * so it isn't polled again on every refill.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testDataErrorDefersPoll() throws IOException {
+		final HttpServer server = serve(304);
+		try (FeedFetcher fetcher = new FeedFetcher()) {
+			final FakeFeedSourceManager manager = new FakeFeedSourceManager(1);
+			fetcher.setFeedSourceManager(manager);
+			final FeedSource feedSource = feedSource(server);
+			feedSource.setNextPoll(new Date());
+			try {
+				fetcher.poll(feedSource);
+				Assert.fail();
+			} catch (final DataOperationException e) {
+				// Expected
+			}
+			Assert.assertEquals(1, manager.saved.size());
+			Assert.assertEquals(FeedFetcher.MIN_FETCH_FREQUENCY, minutesFromNow(manager.saved.get(0)));
+		} finally {
+			server.stop(0);
+		}
+	}
+
+}
@@ -0,0 +1,301 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.thread;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ajah.util.AjahUtils;
+import com.ajah.util.metrics.LatencyHistogram;
+
+/**
+ * A named {@link ThreadPoolExecutor} with a bounded queue, a configurable
+ * {@link RejectionPolicy} and metrics on how long tasks wait in the queue and
+ * how long they take to run.
+ * 
+ * Unlike a plain {@link ThreadPoolExecutor} with an unbounded queue, this
+ * executor actually grows to its maximum size: threads beyond the core size
+ * are started once the queue is full, and the rejection policy applies once
+ * those are busy too. Idle threads, including core threads, time out so an
+ * unused executor does not hold the JVM open.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+public class ManagedExecutor extends ThreadPoolExecutor {
+
+	private static final Logger log = Logger.getLogger(ManagedExecutor.class.getName());
+
+	/**
+	 * Records when a task was queued so its wait time can be measured.
+	 */
+	private final class TimedRunnable implements Runnable {
+
+		private final Runnable runnable;
+		private final long queued = System.nanoTime();
+
+		TimedRunnable(final Runnable runnable) {
+			this.runnable = runnable;
+		}
+
+		@Override
+		public void run() {
+			final long start = System.nanoTime();
+			ManagedExecutor.this.waitTime.record((start - this.queued) / 1000);
+			try {
+				this.runnable.run();
+			} finally {
+				ManagedExecutor.this.runTime.record((System.nanoTime() - start) / 1000);
+			}
+		}
+
+	}
+
+	private final String name;
+	private final int queueCapacity;
+	private final RejectionPolicy rejectionPolicy;
+
+	private final LatencyHistogram waitTime = new LatencyHistogram();
+	private final LatencyHistogram runTime = new LatencyHistogram();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	/**
+	 * Creates an executor.
+	 * 
+	 * @param name
+	 *            The name of the executor, used for thread names, required.
+	 * @param coreSize
+	 *            The number of threads to keep while there is work queued.
+	 * @param maxSize
+	 *            The maximum number of threads, started once the queue is
+	 *            full.
+	 * @param queueCapacity
+	 *            The maximum number of queued tasks. Zero hands tasks
+	 *            directly to threads, a negative value means unbounded (in
+	 *            which case maxSize is never reached).
+	 * @param keepAlive
+	 *            How long in milliseconds an idle thread waits for work before
+	 *            exiting.
+	 * @param rejectionPolicy
+	 *            What to do with tasks that cannot be queued, required.
+	 * @param daemon
+	 *            Whether threads should be daemon threads.
+	 */
+	public ManagedExecutor(final String name, final int coreSize, final int maxSize, final int queueCapacity, final long keepAlive, final RejectionPolicy rejectionPolicy,
+			final boolean daemon) {
+		super(coreSize, Math.max(coreSize, maxSize), keepAlive, TimeUnit.MILLISECONDS, createQueue(queueCapacity), createThreadFactory(name, daemon));
+		AjahUtils.requireParam(rejectionPolicy, "rejectionPolicy");
+		this.name = name;
+		this.queueCapacity = queueCapacity;
+		this.rejectionPolicy = rejectionPolicy;
+		final RejectedExecutionHandler handler = rejectionPolicy.toHandler();
+		setRejectedExecutionHandler(new RejectedExecutionHandler() {
+
+			@Override
+			public void rejectedExecution(final Runnable runnable, final ThreadPoolExecutor executor) {
+				ManagedExecutor.this.rejected.incrementAndGet();
+				handler.rejectedExecution(runnable, executor);
+			}
+		});
+		allowCoreThreadTimeOut(keepAlive > 0);
+	}
+
+	private static BlockingQueue<Runnable> createQueue(final int queueCapacity) {
+		if (queueCapacity < 0) {
+			return new LinkedBlockingQueue<>();
+		} else if (queueCapacity == 0) {
+			return new SynchronousQueue<>();
+		}
+		return new ArrayBlockingQueue<>(queueCapacity);
+	}
+
+	private static ThreadFactory createThreadFactory(final String name, final boolean daemon) {
+		AjahUtils.requireParam(name, "name");
+		return new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, name + "-" + this.count.incrementAndGet());
+				thread.setDaemon(daemon);
+				return thread;
+			}
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void execute(final Runnable command) {
+		AjahUtils.requireParam(command, "command");
+		super.execute(new TimedRunnable(command));
+	}
+
+	/**
+	 * Counts tasks that threw. Tasks passed to submit() are wrapped in a
+	 * future that captures the exception, so it is unwrapped from the future.
+	 * Cancelled tasks are not counted.
+	 * 
+	 * @see java.util.concurrent.ThreadPoolExecutor#afterExecute(java.lang.Runnable,
+	 *      java.lang.Throwable)
+	 */
+	@Override
+	protected void afterExecute(final Runnable runnable, final Throwable throwable) {
+		super.afterExecute(runnable, throwable);
+		final Runnable task = runnable instanceof TimedRunnable ? ((TimedRunnable) runnable).runnable : runnable;
+		Throwable cause = throwable;
+		if (cause == null && task instanceof Future<?> && ((Future<?>) task).isDone()) {
+			try {
+				((Future<?>) task).get();
+			} catch (final CancellationException e) {
+				// Not a failure
+			} catch (final ExecutionException e) {
+				cause = e.getCause();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (cause != null) {
+			this.failed.incrementAndGet();
+			log.log(Level.WARNING, this.name + ": " + cause.getMessage(), cause);
+		}
+	}
+
+	/**
+	 * Stops accepting new tasks and waits for queued and running tasks to
+	 * finish. If they do not finish in time, running tasks are interrupted and
+	 * queued tasks are discarded.
+	 * 
+	 * @param timeout
+	 *            How long to wait.
+	 * @param unit
+	 *            The unit of the timeout.
+	 * @return true if every task finished, false if some were interrupted or
+	 *         discarded.
+	 */
+	public boolean drain(final long timeout, final TimeUnit unit) {
+		shutdown();
+		try {
+			if (awaitTermination(timeout, unit)) {
+				return true;
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		final int dropped = shutdownNow().size();
+		log.warning(this.name + " did not drain in time, " + dropped + " queued tasks discarded");
+		return false;
+	}
+
+	/**
+	 * Returns the name of this executor.
+	 * 
+	 * @return The name of this executor.
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns the maximum number of queued tasks.
+	 * 
+	 * @return The queue capacity, negative if unbounded.
+	 */
+	public int getQueueCapacity() {
+		return this.queueCapacity;
+	}
+
+	/**
+	 * Returns the policy for tasks that cannot be queued.
+	 * 
+	 * @return The rejection policy.
+	 */
+	public RejectionPolicy getRejectionPolicy() {
+		return this.rejectionPolicy;
+	}
+
+	/**
+	 * Returns the number of tasks waiting to run.
+	 * 
+	 * @return The number of queued tasks.
+	 */
+	public int getQueueDepth() {
+		return getQueue().size();
+	}
+
+	/**
+	 * Returns how long tasks waited in the queue before starting, in
+	 * microseconds.
+	 * 
+	 * @return The wait time histogram.
+	 */
+	public LatencyHistogram getWaitTime() {
+		return this.waitTime;
+	}
+
+	/**
+	 * Returns how long tasks took to run, in microseconds.
+	 * 
+	 * @return The run time histogram.
+	 */
+	public LatencyHistogram getRunTime() {
+		return this.runTime;
+	}
+
+	/**
+	 * Returns the number of tasks the rejection policy was applied to.
+	 * 
+	 * @return The number of rejected tasks.
+	 */
+	public long getRejected() {
+		return this.rejected.get();
+	}
+
+	/**
+	 * Returns the number of tasks that threw an exception.
+	 * 
+	 * @return The number of failed tasks.
+	 */
+	public long getFailed() {
+		return this.failed.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return this.name + " [active=" + getActiveCount() + ", pool=" + getPoolSize() + ", queued=" + getQueueDepth() + ", completed=" + getCompletedTaskCount() + ", rejected="
+				+ getRejected() + ", failed=" + getFailed() + ", wait p99=" + this.waitTime.getPercentile(99) + "us, run p99=" + this.runTime.getPercentile(99) + "us]";
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.thread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ajah.util.AjahUtils;
+import com.ajah.util.config.Config;
+
+/**
+ * A registry of named {@link ManagedExecutor}s, configured from
+ * {@link Config} properties and drained gracefully when the JVM shuts down.
+ * 
+ * An executor named "foo" is configured by these properties:
+ * <ul>
+ * <li>ajah.thread.foo.coreSize (default 10)</li>
+ * <li>ajah.thread.foo.maxSize (default 50)</li>
+ * <li>ajah.thread.foo.queueCapacity (default 1000, -1 for unbounded)</li>
+ * <li>ajah.thread.foo.keepAlive in milliseconds (default 60000)</li>
+ * <li>ajah.thread.foo.rejectionPolicy, a {@link RejectionPolicy} name
+ * (default CALLER_RUNS)</li>
+ * <li>ajah.thread.foo.daemon (default false)</li>
+ * </ul>
+ * 
+ * On shutdown, each executor is given ajah.thread.shutdownTimeout
+ * milliseconds (default 30000) to finish its work.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+public class ManagedExecutors {
+
+	private static final Logger log = Logger.getLogger(ManagedExecutors.class.getName());
+
+	private static final ConcurrentMap<String, ManagedExecutor> executors = new ConcurrentHashMap<>();
+
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread("ajah-thread-shutdown") {
+
+			@Override
+			public void run() {
+				drainAll(Config.i.getLong("ajah.thread.shutdownTimeout", 30000), TimeUnit.MILLISECONDS);
+			}
+		});
+	}
+
+	/**
+	 * Returns the executor with the given name, creating it from configuration
+	 * if necessary.
+	 * 
+	 * @param name
+	 *            The name of the executor, required.
+	 * @return The executor, will not be null.
+	 */
+	public static ManagedExecutor get(final String name) {
+		AjahUtils.requireParam(name, "name");
+		final ManagedExecutor existing = executors.get(name);
+		if (existing != null) {
+			return existing;
+		}
+		final String prefix = "ajah.thread." + name + ".";
+		RejectionPolicy rejectionPolicy = RejectionPolicy.CALLER_RUNS;
+		final String policyName = Config.i.get(prefix + "rejectionPolicy", null);
+		if (policyName != null) {
+			try {
+				rejectionPolicy = RejectionPolicy.valueOf(policyName.trim().toUpperCase());
+			} catch (final IllegalArgumentException e) {
+				log.warning("Unknown rejection policy " + policyName + " for " + name + ", using " + rejectionPolicy);
+			}
+		}
+		final ManagedExecutor executor = new ManagedExecutor(name, Config.i.getInt(prefix + "coreSize", 10), Config.i.getInt(prefix + "maxSize", 50), Config.i.getInt(prefix
+				+ "queueCapacity", 1000), Config.i.getLong(prefix + "keepAlive", 60000), rejectionPolicy, Config.i.getBoolean(prefix + "daemon", false));
+		return register(executor);
+	}
+
+	/**
+	 * Registers an executor that was configured in code. If an executor with
+	 * the same name is already registered, that one is returned instead and
+	 * the supplied one is shut down.
+	 * 
+	 * @param executor
+	 *            The executor to register, required.
+	 * @return The registered executor with that name.
+	 */
+	public static ManagedExecutor register(final ManagedExecutor executor) {
+		AjahUtils.requireParam(executor, "executor");
+		final ManagedExecutor existing = executors.putIfAbsent(executor.getName(), executor);
+		if (existing != null) {
+			executor.shutdown();
+			return existing;
+		}
+		log.fine("Registered executor " + executor.getName());
+		return executor;
+	}
+
+	/**
+	 * Returns all registered executors, for monitoring.
+	 * 
+	 * @return The registered executors, may be empty but will not be null.
+	 */
+	public static List<ManagedExecutor> list() {
+		return new ArrayList<>(executors.values());
+	}
+
+	/**
+	 * Drains every registered executor. All of them stop accepting tasks
+	 * first, so they drain concurrently within a single timeout.
+	 * 
+	 * @param timeout
+	 *            How long to wait.
+	 * @param unit
+	 *            The unit of the timeout.
+	 * @return true if every executor finished all of its tasks.
+	 */
+	public static boolean drainAll(final long timeout, final TimeUnit unit) {
+		final List<ManagedExecutor> all = list();
+		for (final ManagedExecutor executor : all) {
+			executor.shutdown();
+		}
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		boolean clean = true;
+		for (final ManagedExecutor executor : all) {
+			if (!executor.drain(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+				clean = false;
+			}
+			if (log.isLoggable(Level.FINE)) {
+				log.fine("Drained " + executor);
+			}
+		}
+		return clean;
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.thread;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * What a {@link ManagedExecutor} does with a task when its queue is full and
+ * all of its threads are busy.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+public enum RejectionPolicy {
+
+	/**
+	 * Throws a {@link RejectedExecutionException}.
+	 */
+	ABORT,
+
+	/**
+	 * Runs the task on the submitting thread, which slows down submitters
+	 * until the executor catches up.
+	 */
+	CALLER_RUNS,
+
+	/**
+	 * Blocks the submitting thread until there is room in the queue.
+	 */
+	BLOCK,
+
+	/**
+	 * Silently drops the task.
+	 */
+	DISCARD,
+
+	/**
+	 * Drops the oldest queued task and retries.
+	 */
+	DISCARD_OLDEST;
+
+	/**
+	 * Returns a handler that implements this policy.
+	 * 
+	 * @return A handler that implements this policy.
+	 */
+	public RejectedExecutionHandler toHandler() {
+		switch (this) {
+		case CALLER_RUNS:
+			return new ThreadPoolExecutor.CallerRunsPolicy();
+		case BLOCK:
+			return new RejectedExecutionHandler() {
+
+				@Override
+				public void rejectedExecution(final Runnable runnable, final ThreadPoolExecutor executor) {
+					if (executor.isShutdown()) {
+						throw new RejectedExecutionException("Executor has been shut down");
+					}
+					try {
+						executor.getQueue().put(runnable);
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new RejectedExecutionException(e);
+					}
+				}
+			};
+		case DISCARD:
+			return new ThreadPoolExecutor.DiscardPolicy();
+		case DISCARD_OLDEST:
+			return new ThreadPoolExecutor.DiscardOldestPolicy();
+		default:
+			return new ThreadPoolExecutor.AbortPolicy();
+		}
+	}
+
+}
@@ -15,17 +15,16 @@
  */
 package com.ajah.thread;
 
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 import com.ajah.util.AjahUtils;
 
 /**
  * A wrapper around {@link Executor} to ease configuration.
  * 
+ * The default instance runs on the {@link ManagedExecutor} named "default",
+ * see {@link ManagedExecutors} for how to configure it.
+ * 
  * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
  *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
  */
@@ -45,8 +44,7 @@ public class ThreadQueue {
 	private final Executor executor;
 
 	private ThreadQueue() {
-		final BlockingQueue<Runnable> queue = new LinkedBlockingDeque<>();
-		this.executor = new ThreadPoolExecutor(10, 50, 1, TimeUnit.DAYS, queue);
+		this.executor = ManagedExecutors.get("default");
 	}
 
 	/**
@@ -71,4 +69,13 @@ public class ThreadQueue {
 		this.executor.execute(runnable);
 	}
 
+	/**
+	 * Returns the wrapped executor.
+	 * 
+	 * @return The wrapped executor.
+	 */
+	public Executor getExecutor() {
+		return this.executor;
+	}
+
 }
@@ -17,7 +17,9 @@ package com.ajah.thread.gang;
 
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import com.ajah.thread.ThreadQueue;
@@ -35,30 +37,36 @@ import com.ajah.util.AjahUtils;
 public class SimpleWorker<T> implements Worker<T> {
 
 	private static Logger log = Logger.getLogger(SimpleWorker.class.getName());
-	private final FutureTask<T> task;
-	private boolean cancelRequested;
-	private ThreadQueue threadQueue;
+	private final Callable<T> callable;
+	private volatile FutureTask<T> task;
+	private volatile boolean started;
+	private volatile boolean cancelRequested;
+	private final AtomicInteger attempts = new AtomicInteger();
 
 	/**
 	 * Instantiates with the callable, wrapping it a {@link FutureTask}
-	 * automatically. More useful for anonymous definitions.
+	 * automatically. More useful for anonymous definitions. Workers created
+	 * this way can be {@link #reset()} and run again.
 	 * 
 	 * @param callable
 	 *            The callable the callable object to execute.
 	 */
 	public SimpleWorker(final Callable<T> callable) {
 		AjahUtils.requireParam(callable, "callable");
+		this.callable = callable;
 		this.task = new FutureTask<>(callable);
 	}
 
 	/**
-	 * Instantiates with the supplied task.
+	 * Instantiates with the supplied task. Workers created this way cannot be
+	 * reset.
 	 * 
 	 * @param task
 	 *            The task this worker manages.
 	 */
 	public SimpleWorker(final FutureTask<T> task) {
 		AjahUtils.requireParam(task, "task");
+		this.callable = null;
 		this.task = task;
 	}
 
@@ -86,10 +94,69 @@ public class SimpleWorker<T> implements Worker<T> {
 	 */
 	@Override
 	public void go() {
-		if (this.threadQueue == null) {
-			ThreadQueue.getInstance().execute(this.task);
+		go(ThreadQueue.getInstance().getExecutor());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void go(final Executor executor) {
+		AjahUtils.requireParam(executor, "executor");
+		this.started = true;
+		this.attempts.incrementAndGet();
+		executor.execute(this.task);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public WorkerState getState() {
+		final FutureTask<T> current = this.task;
+		if (!this.started) {
+			return WorkerState.PENDING;
+		} else if (current.isCancelled()) {
+			return WorkerState.CANCELLED;
+		} else if (!current.isDone()) {
+			return WorkerState.RUNNING;
+		}
+		try {
+			current.get();
+			return WorkerState.COMPLETED;
+		} catch (final ExecutionException e) {
+			return WorkerState.FAILED;
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return WorkerState.RUNNING;
 		}
-		this.threadQueue.execute(this.task);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized boolean reset() {
+		if (this.callable == null) {
+			return false;
+		}
+		final WorkerState state = getState();
+		if (state == WorkerState.PENDING || state == WorkerState.RUNNING) {
+			return false;
+		}
+		this.task = new FutureTask<>(this.callable);
+		this.started = false;
+		this.cancelRequested = false;
+		return true;
+	}
+
+	/**
+	 * Returns the number of times this worker has been started.
+	 * 
+	 * @return The number of times this worker has been started.
+	 */
+	public int getAttempts() {
+		return this.attempts.get();
 	}
 
 	/**
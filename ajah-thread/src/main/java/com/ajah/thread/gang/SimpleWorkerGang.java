@@ -17,9 +17,21 @@ package com.ajah.thread.gang;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import com.ajah.thread.ManagedExecutor;
+import com.ajah.thread.ManagedExecutors;
+import com.ajah.util.AjahUtils;
 
 /**
- * A simple gang that can execute a list of jobs.
+ * A simple gang that can execute a list of jobs. Jobs run on the gang's
+ * executor, by default the {@link ManagedExecutor} named "gang". Failed jobs
+ * can be restarted with {@link #restartFailed()}, up to a limit per job.
  * 
  * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
  *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
@@ -27,15 +39,23 @@ import java.util.List;
  */
 public class SimpleWorkerGang {
 
-	private final List<Worker<?>> workers = new ArrayList<>();
+	private static final Logger log = Logger.getLogger(SimpleWorkerGang.class.getName());
+
+	private final List<Worker<?>> workers = new CopyOnWriteArrayList<>();
+
+	private final Map<Worker<?>, AtomicInteger> restarts = new ConcurrentHashMap<>();
 
 	private final boolean autoStart;
 
+	private final Executor executor;
+
+	private final int maxRestarts;
+
 	/**
 	 * Constructor with autoStart enabled.
 	 */
 	public SimpleWorkerGang() {
-		this.autoStart = true;
+		this(true);
 	}
 
 	/**
@@ -45,7 +65,25 @@ public class SimpleWorkerGang {
 	 *            Should jobs be started as they are added?
 	 */
 	public SimpleWorkerGang(final boolean autoStart) {
+		this(autoStart, ManagedExecutors.get("gang"), 3);
+	}
+
+	/**
+	 * Public constructor.
+	 * 
+	 * @param autoStart
+	 *            Should jobs be started as they are added?
+	 * @param executor
+	 *            The executor to run jobs on, required.
+	 * @param maxRestarts
+	 *            The maximum number of times {@link #restartFailed()} will
+	 *            restart any one job.
+	 */
+	public SimpleWorkerGang(final boolean autoStart, final Executor executor, final int maxRestarts) {
+		AjahUtils.requireParam(executor, "executor");
 		this.autoStart = autoStart;
+		this.executor = executor;
+		this.maxRestarts = maxRestarts;
 	}
 
 	/**
@@ -56,20 +94,88 @@ public class SimpleWorkerGang {
 	 *            begin execution immediately.
 	 */
 	public void add(final Worker<?> worker) {
+		AjahUtils.requireParam(worker, "worker");
 		this.workers.add(worker);
+		this.restarts.put(worker, new AtomicInteger());
 		if (this.autoStart) {
-			worker.go();
+			worker.go(this.executor);
 		}
 	}
 
 	/**
-	 * Invokes {@link Worker#go()} on all workers in this gang. This isn't
+	 * Starts all workers in this gang that have not been started. This isn't
 	 * necessary if autoStart is true.
 	 */
 	public void go() {
 		for (final Worker<?> worker : this.workers) {
-			worker.go();
+			if (worker.getState() == WorkerState.PENDING) {
+				worker.go(this.executor);
+			}
+		}
+	}
+
+	/**
+	 * Returns the workers in this gang.
+	 * 
+	 * @return The workers in this gang, may be empty but will not be null.
+	 */
+	public List<Worker<?>> getWorkers() {
+		return new ArrayList<>(this.workers);
+	}
+
+	/**
+	 * Counts the workers in a state.
+	 * 
+	 * @param state
+	 *            The state to count.
+	 * @return The number of workers currently in that state.
+	 */
+	public int count(final WorkerState state) {
+		int count = 0;
+		for (final Worker<?> worker : this.workers) {
+			if (worker.getState() == state) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Is every worker either pending, running or completed?
+	 * 
+	 * @return true if no worker has failed.
+	 */
+	public boolean isHealthy() {
+		return count(WorkerState.FAILED) == 0;
+	}
+
+	/**
+	 * Restarts failed workers that have not used up their restarts and can be
+	 * reset.
+	 * 
+	 * @return The number of workers restarted.
+	 */
+	public int restartFailed() {
+		int restarted = 0;
+		for (final Worker<?> worker : this.workers) {
+			if (worker.getState() != WorkerState.FAILED) {
+				continue;
+			}
+			final AtomicInteger count = this.restarts.get(worker);
+			if (count.get() >= this.maxRestarts) {
+				log.fine("Worker has used all " + this.maxRestarts + " restarts");
+				continue;
+			}
+			if (worker.reset()) {
+				count.incrementAndGet();
+				worker.go(this.executor);
+				restarted++;
+			}
+		}
+		if (restarted > 0) {
+			log.info("Restarted " + restarted + " failed workers");
 		}
+		return restarted;
 	}
 
 }
@@ -16,6 +16,7 @@
 package com.ajah.thread.gang;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 /**
  * A worker is an asynchronous job that is part of a Gang. It does work in a
@@ -65,4 +66,28 @@ public interface Worker<T> {
 	 */
 	void go();
 
+	/**
+	 * Begin executing the job on a specific executor.
+	 * 
+	 * @param executor
+	 *            The executor to run the job on, required.
+	 */
+	void go(final Executor executor);
+
+	/**
+	 * Returns the current state of this job.
+	 * 
+	 * @return The current state of this job.
+	 */
+	WorkerState getState();
+
+	/**
+	 * Prepares a job that has finished, failed or been cancelled to be run
+	 * again by {@link #go()}.
+	 * 
+	 * @return true if the job was reset, false if it is still running or
+	 *         cannot be run again.
+	 */
+	boolean reset();
+
 }
@@ -18,7 +18,9 @@ package com.ajah.user.social.data;
 import java.util.List;
 
 import com.ajah.spring.jdbc.AjahDao;
+import com.ajah.spring.jdbc.EntityHandler;
 import com.ajah.spring.jdbc.err.DataOperationException;
+import com.ajah.user.UserId;
 import com.ajah.user.social.UserFollow;
 import com.ajah.user.social.UserFollowId;
 import com.ajah.user.social.UserFollowStatus;
@@ -62,4 +64,37 @@ public interface UserFollowDao extends AjahDao<UserFollowId, UserFollow> {
 	 */
 	long count(final UserFollowType type, final UserFollowStatus status) throws DataOperationException;
 
+	/**
+	 * Counts the records between two users that match the criteria.
+	 * 
+	 * @param userId
+	 *            The user that is following, required.
+	 * @param followedUserId
+	 *            The user that is being followed, required.
+	 * @param type
+	 *            The userFollow type to limit to, optional.
+	 * @param status
+	 *            The status to limit to, optional.
+	 * @return The number of matching records.
+	 * @throws DataOperationException
+	 *             If the query could not be executed.
+	 */
+	long count(final UserId userId, final UserId followedUserId, final UserFollowType type, final UserFollowStatus status) throws DataOperationException;
+
+	/**
+	 * Streams every {@link UserFollow} that matches the specified criteria to
+	 * a handler, without holding them all in memory.
+	 * 
+	 * @param type
+	 *            The type of userFollow, optional.
+	 * @param status
+	 *            The status of the userFollow, optional.
+	 * @param handler
+	 *            The handler to pass each userFollow to, required.
+	 * @return The number of userFollows handled.
+	 * @throws DataOperationException
+	 *             If the query could not be executed.
+	 */
+	long forEach(final UserFollowType type, final UserFollowStatus status, final EntityHandler<UserFollow> handler) throws DataOperationException;
+
 }
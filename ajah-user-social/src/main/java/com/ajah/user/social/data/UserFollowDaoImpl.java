@@ -20,13 +20,16 @@ import java.util.List;
 import org.springframework.stereotype.Repository;
 
 import com.ajah.spring.jdbc.AbstractAjahDao;
+import com.ajah.spring.jdbc.EntityHandler;
 import com.ajah.spring.jdbc.criteria.Criteria;
 import com.ajah.spring.jdbc.criteria.Order;
 import com.ajah.spring.jdbc.err.DataOperationException;
+import com.ajah.user.UserId;
 import com.ajah.user.social.UserFollow;
 import com.ajah.user.social.UserFollowId;
 import com.ajah.user.social.UserFollowStatus;
 import com.ajah.user.social.UserFollowType;
+import com.ajah.util.AjahUtils;
 
 /**
  * MySQL-based implementation of {@link UserFollowDao}.
@@ -53,6 +56,25 @@ public class UserFollowDaoImpl extends AbstractAjahDao<UserFollowId, UserFollow,
 		return super.count(criteria);
 	}
 
+	/**
+	 * @see com.ajah.user.social.data.UserFollowDao#count(com.ajah.user.UserId,
+	 *      com.ajah.user.UserId, com.ajah.user.social.UserFollowType,
+	 *      com.ajah.user.social.UserFollowStatus)
+	 */
+	@Override
+	public long count(final UserId userId, final UserId followedUserId, final UserFollowType type, final UserFollowStatus status) throws DataOperationException {
+		AjahUtils.requireParam(userId, "userId");
+		AjahUtils.requireParam(followedUserId, "followedUserId");
+		final Criteria criteria = new Criteria().eq("user_id", userId).eq("followed_user_id", followedUserId);
+		if (type != null) {
+			criteria.eq("type", type);
+		}
+		if (status != null) {
+			criteria.eq("status", status);
+		}
+		return super.count(criteria);
+	}
+
 	@Override
 	public List<UserFollow> list(final UserFollowType type, final UserFollowStatus status, final long page, final long count) throws DataOperationException {
 		final Criteria criteria = new Criteria();
@@ -65,4 +87,21 @@ public class UserFollowDaoImpl extends AbstractAjahDao<UserFollowId, UserFollow,
 		return super.list(criteria.offset(page * count).rows(count).orderBy("created_date", Order.ASC));
 	}
 
+	/**
+	 * @see com.ajah.user.social.data.UserFollowDao#forEach(com.ajah.user.social.UserFollowType,
+	 *      com.ajah.user.social.UserFollowStatus,
+	 *      com.ajah.spring.jdbc.EntityHandler)
+	 */
+	@Override
+	public long forEach(final UserFollowType type, final UserFollowStatus status, final EntityHandler<UserFollow> handler) throws DataOperationException {
+		final Criteria criteria = new Criteria();
+		if (type != null) {
+			criteria.eq("type", type);
+		}
+		if (status != null) {
+			criteria.eq("status", status);
+		}
+		return super.forEach(criteria, handler);
+	}
+
 }
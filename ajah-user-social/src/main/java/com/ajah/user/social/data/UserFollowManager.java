@@ -15,36 +15,77 @@
  */
 package com.ajah.user.social.data;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.java.Log;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.ajah.spring.jdbc.DataOperationResult;
+import com.ajah.spring.jdbc.EntityHandler;
 import com.ajah.spring.jdbc.err.DataOperationException;
 import com.ajah.user.UserId;
 import com.ajah.user.social.UserFollow;
 import com.ajah.user.social.UserFollowId;
 import com.ajah.user.social.UserFollowStatus;
 import com.ajah.user.social.UserFollowType;
+import com.ajah.user.social.graph.FollowGraph;
 
 /**
  * Manages data operations for {@link UserFollow}.
  * 
+ * Also maintains a {@link FollowGraph} of active follows, built on first use
+ * by {@link #getFollowGraph()} and kept current as follows are saved. Saves
+ * made inside a transaction reach the graph only once it commits. The graph
+ * is also rebuilt in the background every {@link #refreshInterval}
+ * milliseconds to pick up changes made elsewhere.
+ * 
  * @author Eric F. Savage <code@efsavage.com>
  * 
  */
 @Service
 @Log
-public class UserFollowManager {
+public class UserFollowManager implements DisposableBean {
 
 	@Autowired
+	@Setter
 	private UserFollowDao userFollowDao;
 
+	private final Object followGraphBuildLock = new Object();
+
+	private final Object followGraphLock = new Object();
+
+	private volatile FollowGraph followGraph;
+
+	/**
+	 * Changes saved while the graph is being built, to be replayed onto it.
+	 */
+	private List<UserFollow> pendingGraphChanges;
+
+	/**
+	 * How often, in milliseconds, the follow graph is rebuilt from the
+	 * database.
+	 */
+	@Getter
+	@Setter
+	private volatile long refreshInterval = 15 * 60 * 1000L;
+
+	private ScheduledExecutorService refresher;
+
 	/**
 	 * Returns a count of all records.
 	 * 
@@ -179,11 +220,182 @@ public class UserFollowManager {
 		if (create) {
 			final DataOperationResult<UserFollow> result = this.userFollowDao.insert(userFollow);
 			log.fine("Created UserFollow " + userFollow.getId());
+			updateFollowGraphAfterCommit(userFollow);
 			return result;
 		}
 		final DataOperationResult<UserFollow> result = this.userFollowDao.update(userFollow);
 		log.fine("Updated UserFollow " + userFollow.getId());
+		updateFollowGraphAfterCommit(userFollow);
 		return result;
 	}
 
+	/**
+	 * Returns the graph of active follows, building it from the database on
+	 * first use.
+	 * 
+	 * @return The follow graph, will not be null.
+	 * @throws DataOperationException
+	 *             If the query could not be executed.
+	 */
+	public FollowGraph getFollowGraph() throws DataOperationException {
+		final FollowGraph graph = this.followGraph;
+		if (graph != null) {
+			return graph;
+		}
+		synchronized (this.followGraphBuildLock) {
+			if (this.followGraph != null) {
+				return this.followGraph;
+			}
+			final FollowGraph built = buildFollowGraph();
+			startRefresher();
+			return built;
+		}
+	}
+
+	private synchronized void startRefresher() {
+		if (this.refresher != null || this.refreshInterval <= 0) {
+			return;
+		}
+		this.refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "follow-graph-refresh");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.refresher.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					rebuildFollowGraph();
+				} catch (final DataOperationException | RuntimeException e) {
+					log.log(Level.WARNING, "Could not rebuild follow graph, keeping the previous one: " + e.getMessage(), e);
+				}
+			}
+		}, this.refreshInterval, this.refreshInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Rebuilds the graph of active follows from the database, replacing the
+	 * current one once the new one is complete.
+	 * 
+	 * @return The new follow graph.
+	 * @throws DataOperationException
+	 *             If the query could not be executed.
+	 */
+	public FollowGraph rebuildFollowGraph() throws DataOperationException {
+		synchronized (this.followGraphBuildLock) {
+			return buildFollowGraph();
+		}
+	}
+
+	private FollowGraph buildFollowGraph() throws DataOperationException {
+		synchronized (this.followGraphLock) {
+			this.pendingGraphChanges = new ArrayList<>();
+		}
+		try {
+			final FollowGraph.Builder builder = new FollowGraph.Builder();
+			final long start = System.currentTimeMillis();
+			this.userFollowDao.forEach(UserFollowType.FOLLOW, UserFollowStatus.ACTIVE, new EntityHandler<UserFollow>() {
+
+				@Override
+				public void handle(final UserFollow userFollow) {
+					builder.add(userFollow.getUserId(), userFollow.getFollowedUserId());
+				}
+			});
+			final FollowGraph graph = builder.build();
+			synchronized (this.followGraphLock) {
+				for (final UserFollow userFollow : this.pendingGraphChanges) {
+					apply(graph, userFollow);
+				}
+				this.followGraph = graph;
+			}
+			log.info("Built follow graph of " + graph.getEdgeCount() + " follows between " + graph.getUserCount() + " users in " + (System.currentTimeMillis() - start) + "ms");
+			return graph;
+		} finally {
+			synchronized (this.followGraphLock) {
+				this.pendingGraphChanges = null;
+			}
+		}
+	}
+
+	/**
+	 * Applies a saved follow to the graph once its transaction commits, or
+	 * right away if there is none, so a rollback cannot leave an edge behind.
+	 * The fields the graph uses are copied now, in case the caller changes the
+	 * entity before the commit. Only {@link UserFollowType#FOLLOW} records
+	 * are in the graph, so other types are ignored.
+	 */
+	private void updateFollowGraphAfterCommit(final UserFollow userFollow) {
+		if (userFollow.getType() != UserFollowType.FOLLOW) {
+			return;
+		}
+		final UserFollow change = new UserFollow();
+		change.setUserId(userFollow.getUserId());
+		change.setFollowedUserId(userFollow.getFollowedUserId());
+		change.setType(userFollow.getType());
+		change.setStatus(userFollow.getStatus());
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			updateFollowGraph(change);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+			@Override
+			public void afterCommit() {
+				updateFollowGraph(change);
+			}
+
+		});
+	}
+
+	private void updateFollowGraph(final UserFollow userFollow) {
+		if (userFollow.getUserId() == null || userFollow.getFollowedUserId() == null) {
+			return;
+		}
+		if (userFollow.getStatus() != UserFollowStatus.ACTIVE) {
+			// The pair may have another, still active, follow record, such as
+			// when an old duplicate is deleted
+			try {
+				if (this.userFollowDao.count(userFollow.getUserId(), userFollow.getFollowedUserId(), UserFollowType.FOLLOW, UserFollowStatus.ACTIVE) > 0) {
+					return;
+				}
+			} catch (final DataOperationException e) {
+				log.log(Level.WARNING, "Could not check for other follows, leaving the graph until it is rebuilt: " + e.getMessage(), e);
+				return;
+			}
+		}
+		synchronized (this.followGraphLock) {
+			if (this.pendingGraphChanges != null) {
+				this.pendingGraphChanges.add(userFollow);
+			}
+			if (this.followGraph != null) {
+				apply(this.followGraph, userFollow);
+			}
+		}
+	}
+
+	private static void apply(final FollowGraph graph, final UserFollow userFollow) {
+		if (userFollow.getStatus() == UserFollowStatus.ACTIVE) {
+			graph.add(userFollow.getUserId(), userFollow.getFollowedUserId());
+		} else {
+			graph.remove(userFollow.getUserId(), userFollow.getFollowedUserId());
+		}
+	}
+
+	/**
+	 * Stops rebuilding the follow graph when the Spring context shuts down.
+	 * 
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public synchronized void destroy() {
+		if (this.refresher != null) {
+			this.refresher.shutdownNow();
+		}
+	}
+
 }
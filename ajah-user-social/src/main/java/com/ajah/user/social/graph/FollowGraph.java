@@ -0,0 +1,573 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.user.social.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.ajah.user.UserId;
+import com.ajah.util.AjahUtils;
+
+/**
+ * An in-memory index of who follows whom. Each user is assigned a dense int
+ * index, and each user's followers and followed users are kept as sorted int
+ * arrays, so follower counts are a single array lookup, membership is a
+ * binary search and mutual follows are a merge of two sorted arrays.
+ * 
+ * Large graphs should be loaded with a {@link Builder}, which sorts each
+ * user's edges once rather than inserting them one at a time. Afterwards,
+ * {@link #add(UserId, UserId)} and {@link #remove(UserId, UserId)} keep the
+ * index current.
+ * 
+ * Instances are thread-safe; any number of readers may query the graph while
+ * updates are serialized.
+ * 
+ * @author Eric F. Savage <code@efsavage.com>
+ * 
+ */
+public class FollowGraph {
+
+	/**
+	 * Collects edges and builds a {@link FollowGraph} from them in one pass.
+	 * Duplicate edges are ignored. Builders are not thread-safe.
+	 */
+	public static class Builder {
+
+		private final Map<UserId, Integer> indexes = new HashMap<>();
+		private UserId[] users = new UserId[1024];
+		private int userCount;
+		private int[] from = new int[4096];
+		private int[] to = new int[4096];
+		private int edgeCount;
+
+		/**
+		 * Adds an edge.
+		 * 
+		 * @param follower
+		 *            The user that is following, required.
+		 * @param followed
+		 *            The user that is being followed, required.
+		 * @return This builder.
+		 */
+		public Builder add(final UserId follower, final UserId followed) {
+			AjahUtils.requireParam(follower, "follower");
+			AjahUtils.requireParam(followed, "followed");
+			if (this.edgeCount == this.from.length) {
+				final int capacity = this.edgeCount + (this.edgeCount >> 1);
+				this.from = Arrays.copyOf(this.from, capacity);
+				this.to = Arrays.copyOf(this.to, capacity);
+			}
+			this.from[this.edgeCount] = index(follower);
+			this.to[this.edgeCount] = index(followed);
+			this.edgeCount++;
+			return this;
+		}
+
+		private int index(final UserId userId) {
+			final Integer existing = this.indexes.get(userId);
+			if (existing != null) {
+				return existing.intValue();
+			}
+			if (this.userCount == this.users.length) {
+				this.users = Arrays.copyOf(this.users, this.userCount + (this.userCount >> 1));
+			}
+			this.users[this.userCount] = userId;
+			this.indexes.put(userId, Integer.valueOf(this.userCount));
+			return this.userCount++;
+		}
+
+		/**
+		 * Builds the graph. The builder should not be used afterwards.
+		 * 
+		 * @return The graph.
+		 */
+		public FollowGraph build() {
+			final int capacity = Math.max(this.userCount, 16);
+			final int[][] following = fill(this.from, this.to, capacity);
+			final int[][] followers = fill(this.to, this.from, capacity);
+			final int[] followingCounts = new int[capacity];
+			final int[] followerCounts = new int[capacity];
+			long edges = 0;
+			for (int i = 0; i < this.userCount; i++) {
+				followingCounts[i] = sortUnique(following[i]);
+				followerCounts[i] = sortUnique(followers[i]);
+				edges += followingCounts[i];
+			}
+			// Release the edge list before the graph is used
+			this.from = null;
+			this.to = null;
+			return new FollowGraph(this.indexes, Arrays.copyOf(this.users, capacity), this.userCount, following, followingCounts, followers, followerCounts, edges);
+		}
+
+		private int[][] fill(final int[] source, final int[] target, final int capacity) {
+			final int[] degrees = new int[capacity];
+			for (int i = 0; i < this.edgeCount; i++) {
+				degrees[source[i]]++;
+			}
+			final int[][] adjacency = new int[capacity][];
+			for (int i = 0; i < capacity; i++) {
+				adjacency[i] = degrees[i] == 0 ? EMPTY : new int[degrees[i]];
+			}
+			final int[] positions = new int[capacity];
+			for (int i = 0; i < this.edgeCount; i++) {
+				adjacency[source[i]][positions[source[i]]++] = target[i];
+			}
+			return adjacency;
+		}
+
+		private static int sortUnique(final int[] array) {
+			if (array.length < 2) {
+				return array.length;
+			}
+			Arrays.sort(array);
+			int count = 1;
+			for (int i = 1; i < array.length; i++) {
+				if (array[i] != array[count - 1]) {
+					array[count++] = array[i];
+				}
+			}
+			return count;
+		}
+
+	}
+
+	private static final int[] EMPTY = new int[0];
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Map<UserId, Integer> indexes;
+	private UserId[] users;
+	private int userCount;
+	private int[][] following;
+	private int[] followingCounts;
+	private int[][] followers;
+	private int[] followerCounts;
+	private long edgeCount;
+
+	/**
+	 * Creates an empty graph.
+	 */
+	public FollowGraph() {
+		this(new HashMap<UserId, Integer>(), new UserId[16], 0, new int[16][], new int[16], new int[16][], new int[16], 0);
+		Arrays.fill(this.following, EMPTY);
+		Arrays.fill(this.followers, EMPTY);
+	}
+
+	FollowGraph(final Map<UserId, Integer> indexes, final UserId[] users, final int userCount, final int[][] following, final int[] followingCounts, final int[][] followers,
+			final int[] followerCounts, final long edgeCount) {
+		this.indexes = indexes;
+		this.users = users;
+		this.userCount = userCount;
+		this.following = following;
+		this.followingCounts = followingCounts;
+		this.followers = followers;
+		this.followerCounts = followerCounts;
+		this.edgeCount = edgeCount;
+	}
+
+	/**
+	 * Adds an edge.
+	 * 
+	 * @param follower
+	 *            The user that is following, required.
+	 * @param followed
+	 *            The user that is being followed, required.
+	 * @return true if the edge was added, false if it was already present.
+	 */
+	public boolean add(final UserId follower, final UserId followed) {
+		AjahUtils.requireParam(follower, "follower");
+		AjahUtils.requireParam(followed, "followed");
+		this.lock.writeLock().lock();
+		try {
+			final int from = getOrCreateIndex(follower);
+			final int to = getOrCreateIndex(followed);
+			if (!insert(this.following, this.followingCounts, from, to)) {
+				return false;
+			}
+			insert(this.followers, this.followerCounts, to, from);
+			this.edgeCount++;
+			return true;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes an edge.
+	 * 
+	 * @param follower
+	 *            The user that is following, required.
+	 * @param followed
+	 *            The user that is being followed, required.
+	 * @return true if the edge was removed, false if it was not present.
+	 */
+	public boolean remove(final UserId follower, final UserId followed) {
+		AjahUtils.requireParam(follower, "follower");
+		AjahUtils.requireParam(followed, "followed");
+		this.lock.writeLock().lock();
+		try {
+			final int from = getIndex(follower);
+			final int to = getIndex(followed);
+			if (from < 0 || to < 0 || !delete(this.following, this.followingCounts, from, to)) {
+				return false;
+			}
+			delete(this.followers, this.followerCounts, to, from);
+			this.edgeCount--;
+			return true;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Does one user follow another?
+	 * 
+	 * @param follower
+	 *            The user that may be following.
+	 * @param followed
+	 *            The user that may be followed.
+	 * @return true if the edge is present.
+	 */
+	public boolean isFollowing(final UserId follower, final UserId followed) {
+		this.lock.readLock().lock();
+		try {
+			final int from = getIndex(follower);
+			final int to = getIndex(followed);
+			return from >= 0 && to >= 0 && Arrays.binarySearch(this.following[from], 0, this.followingCounts[from], to) >= 0;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of users following a user.
+	 * 
+	 * @param userId
+	 *            The user.
+	 * @return The number of followers.
+	 */
+	public int getFollowerCount(final UserId userId) {
+		this.lock.readLock().lock();
+		try {
+			final int index = getIndex(userId);
+			return index < 0 ? 0 : this.followerCounts[index];
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of users a user is following.
+	 * 
+	 * @param userId
+	 *            The user.
+	 * @return The number of followed users.
+	 */
+	public int getFollowingCount(final UserId userId) {
+		this.lock.readLock().lock();
+		try {
+			final int index = getIndex(userId);
+			return index < 0 ? 0 : this.followingCounts[index];
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the users following a user.
+	 * 
+	 * @param userId
+	 *            The user.
+	 * @return The followers, may be empty but will not be null.
+	 */
+	public List<UserId> getFollowers(final UserId userId) {
+		this.lock.readLock().lock();
+		try {
+			final int index = getIndex(userId);
+			return index < 0 ? Collections.<UserId> emptyList() : toUserIds(this.followers[index], this.followerCounts[index]);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the users a user is following.
+	 * 
+	 * @param userId
+	 *            The user.
+	 * @return The followed users, may be empty but will not be null.
+	 */
+	public List<UserId> getFollowing(final UserId userId) {
+		this.lock.readLock().lock();
+		try {
+			final int index = getIndex(userId);
+			return index < 0 ? Collections.<UserId> emptyList() : toUserIds(this.following[index], this.followingCounts[index]);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the users that both follow and are followed by a user.
+	 * 
+	 * @param userId
+	 *            The user.
+	 * @return The mutual follows, may be empty but will not be null.
+	 */
+	public List<UserId> getMutuals(final UserId userId) {
+		this.lock.readLock().lock();
+		try {
+			final int index = getIndex(userId);
+			if (index < 0) {
+				return Collections.emptyList();
+			}
+			final int[] mutuals = intersect(this.following[index], this.followingCounts[index], this.followers[index], this.followerCounts[index]);
+			return toUserIds(mutuals, mutuals.length);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the users that two users both follow.
+	 * 
+	 * @param first
+	 *            The first user.
+	 * @param second
+	 *            The second user.
+	 * @return The users followed by both, may be empty but will not be null.
+	 */
+	public List<UserId> getCommonFollowing(final UserId first, final UserId second) {
+		this.lock.readLock().lock();
+		try {
+			final int a = getIndex(first);
+			final int b = getIndex(second);
+			if (a < 0 || b < 0) {
+				return Collections.emptyList();
+			}
+			final int[] common = intersect(this.following[a], this.followingCounts[a], this.following[b], this.followingCounts[b]);
+			return toUserIds(common, common.length);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Suggests users to follow: those followed by the users a user follows,
+	 * ranked by how many of them follow each one. Users already followed, and
+	 * the user themself, are excluded.
+	 * 
+	 * @param userId
+	 *            The user.
+	 * @param limit
+	 *            The maximum number of suggestions.
+	 * @return The suggestions, most-followed first. May be empty but will not
+	 *         be null.
+	 */
+	public List<UserId> getFriendsOfFriends(final UserId userId, final int limit) {
+		this.lock.readLock().lock();
+		try {
+			final int index = getIndex(userId);
+			if (index < 0 || limit < 1) {
+				return Collections.emptyList();
+			}
+			final int[] direct = this.following[index];
+			final int directCount = this.followingCounts[index];
+			int total = 0;
+			for (int i = 0; i < directCount; i++) {
+				total += this.followingCounts[direct[i]];
+			}
+			final int[] candidates = new int[total];
+			int position = 0;
+			for (int i = 0; i < directCount; i++) {
+				System.arraycopy(this.following[direct[i]], 0, candidates, position, this.followingCounts[direct[i]]);
+				position += this.followingCounts[direct[i]];
+			}
+			Arrays.sort(candidates);
+			// Pack (count, index) into longs so one sort ranks them
+			final long[] ranked = new long[total];
+			int rankedCount = 0;
+			for (int i = 0; i < total;) {
+				final int candidate = candidates[i];
+				int run = 1;
+				while (i + run < total && candidates[i + run] == candidate) {
+					run++;
+				}
+				i += run;
+				if (candidate != index && Arrays.binarySearch(direct, 0, directCount, candidate) < 0) {
+					ranked[rankedCount++] = ((long) run << 32) | candidate;
+				}
+			}
+			Arrays.sort(ranked, 0, rankedCount);
+			final List<UserId> suggestions = new ArrayList<>(Math.min(limit, rankedCount));
+			for (int i = rankedCount - 1; i >= 0 && suggestions.size() < limit; i--) {
+				suggestions.add(this.users[(int) ranked[i]]);
+			}
+			return suggestions;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of users in the graph.
+	 * 
+	 * @return The number of users with at least one edge, past or present.
+	 */
+	public int getUserCount() {
+		this.lock.readLock().lock();
+		try {
+			return this.userCount;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of edges in the graph.
+	 * 
+	 * @return The number of edges.
+	 */
+	public long getEdgeCount() {
+		this.lock.readLock().lock();
+		try {
+			return this.edgeCount;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Intersects two sorted arrays. When one is much shorter than the other,
+	 * the shorter one's values are binary-searched in the longer one instead
+	 * of merging.
+	 * 
+	 * @param a
+	 *            The first sorted array.
+	 * @param aCount
+	 *            The number of values used in the first array.
+	 * @param b
+	 *            The second sorted array.
+	 * @param bCount
+	 *            The number of values used in the second array.
+	 * @return The values in both arrays, sorted.
+	 */
+	static int[] intersect(final int[] a, final int aCount, final int[] b, final int bCount) {
+		if (aCount > bCount) {
+			return intersect(b, bCount, a, aCount);
+		}
+		final int[] result = new int[aCount];
+		int count = 0;
+		if (aCount * 16 < bCount) {
+			int low = 0;
+			for (int i = 0; i < aCount; i++) {
+				final int found = Arrays.binarySearch(b, low, bCount, a[i]);
+				if (found >= 0) {
+					result[count++] = a[i];
+					low = found + 1;
+				} else {
+					low = -found - 1;
+				}
+			}
+		} else {
+			int i = 0;
+			int j = 0;
+			while (i < aCount && j < bCount) {
+				if (a[i] < b[j]) {
+					i++;
+				} else if (a[i] > b[j]) {
+					j++;
+				} else {
+					result[count++] = a[i];
+					i++;
+					j++;
+				}
+			}
+		}
+		return count == result.length ? result : Arrays.copyOf(result, count);
+	}
+
+	private int getIndex(final UserId userId) {
+		final Integer index = this.indexes.get(userId);
+		return index == null ? -1 : index.intValue();
+	}
+
+	private int getOrCreateIndex(final UserId userId) {
+		final int existing = getIndex(userId);
+		if (existing >= 0) {
+			return existing;
+		}
+		if (this.userCount == this.users.length) {
+			final int capacity = this.userCount + (this.userCount >> 1);
+			this.users = Arrays.copyOf(this.users, capacity);
+			this.following = Arrays.copyOf(this.following, capacity);
+			this.followers = Arrays.copyOf(this.followers, capacity);
+			this.followingCounts = Arrays.copyOf(this.followingCounts, capacity);
+			this.followerCounts = Arrays.copyOf(this.followerCounts, capacity);
+		}
+		final int index = this.userCount++;
+		this.users[index] = userId;
+		this.following[index] = EMPTY;
+		this.followers[index] = EMPTY;
+		this.indexes.put(userId, Integer.valueOf(index));
+		return index;
+	}
+
+	private static boolean insert(final int[][] adjacency, final int[] counts, final int node, final int value) {
+		int[] array = adjacency[node];
+		final int count = counts[node];
+		final int position = Arrays.binarySearch(array, 0, count, value);
+		if (position >= 0) {
+			return false;
+		}
+		final int insertAt = -position - 1;
+		if (count == array.length) {
+			array = Arrays.copyOf(array, Math.max(4, count + (count >> 1)));
+			adjacency[node] = array;
+		}
+		System.arraycopy(array, insertAt, array, insertAt + 1, count - insertAt);
+		array[insertAt] = value;
+		counts[node] = count + 1;
+		return true;
+	}
+
+	private static boolean delete(final int[][] adjacency, final int[] counts, final int node, final int value) {
+		final int[] array = adjacency[node];
+		final int count = counts[node];
+		final int position = Arrays.binarySearch(array, 0, count, value);
+		if (position < 0) {
+			return false;
+		}
+		System.arraycopy(array, position + 1, array, position, count - position - 1);
+		counts[node] = count - 1;
+		return true;
+	}
+
+	private List<UserId> toUserIds(final int[] array, final int count) {
+		final List<UserId> userIds = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			userIds.add(this.users[array[i]]);
+		}
+		return userIds;
+	}
+
+}
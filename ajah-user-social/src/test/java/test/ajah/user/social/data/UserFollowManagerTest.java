@@ -0,0 +1,171 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package test.ajah.user.social.data;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ajah.spring.jdbc.DataOperationResult;
+import com.ajah.spring.jdbc.EntityHandler;
+import com.ajah.spring.jdbc.err.DataOperationException;
+import com.ajah.user.UserId;
+import com.ajah.user.social.UserFollow;
+import com.ajah.user.social.UserFollowStatus;
+import com.ajah.user.social.UserFollowType;
+import com.ajah.user.social.data.UserFollowDao;
+import com.ajah.user.social.data.UserFollowManager;
+import com.ajah.user.social.graph.FollowGraph;
+
+/**
+ * Tests how {@link UserFollowManager} keeps its {@link FollowGraph} up to
+ * date.
+ * 
+ * @author Eric F. Savage <code@efsavage.com>
+ * 
+ */
+@SuppressWarnings("static-method")
+public class UserFollowManagerTest {
+
+	private static final UserId ALICE = new UserId("alice");
+	private static final UserId BOB = new UserId("bob");
+
+	/**
+	 * Keeps saved follows in a list, replacing them by ID on update.
+	 */
+	private static class FakeDao implements InvocationHandler {
+
+		final List<UserFollow> rows = new ArrayList<>();
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "insert":
+				this.rows.add(copy((UserFollow) args[0]));
+				return new DataOperationResult<>((UserFollow) args[0], 1);
+			case "update":
+				for (int i = 0; i < this.rows.size(); i++) {
+					if (this.rows.get(i).getId().equals(((UserFollow) args[0]).getId())) {
+						this.rows.set(i, copy((UserFollow) args[0]));
+					}
+				}
+				return new DataOperationResult<>((UserFollow) args[0], 1);
+			case "forEach":
+				long handled = 0;
+				for (final UserFollow row : this.rows) {
+					if (row.getType() == args[0] && row.getStatus() == args[1]) {
+						((EntityHandler<UserFollow>) args[2]).handle(row);
+						handled++;
+					}
+				}
+				return Long.valueOf(handled);
+			case "count":
+				long count = 0;
+				for (final UserFollow row : this.rows) {
+					if (row.getUserId().equals(args[0]) && row.getFollowedUserId().equals(args[1]) && row.getType() == args[2] && row.getStatus() == args[3]) {
+						count++;
+					}
+				}
+				return Long.valueOf(count);
+			default:
+				throw new UnsupportedOperationException(method.getName());
+			}
+		}
+
+		private static UserFollow copy(final UserFollow userFollow) {
+			final UserFollow row = new UserFollow();
+			row.setId(userFollow.getId());
+			row.setUserId(userFollow.getUserId());
+			row.setFollowedUserId(userFollow.getFollowedUserId());
+			row.setType(userFollow.getType());
+			row.setStatus(userFollow.getStatus());
+			row.setCreated(userFollow.getCreated());
+			return row;
+		}
+
+	}
+
+	private static UserFollowManager manager(final FakeDao fakeDao) {
+		final UserFollowManager manager = new UserFollowManager();
+		manager.setUserFollowDao((UserFollowDao) Proxy.newProxyInstance(UserFollowDao.class.getClassLoader(), new Class<?>[] { UserFollowDao.class }, fakeDao));
+		manager.setRefreshInterval(0);
+		return manager;
+	}
+
+	/**
+	 * Following and unfollowing should show up in the graph without a rebuild.
+	 * 
+	 * @throws DataOperationException
+	 */
+	@Test
+	public void testFollowAndUnfollow() throws DataOperationException {
+		final UserFollowManager manager = manager(new FakeDao());
+		final FollowGraph graph = manager.getFollowGraph();
+		final UserFollow follow = manager.create(ALICE, BOB, UserFollowType.FOLLOW, UserFollowStatus.ACTIVE).getEntity();
+		Assert.assertTrue(graph.isFollowing(ALICE, BOB));
+		follow.setStatus(UserFollowStatus.DELETED);
+		manager.save(follow);
+		Assert.assertFalse(graph.isFollowing(ALICE, BOB));
+	}
+
+	/**
+	 * Muting or blocking someone is not a follow, so it should not remove an
+	 * existing follow from the graph.
+	 * 
+	 * @throws DataOperationException
+	 */
+	@Test
+	public void testMuteKeepsFollow() throws DataOperationException {
+		final FakeDao fakeDao = new FakeDao();
+		final UserFollowManager manager = manager(fakeDao);
+		manager.create(ALICE, BOB, UserFollowType.FOLLOW, UserFollowStatus.ACTIVE);
+		final FollowGraph graph = manager.getFollowGraph();
+		Assert.assertTrue(graph.isFollowing(ALICE, BOB));
+		manager.create(ALICE, BOB, UserFollowType.MUTE, UserFollowStatus.ACTIVE);
+		Assert.assertTrue(graph.isFollowing(ALICE, BOB));
+		final UserFollow block = manager.create(ALICE, BOB, UserFollowType.BLOCK, UserFollowStatus.ACTIVE).getEntity();
+		block.setStatus(UserFollowStatus.DELETED);
+		manager.save(block);
+		Assert.assertTrue(graph.isFollowing(ALICE, BOB));
+	}
+
+	/**
+	 * Deleting one of two follow records between the same users should leave
+	 * the follow in place until the other is deleted too.
+	 * 
+	 * @throws DataOperationException
+	 */
+	@Test
+	public void testDuplicateFollow() throws DataOperationException {
+		final UserFollowManager manager = manager(new FakeDao());
+		final UserFollow first = manager.create(ALICE, BOB, UserFollowType.FOLLOW, UserFollowStatus.ACTIVE).getEntity();
+		final UserFollow second = manager.create(ALICE, BOB, UserFollowType.FOLLOW, UserFollowStatus.ACTIVE).getEntity();
+		final FollowGraph graph = manager.getFollowGraph();
+		first.setStatus(UserFollowStatus.DELETED);
+		manager.save(first);
+		Assert.assertTrue(graph.isFollowing(ALICE, BOB));
+		second.setStatus(UserFollowStatus.DELETED);
+		manager.save(second);
+		Assert.assertFalse(graph.isFollowing(ALICE, BOB));
+	}
+
+}
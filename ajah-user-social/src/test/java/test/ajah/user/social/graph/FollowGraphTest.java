@@ -0,0 +1,147 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package test.ajah.user.social.graph;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ajah.user.UserId;
+import com.ajah.user.social.graph.FollowGraph;
+
+/**
+ * Tests {@link FollowGraph}.
+ * 
+ * @author Eric F. Savage <code@efsavage.com>
+ * 
+ */
+@SuppressWarnings("static-method")
+public class FollowGraphTest {
+
+	private static final UserId ALICE = new UserId("alice");
+	private static final UserId BOB = new UserId("bob");
+	private static final UserId CAROL = new UserId("carol");
+	private static final UserId DAVE = new UserId("dave");
+
+	/**
+	 * Following should add an edge once, and be visible from both ends.
+	 */
+	@Test
+	public void testFollow() {
+		final FollowGraph graph = new FollowGraph();
+		Assert.assertTrue(graph.add(ALICE, BOB));
+		Assert.assertFalse(graph.add(ALICE, BOB));
+		Assert.assertTrue(graph.isFollowing(ALICE, BOB));
+		Assert.assertFalse(graph.isFollowing(BOB, ALICE));
+		Assert.assertEquals(Arrays.asList(BOB), graph.getFollowing(ALICE));
+		Assert.assertEquals(Arrays.asList(ALICE), graph.getFollowers(BOB));
+		Assert.assertEquals(1, graph.getEdgeCount());
+		Assert.assertEquals(2, graph.getUserCount());
+	}
+
+	/**
+	 * Unfollowing should remove the edge from both ends, and unfollowing
+	 * something that was never followed should do nothing.
+	 */
+	@Test
+	public void testUnfollow() {
+		final FollowGraph graph = new FollowGraph();
+		graph.add(ALICE, BOB);
+		graph.add(ALICE, CAROL);
+		Assert.assertTrue(graph.remove(ALICE, BOB));
+		Assert.assertFalse(graph.remove(ALICE, BOB));
+		Assert.assertFalse(graph.remove(DAVE, ALICE));
+		Assert.assertFalse(graph.isFollowing(ALICE, BOB));
+		Assert.assertEquals(Arrays.asList(CAROL), graph.getFollowing(ALICE));
+		Assert.assertEquals(Collections.emptyList(), graph.getFollowers(BOB));
+		Assert.assertEquals(1, graph.getEdgeCount());
+	}
+
+	/**
+	 * Counts should track follows and unfollows, and be zero for unknown
+	 * users.
+	 */
+	@Test
+	public void testCounts() {
+		final FollowGraph graph = new FollowGraph();
+		graph.add(ALICE, BOB);
+		graph.add(CAROL, BOB);
+		graph.add(DAVE, BOB);
+		graph.add(BOB, ALICE);
+		Assert.assertEquals(3, graph.getFollowerCount(BOB));
+		Assert.assertEquals(1, graph.getFollowingCount(BOB));
+		Assert.assertEquals(1, graph.getFollowerCount(ALICE));
+		graph.remove(CAROL, BOB);
+		Assert.assertEquals(2, graph.getFollowerCount(BOB));
+		Assert.assertEquals(0, graph.getFollowingCount(CAROL));
+		Assert.assertEquals(0, graph.getFollowerCount(new UserId("nobody")));
+	}
+
+	/**
+	 * Mutuals are users that follow each other; common following is the
+	 * overlap of two users' follows.
+	 */
+	@Test
+	public void testMutuals() {
+		final FollowGraph graph = new FollowGraph();
+		graph.add(ALICE, BOB);
+		graph.add(BOB, ALICE);
+		graph.add(ALICE, CAROL);
+		graph.add(DAVE, ALICE);
+		graph.add(ALICE, DAVE);
+		graph.add(BOB, CAROL);
+		Assert.assertEquals(Arrays.asList(BOB, DAVE), graph.getMutuals(ALICE));
+		Assert.assertEquals(Arrays.asList(ALICE), graph.getMutuals(BOB));
+		Assert.assertEquals(Collections.emptyList(), graph.getMutuals(CAROL));
+		Assert.assertEquals(Arrays.asList(CAROL), graph.getCommonFollowing(ALICE, BOB));
+		graph.remove(BOB, ALICE);
+		Assert.assertEquals(Arrays.asList(DAVE), graph.getMutuals(ALICE));
+	}
+
+	/**
+	 * A built graph should match one made by adding the same edges, with
+	 * duplicates ignored.
+	 */
+	@Test
+	public void testBuilder() {
+		final FollowGraph graph = new FollowGraph.Builder().add(ALICE, BOB).add(BOB, ALICE).add(ALICE, BOB).add(CAROL, BOB).build();
+		Assert.assertEquals(3, graph.getEdgeCount());
+		Assert.assertEquals(2, graph.getFollowerCount(BOB));
+		Assert.assertEquals(Arrays.asList(BOB), graph.getMutuals(ALICE));
+		Assert.assertTrue(graph.add(BOB, CAROL));
+		Assert.assertEquals(Arrays.asList(ALICE, CAROL), graph.getFollowing(BOB));
+	}
+
+	/**
+	 * Suggestions should rank users by how many followed users follow them,
+	 * and skip the user and anyone they already follow.
+	 */
+	@Test
+	public void testFriendsOfFriends() {
+		final FollowGraph graph = new FollowGraph();
+		graph.add(ALICE, BOB);
+		graph.add(ALICE, CAROL);
+		graph.add(BOB, DAVE);
+		graph.add(CAROL, DAVE);
+		graph.add(BOB, ALICE);
+		graph.add(CAROL, BOB);
+		Assert.assertEquals(Arrays.asList(DAVE), graph.getFriendsOfFriends(ALICE, 10));
+		Assert.assertEquals(Collections.emptyList(), graph.getFriendsOfFriends(ALICE, 0));
+	}
+
+}
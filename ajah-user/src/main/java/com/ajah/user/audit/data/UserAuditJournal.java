@@ -0,0 +1,690 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.user.audit.data;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.java.Log;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.ajah.spring.jdbc.err.DataOperationException;
+import com.ajah.spring.jdbc.err.DatabaseConnectionException;
+import com.ajah.user.UserId;
+import com.ajah.user.audit.UserAudit;
+import com.ajah.user.audit.UserAuditField;
+import com.ajah.user.audit.UserAuditId;
+import com.ajah.user.audit.UserAuditType;
+import com.ajah.util.AjahUtils;
+import com.ajah.util.config.Config;
+import com.ajah.util.metrics.LatencyHistogram;
+
+/**
+ * A durable, append-only journal of {@link UserAudit}s that are written to
+ * the database in the background. {@link #append(UserAudit)} returns once the
+ * record has been synced to local disk, and concurrent appends share a single
+ * fsync, so audited operations are not slowed down by database inserts.
+ * 
+ * Records are appended to a segment file that is rolled every
+ * {@link #flushInterval} milliseconds. A background thread inserts the records
+ * in closed segments in batches of {@link #batchSize}, checkpointing its
+ * progress after each batch, and deletes each segment once it is fully
+ * written. If the database is unavailable, segments are kept and retried.
+ * Segments left over from a previous run are written when the journal starts.
+ * Lines that cannot be decoded, and audits the database rejects while it is
+ * otherwise reachable, are moved to a .rejected file next to the segment so
+ * they do not hold up the rest of the journal.
+ * 
+ * To enable the journal, declare it as a bean; {@link UserAuditManager} will
+ * use it for new audits. The directory must be set, either directly or with
+ * the ajah.user.audit.journal.dir property, and should be on durable storage
+ * rather than a tmpfs such as /tmp. Only one journal can use a directory at a
+ * time; a second one, even in another process, will fail to start.
+ * 
+ * @author Eric F. Savage <code@efsavage.com>
+ * 
+ */
+@Log
+public class UserAuditJournal implements InitializingBean, DisposableBean {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String SEGMENT_SUFFIX = ".journal";
+
+	private static final String OFFSET_SUFFIX = ".offset";
+
+	private static final String REJECTED_SUFFIX = ".rejected";
+
+	private static final String LOCK_FILE = "journal.lock";
+
+	/**
+	 * The DAO audits are written with.
+	 */
+	@Autowired
+	@Setter
+	private UserAuditDao userAuditDao;
+
+	/**
+	 * The directory segments are written to, required.
+	 */
+	@Getter
+	@Setter
+	private File directory = getDefaultDirectory();
+
+	/**
+	 * The maximum number of audits inserted at once.
+	 */
+	@Getter
+	@Setter
+	private volatile int batchSize = 500;
+
+	/**
+	 * How often, in milliseconds, the current segment is closed and written
+	 * to the database.
+	 */
+	@Getter
+	@Setter
+	private volatile long flushInterval = 1000;
+
+	/**
+	 * The longest time, in milliseconds, {@link #close()} waits for the
+	 * journal to be written to the database.
+	 */
+	@Getter
+	@Setter
+	private volatile long shutdownTimeout = 30000;
+
+	private final Object appendLock = new Object();
+	private final Object syncLock = new Object();
+
+	private FileChannel lockChannel;
+	private FileLock lock;
+	private FileChannel channel;
+	private File segment;
+	private long sequence;
+	private long appended;
+	private volatile long synced;
+	private volatile boolean closed;
+	private Thread drainer;
+
+	private final AtomicLong appendedCount = new AtomicLong();
+	private final AtomicLong writtenCount = new AtomicLong();
+	private final AtomicLong syncs = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final LatencyHistogram lag = new LatencyHistogram();
+
+	private static File getDefaultDirectory() {
+		final String directory = Config.i.get("ajah.user.audit.journal.dir");
+		return directory == null ? null : new File(directory);
+	}
+
+	/**
+	 * Locks the journal directory, opens a new segment and starts writing any
+	 * existing ones to the database.
+	 * 
+	 * @throws IOException
+	 *             If the journal directory could not be opened, or is in use
+	 *             by another journal.
+	 */
+	@Override
+	public void afterPropertiesSet() throws IOException {
+		if (this.directory == null) {
+			throw new IllegalStateException("No user audit journal directory, set ajah.user.audit.journal.dir");
+		}
+		if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+			throw new IOException("Could not create " + this.directory.getAbsolutePath());
+		}
+		lock();
+		try {
+			final List<File> existing = listSegments();
+			if (!existing.isEmpty()) {
+				log.info("Replaying " + existing.size() + " user audit journal segments");
+				this.sequence = getSequence(existing.get(existing.size() - 1));
+			}
+			synchronized (this.appendLock) {
+				openSegment();
+			}
+		} catch (IOException | RuntimeException e) {
+			unlock();
+			throw e;
+		}
+		this.drainer = new Thread("UserAuditJournal") {
+
+			@Override
+			public void run() {
+				drainLoop();
+			}
+
+		};
+		this.drainer.setDaemon(true);
+		this.drainer.start();
+	}
+
+	/**
+	 * Locks the directory for this journal, so another one cannot reuse its
+	 * segment names or drain the segment it is writing to.
+	 */
+	private void lock() throws IOException {
+		final File lockFile = new File(this.directory, LOCK_FILE);
+		this.lockChannel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		try {
+			this.lock = this.lockChannel.tryLock();
+		} catch (final OverlappingFileLockException e) {
+			this.lock = null;
+		}
+		if (this.lock == null) {
+			this.lockChannel.close();
+			this.lockChannel = null;
+			throw new IOException(this.directory.getAbsolutePath() + " is in use by another user audit journal");
+		}
+	}
+
+	private void unlock() {
+		if (this.lockChannel == null) {
+			return;
+		}
+		try {
+			// Closing the channel releases the lock
+			this.lockChannel.close();
+		} catch (final IOException e) {
+			log.log(Level.WARNING, "Could not unlock " + this.directory.getAbsolutePath() + ": " + e.getMessage(), e);
+		}
+		this.lockChannel = null;
+		this.lock = null;
+	}
+
+	/**
+	 * Appends an audit to the journal and waits until it is on disk.
+	 * 
+	 * @param userAudit
+	 *            The audit to append, required, with its ID and creation date
+	 *            already set.
+	 * @throws IOException
+	 *             If the audit could not be written, or the journal is closed.
+	 */
+	public void append(final UserAudit userAudit) throws IOException {
+		AjahUtils.requireParam(userAudit, "userAudit");
+		AjahUtils.requireParam(userAudit.getId(), "userAudit.id");
+		AjahUtils.requireParam(userAudit.getCreated(), "userAudit.created");
+		final ByteBuffer record = ByteBuffer.wrap(encode(userAudit).getBytes(UTF_8));
+		final long position;
+		synchronized (this.appendLock) {
+			if (this.closed || this.channel == null) {
+				throw new IOException("Journal is not open");
+			}
+			while (record.hasRemaining()) {
+				this.channel.write(record);
+			}
+			this.appended += record.capacity();
+			position = this.appended;
+		}
+		this.appendedCount.incrementAndGet();
+		sync(position);
+	}
+
+	/**
+	 * Waits until everything up to a position has been forced to disk. Only
+	 * one thread forces at a time; threads that arrive while it does will
+	 * usually find their records covered when it finishes.
+	 */
+	private void sync(final long position) throws IOException {
+		if (this.synced >= position) {
+			return;
+		}
+		synchronized (this.syncLock) {
+			if (this.synced >= position) {
+				return;
+			}
+			final long target;
+			final FileChannel current;
+			synchronized (this.appendLock) {
+				target = this.appended;
+				current = this.channel;
+			}
+			current.force(false);
+			this.syncs.incrementAndGet();
+			this.synced = target;
+		}
+	}
+
+	/**
+	 * Closes the current segment, if it has anything in it, and opens a new
+	 * one. The caller must hold the append lock.
+	 */
+	private void openSegment() throws IOException {
+		this.sequence++;
+		this.segment = new File(this.directory, String.format("%019d", Long.valueOf(this.sequence)) + SEGMENT_SUFFIX);
+		this.channel = FileChannel.open(this.segment.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		syncDirectory();
+	}
+
+	/**
+	 * Forces the directory entry of a new segment to disk, otherwise a crash
+	 * could lose the whole file even though its records were synced. Not every
+	 * platform can open a directory, so failures are only logged.
+	 */
+	private void syncDirectory() {
+		try (final FileChannel dir = FileChannel.open(this.directory.toPath(), StandardOpenOption.READ)) {
+			dir.force(true);
+		} catch (final IOException e) {
+			log.log(Level.FINE, "Could not sync " + this.directory.getAbsolutePath() + ": " + e.getMessage(), e);
+		}
+	}
+
+	private void roll() throws IOException {
+		synchronized (this.syncLock) {
+			synchronized (this.appendLock) {
+				if (this.channel == null || this.channel.size() == 0) {
+					return;
+				}
+				this.channel.force(false);
+				this.channel.close();
+				this.synced = this.appended;
+				if (this.closed) {
+					this.channel = null;
+				} else {
+					openSegment();
+				}
+			}
+		}
+	}
+
+	private void drainLoop() {
+		while (!this.closed) {
+			try {
+				roll();
+				drainSegments();
+			} catch (final IOException | DataOperationException | RuntimeException e) {
+				this.failures.incrementAndGet();
+				log.log(Level.WARNING, "Could not write user audit journal, will retry: " + e.getMessage(), e);
+			}
+			synchronized (this) {
+				if (!this.closed) {
+					try {
+						wait(this.flushInterval);
+					} catch (final InterruptedException e) {
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	private void drainSegments() throws IOException, DataOperationException {
+		final File current;
+		synchronized (this.appendLock) {
+			current = this.segment;
+		}
+		for (final File file : listSegments()) {
+			if (file.equals(current) && !this.closed) {
+				continue;
+			}
+			drainSegment(file);
+		}
+	}
+
+	private void drainSegment(final File file) throws IOException, DataOperationException {
+		final File offsetFile = new File(file.getPath() + OFFSET_SUFFIX);
+		int offset = 0;
+		if (offsetFile.exists()) {
+			offset = Integer.parseInt(new String(Files.readAllBytes(offsetFile.toPath()), UTF_8).trim());
+		}
+		final File rejectedFile = new File(file.getPath() + REJECTED_SUFFIX);
+		final List<UserAudit> records = decode(file, offset == 0 ? rejectedFile : null);
+		while (offset < records.size()) {
+			final List<UserAudit> batch = records.subList(offset, Math.min(offset + this.batchSize, records.size()));
+			insert(batch, rejectedFile);
+			offset += batch.size();
+			this.writtenCount.addAndGet(batch.size());
+			final long now = System.currentTimeMillis();
+			for (final UserAudit userAudit : batch) {
+				this.lag.record((now - userAudit.getCreated().getTime()) * 1000);
+			}
+			writeOffset(offsetFile, offset);
+		}
+		if (!file.delete()) {
+			throw new IOException("Could not delete " + file.getAbsolutePath());
+		}
+		if (offsetFile.exists() && !offsetFile.delete()) {
+			log.warning("Could not delete " + offsetFile.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Inserts a batch. If a previous run inserted the batch but stopped before
+	 * checkpointing it, the batch insert fails, so each audit is then inserted
+	 * on its own unless it already exists. An audit that still fails to insert
+	 * after the database answered the lookup for it is rejected rather than
+	 * retried forever.
+	 */
+	private void insert(final List<UserAudit> batch, final File rejectedFile) throws DataOperationException, IOException {
+		try {
+			this.userAuditDao.insertAll(batch);
+		} catch (final DataOperationException e) {
+			log.log(Level.FINE, "Batch insert failed, retrying individually: " + e.getMessage(), e);
+			for (final UserAudit userAudit : batch) {
+				if (this.userAuditDao.load(userAudit.getId()) != null) {
+					continue;
+				}
+				try {
+					this.userAuditDao.insert(userAudit);
+				} catch (final DatabaseConnectionException e2) {
+					throw e2;
+				} catch (final DataOperationException e2) {
+					log.log(Level.WARNING, "Rejecting user audit " + userAudit.getId() + ": " + e2.getMessage(), e2);
+					reject(rejectedFile, encode(userAudit));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Appends a line that could not be written to the segment's rejected file.
+	 */
+	private void reject(final File rejectedFile, final String line) throws IOException {
+		try (final FileOutputStream out = new FileOutputStream(rejectedFile, true)) {
+			out.write(line.getBytes(UTF_8));
+			out.getFD().sync();
+		}
+		this.rejected.incrementAndGet();
+	}
+
+	private static void writeOffset(final File offsetFile, final int offset) throws IOException {
+		try (final FileOutputStream out = new FileOutputStream(offsetFile)) {
+			out.write(String.valueOf(offset).getBytes(UTF_8));
+			out.getFD().sync();
+		}
+	}
+
+	private List<File> listSegments() {
+		final File[] files = this.directory.listFiles();
+		if (files == null) {
+			return Collections.emptyList();
+		}
+		final List<File> segments = new ArrayList<>(files.length);
+		for (final File file : files) {
+			if (file.getName().endsWith(SEGMENT_SUFFIX)) {
+				segments.add(file);
+			}
+		}
+		Collections.sort(segments);
+		return segments;
+	}
+
+	private static long getSequence(final File file) {
+		final String name = file.getName();
+		try {
+			return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+		} catch (final NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Encodes an audit as a single tab-separated line.
+	 * 
+	 * @param userAudit
+	 *            The audit to encode.
+	 * @return The encoded line, including the trailing newline.
+	 */
+	static String encode(final UserAudit userAudit) {
+		final StringBuilder line = new StringBuilder(128);
+		appendField(line, userAudit.getId().toString()).append('\t');
+		appendField(line, userAudit.getUserId() == null ? null : userAudit.getUserId().toString()).append('\t');
+		appendField(line, userAudit.getField() == null ? null : userAudit.getField().getId()).append('\t');
+		appendField(line, userAudit.getOldValue()).append('\t');
+		appendField(line, userAudit.getNewValue()).append('\t');
+		appendField(line, userAudit.getType() == null ? null : userAudit.getType().getId()).append('\t');
+		line.append(userAudit.getCreated().getTime()).append('\n');
+		return line.toString();
+	}
+
+	private static StringBuilder appendField(final StringBuilder line, final String value) {
+		if (value == null) {
+			return line.append("\\N");
+		}
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			switch (c) {
+			case '\\':
+				line.append("\\\\");
+				break;
+			case '\t':
+				line.append("\\t");
+				break;
+			case '\n':
+				line.append("\\n");
+				break;
+			case '\r':
+				line.append("\\r");
+				break;
+			default:
+				line.append(c);
+			}
+		}
+		return line;
+	}
+
+	/**
+	 * Decodes a line written by {@link #encode(UserAudit)}.
+	 * 
+	 * @param line
+	 *            The line, without the trailing newline.
+	 * @return The decoded audit.
+	 */
+	static UserAudit decode(final String line) {
+		final String[] fields = line.split("\t", -1);
+		if (fields.length != 7) {
+			throw new IllegalArgumentException("Expected 7 fields but found " + fields.length);
+		}
+		final UserAudit userAudit = new UserAudit();
+		userAudit.setId(new UserAuditId(unescape(fields[0])));
+		final String userId = unescape(fields[1]);
+		userAudit.setUserId(userId == null ? null : new UserId(userId));
+		final String field = unescape(fields[2]);
+		userAudit.setField(field == null ? null : UserAuditField.get(field));
+		userAudit.setOldValue(unescape(fields[3]));
+		userAudit.setNewValue(unescape(fields[4]));
+		final String type = unescape(fields[5]);
+		userAudit.setType(type == null ? null : UserAuditType.get(type));
+		userAudit.setCreated(new Date(Long.parseLong(fields[6])));
+		return userAudit;
+	}
+
+	private static String unescape(final String value) {
+		if ("\\N".equals(value)) {
+			return null;
+		}
+		if (value.indexOf('\\') < 0) {
+			return value;
+		}
+		final StringBuilder unescaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c != '\\' || i == value.length() - 1) {
+				unescaped.append(c);
+				continue;
+			}
+			final char next = value.charAt(++i);
+			switch (next) {
+			case 't':
+				unescaped.append('\t');
+				break;
+			case 'n':
+				unescaped.append('\n');
+				break;
+			case 'r':
+				unescaped.append('\r');
+				break;
+			default:
+				unescaped.append(next);
+			}
+		}
+		return unescaped.toString();
+	}
+
+	/**
+	 * Reads every complete record in a segment. A trailing partial line, left
+	 * by a crash mid-append, was never acknowledged and is skipped. Lines that
+	 * cannot be decoded are skipped too, and copied to the rejected file if one
+	 * is given, which it is only the first time a segment is read.
+	 */
+	private List<UserAudit> decode(final File file, final File rejectedFile) throws IOException {
+		final String contents = new String(Files.readAllBytes(file.toPath()), UTF_8);
+		final List<UserAudit> records = new ArrayList<>();
+		final List<String> lines = Arrays.asList(contents.split("\n", -1));
+		for (int i = 0; i < lines.size() - 1; i++) {
+			if (lines.get(i).isEmpty()) {
+				continue;
+			}
+			try {
+				records.add(decode(lines.get(i)));
+			} catch (final IllegalArgumentException e) {
+				log.warning("Skipping malformed record " + (i + 1) + " of " + file.getAbsolutePath() + ": " + e.getMessage());
+				if (rejectedFile != null) {
+					reject(rejectedFile, lines.get(i) + "\n");
+				}
+			}
+		}
+		if (!lines.get(lines.size() - 1).isEmpty()) {
+			log.warning("Skipping partial record at the end of " + file.getAbsolutePath());
+		}
+		return records;
+	}
+
+	/**
+	 * Stops accepting audits and writes the journal to the database, waiting
+	 * up to {@link #shutdownTimeout} milliseconds. Anything not written stays
+	 * in the journal for the next start.
+	 */
+	public void close() {
+		synchronized (this) {
+			this.closed = true;
+			notifyAll();
+		}
+		if (this.drainer != null) {
+			try {
+				this.drainer.join(this.shutdownTimeout);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (this.drainer != null && this.drainer.isAlive()) {
+			// Keep the lock, the drainer may still be working on the segments
+			log.warning("User audit journal did not finish writing in " + this.shutdownTimeout + "ms, the rest will be written on the next start");
+			return;
+		}
+		try {
+			roll();
+			drainSegments();
+		} catch (final IOException | DataOperationException | RuntimeException e) {
+			log.log(Level.WARNING, "User audit journal closed with unwritten records, they will be written on the next start: " + e.getMessage(), e);
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Closes this journal when the Spring context shuts down.
+	 * 
+	 * @see #close()
+	 */
+	@Override
+	public void destroy() {
+		close();
+	}
+
+	/**
+	 * Returns the number of audits appended since this journal started.
+	 * 
+	 * @return The number of audits appended.
+	 */
+	public long getAppended() {
+		return this.appendedCount.get();
+	}
+
+	/**
+	 * Returns the number of audits written to the database since this journal
+	 * started, including ones replayed from a previous run.
+	 * 
+	 * @return The number of audits written.
+	 */
+	public long getWritten() {
+		return this.writtenCount.get();
+	}
+
+	/**
+	 * Returns the number of times the journal was forced to disk. Compared to
+	 * {@link #getAppended()}, this shows how well appends are being batched.
+	 * 
+	 * @return The number of syncs.
+	 */
+	public long getSyncs() {
+		return this.syncs.get();
+	}
+
+	/**
+	 * Returns the number of times writing to the database failed and was
+	 * retried.
+	 * 
+	 * @return The number of failures.
+	 */
+	public long getFailures() {
+		return this.failures.get();
+	}
+
+	/**
+	 * Returns the number of audits that could not be decoded or that the
+	 * database rejected, and were moved to a .rejected file.
+	 * 
+	 * @return The number of rejected audits.
+	 */
+	public long getRejected() {
+		return this.rejected.get();
+	}
+
+	/**
+	 * Returns the time between an audit being created and it being written to
+	 * the database, in microseconds.
+	 * 
+	 * @return The lag histogram.
+	 */
+	public LatencyHistogram getLag() {
+		return this.lag;
+	}
+
+}
@@ -15,9 +15,11 @@
  */
 package com.ajah.user.audit.data;
 
+import java.io.IOException;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.logging.Level;
 
 import lombok.extern.java.Log;
 
@@ -45,6 +47,9 @@ public class UserAuditManager {
 	@Autowired
 	private UserAuditDao userAuditDao;
 
+	@Autowired(required = false)
+	private UserAuditJournal userAuditJournal;
+
 	/**
 	 * Returns a count of all records.
 	 * 
@@ -144,6 +149,9 @@ public class UserAuditManager {
 	 * creation date if necessary. If either of these elements are set, will
 	 * perform an insert. Otherwise will perform an update.
 	 * 
+	 * If a {@link UserAuditJournal} is configured, new userAudits are appended
+	 * to it and inserted in the background instead.
+	 * 
 	 * @param userAudit
 	 *            The userAudit to save.
 	 * @return The result of the save operation, which will include the new
@@ -162,6 +170,15 @@ public class UserAuditManager {
 			create = true;
 		}
 		if (create) {
+			if (this.userAuditJournal != null) {
+				try {
+					this.userAuditJournal.append(userAudit);
+					log.fine("Journaled UserAudit " + userAudit.getId());
+					return new DataOperationResult<>(userAudit, 1);
+				} catch (final IOException e) {
+					log.log(Level.WARNING, "Could not journal UserAudit " + userAudit.getId() + ", inserting directly: " + e.getMessage(), e);
+				}
+			}
 			final DataOperationResult<UserAudit> result = this.userAuditDao.insert(userAudit);
 			log.fine("Created UserAudit " + userAudit.getId());
 			return result;
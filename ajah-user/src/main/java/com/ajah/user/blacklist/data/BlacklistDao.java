@@ -18,6 +18,7 @@ package com.ajah.user.blacklist.data;
 import java.util.List;
 
 import com.ajah.spring.jdbc.AjahDao;
+import com.ajah.spring.jdbc.EntityHandler;
 import com.ajah.spring.jdbc.err.DataOperationException;
 import com.ajah.user.blacklist.Blacklist;
 import com.ajah.user.blacklist.BlacklistId;
@@ -77,4 +78,20 @@ public interface BlacklistDao extends AjahDao<BlacklistId, Blacklist> {
 	 */
 	int searchCount(String search) throws DataOperationException;
 
+	/**
+	 * Streams every {@link Blacklist} that matches the specified criteria to
+	 * a handler, without holding them all in memory.
+	 * 
+	 * @param type
+	 *            The type of blacklist, optional.
+	 * @param status
+	 *            The status of the blacklist, optional.
+	 * @param handler
+	 *            The handler to pass each blacklist to, required.
+	 * @return The number of blacklists handled.
+	 * @throws DataOperationException
+	 *             If the query could not be executed.
+	 */
+	long forEach(BlacklistType type, BlacklistStatus status, EntityHandler<Blacklist> handler) throws DataOperationException;
+
 }
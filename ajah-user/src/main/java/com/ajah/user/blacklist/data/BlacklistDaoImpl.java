@@ -20,6 +20,7 @@ import java.util.List;
 import org.springframework.stereotype.Repository;
 
 import com.ajah.spring.jdbc.AbstractAjahDao;
+import com.ajah.spring.jdbc.EntityHandler;
 import com.ajah.spring.jdbc.criteria.Criteria;
 import com.ajah.spring.jdbc.criteria.Order;
 import com.ajah.spring.jdbc.err.DataOperationException;
@@ -88,4 +89,20 @@ public class BlacklistDaoImpl extends AbstractAjahDao<BlacklistId, Blacklist, Bl
 		return super.count(criteria);
 	}
 
+	/**
+	 * @see com.ajah.user.blacklist.data.BlacklistDao#forEach(BlacklistType,
+	 *      BlacklistStatus, EntityHandler)
+	 */
+	@Override
+	public long forEach(BlacklistType type, BlacklistStatus status, EntityHandler<Blacklist> handler) throws DataOperationException {
+		Criteria criteria = new Criteria();
+		if (type != null) {
+			criteria.eq("type", type);
+		}
+		if (status != null) {
+			criteria.eq("status", status);
+		}
+		return super.forEach(criteria, handler);
+	}
+
 }
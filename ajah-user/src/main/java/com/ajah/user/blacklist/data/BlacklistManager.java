@@ -15,16 +15,26 @@
  */
 package com.ajah.user.blacklist.data;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.java.Log;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.ajah.spring.jdbc.DataOperationResult;
+import com.ajah.spring.jdbc.EntityHandler;
 import com.ajah.spring.jdbc.err.DataOperationException;
 import com.ajah.user.blacklist.Blacklist;
 import com.ajah.user.blacklist.BlacklistId;
@@ -35,16 +45,42 @@ import com.ajah.util.data.format.EmailAddress;
 /**
  * Manages data operations for {@link Blacklist}.
  * 
+ * Checks against active blacklists are answered by a {@link BlacklistMatcher}
+ * rather than the database. It is loaded on first use, updated whenever a
+ * blacklist is saved through this manager, and reloaded in the background
+ * every {@link #refreshInterval} milliseconds to pick up changes made
+ * elsewhere. Saves made while a reload is running are replayed onto the new
+ * matcher, so none are lost.
+ * 
  * @author Eric F. Savage <code@efsavage.com>
  * 
  */
 @Service
 @Log
-public class BlacklistManager {
+public class BlacklistManager implements DisposableBean {
 
 	@Autowired
 	private BlacklistDao blacklistDao;
 
+	private volatile BlacklistMatcher matcher;
+
+	private final Object refreshLock = new Object();
+
+	/**
+	 * Blacklists saved while the matcher is being reloaded, to be replayed onto
+	 * it. Guarded by this manager's monitor.
+	 */
+	private List<Blacklist> pendingChanges;
+
+	/**
+	 * How often, in milliseconds, the matcher is reloaded from the database.
+	 */
+	@Getter
+	@Setter
+	private volatile long refreshInterval = 5 * 60 * 1000L;
+
+	private ScheduledExecutorService refresher;
+
 	/**
 	 * Saves an {@link Blacklist}. Assigns a new ID ({@link UUID}) and sets the
 	 * creation date if necessary. If either of these elements are set, will
@@ -70,15 +106,119 @@ public class BlacklistManager {
 		if (create) {
 			DataOperationResult<Blacklist> result = this.blacklistDao.insert(blacklist);
 			log.fine("Created Blacklist " + blacklist.getPart1() + ", " + blacklist.getPart2() + " [" + blacklist.getId() + "]");
+			if (result.getRowsAffected() > 0) {
+				updateMatcher(blacklist);
+			}
 			return result;
 		}
 		DataOperationResult<Blacklist> result = this.blacklistDao.update(blacklist);
 		if (result.getRowsAffected() > 0) {
 			log.fine("Updated Blacklist " + blacklist.getPart1() + ", " + blacklist.getPart2() + " [" + blacklist.getId() + "]");
+			updateMatcher(blacklist);
 		}
 		return result;
 	}
 
+	private synchronized void updateMatcher(Blacklist blacklist) {
+		if (this.pendingChanges != null) {
+			this.pendingChanges.add(blacklist);
+		}
+		if (this.matcher != null) {
+			this.matcher = this.matcher.update(blacklist);
+		}
+	}
+
+	/**
+	 * Returns the matcher used to check values against active blacklists,
+	 * loading it if necessary.
+	 * 
+	 * @return The current matcher, will not be null.
+	 * @throws DataOperationException
+	 *             If the blacklists could not be loaded.
+	 */
+	public BlacklistMatcher getMatcher() throws DataOperationException {
+		BlacklistMatcher current = this.matcher;
+		if (current == null) {
+			current = init();
+		}
+		return current;
+	}
+
+	private BlacklistMatcher init() throws DataOperationException {
+		synchronized (this.refreshLock) {
+			if (this.matcher != null) {
+				return this.matcher;
+			}
+			refresh();
+			startRefresher();
+			return this.matcher;
+		}
+	}
+
+	private synchronized void startRefresher() {
+		if (this.refresher == null && this.refreshInterval > 0) {
+			this.refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "blacklist-refresh");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			this.refresher.scheduleWithFixedDelay(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						refresh();
+					} catch (DataOperationException | RuntimeException e) {
+						log.log(Level.WARNING, "Could not refresh blacklists, keeping the previous ones: " + e.getMessage(), e);
+					}
+				}
+			}, this.refreshInterval, this.refreshInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Reloads the matcher from every active blacklist in the database. Checks
+	 * keep using the previous matcher until the new one is loaded, and saves
+	 * made through this manager in the meantime are replayed onto it, so none
+	 * are lost.
+	 * 
+	 * @throws DataOperationException
+	 *             If the blacklists could not be loaded.
+	 */
+	public void refresh() throws DataOperationException {
+		synchronized (this.refreshLock) {
+			synchronized (this) {
+				this.pendingChanges = new ArrayList<>();
+			}
+			try {
+				final List<Blacklist> blacklists = new ArrayList<>();
+				this.blacklistDao.forEach(null, BlacklistStatus.ACTIVE, new EntityHandler<Blacklist>() {
+
+					@Override
+					public void handle(Blacklist blacklist) {
+						blacklists.add(blacklist);
+					}
+				});
+				BlacklistMatcher loaded = BlacklistMatcher.build(blacklists);
+				synchronized (this) {
+					for (Blacklist blacklist : this.pendingChanges) {
+						loaded = loaded.update(blacklist);
+					}
+					this.matcher = loaded;
+				}
+				log.fine("Loaded " + blacklists.size() + " active blacklists");
+			} finally {
+				synchronized (this) {
+					this.pendingChanges = null;
+				}
+			}
+		}
+	}
+
 	/**
 	 * Loads an {@link Blacklist} by it's ID.
 	 * 
@@ -210,12 +350,12 @@ public class BlacklistManager {
 	 * 
 	 * @param emailAddress
 	 *            The address to check.
-	 * @return A list of {@link Blacklist}s, which may be empty.
+	 * @return A list of {@link Blacklist}s, newest first, which may be empty.
 	 * @throws DataOperationException
-	 *             If the query could not be executed.
+	 *             If the blacklists had not been loaded and could not be.
 	 */
 	public List<Blacklist> list(EmailAddress emailAddress) throws DataOperationException {
-		return this.blacklistDao.list(emailAddress.getUsername(), emailAddress.getDomain(), BlacklistType.EMAIL, BlacklistStatus.ACTIVE, 0, 1000);
+		return getMatcher().match(BlacklistType.EMAIL, emailAddress.getUsername(), emailAddress.getDomain());
 	}
 
 	/**
@@ -225,12 +365,12 @@ public class BlacklistManager {
 	 * 
 	 * @param username
 	 *            The username to check.
-	 * @return A list of {@link Blacklist}s, which may be empty.
+	 * @return A list of {@link Blacklist}s, newest first, which may be empty.
 	 * @throws DataOperationException
-	 *             If the query could not be executed.
+	 *             If the blacklists had not been loaded and could not be.
 	 */
 	public List<Blacklist> listUsername(String username) throws DataOperationException {
-		return this.blacklistDao.list(username, null, BlacklistType.USERNAME, BlacklistStatus.ACTIVE, 0, 1000);
+		return getMatcher().match(BlacklistType.USERNAME, username, null);
 	}
 
 	/**
@@ -242,12 +382,24 @@ public class BlacklistManager {
 	 *            The first name to check.
 	 * @param lastName
 	 *            The last name to check.
-	 * @return A list of {@link Blacklist}s, which may be empty.
+	 * @return A list of {@link Blacklist}s, newest first, which may be empty.
 	 * @throws DataOperationException
-	 *             If the query could not be executed.
+	 *             If the blacklists had not been loaded and could not be.
 	 */
 	public List<Blacklist> listRealName(String firstName, String lastName) throws DataOperationException {
-		return this.blacklistDao.list(firstName, lastName, BlacklistType.REAL_NAME, BlacklistStatus.ACTIVE, 0, 1000);
+		return getMatcher().match(BlacklistType.REAL_NAME, firstName, lastName);
+	}
+
+	/**
+	 * Stops refreshing the matcher when the Spring context shuts down.
+	 * 
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public synchronized void destroy() {
+		if (this.refresher != null) {
+			this.refresher.shutdownNow();
+		}
 	}
 
 }
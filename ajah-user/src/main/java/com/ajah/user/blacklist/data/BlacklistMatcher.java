@@ -0,0 +1,393 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.user.blacklist.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.ajah.user.blacklist.Blacklist;
+import com.ajah.user.blacklist.BlacklistId;
+import com.ajah.user.blacklist.BlacklistStatus;
+import com.ajah.user.blacklist.BlacklistType;
+import com.ajah.util.AjahUtils;
+
+/**
+ * Matches values against {@link BlacklistStatus#ACTIVE} {@link Blacklist}s in
+ * memory, with the same results as the equivalent {@link BlacklistDao}
+ * query. Each part of a blacklist is a case-insensitive SQL LIKE pattern,
+ * where % matches any run of characters, _ matches any single character and \
+ * escapes either.
+ * 
+ * Blacklists without wildcards are found with a hash lookup. The rest are
+ * found by searching for their longest literal with a {@link KeywordIndex} and
+ * then checking the full pattern, so a check only looks at blacklists that
+ * could plausibly match.
+ * 
+ * Instances are immutable and thread-safe; {@link #update(Blacklist)} returns
+ * a new matcher, rebuilding only the indexes for the affected types.
+ * 
+ * @author Eric F. Savage <code@efsavage.com>
+ * 
+ */
+public final class BlacklistMatcher {
+
+	private static final Comparator<Blacklist> NEWEST_FIRST = new Comparator<Blacklist>() {
+
+		@Override
+		public int compare(final Blacklist first, final Blacklist second) {
+			if (first.getCreated() == null || second.getCreated() == null) {
+				return first.getCreated() == null ? (second.getCreated() == null ? 0 : 1) : -1;
+			}
+			return second.getCreated().compareTo(first.getCreated());
+		}
+
+	};
+
+	/**
+	 * A compiled SQL LIKE pattern.
+	 */
+	private static final class LikePattern {
+
+		private static final byte LITERAL = 0;
+		private static final byte ONE = 1;
+		private static final byte ANY = 2;
+
+		final char[] chars;
+		final byte[] kinds;
+
+		/**
+		 * The pattern itself, if it has no wildcards, otherwise null.
+		 */
+		final String exact;
+
+		/**
+		 * The longest run of literal characters, which any matching value
+		 * must contain.
+		 */
+		final String literal;
+
+		LikePattern(final String pattern) {
+			final String lower = pattern.toLowerCase(Locale.ROOT);
+			final StringBuilder chars = new StringBuilder(lower.length());
+			final List<Byte> kinds = new ArrayList<>(lower.length());
+			for (int i = 0; i < lower.length(); i++) {
+				final char c = lower.charAt(i);
+				if (c == '\\' && i < lower.length() - 1) {
+					chars.append(lower.charAt(++i));
+					kinds.add(Byte.valueOf(LITERAL));
+				} else if (c == '%') {
+					// Consecutive %s are equivalent to one
+					if (kinds.isEmpty() || kinds.get(kinds.size() - 1).byteValue() != ANY) {
+						chars.append(c);
+						kinds.add(Byte.valueOf(ANY));
+					}
+				} else if (c == '_') {
+					chars.append(c);
+					kinds.add(Byte.valueOf(ONE));
+				} else {
+					chars.append(c);
+					kinds.add(Byte.valueOf(LITERAL));
+				}
+			}
+			this.chars = chars.toString().toCharArray();
+			this.kinds = new byte[kinds.size()];
+			String longest = "";
+			int start = 0;
+			for (int i = 0; i <= this.kinds.length; i++) {
+				if (i < this.kinds.length) {
+					this.kinds[i] = kinds.get(i).byteValue();
+					if (this.kinds[i] == LITERAL) {
+						continue;
+					}
+				}
+				if (i - start > longest.length()) {
+					longest = new String(this.chars, start, i - start);
+				}
+				start = i + 1;
+			}
+			this.literal = longest;
+			this.exact = longest.length() == this.chars.length ? longest : null;
+		}
+
+		boolean matches(final String value) {
+			int p = 0;
+			int v = 0;
+			int any = -1;
+			int mark = 0;
+			while (v < value.length()) {
+				if (p < this.chars.length && (this.kinds[p] == ONE || (this.kinds[p] == LITERAL && this.chars[p] == value.charAt(v)))) {
+					p++;
+					v++;
+				} else if (p < this.chars.length && this.kinds[p] == ANY) {
+					any = p++;
+					mark = v;
+				} else if (any >= 0) {
+					p = any + 1;
+					v = ++mark;
+				} else {
+					return false;
+				}
+			}
+			while (p < this.chars.length && this.kinds[p] == ANY) {
+				p++;
+			}
+			return p == this.chars.length;
+		}
+
+	}
+
+	/**
+	 * A blacklist with its parts compiled. A null part never matches, as in
+	 * SQL.
+	 */
+	private static final class Entry {
+
+		final Blacklist blacklist;
+		final LikePattern part1;
+		final LikePattern part2;
+
+		Entry(final Blacklist blacklist) {
+			this.blacklist = blacklist;
+			this.part1 = blacklist.getPart1() == null ? null : new LikePattern(blacklist.getPart1());
+			this.part2 = blacklist.getPart2() == null ? null : new LikePattern(blacklist.getPart2());
+		}
+
+		boolean matches(final String value1, final String value2) {
+			if (value1 != null && (this.part1 == null || !this.part1.matches(value1))) {
+				return false;
+			}
+			if (value2 != null && (this.part2 == null || !this.part2.matches(value2))) {
+				return false;
+			}
+			return true;
+		}
+
+	}
+
+	/**
+	 * The indexes for one part of one type.
+	 */
+	private static final class PartIndex {
+
+		final Map<String, List<Entry>> exact = new HashMap<>();
+		final Map<String, List<Entry>> literals = new HashMap<>();
+		final List<Entry> all = new ArrayList<>();
+		KeywordIndex<Entry> keywords;
+
+		void add(final Entry entry, final LikePattern pattern) {
+			final Map<String, List<Entry>> map = pattern.exact != null ? this.exact : this.literals;
+			final String key = pattern.exact != null ? pattern.exact : pattern.literal;
+			List<Entry> entries = map.get(key);
+			if (entries == null) {
+				entries = new ArrayList<>(1);
+				map.put(key, entries);
+			}
+			entries.add(entry);
+			this.all.add(entry);
+		}
+
+		void build() {
+			this.keywords = new KeywordIndex<>(this.literals);
+		}
+
+		/**
+		 * Adds candidates for a value. If no value is given this part is
+		 * unconstrained, so every entry indexed on it is a candidate.
+		 */
+		void candidates(final String value, final Set<Entry> candidates) {
+			if (value == null) {
+				candidates.addAll(this.all);
+				return;
+			}
+			final List<Entry> entries = this.exact.get(value);
+			if (entries != null) {
+				candidates.addAll(entries);
+			}
+			this.keywords.search(value, candidates);
+		}
+
+	}
+
+	/**
+	 * The indexes for one type. Each entry is indexed on whichever part is
+	 * most selective; entries with no literal characters in either part are
+	 * always checked.
+	 */
+	private static final class TypeIndex {
+
+		final PartIndex part1 = new PartIndex();
+		final PartIndex part2 = new PartIndex();
+		final List<Entry> unindexed = new ArrayList<>();
+
+		TypeIndex(final Collection<Blacklist> blacklists) {
+			for (final Blacklist blacklist : blacklists) {
+				final Entry entry = new Entry(blacklist);
+				if (isBetter(entry.part1, entry.part2)) {
+					this.part1.add(entry, entry.part1);
+				} else if (isBetter(entry.part2, null)) {
+					this.part2.add(entry, entry.part2);
+				} else {
+					this.unindexed.add(entry);
+				}
+			}
+			this.part1.build();
+			this.part2.build();
+		}
+
+		private static boolean isBetter(final LikePattern pattern, final LikePattern other) {
+			if (pattern == null || pattern.literal.isEmpty()) {
+				return false;
+			}
+			if (other == null || other.literal.isEmpty()) {
+				return true;
+			}
+			if ((pattern.exact != null) != (other.exact != null)) {
+				return pattern.exact != null;
+			}
+			return pattern.literal.length() >= other.literal.length();
+		}
+
+		List<Blacklist> match(final String value1, final String value2) {
+			final Set<Entry> candidates = new LinkedHashSet<>();
+			this.part1.candidates(value1, candidates);
+			this.part2.candidates(value2, candidates);
+			candidates.addAll(this.unindexed);
+			List<Blacklist> matches = null;
+			for (final Entry candidate : candidates) {
+				if (candidate.matches(value1, value2)) {
+					if (matches == null) {
+						matches = new ArrayList<>(1);
+					}
+					matches.add(candidate.blacklist);
+				}
+			}
+			if (matches == null) {
+				return Collections.emptyList();
+			}
+			Collections.sort(matches, NEWEST_FIRST);
+			return matches;
+		}
+
+	}
+
+	private final Map<BlacklistId, Blacklist> blacklists;
+	private final Map<BlacklistType, TypeIndex> indexes;
+
+	private BlacklistMatcher(final Map<BlacklistId, Blacklist> blacklists, final Map<BlacklistType, TypeIndex> indexes) {
+		this.blacklists = blacklists;
+		this.indexes = indexes;
+	}
+
+	/**
+	 * Builds a matcher from blacklists. Blacklists that are not
+	 * {@link BlacklistStatus#ACTIVE} are ignored.
+	 * 
+	 * @param blacklists
+	 *            The blacklists to match against, required.
+	 * @return A new matcher.
+	 */
+	public static BlacklistMatcher build(final Collection<Blacklist> blacklists) {
+		AjahUtils.requireParam(blacklists, "blacklists");
+		final Map<BlacklistId, Blacklist> active = new LinkedHashMap<>();
+		for (final Blacklist blacklist : blacklists) {
+			if (isActive(blacklist)) {
+				active.put(blacklist.getId(), blacklist);
+			}
+		}
+		final Map<BlacklistType, TypeIndex> indexes = new EnumMap<>(BlacklistType.class);
+		for (final BlacklistType type : BlacklistType.values()) {
+			indexes.put(type, new TypeIndex(filter(active.values(), type)));
+		}
+		return new BlacklistMatcher(active, indexes);
+	}
+
+	private static boolean isActive(final Blacklist blacklist) {
+		return blacklist.getStatus() == BlacklistStatus.ACTIVE && blacklist.getType() != null;
+	}
+
+	private static List<Blacklist> filter(final Collection<Blacklist> blacklists, final BlacklistType type) {
+		final List<Blacklist> filtered = new ArrayList<>();
+		for (final Blacklist blacklist : blacklists) {
+			if (blacklist.getType() == type) {
+				filtered.add(blacklist);
+			}
+		}
+		return filtered;
+	}
+
+	/**
+	 * Returns a matcher that reflects a blacklist being created, changed or
+	 * deleted. Only the indexes for the blacklist's old and new types are
+	 * rebuilt.
+	 * 
+	 * @param blacklist
+	 *            The blacklist, required.
+	 * @return A new matcher.
+	 */
+	public BlacklistMatcher update(final Blacklist blacklist) {
+		AjahUtils.requireParam(blacklist, "blacklist");
+		AjahUtils.requireParam(blacklist.getId(), "blacklist.id");
+		final Map<BlacklistId, Blacklist> active = new LinkedHashMap<>(this.blacklists);
+		final Blacklist previous = active.remove(blacklist.getId());
+		if (isActive(blacklist)) {
+			active.put(blacklist.getId(), blacklist);
+		}
+		final Map<BlacklistType, TypeIndex> indexes = new EnumMap<>(this.indexes);
+		if (previous != null && previous.getType() != null) {
+			indexes.put(previous.getType(), new TypeIndex(filter(active.values(), previous.getType())));
+		}
+		if (blacklist.getType() != null && (previous == null || previous.getType() != blacklist.getType())) {
+			indexes.put(blacklist.getType(), new TypeIndex(filter(active.values(), blacklist.getType())));
+		}
+		return new BlacklistMatcher(active, indexes);
+	}
+
+	/**
+	 * Returns the blacklists of a type that match the values, newest first.
+	 * 
+	 * @param type
+	 *            The type of blacklist, required.
+	 * @param part1
+	 *            The value to match against the first part, optional.
+	 * @param part2
+	 *            The value to match against the second part, optional.
+	 * @return The matching blacklists, which may be empty.
+	 */
+	public List<Blacklist> match(final BlacklistType type, final String part1, final String part2) {
+		AjahUtils.requireParam(type, "type");
+		return this.indexes.get(type).match(part1 == null ? null : part1.toLowerCase(Locale.ROOT), part2 == null ? null : part2.toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * Returns the number of active blacklists in this matcher.
+	 * 
+	 * @return The number of active blacklists.
+	 */
+	public int size() {
+		return this.blacklists.size();
+	}
+
+}
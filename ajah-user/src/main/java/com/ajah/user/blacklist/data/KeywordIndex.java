@@ -0,0 +1,149 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.user.blacklist.data;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * An Aho-Corasick automaton that finds every keyword contained in a string in
+ * a single pass, regardless of how many keywords there are. Each keyword
+ * carries one or more values, which are returned when it is found.
+ * 
+ * Instances are immutable and thread-safe.
+ * 
+ * @author Eric F. Savage <code@efsavage.com>
+ * 
+ * @param <T>
+ *            The type of value attached to keywords.
+ */
+public final class KeywordIndex<T> {
+
+	private final char[][] labels;
+	private final int[][] targets;
+	private final int[] fail;
+	private final int[] output;
+	private final List<List<T>> values;
+
+	/**
+	 * Builds an index from keywords to the values attached to them.
+	 * 
+	 * @param keywords
+	 *            The keywords and their values. Empty keywords are ignored.
+	 */
+	public KeywordIndex(final Map<String, ? extends Collection<T>> keywords) {
+		final List<Map<Character, Integer>> children = new ArrayList<>();
+		final List<List<T>> nodeValues = new ArrayList<>();
+		children.add(new HashMap<Character, Integer>());
+		nodeValues.add(null);
+		for (final Map.Entry<String, ? extends Collection<T>> keyword : keywords.entrySet()) {
+			if (keyword.getKey().isEmpty()) {
+				continue;
+			}
+			int node = 0;
+			for (int i = 0; i < keyword.getKey().length(); i++) {
+				final Character c = Character.valueOf(keyword.getKey().charAt(i));
+				Integer next = children.get(node).get(c);
+				if (next == null) {
+					next = Integer.valueOf(children.size());
+					children.get(node).put(c, next);
+					children.add(new HashMap<Character, Integer>());
+					nodeValues.add(null);
+				}
+				node = next.intValue();
+			}
+			if (nodeValues.get(node) == null) {
+				nodeValues.set(node, new ArrayList<T>());
+			}
+			nodeValues.get(node).addAll(keyword.getValue());
+		}
+
+		final int size = children.size();
+		this.labels = new char[size][];
+		this.targets = new int[size][];
+		for (int node = 0; node < size; node++) {
+			final Character[] chars = children.get(node).keySet().toArray(new Character[0]);
+			Arrays.sort(chars);
+			this.labels[node] = new char[chars.length];
+			this.targets[node] = new int[chars.length];
+			for (int i = 0; i < chars.length; i++) {
+				this.labels[node][i] = chars[i].charValue();
+				this.targets[node][i] = children.get(node).get(chars[i]).intValue();
+			}
+		}
+		this.values = nodeValues;
+
+		// Breadth-first, so every node's fail link is set before its children
+		this.fail = new int[size];
+		this.output = new int[size];
+		final Queue<Integer> queue = new ArrayDeque<>();
+		for (final int child : this.targets[0]) {
+			queue.add(Integer.valueOf(child));
+		}
+		while (!queue.isEmpty()) {
+			final int node = queue.remove().intValue();
+			for (int i = 0; i < this.labels[node].length; i++) {
+				final int child = this.targets[node][i];
+				int f = this.fail[node];
+				int next = step(f, this.labels[node][i]);
+				while (next < 0 && f != 0) {
+					f = this.fail[f];
+					next = step(f, this.labels[node][i]);
+				}
+				this.fail[child] = next < 0 ? 0 : next;
+				final int failNode = this.fail[child];
+				this.output[child] = this.values.get(failNode) != null ? failNode : this.output[failNode];
+				queue.add(Integer.valueOf(child));
+			}
+		}
+	}
+
+	private int step(final int node, final char c) {
+		final int i = Arrays.binarySearch(this.labels[node], c);
+		return i < 0 ? -1 : this.targets[node][i];
+	}
+
+	/**
+	 * Adds the values of every keyword found in a string to a collection.
+	 * 
+	 * @param text
+	 *            The string to search.
+	 * @param results
+	 *            The collection to add values to.
+	 */
+	public void search(final String text, final Collection<? super T> results) {
+		int node = 0;
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			int next = step(node, c);
+			while (next < 0 && node != 0) {
+				node = this.fail[node];
+				next = step(node, c);
+			}
+			node = next < 0 ? 0 : next;
+			for (int match = this.values.get(node) != null ? node : this.output[node]; match != 0; match = this.output[match]) {
+				results.addAll(this.values.get(match));
+			}
+		}
+	}
+
+}
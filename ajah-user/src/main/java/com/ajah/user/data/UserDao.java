@@ -14,7 +14,9 @@
  */
 package com.ajah.user.data;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import com.ajah.crypto.CryptoException;
 import com.ajah.crypto.Password;
@@ -35,6 +37,19 @@ import com.ajah.user.UserType;
  */
 public interface UserDao extends AjahDao<UserId, User> {
 
+	/**
+	 * Finds users by ID with as few queries as possible, using the cache
+	 * where available.
+	 * 
+	 * @param ids
+	 *            The IDs of the users to find, required.
+	 * @return The users found, keyed by ID in the order requested. IDs that
+	 *         were not found are absent.
+	 * @throws DataOperationException
+	 *             If the query could not be executed.
+	 */
+	public Map<UserId, User> findMapByIds(final Collection<UserId> ids) throws DataOperationException;
+
 	/**
 	 * Inserts a User into the database.
 	 * 
@@ -26,6 +26,7 @@ import com.ajah.crypto.CryptoException;
 import com.ajah.crypto.HmacSha1Password;
 import com.ajah.crypto.Password;
 import com.ajah.spring.jdbc.AbstractAjahDao;
+import com.ajah.spring.jdbc.cache.Cached;
 import com.ajah.spring.jdbc.criteria.Criteria;
 import com.ajah.spring.jdbc.criteria.Order;
 import com.ajah.spring.jdbc.criteria.SubCriteria;
@@ -47,6 +48,7 @@ import com.ajah.util.StringUtils;
  * 
  */
 @Repository
+@Cached
 public class UserDaoImpl extends AbstractAjahDao<UserId, User, UserImpl> implements UserDao {
 
 	/**
@@ -148,7 +150,7 @@ public class UserDaoImpl extends AbstractAjahDao<UserId, User, UserImpl> impleme
 		AjahUtils.requireParam(password, "password");
 		AjahUtils.requireParam(this.jdbcTemplate, "this.jdbcTemplate");
 		try {
-			return this.jdbcTemplate.update("INSERT INTO user (user_id, username, password, status, type) VALUES (?,?,?,?,?)",
+			return executeUpdate("INSERT INTO user (user_id, username, password, status, type) VALUES (?,?,?,?,?)",
 					new Object[] { user.getId().toString(), user.getUsername(), password.toString(), user.getStatus().getId() + "", user.getType().getId() + "" });
 		} catch (final DataAccessException e) {
 			throw DataOperationExceptionUtils.translate(e, "user");
@@ -172,7 +174,7 @@ public class UserDaoImpl extends AbstractAjahDao<UserId, User, UserImpl> impleme
 		AjahUtils.requireParam(password, "password");
 		AjahUtils.requireParam(this.jdbcTemplate, "this.jdbcTemplate");
 		try {
-			return this.jdbcTemplate.update("UPDATE user SET password = ? WHERE user_id = ?", new Object[] { password.toString(), userId.toString() });
+			return executeUpdate("UPDATE user SET password = ? WHERE user_id = ?", new Object[] { password.toString(), userId.toString() });
 		} catch (final DataAccessException e) {
 			throw DataOperationExceptionUtils.translate(e, "user");
 		}
@@ -187,10 +189,13 @@ public class UserDaoImpl extends AbstractAjahDao<UserId, User, UserImpl> impleme
 		AjahUtils.requireParam(userId, "userId");
 		AjahUtils.requireParam(username, "username");
 		AjahUtils.requireParam(this.jdbcTemplate, "this.jdbcTemplate");
+		invalidate(userId);
 		try {
-			return this.jdbcTemplate.update("UPDATE user SET username = ? WHERE user_id = ?", new Object[] { username, userId.toString() });
+			return executeUpdate("UPDATE user SET username = ? WHERE user_id = ?", new Object[] { username, userId.toString() });
 		} catch (final DataAccessException e) {
 			throw DataOperationExceptionUtils.translate(e, "user");
+		} finally {
+			invalidate(userId);
 		}
 	}
 
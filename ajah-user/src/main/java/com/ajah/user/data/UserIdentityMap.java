@@ -0,0 +1,117 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.user.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ajah.user.User;
+import com.ajah.user.UserId;
+import com.ajah.user.info.UserInfo;
+
+/**
+ * Holds the users and user info records already loaded while handling a
+ * single request, so that {@link UserManager} never loads the same user twice
+ * and never re-queries an ID it already knows is missing. Create one per
+ * request and discard it afterwards; instances are not thread-safe.
+ * 
+ * @author Eric F. Savage <code@efsavage.com>
+ * 
+ */
+public class UserIdentityMap {
+
+	private final Map<UserId, User> users = new HashMap<>();
+	private final Map<UserId, UserInfo> userInfos = new HashMap<>();
+	private final Set<UserId> missing = new HashSet<>();
+
+	/**
+	 * Returns a user that has already been loaded.
+	 * 
+	 * @param userId
+	 *            The ID of the user.
+	 * @return The user, or null if it has not been loaded.
+	 */
+	public User getUser(final UserId userId) {
+		return this.users.get(userId);
+	}
+
+	/**
+	 * Returns a user info record that has already been loaded.
+	 * 
+	 * @param userId
+	 *            The ID of the user.
+	 * @return The user info, or null if it has not been loaded.
+	 */
+	public UserInfo getUserInfo(final UserId userId) {
+		return this.userInfos.get(userId);
+	}
+
+	/**
+	 * Is this ID known not to match a user?
+	 * 
+	 * @param userId
+	 *            The ID of the user.
+	 * @return true if a previous load found no user with this ID.
+	 */
+	public boolean isMissing(final UserId userId) {
+		return this.missing.contains(userId);
+	}
+
+	/**
+	 * Returns the IDs that were requested but not found.
+	 * 
+	 * @return The missing IDs, may be empty but will not be null.
+	 */
+	public Set<UserId> getMissingUserIds() {
+		return new HashSet<>(this.missing);
+	}
+
+	/**
+	 * Returns the IDs from a collection that are neither loaded nor known to
+	 * be missing.
+	 * 
+	 * @param userIds
+	 *            The IDs to check.
+	 * @return The IDs that still need to be loaded.
+	 */
+	List<UserId> getUnloadedUserIds(final Collection<UserId> userIds) {
+		final List<UserId> unloaded = new ArrayList<>(userIds.size());
+		for (final UserId userId : userIds) {
+			if (!this.users.containsKey(userId) && !this.missing.contains(userId)) {
+				unloaded.add(userId);
+			}
+		}
+		return unloaded;
+	}
+
+	void putUser(final User user) {
+		this.users.put(user.getId(), user);
+	}
+
+	void putUserInfo(final UserInfo userInfo) {
+		this.userInfos.put(userInfo.getId(), userInfo);
+	}
+
+	void putMissing(final UserId userId) {
+		this.missing.add(userId);
+	}
+
+}
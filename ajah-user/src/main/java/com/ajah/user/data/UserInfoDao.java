@@ -15,7 +15,11 @@
  */
 package com.ajah.user.data;
 
+import java.util.Collection;
+import java.util.Map;
+
 import com.ajah.spring.jdbc.AjahDao;
+import com.ajah.spring.jdbc.err.DataOperationException;
 import com.ajah.user.UserId;
 import com.ajah.user.info.UserInfo;
 
@@ -27,5 +31,16 @@ import com.ajah.user.info.UserInfo;
  */
 public interface UserInfoDao extends AjahDao<UserId, UserInfo> {
 
-	// Empty
+	/**
+	 * Finds user info records by user ID with as few queries as possible.
+	 * 
+	 * @param ids
+	 *            The IDs of the users, required.
+	 * @return The records found, keyed by user ID in the order requested. IDs
+	 *         that were not found are absent.
+	 * @throws DataOperationException
+	 *             If the query could not be executed.
+	 */
+	public Map<UserId, UserInfo> findMapByIds(final Collection<UserId> ids) throws DataOperationException;
+
 }
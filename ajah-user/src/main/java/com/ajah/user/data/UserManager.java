@@ -16,8 +16,11 @@
 package com.ajah.user.data;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import lombok.extern.java.Log;
@@ -460,13 +463,118 @@ public class UserManager {
 		return this.userDao.list(username, firstName, lastName, status, sort, order, page, count);
 	}
 
-	public List<User> load(List<UserId> userIds) throws UserNotFoundException, DataOperationException {
-		// TODO Optimize this to a single query?
-		List<User> users = new ArrayList<User>();
-		for (UserId userId : userIds) {
-			users.add(load(userId));
+	/**
+	 * Loads users by unique ID, in batched queries rather than one per user.
+	 * 
+	 * @param userIds
+	 *            The IDs of the users, required.
+	 * @return The matching users, in the order requested.
+	 * @throws UserNotFoundException
+	 *             If any of the users could not be found.
+	 * @throws DataOperationException
+	 *             If the query could not be executed.
+	 * @see #loadMap(Collection)
+	 */
+	public List<User> load(final List<UserId> userIds) throws UserNotFoundException, DataOperationException {
+		final Map<UserId, User> found = loadMap(userIds);
+		final List<User> users = new ArrayList<>(userIds.size());
+		for (final UserId userId : userIds) {
+			final User user = found.get(userId);
+			if (user == null) {
+				throw new UserNotFoundException(userId);
+			}
+			users.add(user);
 		}
 		return users;
 	}
 
+	/**
+	 * Loads users by unique ID, in batched queries rather than one per user.
+	 * 
+	 * @param userIds
+	 *            The IDs of the users, required.
+	 * @return The matching users keyed by ID, in the order requested. IDs that
+	 *         were not found are absent.
+	 * @throws DataOperationException
+	 *             If the query could not be executed.
+	 */
+	public Map<UserId, User> loadMap(final Collection<UserId> userIds) throws DataOperationException {
+		return loadMap(userIds, new UserIdentityMap());
+	}
+
+	/**
+	 * Loads users by unique ID, in batched queries rather than one per user.
+	 * Users already in the identity map are not queried again, and IDs that
+	 * are not found are recorded in it as missing.
+	 * 
+	 * @param userIds
+	 *            The IDs of the users, required.
+	 * @param identityMap
+	 *            The identity map for the current request, required.
+	 * @return The matching users keyed by ID, in the order requested. IDs that
+	 *         were not found are absent.
+	 * @throws DataOperationException
+	 *             If the query could not be executed.
+	 */
+	public Map<UserId, User> loadMap(final Collection<UserId> userIds, final UserIdentityMap identityMap) throws DataOperationException {
+		AjahUtils.requireParam(userIds, "userIds");
+		AjahUtils.requireParam(identityMap, "identityMap");
+		final List<UserId> unloaded = identityMap.getUnloadedUserIds(userIds);
+		if (!unloaded.isEmpty()) {
+			final Map<UserId, User> found = this.userDao.findMapByIds(unloaded);
+			for (final UserId userId : unloaded) {
+				final User user = found.get(userId);
+				if (user == null) {
+					identityMap.putMissing(userId);
+				} else {
+					identityMap.putUser(user);
+				}
+			}
+		}
+		final Map<UserId, User> users = new LinkedHashMap<>(userIds.size() * 2);
+		for (final UserId userId : userIds) {
+			final User user = identityMap.getUser(userId);
+			if (user != null) {
+				users.put(userId, user);
+			}
+		}
+		return users;
+	}
+
+	/**
+	 * Finds user info objects for several users in batched queries, creating
+	 * empty ones for users that have none, as {@link #getUserInfo(UserId)}
+	 * does.
+	 * 
+	 * @param userIds
+	 *            The IDs of the users, required.
+	 * @param identityMap
+	 *            The identity map for the current request, required.
+	 * @return The user info objects keyed by user ID, in the order requested.
+	 * @throws DataOperationException
+	 *             If the query could not be executed.
+	 */
+	public Map<UserId, UserInfo> getUserInfoMap(final Collection<UserId> userIds, final UserIdentityMap identityMap) throws DataOperationException {
+		AjahUtils.requireParam(userIds, "userIds");
+		AjahUtils.requireParam(identityMap, "identityMap");
+		final List<UserId> unloaded = new ArrayList<>(userIds.size());
+		for (final UserId userId : userIds) {
+			if (identityMap.getUserInfo(userId) == null) {
+				unloaded.add(userId);
+			}
+		}
+		if (!unloaded.isEmpty()) {
+			final Map<UserId, UserInfo> found = this.userInfoDao.findMapByIds(unloaded);
+			for (final UserId userId : unloaded) {
+				final UserInfo userInfo = found.get(userId);
+				identityMap.putUserInfo(userInfo == null ? new UserInfoImpl(userId) : userInfo);
+			}
+		}
+		final Map<UserId, UserInfo> userInfos = new LinkedHashMap<>(userIds.size() * 2);
+		for (final UserId userId : userIds) {
+			userInfos.put(userId, identityMap.getUserInfo(userId));
+		}
+		return userInfos;
+	}
+
 }
@@ -60,6 +60,17 @@ public class UserMessageId implements Serializable, ToStringable, Comparable<Use
 		return this.id.equals(other.id);
 	}
 
+	/**
+	 * Compares the wrapped string values, so that equal IDs match as map and
+	 * set keys.
+	 * 
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object other) {
+		return other instanceof UserMessageId && equals((UserMessageId) other);
+	}
+
 	/**
 	 * Returns the String passed into the constructor.
 	 * 
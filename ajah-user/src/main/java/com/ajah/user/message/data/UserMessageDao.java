@@ -18,6 +18,7 @@ package com.ajah.user.message.data;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.jdbc.core.RowMapper;
@@ -125,8 +126,26 @@ public class UserMessageDao extends AbstractAjahDao<UserMessageId, UserMessage,
 	public DataOperationResult<UserMessage> insert(final UserMessage message) {
 		AjahUtils.requireParam(message, "message");
 		AjahUtils.requireParam(this.jdbcTemplate, "this.jdbcTemplate");
-		return new DataOperationResult<>(message, this.jdbcTemplate.update("INSERT INTO " + getTableName() + " (" + getSelectFields() + ") VALUES (?,?,?,?,?,?,?,?,?,?)",
+		return new DataOperationResult<>(message, executeUpdate("INSERT INTO " + getTableName() + " (" + getSelectFields() + ") VALUES (?,?,?,?,?,?,?,?,?,?)",
 				new Object[] { message.getId().getId(), DateUtils.safeToLong(message.getCreated()), message.getSender().getId(), fromUserIds(message.getTo()), fromUserIds(message.getCc()),
 						fromUserIds(message.getBcc()), message.getSubject(), message.getBody(), message.getType().getId(), message.getStatus().getId() }));
 	}
+
+	/**
+	 * INSERTs {@link UserMessage} entities one at a time, as the recipient
+	 * lists are not handled by the batch insert.
+	 * 
+	 * @param messages
+	 *            UserMessage entities to insert, required.
+	 */
+	@Override
+	public List<DataOperationResult<UserMessage>> insertAll(final Collection<UserMessage> messages) {
+		AjahUtils.requireParam(messages, "messages");
+		final List<DataOperationResult<UserMessage>> results = new ArrayList<>(messages.size());
+		for (final UserMessage message : messages) {
+			results.add(insert(message));
+		}
+		return results;
+	}
+
 }
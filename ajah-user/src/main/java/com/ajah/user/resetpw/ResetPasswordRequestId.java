@@ -59,6 +59,17 @@ public class ResetPasswordRequestId implements Serializable, ToStringable, FromS
 		return this.id.equals(other.id);
 	}
 
+	/**
+	 * Compares the wrapped string values, so that equal IDs match as map and
+	 * set keys.
+	 * 
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object other) {
+		return other instanceof ResetPasswordRequestId && equals((ResetPasswordRequestId) other);
+	}
+
 	/**
 	 * Returns the String passed into the constructor.
 	 * 
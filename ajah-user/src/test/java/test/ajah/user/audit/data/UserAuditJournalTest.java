@@ -0,0 +1,194 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package test.ajah.user.audit.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ajah.spring.jdbc.err.UnknownDataOperationException;
+import com.ajah.user.UserId;
+import com.ajah.user.audit.UserAudit;
+import com.ajah.user.audit.UserAuditField;
+import com.ajah.user.audit.UserAuditId;
+import com.ajah.user.audit.UserAuditType;
+import com.ajah.user.audit.data.UserAuditDao;
+import com.ajah.user.audit.data.UserAuditJournal;
+
+/**
+ * Tests {@link UserAuditJournal}.
+ * 
+ * @author Eric F. Savage <code@efsavage.com>
+ * 
+ */
+@SuppressWarnings("static-method")
+public class UserAuditJournalTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Collects inserted audits, and refuses any whose new value is "poison".
+	 */
+	private static class FakeDao implements InvocationHandler {
+
+		final List<UserAudit> inserted = Collections.synchronizedList(new ArrayList<UserAudit>());
+
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "insertAll":
+				for (final Object userAudit : (Collection<?>) args[0]) {
+					if ("poison".equals(((UserAudit) userAudit).getNewValue())) {
+						throw new UnknownDataOperationException("Rejected");
+					}
+				}
+				for (final Object userAudit : (Collection<?>) args[0]) {
+					this.inserted.add((UserAudit) userAudit);
+				}
+				return Collections.emptyList();
+			case "insert":
+				if ("poison".equals(((UserAudit) args[0]).getNewValue())) {
+					throw new UnknownDataOperationException("Rejected");
+				}
+				this.inserted.add((UserAudit) args[0]);
+				return null;
+			default:
+				return null;
+			}
+		}
+
+		UserAuditDao getDao() {
+			return (UserAuditDao) Proxy.newProxyInstance(UserAuditDao.class.getClassLoader(), new Class<?>[] { UserAuditDao.class }, this);
+		}
+
+	}
+
+	private static UserAuditJournal open(final File directory, final FakeDao fakeDao) throws IOException {
+		final UserAuditJournal journal = new UserAuditJournal();
+		journal.setDirectory(directory);
+		journal.setUserAuditDao(fakeDao.getDao());
+		journal.setFlushInterval(60000);
+		journal.afterPropertiesSet();
+		return journal;
+	}
+
+	private static String files(final File directory) {
+		final String[] names = directory.list();
+		Arrays.sort(names);
+		return Arrays.toString(names);
+	}
+
+	/**
+	 * An audit should be written to the database exactly as it was appended,
+	 * including values that need escaping.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		final File directory = Files.createTempDirectory("audit-journal").toFile();
+		final FakeDao fakeDao = new FakeDao();
+		final UserAuditJournal journal = open(directory, fakeDao);
+		final UserAudit userAudit = new UserAudit();
+		userAudit.setId(new UserAuditId("audit-1"));
+		userAudit.setUserId(new UserId("user-1"));
+		userAudit.setField(UserAuditField.USERNAME);
+		userAudit.setOldValue(null);
+		userAudit.setNewValue("tab\there\nnewline\r\\back\\N");
+		userAudit.setType(UserAuditType.ADMIN);
+		userAudit.setCreated(new Date(1234567890123L));
+		journal.append(userAudit);
+		journal.close();
+		Assert.assertEquals(1, fakeDao.inserted.size());
+		Assert.assertEquals(userAudit, fakeDao.inserted.get(0));
+		Assert.assertEquals("[journal.lock]", files(directory));
+	}
+
+	/**
+	 * Malformed lines and audits the database refuses should be moved aside
+	 * without holding up the rest of the segment, and a trailing partial line
+	 * should be ignored.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testCorruptSegment() throws IOException {
+		final File directory = Files.createTempDirectory("audit-journal").toFile();
+		final String segment = "a1\tu1\t0\told\tnew\t0\t1000\n" + "garbage\n" + "a2\tu1\t1\t\\N\tpoison\t1\t2000\n" + "a3\tu2\t2\tx\ty\t0\tnot-a-date\n"
+				+ "a4\tu2\t2\tx\ty\t0\t3000\n" + "a5\tu2\t2\tx";
+		Files.write(new File(directory, String.format("%019d", Long.valueOf(1)) + ".journal").toPath(), segment.getBytes(UTF_8));
+		final FakeDao fakeDao = new FakeDao();
+		final UserAuditJournal journal = open(directory, fakeDao);
+		journal.close();
+		final List<String> ids = new ArrayList<>();
+		for (final UserAudit userAudit : fakeDao.inserted) {
+			ids.add(userAudit.getId().toString());
+		}
+		Assert.assertEquals("[a1, a4]", ids.toString());
+		Assert.assertEquals(3, journal.getRejected());
+		final File rejected = new File(directory, String.format("%019d", Long.valueOf(1)) + ".journal.rejected");
+		final String rejectedLines = new String(Files.readAllBytes(rejected.toPath()), UTF_8);
+		Assert.assertTrue(rejectedLines.contains("garbage\n"));
+		Assert.assertTrue(rejectedLines.contains("a2\t"));
+		Assert.assertTrue(rejectedLines.contains("a3\t"));
+		Assert.assertEquals("[" + rejected.getName() + ", journal.lock]", files(directory));
+	}
+
+	/**
+	 * A directory should only be used by one journal at a time, and be free
+	 * again once that journal is closed.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testDirectoryLocked() throws IOException {
+		final File directory = Files.createTempDirectory("audit-journal").toFile();
+		final UserAuditJournal first = open(directory, new FakeDao());
+		try {
+			open(directory, new FakeDao());
+			Assert.fail();
+		} catch (final IOException e) {
+			// Expected
+		}
+		first.close();
+		open(directory, new FakeDao()).close();
+	}
+
+	/**
+	 * A journal without a directory should refuse to start rather than pick
+	 * one.
+	 * 
+	 * @throws IOException
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testDirectoryRequired() throws IOException {
+		open(null, new FakeDao());
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package test.ajah.user.blacklist.data;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ajah.user.blacklist.Blacklist;
+import com.ajah.user.blacklist.BlacklistId;
+import com.ajah.user.blacklist.BlacklistStatus;
+import com.ajah.user.blacklist.BlacklistType;
+import com.ajah.user.blacklist.data.BlacklistMatcher;
+
+/**
+ * Tests {@link BlacklistMatcher}.
+ * 
+ * @author Eric F. Savage <code@efsavage.com>
+ * 
+ */
+@SuppressWarnings("static-method")
+public class BlacklistMatcherTest {
+
+	/**
+	 * Pattern, value, and whether MySQL's {@code value LIKE pattern} is true.
+	 */
+	private static final Object[][] LIKE = {
+			// Literals, case-insensitively
+			{ "abc", "abc", Boolean.TRUE }, { "abc", "ABC", Boolean.TRUE }, { "ABC", "abc", Boolean.TRUE }, { "abc", "abcd", Boolean.FALSE }, { "abc", "ab", Boolean.FALSE },
+			{ "", "", Boolean.TRUE }, { "", "a", Boolean.FALSE },
+			// %
+			{ "%", "", Boolean.TRUE }, { "%", "anything", Boolean.TRUE }, { "bob%", "bobby", Boolean.TRUE }, { "bob%", "xbob", Boolean.FALSE }, { "%bob", "jimbob", Boolean.TRUE },
+			{ "%bob", "bobx", Boolean.FALSE }, { "%bob%", "xbobx", Boolean.TRUE }, { "spam%.com", "spam123.com", Boolean.TRUE }, { "spam%.com", "spam123.org", Boolean.FALSE },
+			// Consecutive %
+			{ "a%%b", "ab", Boolean.TRUE }, { "a%%b", "axxb", Boolean.TRUE }, { "a%%%", "a", Boolean.TRUE }, { "%%", "", Boolean.TRUE }, { "a%%b", "axxc", Boolean.FALSE },
+			// _ at either end and in the middle
+			{ "_", "", Boolean.FALSE }, { "_", "a", Boolean.TRUE }, { "_", "ab", Boolean.FALSE }, { "_bc", "abc", Boolean.TRUE }, { "_bc", "bc", Boolean.FALSE },
+			{ "ab_", "abc", Boolean.TRUE }, { "ab_", "ab", Boolean.FALSE }, { "_b_", "abc", Boolean.TRUE }, { "_b_", "abcd", Boolean.FALSE }, { "__", "ab", Boolean.TRUE },
+			{ "_%", "", Boolean.FALSE }, { "%_", "a", Boolean.TRUE },
+			// Escapes
+			{ "a\\%b", "a%b", Boolean.TRUE }, { "a\\%b", "axb", Boolean.FALSE }, { "a\\_b", "a_b", Boolean.TRUE }, { "a\\_b", "axb", Boolean.FALSE },
+			{ "a\\\\b", "a\\b", Boolean.TRUE }, { "ab\\", "ab\\", Boolean.TRUE }, { "100\\%%", "100% off", Boolean.TRUE }, { "100\\%%", "1000 off", Boolean.FALSE },
+			// Repeated and overlapping literals that need backtracking
+			{ "%ab%ab%", "abab", Boolean.TRUE }, { "%ab%ab%", "aba", Boolean.FALSE }, { "%aab", "aaab", Boolean.TRUE }, { "a%ba", "aba", Boolean.TRUE },
+			{ "a%ba", "ab", Boolean.FALSE }, { "%abc%bcd%", "abcd", Boolean.FALSE }, { "%abc%bcd%", "abcbcd", Boolean.TRUE } };
+
+	private static Blacklist blacklist(final String id, final String part1, final String part2) {
+		final Blacklist blacklist = new Blacklist();
+		blacklist.setId(new BlacklistId(id));
+		blacklist.setPart1(part1);
+		blacklist.setPart2(part2);
+		blacklist.setType(BlacklistType.EMAIL);
+		blacklist.setStatus(BlacklistStatus.ACTIVE);
+		blacklist.setCreated(new Date(Long.parseLong(id)));
+		return blacklist;
+	}
+
+	/**
+	 * Each pattern should match the same values as the SQL LIKE query, whether
+	 * it is found by exact lookup, keyword search or as an unindexed entry.
+	 */
+	@Test
+	public void testLikePatterns() {
+		for (int i = 0; i < LIKE.length; i++) {
+			final String pattern = (String) LIKE[i][0];
+			final String value = (String) LIKE[i][1];
+			final BlacklistMatcher matcher = BlacklistMatcher.build(Arrays.asList(blacklist(String.valueOf(i), pattern, null)));
+			Assert.assertEquals("'" + value + "' LIKE '" + pattern + "'", LIKE[i][2], Boolean.valueOf(!matcher.match(BlacklistType.EMAIL, value, null).isEmpty()));
+		}
+	}
+
+	/**
+	 * With every pattern in one matcher, each value should match exactly the
+	 * patterns it matches on its own, so keywords that overlap or contain each
+	 * other do not hide or add candidates.
+	 */
+	@Test
+	public void testCombined() {
+		final Blacklist[] blacklists = new Blacklist[LIKE.length];
+		for (int i = 0; i < LIKE.length; i++) {
+			blacklists[i] = blacklist(String.valueOf(i), (String) LIKE[i][0], null);
+		}
+		final BlacklistMatcher matcher = BlacklistMatcher.build(Arrays.asList(blacklists));
+		for (int i = 0; i < LIKE.length; i++) {
+			final List<Blacklist> matches = matcher.match(BlacklistType.EMAIL, (String) LIKE[i][1], null);
+			Assert.assertEquals("'" + LIKE[i][1] + "' LIKE '" + LIKE[i][0] + "'", LIKE[i][2], Boolean.valueOf(matches.contains(blacklists[i])));
+		}
+	}
+
+	/**
+	 * A null value leaves its part unconstrained, while a null part never
+	 * matches a value, as with the SQL query.
+	 */
+	@Test
+	public void testNulls() {
+		final Blacklist noDomain = blacklist("1", "spam%", null);
+		final Blacklist both = blacklist("2", "spam%", "example.com");
+		final BlacklistMatcher matcher = BlacklistMatcher.build(Arrays.asList(noDomain, both));
+		Assert.assertEquals(Arrays.asList(both, noDomain), matcher.match(BlacklistType.EMAIL, "spammer", null));
+		Assert.assertEquals(Arrays.asList(both), matcher.match(BlacklistType.EMAIL, "spammer", "example.com"));
+		Assert.assertEquals(Arrays.asList(both), matcher.match(BlacklistType.EMAIL, null, "EXAMPLE.com"));
+		Assert.assertEquals(Arrays.asList(both, noDomain), matcher.match(BlacklistType.EMAIL, null, null));
+		Assert.assertTrue(matcher.match(BlacklistType.USERNAME, "spammer", null).isEmpty());
+	}
+
+	/**
+	 * Case folding should not depend on the default locale; in Turkish, "I"
+	 * lowercases to a dotless i.
+	 */
+	@Test
+	public void testLocale() {
+		final Locale locale = Locale.getDefault();
+		try {
+			Locale.setDefault(new Locale("tr", "TR"));
+			final BlacklistMatcher matcher = BlacklistMatcher.build(Arrays.asList(blacklist("1", "ADMIN%", null)));
+			Assert.assertEquals(1, matcher.match(BlacklistType.EMAIL, "admin1", null).size());
+			Assert.assertEquals(1, matcher.match(BlacklistType.EMAIL, "ADMIN1", null).size());
+		} finally {
+			Locale.setDefault(locale);
+		}
+	}
+
+	/**
+	 * Updates should add, change and remove blacklists.
+	 */
+	@Test
+	public void testUpdate() {
+		final Blacklist blacklist = blacklist("1", "bob%", null);
+		BlacklistMatcher matcher = BlacklistMatcher.build(Arrays.<Blacklist> asList());
+		matcher = matcher.update(blacklist);
+		Assert.assertEquals(1, matcher.match(BlacklistType.EMAIL, "bobby", null).size());
+		final Blacklist changed = blacklist("1", "jim%", null);
+		matcher = matcher.update(changed);
+		Assert.assertTrue(matcher.match(BlacklistType.EMAIL, "bobby", null).isEmpty());
+		Assert.assertEquals(1, matcher.match(BlacklistType.EMAIL, "jimmy", null).size());
+		changed.setStatus(BlacklistStatus.DELETED);
+		matcher = matcher.update(changed);
+		Assert.assertEquals(0, matcher.size());
+		Assert.assertTrue(matcher.match(BlacklistType.EMAIL, "jimmy", null).isEmpty());
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package test.ajah.user.blacklist.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ajah.user.blacklist.data.KeywordIndex;
+
+/**
+ * Tests {@link KeywordIndex}.
+ * 
+ * @author Eric F. Savage <code@efsavage.com>
+ * 
+ */
+@SuppressWarnings("static-method")
+public class KeywordIndexTest {
+
+	private static KeywordIndex<String> index(final String... keywords) {
+		final Map<String, List<String>> map = new LinkedHashMap<>();
+		for (final String keyword : keywords) {
+			map.put(keyword, Collections.singletonList(keyword));
+		}
+		return new KeywordIndex<>(map);
+	}
+
+	private static Set<String> search(final KeywordIndex<String> index, final String text) {
+		final Set<String> found = new TreeSet<>();
+		index.search(text, found);
+		return found;
+	}
+
+	/**
+	 * Should find every keyword that appears in the text, the same as checking
+	 * each one with {@link String#contains(CharSequence)}, including keywords
+	 * that overlap or are suffixes of other keywords.
+	 */
+	@Test
+	public void testSearch() {
+		final String[] keywords = { "he", "she", "his", "hers", "a", "aa", "aab", "ab", "b", "bob", "ob", "abc", "bcd", "x.com" };
+		final KeywordIndex<String> index = index(keywords);
+		final String[] texts = { "", "ushers", "aaab", "bobob", "abcd", "abcbcd", "spam@x.com", "this", "zzz" };
+		for (final String text : texts) {
+			final Set<String> expected = new TreeSet<>();
+			for (final String keyword : keywords) {
+				if (text.contains(keyword)) {
+					expected.add(keyword);
+				}
+			}
+			Assert.assertEquals(text, expected, search(index, text));
+		}
+	}
+
+	/**
+	 * Values attached to the same keyword should all be returned, and empty
+	 * keywords ignored.
+	 */
+	@Test
+	public void testValues() {
+		final Map<String, List<String>> map = new LinkedHashMap<>();
+		map.put("bob", Arrays.asList("first", "second"));
+		map.put("", Arrays.asList("never"));
+		final KeywordIndex<String> index = new KeywordIndex<>(map);
+		Assert.assertEquals(new TreeSet<>(Arrays.asList("first", "second")), search(index, "jimbob"));
+		Assert.assertTrue(search(index, "jim").isEmpty());
+	}
+
+}
@@ -0,0 +1,240 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache that evicts the least recently used entry when it is full,
+ * and optionally expires entries after a fixed time to live. Hits, misses and
+ * evictions are counted so that the cache can be tuned.
+ * 
+ * All operations are synchronized, so instances may be shared between threads.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ * @param <K>
+ *            The type of key.
+ * @param <V>
+ *            The type of value being cached.
+ */
+public class LruCache<K, V> {
+
+	private final int maxSize;
+	private final long ttl;
+
+	private final LinkedHashMap<K, CacheEntry<V>> map;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Creates a cache with no time to live.
+	 * 
+	 * @param maxSize
+	 *            The maximum number of entries to hold, must be greater than
+	 *            zero.
+	 */
+	public LruCache(final int maxSize) {
+		this(maxSize, 0);
+	}
+
+	/**
+	 * Creates a cache.
+	 * 
+	 * @param maxSize
+	 *            The maximum number of entries to hold, must be greater than
+	 *            zero.
+	 * @param ttl
+	 *            The maximum age of an entry, in milliseconds. Zero or less
+	 *            means entries do not expire.
+	 */
+	public LruCache(final int maxSize, final long ttl) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Max size must be greater than zero");
+		}
+		this.maxSize = maxSize;
+		this.ttl = ttl;
+		this.map = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<K, CacheEntry<V>> eldest) {
+				if (size() > LruCache.this.maxSize) {
+					LruCache.this.evictions++;
+					return true;
+				}
+				return false;
+			}
+
+		};
+	}
+
+	/**
+	 * Returns a cached value if it is present and has not expired.
+	 * 
+	 * @param key
+	 *            The key of the value to fetch.
+	 * @return The cached value, or null if it is not present or has expired.
+	 */
+	public synchronized V get(final K key) {
+		final CacheEntry<V> entry = this.map.get(key);
+		if (entry == null) {
+			this.misses++;
+			return null;
+		}
+		if (isExpired(entry, System.currentTimeMillis())) {
+			this.map.remove(key);
+			this.evictions++;
+			this.misses++;
+			return null;
+		}
+		this.hits++;
+		return entry.getObject();
+	}
+
+	/**
+	 * Stores a value, replacing any existing value for the key. If the cache is
+	 * full, the least recently used entry is evicted.
+	 * 
+	 * @param key
+	 *            The key to store the value under, required.
+	 * @param value
+	 *            The value to store, required.
+	 */
+	public synchronized void put(final K key, final V value) {
+		this.map.put(key, new CacheEntry<>(value, System.currentTimeMillis()));
+	}
+
+	/**
+	 * Removes a value.
+	 * 
+	 * @param key
+	 *            The key of the value to remove.
+	 * @return The value that was removed, or null if there was none.
+	 */
+	public synchronized V remove(final K key) {
+		final CacheEntry<V> entry = this.map.remove(key);
+		return entry == null ? null : entry.getObject();
+	}
+
+	/**
+	 * Removes all values. Statistics are not reset.
+	 */
+	public synchronized void clear() {
+		this.map.clear();
+	}
+
+	/**
+	 * Removes all expired entries. Expired entries are also removed as they
+	 * are encountered by {@link #get(Object)}, so this is only needed to
+	 * reclaim memory from entries that are no longer being requested.
+	 * 
+	 * @return The number of entries removed.
+	 */
+	public synchronized int purgeExpired() {
+		if (this.ttl <= 0) {
+			return 0;
+		}
+		final long now = System.currentTimeMillis();
+		int purged = 0;
+		for (final Iterator<CacheEntry<V>> iterator = this.map.values().iterator(); iterator.hasNext();) {
+			if (isExpired(iterator.next(), now)) {
+				iterator.remove();
+				purged++;
+			}
+		}
+		this.evictions += purged;
+		return purged;
+	}
+
+	private boolean isExpired(final CacheEntry<V> entry, final long now) {
+		return this.ttl > 0 && entry.getCreated() + this.ttl < now;
+	}
+
+	/**
+	 * Returns the number of entries currently held, including any that have
+	 * expired but not yet been removed.
+	 * 
+	 * @return The number of entries.
+	 */
+	public synchronized int size() {
+		return this.map.size();
+	}
+
+	/**
+	 * Returns the maximum number of entries.
+	 * 
+	 * @return The maximum number of entries.
+	 */
+	public int getMaxSize() {
+		return this.maxSize;
+	}
+
+	/**
+	 * Returns the time to live of entries.
+	 * 
+	 * @return The time to live, in milliseconds, or zero or less if entries do
+	 *         not expire.
+	 */
+	public long getTtl() {
+		return this.ttl;
+	}
+
+	/**
+	 * Returns the number of lookups that found a value.
+	 * 
+	 * @return The number of hits.
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * Returns the number of lookups that did not find a value.
+	 * 
+	 * @return The number of misses.
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Returns the number of entries removed because the cache was full or the
+	 * entry had expired.
+	 * 
+	 * @return The number of evictions.
+	 */
+	public synchronized long getEvictions() {
+		return this.evictions;
+	}
+
+	/**
+	 * Returns the fraction of lookups that found a value.
+	 * 
+	 * @return The hit ratio, between 0 and 1, or 0 if there have been no
+	 *         lookups.
+	 */
+	public synchronized double getHitRatio() {
+		final long total = this.hits + this.misses;
+		return total == 0 ? 0 : (double) this.hits / total;
+	}
+
+}
@@ -0,0 +1,145 @@
+/*
+ *  Copyright 2014 Eric F. Savage, code@efsavage.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.ajah.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, lock-free histogram of durations in microseconds. Values are
+ * counted in log-linear buckets (eight per power of two), so percentiles are
+ * accurate to within about 12% no matter how wide the range of values is, and
+ * recording a value is a handful of atomic increments with no allocation.
+ * 
+ * @author <a href="http://efsavage.com">Eric F. Savage</a>, <a
+ *         href="mailto:code@efsavage.com">code@efsavage.com</a>.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	static int getBucket(final long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) Math.max(value, 0);
+		}
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long getUpperBound(final int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		final long subBucket = bucket % SUB_BUCKETS;
+		final long lower = (SUB_BUCKETS | subBucket) << (exponent - SUB_BUCKET_BITS);
+		return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * Records a duration.
+	 * 
+	 * @param micros
+	 *            The duration in microseconds, negative values are counted as
+	 *            zero.
+	 */
+	public void record(final long micros) {
+		final long value = Math.max(micros, 0);
+		this.counts.incrementAndGet(getBucket(value));
+		this.count.incrementAndGet();
+		this.total.addAndGet(value);
+		long current = this.max.get();
+		while (value > current && !this.max.compareAndSet(current, value)) {
+			current = this.max.get();
+		}
+	}
+
+	/**
+	 * Returns the number of durations recorded.
+	 * 
+	 * @return The number of durations recorded.
+	 */
+	public long getCount() {
+		return this.count.get();
+	}
+
+	/**
+	 * Returns the sum of all durations recorded.
+	 * 
+	 * @return The sum of all durations, in microseconds.
+	 */
+	public long getTotal() {
+		return this.total.get();
+	}
+
+	/**
+	 * Returns the longest duration recorded.
+	 * 
+	 * @return The longest duration, in microseconds.
+	 */
+	public long getMax() {
+		return this.max.get();
+	}
+
+	/**
+	 * Returns the mean duration.
+	 * 
+	 * @return The mean duration in microseconds, or zero if nothing has been
+	 *         recorded.
+	 */
+	public long getMean() {
+		final long n = this.count.get();
+		return n == 0 ? 0 : this.total.get() / n;
+	}
+
+	/**
+	 * Returns an estimate of the duration at a percentile. The estimate is the
+	 * upper bound of the bucket the percentile falls in, capped at the largest
+	 * value recorded.
+	 * 
+	 * @param percentile
+	 *            The percentile, between 0 and 100.
+	 * @return The estimated duration in microseconds, or zero if nothing has
+	 *         been recorded.
+	 */
+	public long getPercentile(final double percentile) {
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			n += this.counts.get(i);
+		}
+		if (n == 0) {
+			return 0;
+		}
+		final long target = Math.max(1, (long) Math.ceil(n * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += this.counts.get(i);
+			if (seen >= target) {
+				return Math.min(getUpperBound(i), this.max.get());
+			}
+		}
+		return this.max.get();
+	}
+
+}